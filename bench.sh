@@ -0,0 +1,54 @@
+#!/usr/bin/env bash
+
+set -e
+
+function help_message {
+  echo "${0} [-s|--seconds <seconds>] [-e|--edges]"
+}
+
+function error_message {
+  echo "\033[0;31m${1}\033[0m"
+}
+
+# Parse command line arguments
+seconds=3
+agent_options=""
+
+while (( "$#" ));
+do
+  case "$1" in
+    -s|--seconds)
+      seconds="$2"
+      shift 2
+      ;;
+    -e|--edges)
+      agent_options="edges=true"
+      shift
+      ;;
+    -h|--help)
+      help_message
+      exit 0
+      ;;
+    *)
+      error_message "Unknown argument: ${1}"
+      help_message
+      exit 1
+      ;;
+  esac
+done
+
+# Build the project and the benchmark if necessary
+if [[ ! -f target/coverage-guided-fuzzing-1.0-jar-with-dependencies.jar ]]; then
+  mvn clean package
+fi
+if [[ ! -d target/test-classes ]]; then
+  mvn test-compile
+fi
+
+jar=target/coverage-guided-fuzzing-1.0-jar-with-dependencies.jar
+classpath="target/test-classes:${jar}"
+benchmark=de.uni_passau.fim.se2.st.fuzzing.instrumentation.ProbeBenchmark
+
+# Measure the uninstrumented targets first, then the same targets with the agent
+java -cp "${classpath}" ${benchmark} "${seconds}"
+java -javaagent:${jar}${agent_options:+=${agent_options}} -cp "${classpath}" ${benchmark} "${seconds}"
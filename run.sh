@@ -3,7 +3,7 @@
 set -e
 
 function help_message {
-  echo "${0} [-t|--timeout <seconds>] [-q|--quiet]"
+  echo "${0} [-t|--timeout <seconds>] [-q|--quiet] [-e|--edges] [--first-hit] [--shared-coverage <file>] [-w|--workers <threads>] [--processes <jvms>] [--execution-timeout <ms>]"
 }
 
 function error_message {
@@ -11,8 +11,8 @@ function error_message {
 }
 
 # Parse command line arguments
-argline="java -javaagent:target/coverage-guided-fuzzing-1.0-jar-with-dependencies.jar"
-argline="${argline} -cp target/coverage-guided-fuzzing-1.0-jar-with-dependencies.jar"
+agent_options=""
+argline="-cp target/coverage-guided-fuzzing-1.0-jar-with-dependencies.jar"
 argline="${argline} de.uni_passau.fim.se2.st.fuzzing.CoverageGuidedFuzzer"
 # argline="${argline} -c Rational -p de.uni_passau.fim.se2.st.fuzzing.fuzztarget"
 
@@ -27,6 +27,30 @@ do
       argline="${argline} -q"
       shift
       ;;
+    -e|--edges)
+      agent_options="${agent_options:+${agent_options},}edges=true"
+      shift
+      ;;
+    --first-hit)
+      agent_options="${agent_options:+${agent_options},}firsthit=true"
+      shift
+      ;;
+    --shared-coverage)
+      argline="${argline} --shared-coverage $2"
+      shift 2
+      ;;
+    -w|--workers)
+      argline="${argline} -w $2"
+      shift 2
+      ;;
+    --processes)
+      argline="${argline} --processes $2"
+      shift 2
+      ;;
+    --execution-timeout)
+      argline="${argline} --execution-timeout $2"
+      shift 2
+      ;;
     -c|--class)
       argline="${argline} -c $2"
       shift 2
@@ -57,4 +81,4 @@ if [[ -d fuzzing-report ]]; then
   rm -rf fuzzing-report
 fi
 
-exec ${argline}
\ No newline at end of file
+exec java -javaagent:target/coverage-guided-fuzzing-1.0-jar-with-dependencies.jar${agent_options:+=${agent_options}} ${argline}
\ No newline at end of file
@@ -0,0 +1,76 @@
+package de.uni_passau.fim.se2.st.fuzzing;
+
+import com.sun.tools.attach.AgentInitializationException;
+import com.sun.tools.attach.AgentLoadException;
+import com.sun.tools.attach.AttachNotSupportedException;
+import com.sun.tools.attach.VirtualMachine;
+import de.uni_passau.fim.se2.st.fuzzing.instrumentation.Agent;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * The {@code attach} subcommand of the {@link CoverageGuidedFuzzer}. It loads the instrumentation
+ * agent into a running JVM, which then instruments the target classes it already loaded, so a
+ * campaign can reuse a warm JVM instead of paying for start-up and JIT warm-up again.
+ */
+@Command(name = "attach", description = "Attach the instrumentation agent to a running JVM.")
+public class AttachCommand implements Callable<Integer> {
+
+  private final Logger logger = Logger.getLogger(AttachCommand.class.getName());
+
+  @Option(
+      names = {"--pid"},
+      description = "Process id of the JVM to attach to.",
+      required = true)
+  private String pid;
+
+  @Option(
+      names = {"--agent-options"},
+      description = "Options passed to the agent, e.g., edges=true,includes=com.example.**.",
+      defaultValue = "")
+  private String agentOptions;
+
+  /**
+   * Attaches the agent jar this class was loaded from to the JVM.
+   *
+   * @return System error code. Returns 0 for successful execution.
+   * @throws IllegalStateException If the agent is not run from a jar.
+   * @throws IOException When the JVM cannot be attached or fails to load the agent.
+   */
+  @Override
+  public Integer call() throws IOException {
+    Path agentJar = locateAgentJar();
+    try {
+      VirtualMachine vm = VirtualMachine.attach(pid);
+      try {
+        vm.loadAgent(agentJar.toString(), agentOptions);
+      } finally {
+        vm.detach();
+      }
+    } catch (AttachNotSupportedException | AgentLoadException | AgentInitializationException e) {
+      throw new IOException("Could not attach the agent to JVM " + pid, e);
+    }
+    logger.info(() -> "Attached " + agentJar + " to JVM " + pid);
+    return 0;
+  }
+
+  private static Path locateAgentJar() {
+    try {
+      Path location =
+          Path.of(Agent.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+      if (!Files.isRegularFile(location)) {
+        throw new IllegalStateException(
+            "The agent can only be attached from its jar, but was loaded from " + location);
+      }
+      return location;
+    } catch (URISyntaxException e) {
+      throw new IllegalStateException("Cannot locate the agent jar", e);
+    }
+  }
+}
@@ -1,19 +1,33 @@
 package de.uni_passau.fim.se2.st.fuzzing;
 
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump;
 import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker;
 import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker.ClassTracker;
 import de.uni_passau.fim.se2.st.fuzzing.coverage.OutputWriter;
+import de.uni_passau.fim.se2.st.fuzzing.coverage.SharedCoverageMap;
 import de.uni_passau.fim.se2.st.fuzzing.fuzzer.*;
+import de.uni_passau.fim.se2.st.fuzzing.instrumentation.Agent;
+import de.uni_passau.fim.se2.st.fuzzing.instrumentation.LineTableScanner;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 import picocli.CommandLine;
+import picocli.CommandLine.Command;
 import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.ParameterException;
@@ -24,10 +38,22 @@ import picocli.CommandLine.Spec;
  * given class. It initializes the fuzzing process, executes the fuzzing, and handles the results by
  * writing the outputs to specified files. It also provides options to configure the fuzzing
  * operation like setting a timeout, specifying the class and package to fuzz, and toggling the
- * verbosity of the output.
+ * verbosity of the output. The {@code instrument} subcommand instruments classes ahead of time, the
+ * {@code attach} subcommand attaches the agent to a running JVM, the {@code merge} subcommand
+ * merges the coverage dumps of several runs, the {@code strings} subcommand fuzzes the CSV parser
+ * with mutated strings, and the {@code minimize} subcommand shrinks such strings. With {@code
+ * --processes}, the fuzzer coordinates several forked worker JVMs instead of fuzzing itself.
  *
  * @author Michael Ertl, Jakob Edmaier, Leon Föckersperger
  */
+@Command(
+    subcommands = {
+      InstrumentCommand.class,
+      AttachCommand.class,
+      MergeCommand.class,
+      StringsCommand.class,
+      MinimizeCommand.class
+    })
 public class CoverageGuidedFuzzer implements Callable<Integer> {
 
   @Spec CommandSpec spec;
@@ -35,6 +61,28 @@ public class CoverageGuidedFuzzer implements Callable<Integer> {
   private boolean quiet;
   private String targetClass;
   private String targetPackage;
+  private Path lineTableCache = DEFAULT_LINE_TABLE_CACHE;
+  private Path sharedCoverage;
+  private Path coverageDump;
+  private int workers = 1;
+  private int processes;
+  private Path coordinator;
+  private int workerId;
+  private long executionTimeout;
+  private boolean dropDemotedResults;
+  private boolean noShrink;
+  private List<TimeoutFinding> timeouts = List.of();
+  private List<CrashTriage.Bucket<FuzzingMethodResult>> crashes = List.of();
+
+  /** File that caches the line tables of the target classes between runs by default. */
+  static final Path DEFAULT_LINE_TABLE_CACHE =
+      Path.of(System.getProperty("java.io.tmpdir"), "coverage-guided-fuzzing", "line-tables");
+
+  /** Interval in milliseconds in which a worker process sends its coverage to the coordinator. */
+  private static final long COVERAGE_INTERVAL = 1000;
+
+  /** The divisor of the timeout that gives the part of it that is kept back for shrinking. */
+  private static final long SHRINKING_SHARE = 10;
 
   private final Logger logger = Logger.getLogger(CoverageGuidedFuzzer.class.getName());
 
@@ -53,7 +101,10 @@ public class CoverageGuidedFuzzer implements Callable<Integer> {
    * @param args The command-line arguments.
    */
   public static void main(String[] args) {
-    int exitCode = new CommandLine(new CoverageGuidedFuzzer()).execute(args);
+    int exitCode =
+        new CommandLine(new CoverageGuidedFuzzer())
+            .setCaseInsensitiveEnumValuesAllowed(true)
+            .execute(args);
     System.exit(exitCode);
   }
 
@@ -69,13 +120,37 @@ public class CoverageGuidedFuzzer implements Callable<Integer> {
   @Override
   public Integer call() throws IOException {
     validateConfiguration();
+    rejectFirstHit(spec);
     setLogLevel(this.quiet);
+    registerLineTables();
     try {
       Class<?> target = Class.forName(targetPackage + "." + targetClass);
-      Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(timeout * 1000));
-      fuzzer.fuzz(target);
+      FuzzingClassResult results;
+      if (processes > 0) {
+        results = fuzzWithProcesses(target);
+      } else {
+        long campaign = timeout * 1000;
+        // Workers report their results as they find them, so they do not shrink them
+        long shrinking = noShrink || coordinator != null ? 0 : campaign / SHRINKING_SHARE;
+        Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(campaign - shrinking));
+        fuzzer.setShrinkingBudget(shrinking);
+        fuzzer.setWorkers(workers);
+        fuzzer.setExecutionTimeout(executionTimeout);
+        fuzzer.setDropDemotedResults(dropDemotedResults);
+        if (sharedCoverage != null) {
+          fuzzer.setSharedCoverage(SharedCoverageMap.open(sharedCoverage));
+        }
+        if (coordinator != null) {
+          fuzzAsWorker(fuzzer, target);
+          return 0;
+        }
+        fuzzer.fuzz(target);
+        results = fuzzer.getFuzzingClassResults();
+        timeouts = fuzzer.getTimeouts();
+        crashes = fuzzer.getCrashBuckets();
+      }
       TestGenerator testGenerator = new UnitTestGenerator(new FileSystemOperations());
-      testGenerator.generateTestClass(fuzzer.getFuzzingClassResults());
+      testGenerator.generateTestClass(results);
       writeOutputs();
       return 0;
     } catch (UnableToWriteTestFile e) {
@@ -88,14 +163,196 @@ public class CoverageGuidedFuzzer implements Callable<Integer> {
   }
 
   /**
-   * Writes the output of the fuzzing process. It includes writing the shell output, XML output, and
-   * HTML output.
+   * Fuzzes the target class with forked worker processes, which share their coverage through a
+   * memory-mapped file. The results and the coverage of the workers are merged into this process,
+   * so that the outputs look like those of a single run.
+   *
+   * @param target The class to fuzz.
+   * @return The covering method results of all workers.
+   * @throws IOException When the workers cannot be started.
+   */
+  private FuzzingClassResult fuzzWithProcesses(Class<?> target) throws IOException {
+    Path shared =
+        sharedCoverage != null
+            ? sharedCoverage
+            : Files.createTempFile("coverage-guided-fuzzing", ".map");
+    try {
+      WorkerPool pool =
+          new WorkerPool(
+              (id, socket, remainingMillis) -> workerCommand(id, socket, remainingMillis, shared),
+              processes,
+              reportDirectory().resolve("workers"));
+      WorkerPool.Result result = pool.run(timeout * 1000);
+      CoverageTracker.getInstance().merge(result.coverage());
+      timeouts = result.timeouts();
+      logger.fine(
+          () ->
+              String.format(
+                  "Workers found %d covering inputs, %d timeouts, %d restarts",
+                  result.methodResults().size(), result.timeouts().size(), result.restarts()));
+      return new FuzzingClassResult(
+          target.getPackageName(), target.getSimpleName(), result.methodResults());
+    } finally {
+      if (sharedCoverage == null) {
+        Files.deleteIfExists(shared);
+      }
+    }
+  }
+
+  /**
+   * Creates the command line of a worker process. The worker runs in the same Java installation,
+   * with the same JVM options, e.g., the agent, and the same class path as this process.
+   */
+  private List<String> workerCommand(
+      int id, Path socket, long remainingMillis, Path sharedCoverage) {
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.add("-XX:+ExitOnOutOfMemoryError");
+    for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+      // A debugger can only be attached to one process
+      if (!argument.startsWith("-agentlib:jdwp")) {
+        command.add(argument);
+      }
+    }
+    command.addAll(
+        List.of(
+            "-cp",
+            System.getProperty("java.class.path"),
+            CoverageGuidedFuzzer.class.getName(),
+            "-c",
+            targetClass,
+            "-p",
+            targetPackage,
+            "-t",
+            String.valueOf((remainingMillis + 999) / 1000),
+            "-w",
+            String.valueOf(workers),
+            "--execution-timeout",
+            String.valueOf(executionTimeout),
+            "-q",
+            "--line-table-cache",
+            lineTableCache.toString(),
+            "--shared-coverage",
+            sharedCoverage.toString(),
+            "--coordinator",
+            socket.toString(),
+            "--worker-id",
+            String.valueOf(id)));
+    return command;
+  }
+
+  /**
+   * Fuzzes the target class as a worker process. Results and timeouts are sent to the coordinator
+   * as soon as they are found, the coverage every {@value #COVERAGE_INTERVAL} milliseconds and
+   * once more at the end. The coordinator writes the outputs.
+   *
+   * @param fuzzer The configured fuzzer.
+   * @param target The class to fuzz.
+   * @throws IOException When the coordinator cannot be reached.
+   */
+  private void fuzzAsWorker(Fuzzer fuzzer, Class<?> target) throws IOException {
+    try (CoordinatorConnection connection = CoordinatorConnection.open(coordinator, workerId)) {
+      fuzzer.setResultListener(
+          result -> {
+            try {
+              connection.sendResult(result);
+            } catch (IOException e) {
+              throw new UncheckedIOException("Lost connection to the coordinator", e);
+            }
+          });
+      fuzzer.setTimeoutListener(
+          timeout -> {
+            try {
+              connection.sendTimeout(timeout);
+            } catch (IOException e) {
+              throw new UncheckedIOException("Lost connection to the coordinator", e);
+            }
+          });
+      ScheduledExecutorService reporter =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "coverage-reporter");
+                thread.setDaemon(true);
+                return thread;
+              });
+      reporter.scheduleWithFixedDelay(
+          () -> sendCoverage(connection),
+          COVERAGE_INTERVAL,
+          COVERAGE_INTERVAL,
+          TimeUnit.MILLISECONDS);
+      try {
+        fuzzer.fuzz(target);
+      } finally {
+        reporter.shutdownNow();
+      }
+      connection.sendCoverage(CoverageDump.capture(CoverageTracker.getInstance()));
+    }
+  }
+
+  private void sendCoverage(CoordinatorConnection connection) {
+    try {
+      connection.sendCoverage(CoverageDump.capture(CoverageTracker.getInstance()));
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot send coverage to the coordinator", e);
+    }
+  }
+
+  /**
+   * Registers the lines of all classes of the target package that the agent instruments, so that
+   * the coverage is relative to the whole package from the first execution on.
+   *
+   * @throws IOException When the class path or the line table cache cannot be read or written.
+   */
+  private void registerLineTables() throws IOException {
+    registerLineTables(targetPackage, lineTableCache);
+  }
+
+  /**
+   * Rejects an agent that runs in first-hit mode, which removes the probes of methods whose lines
+   * are all covered. The fuzzer and the minimizer judge every execution by its trace and its hit
+   * counts, which such methods no longer leave.
+   *
+   * @param spec The command that runs the fuzzer or the minimizer.
+   * @throws ParameterException When the agent runs in first-hit mode.
+   */
+  static void rejectFirstHit(CommandSpec spec) {
+    if (Agent.isFirstHit()) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "The agent option firsthit removes the hit counts the fuzzer needs, run without it.");
+    }
+  }
+
+  /**
+   * Registers the lines of all classes of a package that the agent instruments.
+   *
+   * @param targetPackage The package whose classes are registered.
+   * @param lineTableCache The file that caches the line tables between runs.
+   * @throws IOException When the class path or the line table cache cannot be read or written.
+   */
+  static void registerLineTables(String targetPackage, Path lineTableCache) throws IOException {
+    LineTableScanner scanner =
+        new LineTableScanner(lineTableCache, Runtime.getRuntime().availableProcessors());
+    LineTableScanner.Result result =
+        scanner.scan(
+            targetPackage, CoverageGuidedFuzzer.class.getClassLoader(), Agent::isInstrumented);
+    Logger.getLogger(CoverageGuidedFuzzer.class.getName())
+        .fine(
+            () ->
+                String.format(
+                    "Registered %d classes of %s, %d from the cache",
+                    result.classes(), targetPackage, result.cached()));
+  }
+
+  /**
+   * Writes the output of the fuzzing process. It includes writing the shell output, XML output,
+   * HTML output, the binary coverage dump, and the calls of the executions that timed out.
    *
    * @throws IOException When an error occurs during writing.
    */
   private void writeOutputs() throws IOException {
     Path current = Paths.get(".").toAbsolutePath();
-    Path target = current.resolve("fuzzing-report");
+    Path target = reportDirectory();
     Map<String, ClassTracker> classTrackers = CoverageTracker.getInstance().getClassTrackers();
     if (!quiet) {
       OutputWriter.writeShellOutput(classTrackers);
@@ -103,18 +360,104 @@ public class CoverageGuidedFuzzer implements Callable<Integer> {
     OutputWriter.writeXMLOutput(classTrackers, target.resolve("coverage.xml"));
     OutputWriter.writeHTMLOutput(
         classTrackers, current.resolve("src").resolve("main").resolve("java"), target);
+    Path dump =
+        coverageDump != null
+            ? coverageDump
+            : target.resolve("coverage" + MergeCommand.DUMP_EXTENSION);
+    CoverageDump.capture(CoverageTracker.getInstance()).write(dump);
+    writeTimeouts(target.resolve("timeouts"));
+    writeCrashes(target.resolve("crashes"));
   }
 
   /**
-   * Validates the configuration by ensuring that the target class is provided.
+   * Saves the call of every execution that timed out in a file of its own, replacing those of
+   * earlier runs.
    *
-   * @throws IllegalArgumentException If the target class is not provided.
+   * @param directory The directory the timeouts are saved in.
+   * @throws IOException When an error occurs during writing.
+   */
+  private void writeTimeouts(Path directory) throws IOException {
+    if (Files.isDirectory(directory)) {
+      List<Path> earlier;
+      try (Stream<Path> files = Files.list(directory)) {
+        earlier =
+            files.filter(file -> file.getFileName().toString().startsWith("timeout-")).toList();
+      }
+      for (Path file : earlier) {
+        Files.delete(file);
+      }
+    }
+    if (timeouts.isEmpty()) {
+      return;
+    }
+    Files.createDirectories(directory);
+    for (int i = 0; i < timeouts.size(); i++) {
+      TimeoutFinding timeout = timeouts.get(i);
+      Files.writeString(
+          directory.resolve(String.format("timeout-%03d.txt", i + 1)),
+          timeout.input() + System.lineSeparator());
+    }
+    logger.warning(
+        () -> String.format("%d executions timed out, see %s", timeouts.size(), directory));
+  }
+
+  /**
+   * Saves the reproducer of every distinct crash in a file of its own, replacing those of earlier
+   * runs. The first line tells the exception, its throw site and how often the crash was hit.
+   *
+   * @param directory The directory the crashes are saved in.
+   * @throws IOException When an error occurs during writing.
+   */
+  private void writeCrashes(Path directory) throws IOException {
+    if (Files.isDirectory(directory)) {
+      List<Path> earlier;
+      try (Stream<Path> files = Files.list(directory)) {
+        earlier = files.filter(file -> file.getFileName().toString().startsWith("crash-")).toList();
+      }
+      for (Path file : earlier) {
+        Files.delete(file);
+      }
+    }
+    if (crashes.isEmpty()) {
+      return;
+    }
+    Files.createDirectories(directory);
+    for (int i = 0; i < crashes.size(); i++) {
+      CrashTriage.Bucket<FuzzingMethodResult> crash = crashes.get(i);
+      FuzzingMethodResult reproducer = crash.reproducer();
+      String receiver =
+          reproducer.isStatic() ? targetPackage + "." + targetClass : reproducer.constructor();
+      String input =
+          String.format(
+              "%s.%s(%s)",
+              receiver, reproducer.methodName(), String.join(", ", reproducer.methodParameters()));
+      Files.writeString(
+          directory.resolve(String.format("crash-%03d.txt", i + 1)),
+          String.format(
+              "# %s at %s, %d hits, bucket %016x%n%s%n",
+              crash.exceptionType(), crash.throwSite(), crash.hits(), crash.id(), input));
+    }
+    logger.fine(() -> String.format("%d distinct crashes, see %s", crashes.size(), directory));
+  }
+
+  private Path reportDirectory() {
+    return Paths.get(".").toAbsolutePath().resolve("fuzzing-report");
+  }
+
+  /**
+   * Validates the configuration by ensuring that the target class and package are provided. They
+   * are not required by the command line parser, as the subcommands do not need them.
+   *
+   * @throws IllegalArgumentException If the target class or package is not provided.
    * @author Leon Föckersperger
    */
   private void validateConfiguration() {
     if (targetClass == null || targetClass.isEmpty()) {
       throw new IllegalArgumentException("Target class must be provided.");
     }
+    if (targetPackage == null || targetPackage.isEmpty()) {
+      throw new IllegalArgumentException("Target package must be provided.");
+    }
   }
 
   public void setTargetClass(String targetClass) {
@@ -144,6 +487,107 @@ public class CoverageGuidedFuzzer implements Callable<Integer> {
     this.timeout = timeout;
   }
 
+  /**
+   * Sets the number of worker threads that fuzz the target class in parallel.
+   *
+   * @param workers The number of worker threads.
+   * @throws ParameterException If the number of workers is not positive.
+   */
+  @Option(
+      names = {"-w", "--workers"},
+      description = "Number of worker threads fuzzing in parallel.",
+      defaultValue = "1")
+  public void setWorkers(int workers) {
+    if (workers < 1) {
+      throw new ParameterException(spec.commandLine(), "Workers must be a positive integer.");
+    }
+    this.workers = workers;
+  }
+
+  /**
+   * Sets the number of forked worker processes. Every worker process runs the configured number of
+   * worker threads. A worker that crashes is restarted with the remaining time.
+   *
+   * @param processes The number of worker processes, 0 to fuzz in this process.
+   * @throws ParameterException If the number of processes is negative.
+   */
+  @Option(
+      names = {"--processes"},
+      description = "Number of forked worker JVMs fuzzing in parallel, 0 to fuzz in this JVM.",
+      defaultValue = "0")
+  public void setProcesses(int processes) {
+    if (processes < 0) {
+      throw new ParameterException(spec.commandLine(), "Processes must not be negative.");
+    }
+    this.processes = processes;
+  }
+
+  /**
+   * Makes this process a worker of a coordinator that forked it.
+   *
+   * @param coordinator The socket of the coordinator.
+   */
+  @Option(names = {"--coordinator"}, hidden = true)
+  public void setCoordinator(Path coordinator) {
+    this.coordinator = coordinator;
+  }
+
+  /**
+   * Sets the id the coordinator assigned to this worker process.
+   *
+   * @param workerId The id of the worker.
+   */
+  @Option(names = {"--worker-id"}, hidden = true)
+  public void setWorkerId(int workerId) {
+    this.workerId = workerId;
+  }
+
+  /**
+   * Sets the time a single execution of a target method may take before it is given up and saved
+   * as a timeout.
+   *
+   * @param executionTimeout The timeout in milliseconds, 0 for no timeout.
+   * @throws ParameterException If the timeout is negative.
+   */
+  @Option(
+      names = {"--execution-timeout"},
+      description = "Timeout in milliseconds for a single execution, 0 for no timeout.",
+      defaultValue = "1000")
+  public void setExecutionTimeout(long executionTimeout) {
+    if (executionTimeout < 0) {
+      throw new ParameterException(spec.commandLine(), "Execution timeout must not be negative.");
+    }
+    this.executionTimeout = executionTimeout;
+  }
+
+  /**
+   * Sets whether the covering results that the distillation demotes are left out of the generated
+   * tests. Results that only reached a new hit count bucket are always demoted.
+   *
+   * @param dropDemotedResults If true, only the favored results are turned into tests.
+   */
+  @Option(
+      names = {"--drop-demoted-results"},
+      description = "Only generate tests for the results favored by the distillation.",
+      defaultValue = "false")
+  public void setDropDemotedResults(boolean dropDemotedResults) {
+    this.dropDemotedResults = dropDemotedResults;
+  }
+
+  /**
+   * Turns off shrinking the calls of the results. Otherwise, a tenth of the timeout is kept back
+   * for shrinking them once the fuzzing stops, so that the whole run still takes the timeout.
+   *
+   * @param noShrink If true, the results are reported as they were found.
+   */
+  @Option(
+      names = {"--no-shrink"},
+      description = "Do not shrink the calls of the results, and fuzz for the whole timeout.",
+      defaultValue = "false")
+  public void setNoShrink(boolean noShrink) {
+    this.noShrink = noShrink;
+  }
+
   /**
    * Sets the verbosity of the output.
    *
@@ -167,8 +611,7 @@ public class CoverageGuidedFuzzer implements Callable<Integer> {
    */
   @Option(
       names = {"-c", "--class"},
-      description = "Name of the class to fuzz.",
-      required = true)
+      description = "Name of the class to fuzz.")
   // @formatter:on
   public void setClass(String className) {
     this.targetClass = className;
@@ -182,19 +625,57 @@ public class CoverageGuidedFuzzer implements Callable<Integer> {
    */
   @Option(
       names = {"-p", "--package"},
-      description = "Name of the package that contains the class to fuzz.",
-      required = true)
+      description = "Name of the package that contains the class to fuzz.")
   // @formatter:on
   public void setPackage(String packageName) {
     this.targetPackage = packageName;
   }
 
+  /**
+   * Sets the file that caches the line tables of the target classes between runs.
+   *
+   * @param lineTableCache The path of the cache file.
+   */
+  @Option(
+      names = {"--line-table-cache"},
+      description = "File caching the line tables of the target classes between runs.")
+  public void setLineTableCache(Path lineTableCache) {
+    this.lineTableCache = lineTableCache;
+  }
+
+  /**
+   * Sets the file of a coverage map that is shared with other fuzzer processes.
+   *
+   * @param sharedCoverage The path of the memory-mapped coverage file.
+   */
+  @Option(
+      names = {"--shared-coverage"},
+      description =
+          "Memory-mapped file sharing the coverage with other fuzzer processes, e.g., in /dev/shm.")
+  public void setSharedCoverage(Path sharedCoverage) {
+    this.sharedCoverage = sharedCoverage;
+  }
+
+  /**
+   * Sets the file the binary coverage dump is written to, so that the coverage can be merged with
+   * that of other runs.
+   *
+   * @param coverageDump The path of the dump.
+   */
+  @Option(
+      names = {"--coverage-dump"},
+      description =
+          "File the binary coverage dump is written to, fuzzing-report/coverage.cov by default.")
+  public void setCoverageDump(Path coverageDump) {
+    this.coverageDump = coverageDump;
+  }
+
   /**
    * Sets the log level of the application based on the verbosity setting.
    *
    * @param quiet If true, sets the log level to INFO, else sets to FINE.
    */
-  private void setLogLevel(boolean quiet) {
+  static void setLogLevel(boolean quiet) {
     Logger rootLogger = LogManager.getLogManager().getLogger("");
     Level level = quiet ? Level.INFO : Level.FINE;
     rootLogger.setLevel(level);
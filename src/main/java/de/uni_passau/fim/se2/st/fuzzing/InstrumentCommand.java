@@ -0,0 +1,88 @@
+package de.uni_passau.fim.se2.st.fuzzing;
+
+import de.uni_passau.fim.se2.st.fuzzing.instrumentation.OfflineInstrumenter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * The {@code instrument} subcommand of the {@link CoverageGuidedFuzzer}. It instruments a class
+ * directory or jar ahead of time, so that a fuzzing campaign can run the instrumented copy without
+ * the agent and without instrumenting classes while they are loaded.
+ */
+@Command(
+    name = "instrument",
+    description = "Instrument a class directory or jar ahead of time.")
+public class InstrumentCommand implements Callable<Integer> {
+
+  private final Logger logger = Logger.getLogger(InstrumentCommand.class.getName());
+
+  @Option(
+      names = {"-i", "--input"},
+      description = "Class directory or jar to instrument.",
+      required = true)
+  private Path input;
+
+  @Option(
+      names = {"-o", "--output"},
+      description = "Directory the instrumented classes are written to.",
+      required = true)
+  private Path output;
+
+  @Option(
+      names = {"-e", "--edges"},
+      description = "Instrument branch edges in addition to lines.",
+      defaultValue = "false")
+  private boolean edges;
+
+  @Option(
+      names = {"--compute-frames"},
+      description =
+          "Recompute stack map frames instead of keeping the original ones. Needs the super"
+              + " classes of the instrumented classes on the class path.",
+      defaultValue = "false")
+  private boolean computeFrames;
+
+  @Option(
+      names = {"--includes"},
+      description =
+          "Colon separated patterns of the classes to instrument, like the agent option includes.",
+      split = ":")
+  private List<String> includes;
+
+  @Option(
+      names = {"--excludes"},
+      description =
+          "Colon separated patterns of the classes to copy uninstrumented, like the agent option"
+              + " excludes.",
+      split = ":")
+  private List<String> excludes;
+
+  @Option(
+      names = {"--threads"},
+      description = "Number of threads instrumenting classes in parallel.")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Instruments the input and writes the instrumented copy to the output directory.
+   *
+   * @return System error code. Returns 0 for successful execution.
+   * @throws IOException When the input cannot be read or the output cannot be written.
+   */
+  @Override
+  public Integer call() throws IOException {
+    OfflineInstrumenter instrumenter =
+        new OfflineInstrumenter(edges, !computeFrames, includes, excludes, threads);
+    OfflineInstrumenter.Result result = instrumenter.instrument(input, output);
+    logger.info(
+        () ->
+            String.format(
+                "Instrumented %d classes, %d classes unchanged, %d files copied to %s",
+                result.instrumented(), result.unchanged(), result.copied(), output));
+    return 0;
+  }
+}
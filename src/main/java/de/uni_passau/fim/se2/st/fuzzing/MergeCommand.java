@@ -0,0 +1,143 @@
+package de.uni_passau.fim.se2.st.fuzzing;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump;
+import de.uni_passau.fim.se2.st.fuzzing.coverage.OutputWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+/**
+ * The {@code merge} subcommand of the {@link CoverageGuidedFuzzer}. It merges the coverage dumps of
+ * many runs, e.g., of a nightly campaign, and writes the merged coverage as a dump, an LCOV
+ * tracefile, or a JaCoCo XML report.
+ */
+@Command(
+    name = "merge",
+    description = "Merge coverage dumps and export them as LCOV or JaCoCo XML.")
+public class MergeCommand implements Callable<Integer> {
+
+  /** File extension of the coverage dumps that are picked up from directories. */
+  static final String DUMP_EXTENSION = ".cov";
+
+  private final Logger logger = Logger.getLogger(MergeCommand.class.getName());
+
+  @Spec CommandSpec spec;
+
+  @Parameters(
+      arity = "1..*",
+      description = "Coverage dumps, or directories that contain dumps ending in " + DUMP_EXTENSION)
+  private List<Path> inputs;
+
+  @Option(
+      names = {"-o", "--output"},
+      description = "File the merged coverage dump is written to.")
+  private Path output;
+
+  @Option(
+      names = {"--lcov"},
+      description = "File the merged coverage is written to as an LCOV tracefile.")
+  private Path lcov;
+
+  @Option(
+      names = {"--jacoco"},
+      description = "File the merged coverage is written to as a JaCoCo XML report.")
+  private Path jacoco;
+
+  @Option(
+      names = {"--threads"},
+      description = "Number of threads reading dumps in parallel.")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Reads and merges the dumps and writes the requested outputs.
+   *
+   * @return System error code. Returns 0 for successful execution.
+   * @throws IOException When a dump cannot be read or an output cannot be written.
+   */
+  @Override
+  public Integer call() throws IOException {
+    if (output == null && lcov == null && jacoco == null) {
+      throw new ParameterException(
+          spec.commandLine(), "At least one of --output, --lcov and --jacoco is needed.");
+    }
+    if (threads < 1) {
+      throw new ParameterException(spec.commandLine(), "At least one thread is needed.");
+    }
+    List<Path> files = listDumps();
+    CoverageDump merged = CoverageDump.merge(readInParallel(files));
+    if (output != null) {
+      merged.write(output);
+    }
+    if (lcov != null) {
+      OutputWriter.writeLcovOutput(merged, lcov);
+    }
+    if (jacoco != null) {
+      OutputWriter.writeJacocoXmlOutput(merged, jacoco);
+    }
+    logger.info(
+        () ->
+            String.format(
+                "Merged %d dumps covering %d classes", files.size(), merged.getClasses().size()));
+    return 0;
+  }
+
+  private List<Path> listDumps() throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (Path input : inputs) {
+      if (Files.isDirectory(input)) {
+        try (Stream<Path> walk = Files.walk(input)) {
+          walk.filter(file -> file.getFileName().toString().endsWith(DUMP_EXTENSION))
+              .filter(Files::isRegularFile)
+              .sorted()
+              .forEach(files::add);
+        }
+      } else {
+        files.add(input);
+      }
+    }
+    return files;
+  }
+
+  private List<CoverageDump> readInParallel(List<Path> files) throws IOException {
+    List<Callable<CoverageDump>> tasks = new ArrayList<>();
+    for (Path file : files) {
+      tasks.add(() -> CoverageDump.read(file));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<CoverageDump> dumps = new ArrayList<>();
+      for (Future<CoverageDump> future : executor.invokeAll(tasks)) {
+        dumps.add(future.get());
+      }
+      return dumps;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading coverage dumps", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      if (e.getCause() instanceof IllegalArgumentException illegalArgument) {
+        throw illegalArgument;
+      }
+      throw new IllegalStateException("Failed to read coverage dumps", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
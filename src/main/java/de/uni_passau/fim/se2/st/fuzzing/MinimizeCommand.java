@@ -0,0 +1,127 @@
+package de.uni_passau.fim.se2.st.fuzzing;
+
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.StringMinimizer;
+import de.uni_passau.fim.se2.st.fuzzing.fuzztarget.CSVParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+/**
+ * The {@code minimize} subcommand of the {@link CoverageGuidedFuzzer}. It shrinks CSV strings,
+ * e.g., those saved by the {@code strings} subcommand, with the {@link StringMinimizer}. A string
+ * that makes {@link CSVParser#parseDishes} throw keeps the type and the throw site of the
+ * exception, any other string keeps the lines and edges it covers.
+ */
+@Command(
+    name = "minimize",
+    description = "Shrink CSV strings while they keep their coverage or exception.")
+public class MinimizeCommand implements Callable<Integer> {
+
+  private final Logger logger = Logger.getLogger(MinimizeCommand.class.getName());
+
+  @Spec CommandSpec spec;
+
+  @Parameters(arity = "1..*", description = "CSV strings, or directories that contain them.")
+  private List<Path> inputs;
+
+  @Option(
+      names = {"-o", "--output"},
+      description = "Directory the shrunk strings are saved in, under the names of the inputs.",
+      defaultValue = "fuzzing-report/minimized")
+  private Path output;
+
+  @Option(
+      names = {"--threads"},
+      description = "Number of threads executing candidates in parallel.")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  @Option(
+      names = {"--line-table-cache"},
+      description = "File caching the line tables of the target classes between runs.")
+  private Path lineTableCache = CoverageGuidedFuzzer.DEFAULT_LINE_TABLE_CACHE;
+
+  @Option(
+      names = {"-q", "--quiet"},
+      description = "Only print the summary.",
+      defaultValue = "false")
+  private boolean quiet;
+
+  /**
+   * Shrinks the strings and saves them.
+   *
+   * @return System error code. Returns 0 for successful execution.
+   * @throws IOException When the line tables cannot be registered or a string cannot be read or
+   *     saved.
+   */
+  @Override
+  public Integer call() throws IOException {
+    if (threads < 1) {
+      throw new ParameterException(spec.commandLine(), "At least one thread is needed.");
+    }
+    CoverageGuidedFuzzer.rejectFirstHit(spec);
+    CoverageGuidedFuzzer.setLogLevel(quiet);
+    CoverageGuidedFuzzer.registerLineTables(CSVParser.class.getPackageName(), lineTableCache);
+    List<Path> files = listInputs();
+    Files.createDirectories(output);
+    ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+    long before = 0;
+    long after = 0;
+    try {
+      StringMinimizer minimizer =
+          new StringMinimizer(StringMinimizer::parseDishes, executor, threads);
+      for (Path file : files) {
+        String input = Files.readString(file);
+        String minimized = minimizer.minimize(input);
+        Files.writeString(output.resolve(file.getFileName()), minimized);
+        before += input.length();
+        after += minimized.length();
+        logger.fine(
+            () ->
+                String.format(
+                    "Minimized %s from %d to %d characters in %d executions",
+                    file,
+                    input.length(),
+                    minimized.length(),
+                    minimizer.getNumberOfExecutions()));
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+    long total = before;
+    long shrunk = after;
+    logger.info(
+        () ->
+            String.format(
+                "Minimized %d strings from %d to %d characters", files.size(), total, shrunk));
+    return 0;
+  }
+
+  private List<Path> listInputs() throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (Path input : inputs) {
+      if (Files.isDirectory(input)) {
+        try (Stream<Path> list = Files.list(input)) {
+          list.filter(Files::isRegularFile).sorted().forEach(files::add);
+        }
+      } else {
+        files.add(input);
+      }
+    }
+    return files;
+  }
+}
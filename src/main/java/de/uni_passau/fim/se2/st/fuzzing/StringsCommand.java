@@ -0,0 +1,112 @@
+package de.uni_passau.fim.se2.st.fuzzing;
+
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.Fuzzer;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.PowerSchedule;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.TimeoutStoppingCondition;
+import de.uni_passau.fim.se2.st.fuzzing.fuzztarget.CSVParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+/**
+ * The {@code strings} subcommand of the {@link CoverageGuidedFuzzer}. It runs the string fuzzing
+ * loop of the {@link Fuzzer}, which mutates CSV strings and feeds them to {@link
+ * CSVParser#parseDishes}, with a selectable {@link PowerSchedule}. It reports when the final
+ * coverage was reached, so that the schedules can be compared by their time to coverage, and saves
+ * the covering strings.
+ */
+@Command(
+    name = "strings",
+    description = "Fuzz the CSV parser with mutated strings, picked by a power schedule.")
+public class StringsCommand implements Callable<Integer> {
+
+  private final Logger logger = Logger.getLogger(StringsCommand.class.getName());
+
+  @Spec CommandSpec spec;
+
+  @Option(
+      names = {"-t", "--timeout"},
+      description = "Timeout in seconds for the fuzzing run.",
+      defaultValue = "10")
+  private long timeout;
+
+  @Option(
+      names = {"-s", "--schedule"},
+      description = "Power schedule of the covering strings, one of ${COMPLETION-CANDIDATES}.",
+      defaultValue = "UNIFORM")
+  private PowerSchedule schedule;
+
+  @Option(
+      names = {"-o", "--output"},
+      description = "Directory the covering strings are saved in.",
+      defaultValue = "fuzzing-report/corpus")
+  private Path output;
+
+  @Option(
+      names = {"--line-table-cache"},
+      description = "File caching the line tables of the target classes between runs.")
+  private Path lineTableCache = CoverageGuidedFuzzer.DEFAULT_LINE_TABLE_CACHE;
+
+  @Option(
+      names = {"-q", "--quiet"},
+      description = "Only print the summary.",
+      defaultValue = "false")
+  private boolean quiet;
+
+  /**
+   * Fuzzes the CSV parser and saves the covering strings.
+   *
+   * @return System error code. Returns 0 for successful execution.
+   * @throws IOException When the line tables cannot be registered or the strings cannot be saved.
+   */
+  @Override
+  public Integer call() throws IOException {
+    if (timeout < 0) {
+      throw new ParameterException(spec.commandLine(), "Timeout must be a positive integer.");
+    }
+    CoverageGuidedFuzzer.rejectFirstHit(spec);
+    CoverageGuidedFuzzer.setLogLevel(quiet);
+    CoverageGuidedFuzzer.registerLineTables(CSVParser.class.getPackageName(), lineTableCache);
+    Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(timeout * 1000));
+    fuzzer.setPowerSchedule(schedule);
+    fuzzer.fuzz();
+    List<String> corpus = List.copyOf(fuzzer.getCoveringStrings());
+    saveCorpus(corpus);
+    logger.info(
+        () ->
+            String.format(
+                "Schedule %s reached coverage %.4f after %d ms, %d executions, %d covering strings",
+                schedule,
+                fuzzer.getCurrentCoverage(),
+                fuzzer.getMillisToCurrentCoverage(),
+                fuzzer.getNumberOfExecutions(),
+                corpus.size()));
+    return 0;
+  }
+
+  /** Saves every covering string in a file of its own, replacing those of earlier runs. */
+  private void saveCorpus(List<String> corpus) throws IOException {
+    if (Files.isDirectory(output)) {
+      List<Path> earlier;
+      try (Stream<Path> files = Files.list(output)) {
+        earlier = files.filter(file -> file.getFileName().toString().startsWith("input-")).toList();
+      }
+      for (Path file : earlier) {
+        Files.delete(file);
+      }
+    }
+    Files.createDirectories(output);
+    for (int i = 0; i < corpus.size(); i++) {
+      Files.writeString(output.resolve(String.format("input-%04d.csv", i + 1)), corpus.get(i));
+    }
+  }
+}
@@ -0,0 +1,312 @@
+package de.uni_passau.fim.se2.st.fuzzing.coverage;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker.ClassTracker;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A snapshot of the coverage of a run that can be stored, merged with the coverage of other runs,
+ * and exported by the {@link OutputWriter}.
+ *
+ * <p>The binary format is compact and written with a single channel write. It starts with the
+ * magic number {@code CGFDUMP1} and the number of classes. Every class follows with its class id,
+ * the length and UTF-8 bytes of its name, the number of lines, and then the line table and the hit
+ * counts as two arrays of that length. All numbers are big-endian {@code int}s.
+ */
+public final class CoverageDump {
+
+  private static final long MAGIC = 0x43474644_554d5031L; // "CGFDUMP1"
+
+  /**
+   * The coverage of a single class.
+   *
+   * @param classId The id of the class in the run that wrote the dump
+   * @param className The internal name of the class
+   * @param lines The line numbers of the class, sorted and distinct
+   * @param counts The number of visits of every line, indexed like the lines
+   */
+  public record ClassCoverage(int classId, String className, int[] lines, int[] counts) {
+
+    public int getNumberOfCoveredLines() {
+      int covered = 0;
+      for (int count : counts) {
+        if (count != 0) {
+          covered++;
+        }
+      }
+      return covered;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      ClassCoverage that = (ClassCoverage) o;
+      return classId == that.classId
+          && className.equals(that.className)
+          && Arrays.equals(lines, that.lines)
+          && Arrays.equals(counts, that.counts);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = 31 * classId + className.hashCode();
+      result = 31 * result + Arrays.hashCode(lines);
+      return 31 * result + Arrays.hashCode(counts);
+    }
+
+    @Override
+    public String toString() {
+      return "ClassCoverage{className='" + className + "', lines=" + lines.length + "}";
+    }
+  }
+
+  private final Map<String, ClassCoverage> classes;
+
+  private CoverageDump(Map<String, ClassCoverage> classes) {
+    this.classes = Collections.unmodifiableMap(classes);
+  }
+
+  /**
+   * Creates a dump from the coverage of single classes.
+   *
+   * @param classes The coverage of the classes
+   * @return The dump
+   */
+  public static CoverageDump of(Collection<ClassCoverage> classes) {
+    Map<String, ClassCoverage> byName = new TreeMap<>();
+    for (ClassCoverage coverage : classes) {
+      if (coverage.lines().length != coverage.counts().length) {
+        throw new IllegalArgumentException(
+            "Lines and counts of " + coverage.className() + " differ in length.");
+      }
+      byName.put(coverage.className(), coverage);
+    }
+    return new CoverageDump(byName);
+  }
+
+  /**
+   * Takes a snapshot of the coverage a tracker recorded so far.
+   *
+   * @param tracker The coverage tracker
+   * @return The dump
+   */
+  public static CoverageDump capture(CoverageTracker tracker) {
+    List<ClassCoverage> classes = new ArrayList<>();
+    for (Map.Entry<String, ClassTracker> entry : tracker.getClassTrackers().entrySet()) {
+      ClassTracker classTracker = entry.getValue();
+      Map<Integer, Integer> visitedLines = classTracker.getVisitedLines();
+      int[] lines = classTracker.getLines().stream().mapToInt(Integer::intValue).sorted().toArray();
+      int[] counts = new int[lines.length];
+      for (int i = 0; i < lines.length; i++) {
+        counts[i] = visitedLines.getOrDefault(lines[i], 0);
+      }
+      classes.add(new ClassCoverage(classTracker.getClassId(), entry.getKey(), lines, counts));
+    }
+    return of(classes);
+  }
+
+  /**
+   * Provides the coverage of all classes.
+   *
+   * @return The coverage of every class, by internal class name
+   */
+  public Map<String, ClassCoverage> getClasses() {
+    return classes;
+  }
+
+  /**
+   * Merges dumps of several runs. Lines of a class are united and their counts added up, saturating
+   * at {@link Integer#MAX_VALUE}. As class ids differ between runs, the classes of the merged dump
+   * are numbered in the order of their names.
+   *
+   * @param dumps The dumps to merge
+   * @return The merged dump
+   */
+  public static CoverageDump merge(Collection<CoverageDump> dumps) {
+    Map<String, ClassCoverage> merged = new TreeMap<>();
+    for (CoverageDump dump : dumps) {
+      for (ClassCoverage coverage : dump.classes.values()) {
+        merged.merge(coverage.className(), coverage, CoverageDump::merge);
+      }
+    }
+    List<ClassCoverage> classes = new ArrayList<>();
+    for (ClassCoverage coverage : merged.values()) {
+      classes.add(
+          new ClassCoverage(
+              classes.size(), coverage.className(), coverage.lines(), coverage.counts()));
+    }
+    return of(classes);
+  }
+
+  /** Merges the sorted line tables of a class, and adds up the counts. */
+  private static ClassCoverage merge(ClassCoverage first, ClassCoverage second) {
+    int[] lines = new int[first.lines().length + second.lines().length];
+    int[] counts = new int[lines.length];
+    int i = 0;
+    int j = 0;
+    int length = 0;
+    while (i < first.lines().length || j < second.lines().length) {
+      int firstLine = i < first.lines().length ? first.lines()[i] : Integer.MAX_VALUE;
+      int secondLine = j < second.lines().length ? second.lines()[j] : Integer.MAX_VALUE;
+      lines[length] = Math.min(firstLine, secondLine);
+      long count = 0;
+      if (firstLine <= secondLine) {
+        count += first.counts()[i++];
+      }
+      if (secondLine <= firstLine) {
+        count += second.counts()[j++];
+      }
+      counts[length++] = (int) Math.min(count, Integer.MAX_VALUE);
+    }
+    return new ClassCoverage(
+        first.classId(),
+        first.className(),
+        Arrays.copyOf(lines, length),
+        Arrays.copyOf(counts, length));
+  }
+
+  /**
+   * Writes the dump to a file.
+   *
+   * @param file The file to write, replaced if it exists
+   * @throws IOException When the file cannot be written
+   */
+  public void write(Path file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(toByteArray());
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    try (FileChannel channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /**
+   * Encodes the dump in the binary format, e.g., to send it to another process.
+   *
+   * @return The encoded dump
+   */
+  public byte[] toByteArray() {
+    List<byte[]> names = new ArrayList<>();
+    int size = Long.BYTES + Integer.BYTES;
+    for (ClassCoverage coverage : classes.values()) {
+      byte[] name = coverage.className().getBytes(StandardCharsets.UTF_8);
+      names.add(name);
+      size += 3 * Integer.BYTES + name.length + 2 * Integer.BYTES * coverage.lines().length;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.putLong(MAGIC);
+    buffer.putInt(classes.size());
+    int index = 0;
+    for (ClassCoverage coverage : classes.values()) {
+      byte[] name = names.get(index++);
+      buffer.putInt(coverage.classId());
+      buffer.putInt(name.length);
+      buffer.put(name);
+      buffer.putInt(coverage.lines().length);
+      buffer.asIntBuffer().put(coverage.lines());
+      buffer.position(buffer.position() + Integer.BYTES * coverage.lines().length);
+      buffer.asIntBuffer().put(coverage.counts());
+      buffer.position(buffer.position() + Integer.BYTES * coverage.counts().length);
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Reads a dump from a file.
+   *
+   * @param file The file written by {@link #write(Path)}
+   * @return The dump
+   * @throws IOException When the file cannot be read
+   * @throws IllegalArgumentException When the file is no coverage dump
+   */
+  public static CoverageDump read(Path file) throws IOException {
+    return fromByteArray(Files.readAllBytes(file), file.toString());
+  }
+
+  /**
+   * Decodes a dump that was encoded with {@link #toByteArray()}.
+   *
+   * @param bytes The encoded dump
+   * @return The dump
+   * @throws IllegalArgumentException When the bytes are no coverage dump
+   */
+  public static CoverageDump fromByteArray(byte[] bytes) {
+    return fromByteArray(bytes, "byte array");
+  }
+
+  private static CoverageDump fromByteArray(byte[] bytes, String source) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    if (buffer.remaining() < Long.BYTES || buffer.getLong() != MAGIC) {
+      throw new IllegalArgumentException("Not a coverage dump: " + source);
+    }
+    try {
+      int numberOfClasses = buffer.getInt();
+      List<ClassCoverage> classes = new ArrayList<>();
+      for (int c = 0; c < numberOfClasses; c++) {
+        int classId = buffer.getInt();
+        byte[] name = new byte[checkLength(buffer, buffer.getInt(), 1)];
+        buffer.get(name);
+        int[] lines = readInts(buffer);
+        int[] counts = new int[lines.length];
+        buffer.asIntBuffer().get(counts);
+        buffer.position(buffer.position() + Integer.BYTES * counts.length);
+        classes.add(
+            new ClassCoverage(classId, new String(name, StandardCharsets.UTF_8), lines, counts));
+      }
+      return of(classes);
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Corrupt coverage dump: " + source, e);
+    }
+  }
+
+  private static int[] readInts(ByteBuffer buffer) {
+    int length = checkLength(buffer, buffer.getInt(), Integer.BYTES);
+    int[] values = new int[length];
+    buffer.asIntBuffer().get(values);
+    buffer.position(buffer.position() + Integer.BYTES * length);
+    return values;
+  }
+
+  /** Checks that a length read from the buffer does not exceed the rest of the buffer. */
+  private static int checkLength(ByteBuffer buffer, int length, int elementSize) {
+    if (length < 0 || length > buffer.remaining() / elementSize) {
+      throw new BufferUnderflowException();
+    }
+    return length;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    return classes.equals(((CoverageDump) o).classes);
+  }
+
+  @Override
+  public int hashCode() {
+    return classes.hashCode();
+  }
+}
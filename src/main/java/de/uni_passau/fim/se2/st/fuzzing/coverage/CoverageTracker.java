@@ -1,35 +1,595 @@
 package de.uni_passau.fim.se2.st.fuzzing.coverage;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-/** Tracks coverage information, i.e., which line was visited how many times. */
+/**
+ * Tracks coverage information, i.e., which line was visited how many times.
+ *
+ * <p>Instrumented code never takes a lock. Every thread counts its probe hits in probe arrays of
+ * its own. When a thread ends an execution, the hits it counted in the arrays it touched are folded
+ * into the cumulative counts, which also keep running totals of the covered lines and edges.
+ * Reading the totals therefore takes constant time, and every newly covered line or edge advances
+ * the coverage epoch, which tells callers whether anything new was found since they last looked.
+ * Since the arrays of an execution are folded anyway, the fold also records which lines and edges
+ * the execution covered, without clearing or scanning any other array.
+ *
+ * <p>Hit counts are exact even if the subject runs on several threads at once. Snapshots such as
+ * {@link ClassTracker#getVisitedLines()} fold the hits of all threads, the totals fold those of the
+ * calling thread.
+ */
 // Needs to be public to be callable during test execution.
 public class CoverageTracker {
 
-  private static CoverageTracker instance = null;
-  private static final Map<String, ClassTracker> classTrackers = new TreeMap<>();
+  /** Number of entries of the edge map, a power of two so that edge ids can be masked. */
+  public static final int EDGE_MAP_SIZE = 1 << 16;
+
+  private static volatile CoverageTracker instance = null;
+  private static final Map<String, ClassTracker> classTrackers = new ConcurrentSkipListMap<>();
+  private static volatile ClassTracker[] trackersById = new ClassTracker[64];
+  private static volatile String[] classNamesById = new String[64];
+  private static int nextClassId = 0;
+  private static volatile int[] offlineClassIds = new int[0];
+  private static volatile String[] offlineClassNames = new String[0];
+  private static volatile boolean edgesTracked = false;
+  private static volatile ProbeArray ownedEdgeMap = null;
+
+  private static final AtomicInteger totalLines = new AtomicInteger();
+  private static final AtomicInteger coveredLines = new AtomicInteger();
+  private static final AtomicInteger coveredEdges = new AtomicInteger();
+  private static final AtomicLong coverageEpoch = new AtomicLong();
+
+  /** The edge maps of all threads, which also guard {@link #edgeCounts}. */
+  private static final List<ProbeArray> edgeMaps = new ArrayList<>();
+
+  /** Edge hits folded from the edge maps of all threads. */
+  private static final int[] edgeCounts = new int[EDGE_MAP_SIZE];
+
+  /** Hit count buckets no execution reached yet for every edge, see {@link #bucketOf(int)}. */
+  private static final byte[] virginEdges = newVirginMap(EDGE_MAP_SIZE);
+
+  /**
+   * Zeros that maps are compared against to skip regions without hits, see {@link
+   * #nextHit(int[], int)}. Small enough to stay in the first-level cache.
+   */
+  private static final int[] ZEROS = new int[256];
+
+  /**
+   * The number of probe arrays of a class, or of edge maps, at which the arrays of threads that
+   * ended are folded and dropped. The threshold doubles with the arrays of live threads, so that
+   * threads that come and go, e.g., in thread pools, cost amortized constant time.
+   */
+  private static final int MIN_PURGE_THRESHOLD = 16;
+
+  /** The number of edge maps at which those of ended threads are dropped, see {@link #edgeMaps}. */
+  private static int edgeMapPurgeThreshold = MIN_PURGE_THRESHOLD;
+
+  /** Number of entries after a hit that are scanned one by one, as hits tend to cluster. */
+  private static final int HIT_WINDOW = 64;
+
+  /** Bucket of every hit count below 128, as in AFL. */
+  private static final byte[] BUCKETS = new byte[128];
+
+  static {
+    int[] bucketStarts = {1, 2, 3, 4, 8, 16, 32};
+    for (int count = 1; count < BUCKETS.length; count++) {
+      int bucket = 0;
+      while (bucket + 1 < bucketStarts.length && count >= bucketStarts[bucket + 1]) {
+        bucket++;
+      }
+      BUCKETS[count] = (byte) (1 << bucket);
+    }
+  }
+
+  private static ThreadLocal<ThreadProbes> threadProbes =
+      ThreadLocal.withInitial(ThreadProbes::new);
+
+  /** The probe arrays and the edge map a single thread counts its hits in. */
+  private static final class ThreadProbes {
+    private final Thread owner = Thread.currentThread();
+    private ProbeArray[] probes = new ProbeArray[0];
+    private ProbeArray edgeMap;
+
+    /** The arrays that were handed out since the thread ended its last execution. */
+    private final List<ProbeArray> touched = new ArrayList<>();
+
+    /** Whether the lines and edges of the execution that is being folded are recorded. */
+    private boolean tracing = false;
+
+    /** Whether the execution that is being folded reached a new hit count bucket. */
+    private boolean newHitCounts = false;
+
+    /** The indices of the probes that are hit in the array that is being folded. */
+    private int[] hits = new int[64];
+
+    private int hitCount = 0;
+
+    /**
+     * Collects the probes of an array this thread hit. This takes the longest part of a fold, but
+     * needs no lock, as only this thread writes the hits.
+     */
+    void collectHits(int[] probes) {
+      hitCount = 0;
+      for (int i = nextHit(probes, 0); i < probes.length; i = nextHit(probes, i)) {
+        // Hits tend to cluster, the entries right after a hit are visited one by one
+        int windowEnd = Math.min(probes.length, (i | (HIT_WINDOW - 1)) + 1);
+        for (; i < windowEnd; i++) {
+          if (probes[i] != 0) {
+            if (hitCount == hits.length) {
+              hits = Arrays.copyOf(hits, hitCount * 2);
+            }
+            hits[hitCount++] = i;
+          }
+        }
+      }
+    }
+
+    /** The lines and edges covered by the current execution, reused between executions. */
+    private long[] traceLines = new long[64];
+
+    private int traceLineCount = 0;
+    private int[] traceEdges = new int[64];
+    private int traceEdgeCount = 0;
+
+    void traceLine(long key) {
+      if (traceLineCount == traceLines.length) {
+        traceLines = Arrays.copyOf(traceLines, traceLineCount * 2);
+      }
+      traceLines[traceLineCount++] = key;
+    }
+
+    void traceEdge(int edgeId) {
+      if (traceEdgeCount == traceEdges.length) {
+        traceEdges = Arrays.copyOf(traceEdges, traceEdgeCount * 2);
+      }
+      traceEdges[traceEdgeCount++] = edgeId;
+    }
+
+    /** Takes the trace of the current execution and starts a new one. */
+    ExecutionTrace takeTrace(boolean newCoverage) {
+      long[] lines = Arrays.copyOf(traceLines, traceLineCount);
+      int[] edges = Arrays.copyOf(traceEdges, traceEdgeCount);
+      traceLineCount = 0;
+      traceEdgeCount = 0;
+      if (lines.length == 0 && edges.length == 0) {
+        return ExecutionTrace.EMPTY;
+      }
+      // Edges are traced in order, lines may be traced twice if a line owns several probes
+      Arrays.sort(lines);
+      int distinct = 0;
+      for (int i = 0; i < lines.length; i++) {
+        if (distinct == 0 || lines[i] != lines[distinct - 1]) {
+          lines[distinct++] = lines[i];
+        }
+      }
+      return new ExecutionTrace(
+          Arrays.copyOf(lines, distinct), edges, newCoverage, newHitCounts);
+    }
+  }
+
+  /**
+   * The hits a single thread counted for a class, or for all edges if there is no class tracker.
+   * Only the owning thread writes the hits, and clears them when it folds them at the end of an
+   * execution. Other threads may fold the array at any time, they remember how many hits were
+   * already folded instead.
+   */
+  private static final class ProbeArray {
+    private final ThreadProbes thread;
+    private final ClassTracker tracker;
+    private final Layout layout;
+    private final int[] probes;
+    private final int[] folded;
+    private boolean touched = false;
+
+    ProbeArray(ThreadProbes thread, ClassTracker tracker, Layout layout, int size) {
+      this.thread = thread;
+      this.tracker = tracker;
+      this.layout = layout;
+      probes = new int[size];
+      folded = new int[size];
+    }
+
+    /** Provides the hits to the owning thread and remembers to fold them after the execution. */
+    int[] touch() {
+      if (!touched) {
+        touched = true;
+        thread.touched.add(this);
+      }
+      return probes;
+    }
+  }
 
   private CoverageTracker() {}
 
-  public static synchronized CoverageTracker getInstance() {
-    if (instance == null) {
-      instance = new CoverageTracker();
+  public static CoverageTracker getInstance() {
+    CoverageTracker tracker = instance;
+    if (tracker == null) {
+      synchronized (CoverageTracker.class) {
+        if (instance == null) {
+          instance = new CoverageTracker();
+        }
+        tracker = instance;
+      }
     }
-    return instance;
+    return tracker;
   }
 
   static synchronized void resetInstance() {
     instance = null; // Setzt die Singleton-Instanz zurück
     classTrackers.clear();
+    trackersById = new ClassTracker[64];
+    classNamesById = new String[64];
+    nextClassId = 0;
+    offlineClassIds = new int[0];
+    offlineClassNames = new String[0];
+    synchronized (edgeMaps) {
+      edgeMaps.clear();
+      edgeMapPurgeThreshold = MIN_PURGE_THRESHOLD;
+      Arrays.fill(edgeCounts, 0);
+      Arrays.fill(virginEdges, (byte) -1);
+    }
+    edgesTracked = false;
+    ownedEdgeMap = null;
+    totalLines.set(0);
+    coveredLines.set(0);
+    coveredEdges.set(0);
+    coverageEpoch.set(0);
+    threadProbes = ThreadLocal.withInitial(ThreadProbes::new);
   }
 
   public Map<String, ClassTracker> getClassTrackers() {
     return classTrackers;
   }
 
+  /**
+   * Registers an instrumented class and assigns it a dense class id. Registering the same class
+   * twice, e.g., when it is retransformed, yields the same id.
+   *
+   * @param pClassName The internal name of the class
+   * @return The id under which the probes of the class can be fetched
+   */
+  // Needs to be public to be callable during instrumentation.
+  public static synchronized int registerClass(final String pClassName) {
+    if (pClassName == null) {
+      throw new IllegalArgumentException("Invalid input: pClassName cannot be null.");
+    }
+    ClassTracker tracker = classTrackers.computeIfAbsent(pClassName, name -> new ClassTracker());
+    if (tracker.classId < 0) {
+      tracker.classId = nextClassId++;
+      ClassTracker[] trackers = trackersById;
+      String[] classNames = classNamesById;
+      if (tracker.classId >= trackers.length) {
+        trackers = Arrays.copyOf(trackers, trackers.length * 2);
+        classNames = Arrays.copyOf(classNames, classNames.length * 2);
+      }
+      trackers[tracker.classId] = tracker;
+      classNames[tracker.classId] = pClassName;
+      trackersById = trackers;
+      classNamesById = classNames;
+    }
+    return tracker.classId;
+  }
+
+  /**
+   * Provides the name of a registered class.
+   *
+   * @param pClassId The id returned by {@link #registerClass(String)}
+   * @return The internal name of the class
+   */
+  static String getClassName(final int pClassId) {
+    return classNamesById[pClassId];
+  }
+
+  /**
+   * Sets the probe layout of a registered class, i.e., which line each probe stands for. Counts of
+   * lines that were already visited are kept.
+   *
+   * @param pClassId The id returned by {@link #registerClass(String)}
+   * @param pProbeLines The line number of every probe, indexed by probe id
+   */
+  // Needs to be public to be callable during instrumentation.
+  public static synchronized void registerProbes(final int pClassId, final int[] pProbeLines) {
+    if (pClassId < 0 || pClassId >= nextClassId || pProbeLines == null) {
+      throw new IllegalArgumentException(
+          "Invalid input: pClassId must be registered and pProbeLines cannot be null.");
+    }
+    trackersById[pClassId].setProbeLines(pProbeLines);
+  }
+
+  /**
+   * Provides the probe array of a class for the calling thread. Instrumented methods fetch it once
+   * on entry and then increment {@code probes[probeId]} whenever a line is visited.
+   *
+   * @param pClassId The id returned by {@link #registerClass(String)}
+   * @return The hit counts of the class in this thread, indexed by probe id
+   */
+  // Needs to be public to be callable during test execution.
+  public static int[] getProbes(final int pClassId) {
+    ClassTracker tracker = trackersById[pClassId];
+    // The first thread that asks for the probes owns them. Recognising it only compares the
+    // current thread, which is much cheaper than a thread-local lookup.
+    ProbeArray owned = tracker.ownedProbes;
+    if (owned != null && owned.thread.owner == Thread.currentThread()) {
+      return owned.touch();
+    }
+    ThreadProbes own = threadProbes.get();
+    if (pClassId < own.probes.length) {
+      ProbeArray probes = own.probes[pClassId];
+      if (probes != null && probes.layout == tracker.layout) {
+        return probes.touch();
+      }
+    }
+    return tracker.newProbeArray(own, pClassId).touch();
+  }
+
+  /**
+   * Provides the probe array of a class that was instrumented ahead of time. Such a class is not
+   * registered by the agent, so it passes its name and probe layout along and is registered on the
+   * first call. Later calls only compare the class name by reference, which holds as both are the
+   * same constant of the class file.
+   *
+   * @param pClassId The offline class id assigned during instrumentation
+   * @param pClassName The internal name of the class
+   * @param pProbeLines The line number of every probe, separated by commas
+   * @return The hit counts of the class in this thread, indexed by probe id
+   */
+  // Needs to be public to be callable during test execution.
+  public static int[] getProbes(
+      final int pClassId, final String pClassName, final String pProbeLines) {
+    String[] names = offlineClassNames;
+    if (pClassId >= 0 && pClassId < names.length && names[pClassId] == pClassName) {
+      return getProbes(offlineClassIds[pClassId]);
+    }
+    return getProbes(registerOfflineClass(pClassId, pClassName, pProbeLines));
+  }
+
+  private static synchronized int registerOfflineClass(
+      final int pClassId, final String pClassName, final String pProbeLines) {
+    if (pClassId < 0 || pClassName == null || pProbeLines == null) {
+      throw new IllegalArgumentException(
+          "Invalid input: pClassId must not be negative and pClassName and pProbeLines cannot be"
+              + " null.");
+    }
+    int classId = registerClass(pClassName);
+    registerProbes(classId, parseProbeLines(pProbeLines));
+    if (pClassId >= offlineClassNames.length) {
+      int length = Math.max(pClassId + 1, offlineClassNames.length * 2);
+      offlineClassIds = Arrays.copyOf(offlineClassIds, length);
+      offlineClassNames = Arrays.copyOf(offlineClassNames, length);
+    }
+    // The slot of a colliding class from another instrumentation run is left alone, such a class
+    // always takes this slow path. The id is published before the name that guards it.
+    if (offlineClassNames[pClassId] == null) {
+      offlineClassIds[pClassId] = classId;
+      String[] names = offlineClassNames.clone();
+      names[pClassId] = pClassName;
+      offlineClassNames = names;
+    }
+    return classId;
+  }
+
+  private static int[] parseProbeLines(String probeLines) {
+    if (probeLines.isEmpty()) {
+      return new int[0];
+    }
+    return Arrays.stream(probeLines.split(",")).mapToInt(Integer::parseInt).toArray();
+  }
+
+  /**
+   * Provides the hit counts of a class, merged over all threads.
+   *
+   * @param pClassId The id returned by {@link #registerClass(String)}
+   * @return A snapshot of the hit counts, indexed by probe id
+   */
+  public static int[] getProbeCounts(final int pClassId) {
+    return trackersById[pClassId].getProbeCounts();
+  }
+
+  /**
+   * Provides the AFL-style edge map of the calling thread. Instrumented methods fetch it once on
+   * entry and then increment {@code edges[previousBlock ^ currentBlock]} whenever a basic block is
+   * entered.
+   *
+   * @return The hit counts of all edges in this thread, indexed by edge id
+   */
+  // Needs to be public to be callable during test execution.
+  public static int[] getEdgeMap() {
+    ProbeArray owned = ownedEdgeMap;
+    if (owned != null && owned.thread.owner == Thread.currentThread()) {
+      return owned.touch();
+    }
+    ThreadProbes own = threadProbes.get();
+    if (own.edgeMap == null) {
+      own.edgeMap = new ProbeArray(own, null, null, EDGE_MAP_SIZE);
+      synchronized (edgeMaps) {
+        if (edgeMaps.size() >= edgeMapPurgeThreshold) {
+          foldEdgeMaps();
+          edgeMapPurgeThreshold = Math.max(MIN_PURGE_THRESHOLD, edgeMaps.size() * 2);
+        }
+        edgeMaps.add(own.edgeMap);
+        if (ownedEdgeMap == null) {
+          ownedEdgeMap = own.edgeMap;
+        }
+      }
+      edgesTracked = true;
+    }
+    return own.edgeMap.touch();
+  }
+
+  /**
+   * Ends an execution of the subject on the calling thread. The hits the thread counted since its
+   * last execution ended are folded into the cumulative counts and the running totals, and the
+   * thread starts counting from zero again. This only takes time in the size of the classes the
+   * execution touched, the probe arrays of all other classes are left alone.
+   *
+   * <p>The hit count of every probe is also put into a bucket as in AFL, i.e., 1, 2, 3, 4-7, 8-15,
+   * 16-31, 32-127 or 128 and more hits. An execution that reaches a bucket no execution reached
+   * before for a probe drives the subject into a new state, e.g., runs a loop more often, even if
+   * it covers nothing new.
+   *
+   * @return The lines and edges the execution covered
+   */
+  public static ExecutionTrace endExecution() {
+    ThreadProbes own = threadProbes.get();
+    own.tracing = true;
+    try {
+      return own.takeTrace(foldExecution(own));
+    } finally {
+      own.tracing = false;
+    }
+  }
+
+  /** Ends the execution of the calling thread without tracing it, before the totals are read. */
+  private static void endExecutionUntraced() {
+    ThreadProbes own = threadProbes.get();
+    if (!own.touched.isEmpty()) {
+      foldExecution(own);
+    }
+  }
+
+  private static boolean foldExecution(ThreadProbes own) {
+    boolean newCoverage = false;
+    own.newHitCounts = false;
+    for (ProbeArray probes : own.touched) {
+      probes.touched = false;
+      own.collectHits(probes.probes);
+      newCoverage |=
+          probes.tracker == null ? foldEdges(probes, own) : probes.tracker.fold(probes, own);
+    }
+    own.touched.clear();
+    return newCoverage;
+  }
+
+  private static boolean foldEdges(ProbeArray edgeMap, ThreadProbes owner) {
+    int newEdges = 0;
+    synchronized (edgeMaps) {
+      newEdges = fold(edgeMap, edgeCounts, virginEdges, owner);
+    }
+    if (newEdges > 0) {
+      coveredEdges.addAndGet(newEdges);
+      coverageEpoch.incrementAndGet();
+    }
+    return newEdges > 0;
+  }
+
+  /**
+   * Adds the hits of a probe array that were not folded yet to the cumulative counts. If the
+   * owning thread folds the array at the end of an execution, it only visits the hits it collected
+   * before, see {@link ThreadProbes#collectHits(int[])}. It also clears the hits, traces them and
+   * compares their buckets against the virgin map.
+   *
+   * @param probeArray The probe array to fold
+   * @param counts The cumulative counts
+   * @param virgin The buckets no execution reached yet, indexed like the counts
+   * @param owner The owning thread, or {@code null} if another thread folds the array
+   * @return The number of probes that were hit for the first time
+   */
+  private static int fold(ProbeArray probeArray, int[] counts, byte[] virgin, ThreadProbes owner) {
+    if (owner == null) {
+      return foldForeign(probeArray, counts);
+    }
+    int[] probes = probeArray.probes;
+    int[] folded = probeArray.folded;
+    int newProbes = 0;
+    for (int h = 0; h < owner.hitCount; h++) {
+      int i = owner.hits[h];
+      int total = probes[i];
+      int hits = total - folded[i];
+      if (counts[i] == 0 && hits != 0) {
+        newProbes++;
+      }
+      counts[i] += hits;
+      int bucket = bucketOf(total);
+      if ((virgin[i] & bucket) != 0) {
+        virgin[i] &= (byte) ~bucket;
+        owner.newHitCounts = true;
+      }
+      if (owner.tracing) {
+        if (probeArray.tracker == null) {
+          owner.traceEdge(i);
+        } else {
+          int line = probeArray.layout.probeLines()[i];
+          owner.traceLine(ExecutionTrace.key(probeArray.tracker.classId, line));
+        }
+      }
+      probes[i] = 0;
+      folded[i] = 0;
+    }
+    return newProbes;
+  }
+
+  /** Adds the hits of a probe array that another thread owns and may still write. */
+  private static int foldForeign(ProbeArray probeArray, int[] counts) {
+    int[] probes = probeArray.probes;
+    int[] folded = probeArray.folded;
+    int newProbes = 0;
+    // Once cleared, only probes that were hit since can have hits that were not folded yet
+    for (int i = nextHit(probes, 0); i < probes.length; i = nextHit(probes, i)) {
+      int windowEnd = Math.min(probes.length, (i | (HIT_WINDOW - 1)) + 1);
+      for (; i < windowEnd; i++) {
+        int total = probes[i];
+        int hits = total - folded[i];
+        if (hits != 0) {
+          if (counts[i] == 0) {
+            newProbes++;
+          }
+          counts[i] += hits;
+          folded[i] = total;
+        }
+      }
+    }
+    return newProbes;
+  }
+
+  /**
+   * Finds the next entry of a map that is not zero. Regions of zeros are skipped by comparing them
+   * against {@link #ZEROS} with {@code Arrays.mismatch}, which the JIT compiles to a vectorized,
+   * word-at-a-time loop. This is several times faster than a plain loop for the sparse maps
+   * executions usually leave.
+   *
+   * @param map The map
+   * @param from The index to start at
+   * @return The index of the next entry that is not zero, or the length of the map if there is none
+   */
+  static int nextHit(int[] map, int from) {
+    int i = from;
+    while (i < map.length) {
+      int length = Math.min(ZEROS.length, map.length - i);
+      int mismatch = Arrays.mismatch(map, i, i + length, ZEROS, 0, length);
+      if (mismatch >= 0) {
+        return i + mismatch;
+      }
+      i += length;
+    }
+    return map.length;
+  }
+
+  /**
+   * Puts a hit count into its bucket.
+   *
+   * @param hits The positive number of hits of a probe in one execution
+   * @return The bucket as a single bit
+   */
+  static int bucketOf(int hits) {
+    return hits < BUCKETS.length ? BUCKETS[hits] & 0xFF : 0x80;
+  }
+
+  private static byte[] newVirginMap(int size) {
+    byte[] virgin = new byte[size];
+    Arrays.fill(virgin, (byte) -1);
+    return virgin;
+  }
+
   /**
    * Track a visit of a line.
    *
@@ -43,10 +603,7 @@ public class CoverageTracker {
       throw new IllegalArgumentException(
           "Invalid input: pClassName cannot be null and pLineNumber must be positive.");
     }
-    ClassTracker tracker = classTrackers.getOrDefault(pClassName, new ClassTracker());
-    tracker.visitLine(pLineNumber);
-    tracker.trackLine(pLineNumber);
-    classTrackers.putIfAbsent(pClassName, tracker);
+    classTrackers.computeIfAbsent(pClassName, name -> new ClassTracker()).visitLine(pLineNumber);
   }
 
   /**
@@ -62,9 +619,20 @@ public class CoverageTracker {
       throw new IllegalArgumentException(
           "Invalid input: pClassName cannot be null and pLineNumber must be positive.");
     }
-    ClassTracker tracker = classTrackers.getOrDefault(pClassName, new ClassTracker());
-    tracker.trackLine(pLineNumber);
-    classTrackers.putIfAbsent(pClassName, tracker);
+    classTrackers.computeIfAbsent(pClassName, name -> new ClassTracker()).trackLine(pLineNumber);
+  }
+
+  /**
+   * Adds the coverage of a dump, e.g., of another fuzzer process, to the coverage of this process.
+   *
+   * @param dump The coverage dump
+   */
+  public void merge(CoverageDump dump) {
+    for (CoverageDump.ClassCoverage coverage : dump.getClasses().values()) {
+      classTrackers
+          .computeIfAbsent(coverage.className(), name -> new ClassTracker())
+          .merge(coverage.lines(), coverage.counts());
+    }
   }
 
   /**
@@ -74,7 +642,7 @@ public class CoverageTracker {
    * @author Leon Föckersperger
    */
   public int getTotalNumberOfLines() {
-    return classTrackers.values().stream().mapToInt(classes -> classes.getLines().size()).sum();
+    return totalLines.get();
   }
 
   /**
@@ -84,9 +652,84 @@ public class CoverageTracker {
    * @author Leon Föckersperger
    */
   public int getNumberOfCoveredLines() {
-    return classTrackers.values().stream()
-        .mapToInt(classes -> classes.getVisitedLines().size())
-        .sum();
+    endExecutionUntraced();
+    return coveredLines.get();
+  }
+
+  /**
+   * Provides the number of distinct edges that were taken in the fuzzing subject. Edges are only
+   * counted if the subject was instrumented in edge coverage mode.
+   *
+   * @return The number of covered edges
+   */
+  public int getNumberOfCoveredEdges() {
+    if (!edgesTracked) {
+      return 0;
+    }
+    endExecutionUntraced();
+    return coveredEdges.get();
+  }
+
+  /**
+   * Provides the coverage epoch, which advances whenever a line or an edge is covered for the first
+   * time. Comparing epochs is cheaper than comparing coverage, and does not miss new lines whose
+   * coverage ratio is lost to rounding.
+   *
+   * @return The current coverage epoch
+   */
+  public long getCoverageEpoch() {
+    endExecutionUntraced();
+    return coverageEpoch.get();
+  }
+
+  /**
+   * Checks whether new lines or edges were covered since the given epoch.
+   *
+   * @param epoch An epoch previously returned by {@link #getCoverageEpoch()}
+   * @return {@code true} if the coverage grew since then
+   */
+  public boolean hasNewCoverageSince(long epoch) {
+    return getCoverageEpoch() > epoch;
+  }
+
+  /**
+   * Provides the hit counts of all edges, merged over all threads.
+   *
+   * @return A snapshot of the edge map, indexed by edge id
+   */
+  public int[] getEdgeCounts() {
+    synchronized (edgeMaps) {
+      foldEdgeMaps();
+      return edgeCounts.clone();
+    }
+  }
+
+  /** Folds the edge maps of all threads, and drops those of threads that ended. */
+  private static void foldEdgeMaps() {
+    synchronized (edgeMaps) {
+      edgeMaps.removeIf(
+          edgeMap -> {
+            // Checked before the fold, so that all hits of an ended thread are visible
+            boolean ended = !edgeMap.thread.owner.isAlive();
+            foldEdges(edgeMap, null);
+            if (ended && ownedEdgeMap == edgeMap) {
+              ownedEdgeMap = null;
+            }
+            return ended;
+          });
+    }
+  }
+
+  /**
+   * Provides the number of edge maps that are registered, i.e., of threads that took edges and did
+   * not end before the maps were last folded.
+   *
+   * @return The number of edge maps
+   */
+  static int getNumberOfEdgeMaps() {
+    synchronized (edgeMaps) {
+      return edgeMaps.size();
+    }
   }
 
   /**
@@ -103,42 +746,236 @@ public class CoverageTracker {
     }
   }
 
+  /**
+   * The probe layout of a class, i.e., the line each probe stands for. A layout is never changed,
+   * a class that gets a new layout gets a new object, which tells threads that their probe arrays
+   * are outdated.
+   */
+  private record Layout(int[] probeLines, Map<Integer, Integer> probeOfLine) {
+    static final Layout EMPTY = new Layout(new int[0], Map.of());
+  }
+
+  /**
+   * Coverage of a single class. Every line owns one probe, and the hit count of the probe is
+   * stored in a plain {@code int[]} per thread so that instrumented code can update it without any
+   * lookup or lock. The counts of the threads are folded into the cumulative counts of the class.
+   */
   public static final class ClassTracker {
-    private final Map<Integer, Integer> visitedLines = new TreeMap<>();
-    private final Set<Integer> lines = new HashSet<>();
 
-    void visitLine(int lineNumber) {
-      if (visitedLines.containsKey(lineNumber)) {
-        visitedLines.merge(lineNumber, 1, Integer::sum);
-      } else {
-        visitedLines.put(lineNumber, 1);
+    private int classId = -1;
+    private volatile Layout layout = Layout.EMPTY;
+    private volatile ProbeArray ownedProbes = null;
+
+    /** Hits folded from the probe arrays or counted outside of them, indexed by probe id. */
+    private int[] cumulativeProbes = new int[0];
+
+    /** Hit count buckets no execution reached yet, indexed by probe id. */
+    private byte[] virginProbes = new byte[0];
+
+    /** Number of probes with at least one folded hit. */
+    private int coveredProbes = 0;
+
+    /** The probe arrays of all threads for the current layout. */
+    private final List<ProbeArray> threadProbes = new CopyOnWriteArrayList<>();
+
+    /** The number of probe arrays at which those of ended threads are dropped next. */
+    private int purgeThreshold = MIN_PURGE_THRESHOLD;
+
+    synchronized void visitLine(int lineNumber) {
+      int probe = probeFor(lineNumber);
+      if (cumulativeProbes[probe]++ == 0) {
+        setCoveredProbes(coveredProbes + 1);
       }
     }
 
-    void trackLine(int lineNumber) {
-      lines.add(lineNumber);
+    synchronized void trackLine(int lineNumber) {
+      probeFor(lineNumber);
+    }
+
+    private int probeFor(int lineNumber) {
+      Integer probe = layout.probeOfLine().get(lineNumber);
+      if (probe != null) {
+        return probe;
+      }
+      int[] probeLines = Arrays.copyOf(layout.probeLines(), layout.probeLines().length + 1);
+      probeLines[probeLines.length - 1] = lineNumber;
+      setProbeLines(probeLines);
+      return probeLines.length - 1;
     }
 
-    public Map<Integer, Integer> getVisitedLines() {
+    private synchronized ProbeArray newProbeArray(ThreadProbes own, int classId) {
+      if (own.probes.length <= classId) {
+        own.probes = Arrays.copyOf(own.probes, Math.max(classId + 1, own.probes.length * 2));
+      }
+      if (threadProbes.size() >= purgeThreshold) {
+        foldThreads();
+        purgeThreshold = Math.max(MIN_PURGE_THRESHOLD, threadProbes.size() * 2);
+      }
+      ProbeArray probes = new ProbeArray(own, this, layout, layout.probeLines().length);
+      threadProbes.add(probes);
+      own.probes[classId] = probes;
+      if (ownedProbes == null) {
+        ownedProbes = probes;
+      }
+      return probes;
+    }
+
+    /**
+     * Folds the hits a thread counted since the last fold into the cumulative counts.
+     *
+     * @param probeArray The probe array of the thread
+     * @param owner The owning thread at the end of its execution, or {@code null}
+     * @return {@code true} if a probe was hit for the first time
+     */
+    private synchronized boolean fold(ProbeArray probeArray, ThreadProbes owner) {
+      if (probeArray.layout != layout) {
+        // The hits were folded when the layout changed
+        return false;
+      }
+      int newProbes = CoverageTracker.fold(probeArray, cumulativeProbes, virginProbes, owner);
+      return setCoveredProbes(coveredProbes + newProbes);
+    }
+
+    /** Updates the covered probes and the running totals, and reports whether new ones came up. */
+    private boolean setCoveredProbes(int covered) {
+      int delta = covered - coveredProbes;
+      coveredProbes = covered;
+      if (delta != 0) {
+        coveredLines.addAndGet(delta);
+      }
+      if (delta > 0) {
+        coverageEpoch.incrementAndGet();
+      }
+      return delta > 0;
+    }
+
+    /**
+     * Changes the layout. The counts of all threads are folded into the cumulative counts, and
+     * every thread gets a new probe array on its next method entry. Hits that running methods count
+     * in their outdated arrays meanwhile are lost, which only affects classes that are
+     * retransformed with a different layout while they run.
+     */
+    private synchronized void setProbeLines(int[] newProbeLines) {
+      Layout oldLayout = layout;
+      if (Arrays.equals(oldLayout.probeLines(), newProbeLines)) {
+        return;
+      }
+      Map<Integer, Integer> probeOfLine = new HashMap<>();
+      for (int i = 0; i < newProbeLines.length; i++) {
+        probeOfLine.putIfAbsent(newProbeLines[i], i);
+      }
+      int[] oldProbes = getProbeCounts();
+      int[] newProbes = new int[newProbeLines.length];
+      byte[] newVirginProbes = newVirginMap(newProbeLines.length);
+      int covered = 0;
+      for (int i = 0; i < oldProbes.length; i++) {
+        Integer probe = probeOfLine.get(oldLayout.probeLines()[i]);
+        if (probe != null) {
+          newVirginProbes[probe] &= virginProbes[i];
+        }
+        if (probe != null && oldProbes[i] != 0) {
+          covered += newProbes[probe] == 0 ? 1 : 0;
+          newProbes[probe] += oldProbes[i];
+        }
+      }
+      cumulativeProbes = newProbes;
+      virginProbes = newVirginProbes;
+      threadProbes.clear();
+      ownedProbes = null;
+      totalLines.addAndGet(probeOfLine.size() - oldLayout.probeOfLine().size());
+      layout = new Layout(newProbeLines.clone(), Collections.unmodifiableMap(probeOfLine));
+      setCoveredProbes(covered);
+    }
+
+    /** Folds the hit counts of all threads. */
+    private synchronized int[] getProbeCounts() {
+      foldThreads();
+      return cumulativeProbes.clone();
+    }
+
+    /**
+     * Folds the hit counts of all threads, and drops the probe arrays of threads that ended, as
+     * they will never count another hit.
+     */
+    private void foldThreads() {
+      List<ProbeArray> ended = new ArrayList<>();
+      for (ProbeArray probeArray : threadProbes) {
+        // Checked before the fold, so that all hits of an ended thread are visible
+        if (!probeArray.thread.owner.isAlive()) {
+          ended.add(probeArray);
+        }
+        fold(probeArray, null);
+      }
+      if (!ended.isEmpty()) {
+        threadProbes.removeAll(ended);
+        if (ended.contains(ownedProbes)) {
+          ownedProbes = null;
+        }
+      }
+    }
+
+    /**
+     * Provides the number of probe arrays that are registered, i.e., of threads that hit the class
+     * and did not end before its arrays were last folded.
+     *
+     * @return The number of probe arrays
+     */
+    synchronized int getNumberOfProbeArrays() {
+      return threadProbes.size();
+    }
+
+    int getClassId() {
+      return classId;
+    }
+
+    int getNumberOfLines() {
+      return layout.probeOfLine().size();
+    }
+
+    synchronized int getNumberOfVisitedLines() {
+      foldThreads();
+      return coveredProbes;
+    }
+
+    /**
+     * Provides the visited lines together with their hit counts.
+     *
+     * @return A map from line number to the number of visits, sorted by line number
+     */
+    public synchronized Map<Integer, Integer> getVisitedLines() {
+      int[] probeLines = layout.probeLines();
+      int[] probes = getProbeCounts();
+      Map<Integer, Integer> visitedLines = new TreeMap<>();
+      for (int i = 0; i < probes.length; i++) {
+        if (probes[i] != 0) {
+          visitedLines.merge(probeLines[i], probes[i], Integer::sum);
+        }
+      }
       return visitedLines;
     }
 
     public Set<Integer> getLines() {
-      return lines;
-    }
-
-    public void merge(ClassTracker other) {
-      other
-          .getVisitedLines()
-          .forEach(
-              (line, count) -> {
-                if (visitedLines.containsKey(line)) {
-                  visitedLines.merge(line, count, Integer::sum);
-                } else {
-                  visitedLines.put(line, count);
-                }
-              });
-      lines.addAll(other.getLines());
+      return layout.probeOfLine().keySet();
+    }
+
+    public synchronized void merge(ClassTracker other) {
+      merge(other.layout.probeLines(), other.getProbeCounts());
+    }
+
+    /**
+     * Adds visits of lines, e.g., counted by another process.
+     *
+     * @param lines The line numbers
+     * @param counts The number of visits of every line, indexed like the lines
+     */
+    synchronized void merge(int[] lines, int[] counts) {
+      for (int i = 0; i < lines.length; i++) {
+        int probe = probeFor(lines[i]);
+        if (cumulativeProbes[probe] == 0 && counts[i] != 0) {
+          setCoveredProbes(coveredProbes + 1);
+        }
+        cumulativeProbes[probe] += counts[i];
+      }
     }
   }
 }
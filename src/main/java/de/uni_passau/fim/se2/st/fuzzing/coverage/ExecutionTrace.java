@@ -0,0 +1,193 @@
+package de.uni_passau.fim.se2.st.fuzzing.coverage;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The lines and edges a single execution covered, as returned by {@link
+ * CoverageTracker#endExecution()}. A trace is immutable and compact: every covered line is a
+ * single {@code long} that combines the class id and the line number, kept in a sorted array
+ * together with the sorted edge ids. Traces are equal if they cover the same lines and edges.
+ */
+public final class ExecutionTrace {
+
+  /** The trace of an execution that covered nothing. */
+  public static final ExecutionTrace EMPTY =
+      new ExecutionTrace(new long[0], new int[0], false, false);
+
+  private final long[] lines;
+  private final int[] edges;
+  private final boolean newCoverage;
+  private final boolean newHitCounts;
+
+  /**
+   * Creates a new {@code ExecutionTrace}.
+   *
+   * @param lines The covered lines as returned by {@link #key(int, int)}, sorted and distinct
+   * @param edges The covered edge ids, sorted and distinct
+   * @param newCoverage Whether the execution covered a line or an edge for the first time
+   * @param newHitCounts Whether the execution hit a line or an edge a number of times that falls
+   *     into a bucket no execution reached before
+   */
+  ExecutionTrace(long[] lines, int[] edges, boolean newCoverage, boolean newHitCounts) {
+    this.lines = lines;
+    this.edges = edges;
+    this.newCoverage = newCoverage;
+    this.newHitCounts = newHitCounts;
+  }
+
+  /**
+   * Combines a class id and a line number into a single key, which sorts by class and then by
+   * line.
+   */
+  static long key(int classId, int lineNumber) {
+    return ((long) classId << 32) | (lineNumber & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Tells whether the execution covered a line or an edge that no execution covered before.
+   *
+   * @return {@code true} if the execution found new coverage
+   */
+  public boolean hasNewCoverage() {
+    return newCoverage;
+  }
+
+  /**
+   * Tells whether the execution hit a line or an edge a number of times no execution reached
+   * before, bucketed as 1, 2, 3, 4-7, 8-15, 16-31, 32-127 and 128 or more hits. This includes new
+   * coverage, but also, e.g., a loop that ran more often than ever before.
+   *
+   * @return {@code true} if the execution reached a new hit count bucket
+   */
+  public boolean hasNewHitCounts() {
+    return newHitCounts;
+  }
+
+  /**
+   * Tells whether the execution covered nothing at all.
+   *
+   * @return {@code true} if no line and no edge was covered
+   */
+  public boolean isEmpty() {
+    return lines.length == 0 && edges.length == 0;
+  }
+
+  public int getNumberOfLines() {
+    return lines.length;
+  }
+
+  public int getNumberOfEdges() {
+    return edges.length;
+  }
+
+  /**
+   * Checks whether the execution covered a line.
+   *
+   * @param classId The id of the class as returned by {@link CoverageTracker#registerClass(String)}
+   * @param lineNumber The line number
+   * @return {@code true} if the line was covered
+   */
+  public boolean coversLine(int classId, int lineNumber) {
+    return Arrays.binarySearch(lines, key(classId, lineNumber)) >= 0;
+  }
+
+  /**
+   * Checks whether the execution took an edge.
+   *
+   * @param edgeId The index of the edge in the edge map
+   * @return {@code true} if the edge was taken
+   */
+  public boolean coversEdge(int edgeId) {
+    return Arrays.binarySearch(edges, edgeId) >= 0;
+  }
+
+  /**
+   * Checks whether this execution covered everything another execution covered.
+   *
+   * @param other The trace of the other execution
+   * @return {@code true} if every line and edge of the other trace is also in this trace
+   */
+  public boolean covers(ExecutionTrace other) {
+    return containsAll(lines, other.lines) && containsAll(edges, other.edges);
+  }
+
+  private static boolean containsAll(long[] sorted, long[] subset) {
+    int i = 0;
+    for (long key : subset) {
+      while (i < sorted.length && sorted[i] < key) {
+        i++;
+      }
+      if (i == sorted.length || sorted[i] != key) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean containsAll(int[] sorted, int[] subset) {
+    int i = 0;
+    for (int key : subset) {
+      while (i < sorted.length && sorted[i] < key) {
+        i++;
+      }
+      if (i == sorted.length || sorted[i] != key) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Provides the covered lines as keys that combine the class id and the line number.
+   *
+   * @return A copy of the sorted keys
+   */
+  public long[] getLineKeys() {
+    return lines.clone();
+  }
+
+  /**
+   * Provides the ids of the taken edges.
+   *
+   * @return A copy of the sorted edge ids
+   */
+  public int[] getEdges() {
+    return edges.clone();
+  }
+
+  /**
+   * Provides the covered lines by class.
+   *
+   * @return A map from internal class name to the covered line numbers, sorted by name
+   */
+  public Map<String, Set<Integer>> getVisitedLines() {
+    Map<String, Set<Integer>> visitedLines = new TreeMap<>();
+    for (long key : lines) {
+      String className = CoverageTracker.getClassName((int) (key >>> 32));
+      visitedLines.computeIfAbsent(className, name -> new TreeSet<>()).add((int) key);
+    }
+    return visitedLines;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    ExecutionTrace that = (ExecutionTrace) o;
+    return Arrays.equals(lines, that.lines) && Arrays.equals(edges, that.edges);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(lines) + Arrays.hashCode(edges);
+  }
+
+  @Override
+  public String toString() {
+    return "ExecutionTrace{lines=" + lines.length + ", edges=" + edges.length + "}";
+  }
+}
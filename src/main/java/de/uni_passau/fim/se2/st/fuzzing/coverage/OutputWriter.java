@@ -1,5 +1,6 @@
 package de.uni_passau.fim.se2.st.fuzzing.coverage;
 
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump.ClassCoverage;
 import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker.ClassTracker;
 import java.io.File;
 import java.io.IOException;
@@ -12,6 +13,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class OutputWriter {
 
@@ -180,6 +183,149 @@ public class OutputWriter {
     Files.writeString(htmlFile, builder.toString());
   }
 
+  /**
+   * Writes the coverage of a dump in the LCOV tracefile format, which genhtml and most coverage
+   * services read. Classes that share a source file, e.g., inner classes, form a single record.
+   *
+   * @param dump The coverage to write
+   * @param lcovPath Path where the tracefile should be stored
+   * @throws IOException When an error during writing occurs
+   */
+  public static void writeLcovOutput(CoverageDump dump, Path lcovPath) throws IOException {
+    StringBuilder builder = new StringBuilder();
+    for (Entry<String, Map<Integer, Integer>> sourceFile : linesBySourceFile(dump).entrySet()) {
+      Map<Integer, Integer> lines = sourceFile.getValue();
+      builder.append("TN:\n");
+      builder.append("SF:").append(sourceFile.getKey()).append('\n');
+      int hit = 0;
+      for (Entry<Integer, Integer> line : lines.entrySet()) {
+        builder.append("DA:").append(line.getKey()).append(',').append(line.getValue());
+        builder.append('\n');
+        hit += line.getValue() != 0 ? 1 : 0;
+      }
+      builder.append("LF:").append(lines.size()).append('\n');
+      builder.append("LH:").append(hit).append('\n');
+      builder.append("end_of_record\n");
+    }
+    createParentDirectories(lcovPath);
+    Files.writeString(lcovPath, builder.toString());
+  }
+
+  /**
+   * Writes the coverage of a dump as a JaCoCo XML report, which CI servers and code quality tools
+   * read. The report only has line counters, as the tracker does not count instructions or
+   * branches.
+   *
+   * @param dump The coverage to write
+   * @param xmlPath Path where the report should be stored
+   * @throws IOException When an error during writing occurs
+   */
+  public static void writeJacocoXmlOutput(CoverageDump dump, Path xmlPath) throws IOException {
+    Map<String, List<ClassCoverage>> packages = new TreeMap<>();
+    for (ClassCoverage coverage : dump.getClasses().values()) {
+      packages
+          .computeIfAbsent(packageOf(coverage.className()), name -> new ArrayList<>())
+          .add(coverage);
+    }
+    Map<String, Map<Integer, Integer>> sourceFiles = linesBySourceFile(dump);
+
+    StringBuilder builder = new StringBuilder();
+    builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+    builder.append("<!DOCTYPE report PUBLIC \"-//JACOCO//DTD Report 1.1//EN\" \"report.dtd\">\n");
+    builder.append("<report name=\"coverage-guided-fuzzing\">\n");
+    int[] reportCounter = new int[2];
+    for (Entry<String, List<ClassCoverage>> pkg : packages.entrySet()) {
+      int[] packageCounter = new int[2];
+      builder.append("  <package name=\"").append(escapeXml(pkg.getKey())).append("\">\n");
+      Set<String> packageSourceFiles = new TreeSet<>();
+      for (ClassCoverage coverage : pkg.getValue()) {
+        String sourceFile = sourceFileOf(coverage.className());
+        packageSourceFiles.add(sourceFile);
+        builder.append("    <class name=\"").append(escapeXml(coverage.className()));
+        builder.append("\" sourcefilename=\"");
+        builder.append(escapeXml(sourceFile.substring(sourceFile.lastIndexOf('/') + 1)));
+        builder.append("\">\n");
+        int covered = coverage.getNumberOfCoveredLines();
+        appendLineCounter(builder, "      ", coverage.lines().length - covered, covered);
+        builder.append("    </class>\n");
+      }
+      for (String sourceFile : packageSourceFiles) {
+        Map<Integer, Integer> lines = sourceFiles.get(sourceFile);
+        builder.append("    <sourcefile name=\"");
+        builder.append(escapeXml(sourceFile.substring(sourceFile.lastIndexOf('/') + 1)));
+        builder.append("\">\n");
+        int covered = 0;
+        for (Entry<Integer, Integer> line : lines.entrySet()) {
+          int hit = line.getValue() != 0 ? 1 : 0;
+          covered += hit;
+          builder.append("      <line nr=\"").append(line.getKey());
+          builder.append("\" mi=\"").append(1 - hit).append("\" ci=\"").append(hit);
+          builder.append("\" mb=\"0\" cb=\"0\"/>\n");
+        }
+        appendLineCounter(builder, "      ", lines.size() - covered, covered);
+        builder.append("    </sourcefile>\n");
+        packageCounter[0] += lines.size() - covered;
+        packageCounter[1] += covered;
+      }
+      appendLineCounter(builder, "    ", packageCounter[0], packageCounter[1]);
+      builder.append("  </package>\n");
+      reportCounter[0] += packageCounter[0];
+      reportCounter[1] += packageCounter[1];
+    }
+    appendLineCounter(builder, "  ", reportCounter[0], reportCounter[1]);
+    builder.append("</report>\n");
+    createParentDirectories(xmlPath);
+    Files.writeString(xmlPath, builder.toString());
+  }
+
+  /** Unites the lines of all classes that share a source file, by source file path. */
+  private static Map<String, Map<Integer, Integer>> linesBySourceFile(CoverageDump dump) {
+    Map<String, Map<Integer, Integer>> sourceFiles = new TreeMap<>();
+    for (ClassCoverage coverage : dump.getClasses().values()) {
+      Map<Integer, Integer> lines =
+          sourceFiles.computeIfAbsent(sourceFileOf(coverage.className()), name -> new TreeMap<>());
+      for (int i = 0; i < coverage.lines().length; i++) {
+        lines.merge(coverage.lines()[i], coverage.counts()[i], OutputWriter::saturatedSum);
+      }
+    }
+    return sourceFiles;
+  }
+
+  private static int saturatedSum(int first, int second) {
+    return (int) Math.min((long) first + second, Integer.MAX_VALUE);
+  }
+
+  /** Guesses the source file of a class from its name, which holds for all but rare classes. */
+  private static String sourceFileOf(String className) {
+    int inner = className.indexOf('$');
+    return (inner < 0 ? className : className.substring(0, inner)) + ".java";
+  }
+
+  private static String packageOf(String className) {
+    int separator = className.lastIndexOf('/');
+    return separator < 0 ? "" : className.substring(0, separator);
+  }
+
+  private static void appendLineCounter(
+      StringBuilder builder, String indent, int missed, int covered) {
+    builder.append(indent).append("<counter type=\"LINE\" missed=\"").append(missed);
+    builder.append("\" covered=\"").append(covered).append("\"/>\n");
+  }
+
+  private static String escapeXml(String text) {
+    return text.replace("&", "&amp;")
+        .replace("<", "&lt;")
+        .replace(">", "&gt;")
+        .replace("\"", "&quot;");
+  }
+
+  private static void createParentDirectories(Path path) throws IOException {
+    Path parent = path.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+  }
+
   private static int greenSpectrum(int visitCount) {
     double max = 255;
     double greenCode = max - (10 * Math.log(visitCount));
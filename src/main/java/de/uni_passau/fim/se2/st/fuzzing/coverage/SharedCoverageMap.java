@@ -0,0 +1,199 @@
+package de.uni_passau.fim.se2.st.fuzzing.coverage;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Coverage bitmap that several fuzzing JVMs on the same machine share through a memory-mapped
+ * file. Every worker publishes the traces of its executions, which sets one bit per covered line
+ * and taken edge with an atomic OR directly in the mapping. A worker thus learns whether an input
+ * covers something no worker covered before, and sees the discoveries of all other workers as soon
+ * as they are published, without copying any data or running a service.
+ *
+ * <p>Class ids differ between JVMs, so lines are identified by a hash of the class name and the
+ * line number. Edge ids are derived from the instrumented methods and are the same in every JVM.
+ * Hash collisions between lines are possible but rare, as the line bitmap has a million bits.
+ *
+ * <p>The file starts with a header of {@value #HEADER_SIZE} bytes holding a magic number and an
+ * epoch, which is incremented whenever a worker publishes new coverage.
+ */
+public final class SharedCoverageMap {
+
+  /** Number of bits of the line bitmap, a power of two. */
+  static final int LINE_BITS = 1 << 20;
+
+  static final int HEADER_SIZE = 64;
+
+  private static final long MAGIC = 0x43474643_4f564d31L; // "CGFCOVM1"
+  private static final int MAGIC_OFFSET = 0;
+  private static final int EPOCH_OFFSET = 8;
+  private static final int LINES_OFFSET = HEADER_SIZE;
+  private static final int EDGES_OFFSET = LINES_OFFSET + LINE_BITS / Byte.SIZE;
+  private static final int FILE_SIZE = EDGES_OFFSET + CoverageTracker.EDGE_MAP_SIZE / Byte.SIZE;
+
+  /** Atomic access to the longs of the mapping, which is direct and page aligned. */
+  private static final VarHandle LONGS =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private final Path file;
+  private final ByteBuffer map;
+
+  private SharedCoverageMap(Path file, ByteBuffer map) {
+    this.file = file;
+    this.map = map;
+  }
+
+  /**
+   * Opens the shared coverage map in a file, creating and initialising the file if needed. All
+   * workers that open the same file share their coverage.
+   *
+   * @param file The file that backs the map, usually on a local file system such as /dev/shm
+   * @return The shared coverage map
+   * @throws IOException When the file cannot be created or mapped
+   * @throws IllegalArgumentException When the file exists but is no coverage map
+   */
+  public static SharedCoverageMap open(Path file) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // Only one worker may initialise the file, the others wait until it is done
+      FileLock lock = channel.lock();
+      try {
+        if (channel.size() == 0) {
+          channel.write(ByteBuffer.allocate(FILE_SIZE));
+        } else if (channel.size() != FILE_SIZE) {
+          throw new IllegalArgumentException("Not a shared coverage map: " + file);
+        }
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        map.order(ByteOrder.nativeOrder());
+        long magic = (long) LONGS.getVolatile(map, MAGIC_OFFSET);
+        if (magic == 0) {
+          LONGS.setVolatile(map, MAGIC_OFFSET, MAGIC);
+        } else if (magic != MAGIC) {
+          throw new IllegalArgumentException("Not a shared coverage map: " + file);
+        }
+        // The mapping stays valid after the channel is closed
+        return new SharedCoverageMap(file, map);
+      } finally {
+        lock.release();
+      }
+    }
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Publishes the coverage of an execution to all workers.
+   *
+   * @param trace The trace of the execution
+   * @return {@code true} if no worker covered one of the lines or edges before
+   */
+  public boolean publish(ExecutionTrace trace) {
+    boolean newCoverage = false;
+    for (long key : trace.getLineKeys()) {
+      String className = CoverageTracker.getClassName((int) (key >>> 32));
+      newCoverage |= set(LINES_OFFSET, lineBit(className, (int) key));
+    }
+    for (int edge : trace.getEdges()) {
+      newCoverage |= set(EDGES_OFFSET, edge);
+    }
+    if (newCoverage) {
+      LONGS.getAndAdd(map, EPOCH_OFFSET, 1L);
+    }
+    return newCoverage;
+  }
+
+  /**
+   * Checks whether a worker covered a line.
+   *
+   * @param className The internal name of the class
+   * @param lineNumber The line number
+   * @return {@code true} if the line, or a line with the same hash, was covered
+   */
+  public boolean isLineCovered(String className, int lineNumber) {
+    return isSet(LINES_OFFSET, lineBit(className, lineNumber));
+  }
+
+  /**
+   * Checks whether a worker took an edge.
+   *
+   * @param edgeId The index of the edge in the edge map
+   * @return {@code true} if the edge was taken
+   */
+  public boolean isEdgeCovered(int edgeId) {
+    return isSet(EDGES_OFFSET, edgeId);
+  }
+
+  /**
+   * Provides the number of distinct lines all workers covered.
+   *
+   * @return The number of set bits in the line bitmap
+   */
+  public int getNumberOfCoveredLines() {
+    return countBits(LINES_OFFSET, EDGES_OFFSET);
+  }
+
+  /**
+   * Provides the number of distinct edges all workers took.
+   *
+   * @return The number of set bits in the edge bitmap
+   */
+  public int getNumberOfCoveredEdges() {
+    return countBits(EDGES_OFFSET, FILE_SIZE);
+  }
+
+  /**
+   * Provides the epoch of the map, which advances whenever a worker publishes new coverage. Workers
+   * can poll it to learn cheaply whether others found something.
+   *
+   * @return The current epoch
+   */
+  public long getEpoch() {
+    return (long) LONGS.getVolatile(map, EPOCH_OFFSET);
+  }
+
+  /** Maps a line to a bit of the line bitmap. */
+  static int lineBit(String className, int lineNumber) {
+    int hash = className.hashCode() * 31 + lineNumber;
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash & (LINE_BITS - 1);
+  }
+
+  /** Sets a bit, and reports whether it was not set before. */
+  private boolean set(int offset, int bit) {
+    int index = offset + (bit >>> 6) * Long.BYTES;
+    long mask = 1L << bit;
+    // Most bits are set already, a plain read avoids the atomic operation
+    if (((long) LONGS.getOpaque(map, index) & mask) != 0) {
+      return false;
+    }
+    return ((long) LONGS.getAndBitwiseOr(map, index, mask) & mask) == 0;
+  }
+
+  private boolean isSet(int offset, int bit) {
+    int index = offset + (bit >>> 6) * Long.BYTES;
+    return ((long) LONGS.getOpaque(map, index) & (1L << bit)) != 0;
+  }
+
+  private int countBits(int from, int to) {
+    int bits = 0;
+    for (int index = from; index < to; index += Long.BYTES) {
+      bits += Long.bitCount((long) LONGS.getOpaque(map, index));
+    }
+    return bits;
+  }
+}
@@ -33,7 +33,7 @@ public class CSVGenerator implements InputGenerator {
   private static final String[] dishTypes = {"Suppe", "HG", "B", "N"};
 
   private final Random rng = new Random();
-  private final Map<Object, String> memory = new HashMap<>();
+  private final Map<Object, GenericExpression> memory = new HashMap<>();
   private final CharSequence delimiter;
 
   /**
@@ -87,7 +87,7 @@ public class CSVGenerator implements InputGenerator {
     try {
       GenericExpression expression = buildExpression(classType);
       Object resolved = expression.resolve();
-      memory.put(resolved, expression.toString());
+      memory.put(resolved, expression);
       return resolved;
     } catch (ReflectiveOperationException e) {
       return null;
@@ -202,6 +202,18 @@ public class CSVGenerator implements InputGenerator {
    * @author Jakob Edmaier
    */
   public String getExpressionString(Object object) {
+    GenericExpression expression = memory.get(object);
+    return expression == null ? null : expression.toString();
+  }
+
+  /**
+   * Returns the recorded expression that created the given object, e.g., to shrink it. If no
+   * expression is recorded for the given object, {@code null} is returned.
+   *
+   * @param object The object
+   * @return The expression that created the object.
+   */
+  public GenericExpression getExpression(Object object) {
     return memory.get(object);
   }
 
@@ -0,0 +1,182 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Executes the candidates of a minimizer or shrinker in batches, and finds the first interesting
+ * one. If an executor is given, the candidates of a batch run in parallel, but the first
+ * interesting candidate in the given order wins, so that the result does not depend on the number
+ * of threads. The executions are counted, and a deadline can be set, so that a minimization can be
+ * capped.
+ *
+ * @param <T> the type of the candidates
+ */
+final class CandidateBatches<T> {
+
+  private final Function<T, ExecutionOutcome> target;
+  private final ExecutorService executor;
+  private final int batchSize;
+  private final long batchTimeoutMillis;
+  private int executions;
+  private long deadline;
+  private boolean hasDeadline;
+
+  /**
+   * Creates the batches.
+   *
+   * @param target executes a candidate and returns its outcome, or {@code null} if the candidate
+   *     cannot be executed
+   * @param executor the executor the candidates run on, {@code null} to run them on the calling
+   *     thread
+   * @param batchSize the number of candidates executed at once
+   * @param batchTimeoutMillis the time after which the candidates of a batch that still run are
+   *     cancelled and count as not interesting, 0 to wait for them; only used with an executor
+   * @throws IllegalArgumentException if the batch size is not positive
+   */
+  CandidateBatches(
+      Function<T, ExecutionOutcome> target,
+      ExecutorService executor,
+      int batchSize,
+      long batchTimeoutMillis) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+    }
+    this.target = Objects.requireNonNull(target);
+    this.executor = executor;
+    this.batchSize = batchSize;
+    this.batchTimeoutMillis = batchTimeoutMillis;
+  }
+
+  /**
+   * Sets a deadline after which no more batches are executed, and the candidates of a running
+   * batch are cancelled if they run on an executor.
+   *
+   * @param deadline the value of {@link System#nanoTime()} at the deadline
+   */
+  void setDeadline(long deadline) {
+    this.deadline = deadline;
+    this.hasDeadline = true;
+  }
+
+  /**
+   * Tells whether the deadline passed.
+   *
+   * @return true if a deadline was set and has passed
+   */
+  boolean isPastDeadline() {
+    return hasDeadline && System.nanoTime() - deadline >= 0;
+  }
+
+  /**
+   * Executes a single candidate on the calling thread.
+   *
+   * @param candidate the candidate
+   * @return its outcome, {@code null} if it cannot be executed
+   */
+  ExecutionOutcome execute(T candidate) {
+    executions++;
+    return target.apply(candidate);
+  }
+
+  /**
+   * Executes the candidates that were not tested before, batch by batch, until a batch contains an
+   * interesting one, the executions reach a limit or the deadline passed.
+   *
+   * @param candidates the candidates, simplest first
+   * @param tested the candidates tested before, to which the executed ones are added
+   * @param interesting tells whether the outcome of a candidate is interesting
+   * @param maxExecutions the limit of the executions
+   * @return the index of the first interesting candidate, -1 if there is none
+   */
+  int firstInteresting(
+      List<T> candidates,
+      Set<T> tested,
+      Predicate<ExecutionOutcome> interesting,
+      int maxExecutions) {
+    List<Integer> batch = new ArrayList<>();
+    for (int i = 0; i < candidates.size(); i++) {
+      if (tested.add(candidates.get(i))) {
+        batch.add(i);
+      }
+      if (batch.size() == batchSize || (i == candidates.size() - 1 && !batch.isEmpty())) {
+        if (executions + batch.size() > maxExecutions || isPastDeadline()) {
+          return -1;
+        }
+        List<ExecutionOutcome> outcomes = execute(batch.stream().map(candidates::get).toList());
+        executions += batch.size();
+        for (int j = 0; j < outcomes.size(); j++) {
+          ExecutionOutcome outcome = outcomes.get(j);
+          if (outcome != null && interesting.test(outcome)) {
+            return batch.get(j);
+          }
+        }
+        batch.clear();
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the number of executions so far.
+   *
+   * @return the number of executions
+   */
+  int getExecutions() {
+    return executions;
+  }
+
+  /** Resets the number of executions, e.g., before the next minimization. */
+  void resetExecutions() {
+    executions = 0;
+  }
+
+  private List<ExecutionOutcome> execute(List<T> candidates) {
+    List<ExecutionOutcome> outcomes = new ArrayList<>();
+    if (executor == null) {
+      for (T candidate : candidates) {
+        outcomes.add(target.apply(candidate));
+      }
+      return outcomes;
+    }
+    List<Callable<ExecutionOutcome>> tasks = new ArrayList<>();
+    for (T candidate : candidates) {
+      tasks.add(() -> target.apply(candidate));
+    }
+    long timeoutMillis = batchTimeoutMillis;
+    if (hasDeadline) {
+      long remaining = Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 1);
+      timeoutMillis = timeoutMillis > 0 ? Math.min(timeoutMillis, remaining) : remaining;
+    }
+    try {
+      List<Future<ExecutionOutcome>> futures =
+          timeoutMillis > 0
+              ? executor.invokeAll(tasks, timeoutMillis, TimeUnit.MILLISECONDS)
+              : executor.invokeAll(tasks);
+      for (Future<ExecutionOutcome> future : futures) {
+        try {
+          outcomes.add(future.get());
+        } catch (CancellationException e) {
+          // Timed out, which is a different behavior
+          outcomes.add(null);
+        }
+      }
+      return outcomes;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while executing candidates", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Failed to execute a candidate", e.getCause());
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * The connection of a forked worker process to the {@link WorkerPool} that started it. The worker
+ * sends its covering method results, its timeouts and its coverage through it, see {@link
+ * WorkerProtocol}. Results are flushed right away, so that they survive a crash of the worker.
+ */
+public final class CoordinatorConnection implements Closeable {
+
+  private final SocketChannel channel;
+  private final DataOutputStream out;
+
+  private CoordinatorConnection(SocketChannel channel) {
+    this.channel = channel;
+    this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+  }
+
+  /**
+   * Connects to the coordinator and introduces the worker.
+   *
+   * @param socket The Unix domain socket the coordinator listens on
+   * @param workerId The id of the worker, as passed by the coordinator
+   * @return The connection
+   * @throws IOException When the coordinator cannot be reached
+   */
+  public static CoordinatorConnection open(Path socket, int workerId) throws IOException {
+    SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+    try {
+      channel.connect(UnixDomainSocketAddress.of(socket));
+      CoordinatorConnection connection = new CoordinatorConnection(channel);
+      synchronized (connection) {
+        WorkerProtocol.writeHello(connection.out, workerId);
+        connection.out.flush();
+      }
+      return connection;
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Sends a covering method result to the coordinator.
+   *
+   * @param result The result
+   * @throws IOException When the coordinator cannot be reached
+   */
+  public synchronized void sendResult(FuzzingMethodResult result) throws IOException {
+    WorkerProtocol.writeResult(out, result);
+    out.flush();
+  }
+
+  /**
+   * Sends an execution that timed out to the coordinator.
+   *
+   * @param timeout The execution that timed out
+   * @throws IOException When the coordinator cannot be reached
+   */
+  public synchronized void sendTimeout(TimeoutFinding timeout) throws IOException {
+    WorkerProtocol.writeTimeout(out, timeout);
+    out.flush();
+  }
+
+  /**
+   * Sends the coverage the worker recorded so far to the coordinator. Every dump replaces the
+   * previous one of the same worker process.
+   *
+   * @param dump The coverage of the worker process
+   * @throws IOException When the coordinator cannot be reached
+   */
+  public synchronized void sendCoverage(CoverageDump dump) throws IOException {
+    WorkerProtocol.writeCoverage(out, dump);
+    out.flush();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      out.flush();
+    } finally {
+      channel.close();
+    }
+  }
+}
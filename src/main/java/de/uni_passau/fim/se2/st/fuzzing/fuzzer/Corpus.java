@@ -0,0 +1,228 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * The seeds of a fuzzer, each with a weight that determines how often it is picked. The seeds are
+ * stored in an array in the order they were added, and their weights in a Fenwick tree, so that
+ * adding a seed, changing its weight and picking a seed at random all take O(log n) time, instead
+ * of walking the corpus on every pick.
+ *
+ * <p>An alias table would pick in O(1), but has to be rebuilt in O(n) whenever a weight changes,
+ * which a power schedule does all the time.
+ *
+ * @param <T> the type of the seeds
+ */
+public final class Corpus<T> {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final List<T> entries = new ArrayList<>();
+  private final Map<T, Integer> indices = new HashMap<>();
+  private double[] weights = new double[INITIAL_CAPACITY];
+
+  /** 1-based Fenwick tree, in which node {@code i} holds the weights of {@code (i - lsb(i), i]}. */
+  private double[] tree = new double[INITIAL_CAPACITY + 1];
+
+  private double totalWeight;
+
+  /**
+   * Adds a seed with weight 1, unless it is already part of the corpus.
+   *
+   * @param entry the seed to add
+   * @return true if the seed was added
+   */
+  public boolean add(T entry) {
+    return add(entry, 1);
+  }
+
+  /**
+   * Adds a seed, unless it is already part of the corpus.
+   *
+   * @param entry the seed to add
+   * @param weight the weight of the seed
+   * @return true if the seed was added
+   * @throws IllegalArgumentException if the weight is negative or not finite
+   */
+  public boolean add(T entry, double weight) {
+    checkWeight(weight);
+    if (indices.containsKey(entry)) {
+      return false;
+    }
+    int index = entries.size();
+    if (index == weights.length) {
+      weights = Arrays.copyOf(weights, index * 2);
+      tree = Arrays.copyOf(tree, index * 2 + 1);
+    }
+    entries.add(entry);
+    indices.put(entry, index);
+    weights[index] = weight;
+    // A new last node covers the nodes below it that are already complete
+    int node = index + 1;
+    double sum = weight;
+    for (int child = 1; child < Integer.lowestOneBit(node); child <<= 1) {
+      sum += tree[node - child];
+    }
+    tree[node] = sum;
+    totalWeight += weight;
+    return true;
+  }
+
+  /**
+   * Changes the weight of a seed. A seed with weight 0 stays in the corpus, but is not picked.
+   *
+   * @param index the index of the seed, in the order the seeds were added
+   * @param weight the new weight of the seed
+   * @throws IllegalArgumentException if the weight is negative or not finite
+   * @throws IndexOutOfBoundsException if there is no seed with the index
+   */
+  public void setWeight(int index, double weight) {
+    checkWeight(weight);
+    Objects.checkIndex(index, entries.size());
+    double delta = weight - weights[index];
+    weights[index] = weight;
+    for (int node = index + 1; node <= entries.size(); node += Integer.lowestOneBit(node)) {
+      tree[node] += delta;
+    }
+    totalWeight += delta;
+  }
+
+  /**
+   * Returns the weight of a seed.
+   *
+   * @param index the index of the seed
+   * @return the weight of the seed
+   * @throws IndexOutOfBoundsException if there is no seed with the index
+   */
+  public double getWeight(int index) {
+    Objects.checkIndex(index, entries.size());
+    return weights[index];
+  }
+
+  /**
+   * Returns the sum of the weights of all seeds.
+   *
+   * @return the total weight
+   */
+  public double getTotalWeight() {
+    return totalWeight;
+  }
+
+  /**
+   * Picks the index of a seed at random, with a probability proportional to its weight.
+   *
+   * @param random the random number generator to use
+   * @return the index of the picked seed
+   * @throws IllegalStateException if no seed has a positive weight
+   */
+  public int sampleIndex(Random random) {
+    if (!(totalWeight > 0)) {
+      throw new IllegalStateException("The corpus has no seed with a positive weight.");
+    }
+    double target = random.nextDouble() * totalWeight;
+    // Descend the tree to the first seed whose prefix sum exceeds the target
+    int node = 0;
+    for (int step = Integer.highestOneBit(entries.size()); step > 0; step >>= 1) {
+      int next = node + step;
+      if (next <= entries.size() && tree[next] <= target) {
+        node = next;
+        target -= tree[next];
+      }
+    }
+    // Rounding may run past the last seed or land on a seed without weight
+    int index = Math.min(node, entries.size() - 1);
+    for (int i = index; i >= 0; i--) {
+      if (weights[i] > 0) {
+        return i;
+      }
+    }
+    for (int i = index + 1; i < entries.size(); i++) {
+      if (weights[i] > 0) {
+        return i;
+      }
+    }
+    throw new IllegalStateException("The corpus has no seed with a positive weight.");
+  }
+
+  /**
+   * Picks a seed at random, with a probability proportional to its weight.
+   *
+   * @param random the random number generator to use
+   * @return the picked seed
+   * @throws IllegalStateException if no seed has a positive weight
+   */
+  public T sample(Random random) {
+    return entries.get(sampleIndex(random));
+  }
+
+  /**
+   * Returns the seed with an index.
+   *
+   * @param index the index of the seed, in the order the seeds were added
+   * @return the seed
+   * @throws IndexOutOfBoundsException if there is no seed with the index
+   */
+  public T get(int index) {
+    return entries.get(index);
+  }
+
+  /**
+   * Returns the index of a seed.
+   *
+   * @param entry the seed
+   * @return the index of the seed, or -1 if it is not part of the corpus
+   */
+  public int indexOf(T entry) {
+    return indices.getOrDefault(entry, -1);
+  }
+
+  /**
+   * Checks whether a seed is part of the corpus.
+   *
+   * @param entry the seed
+   * @return true if the seed is part of the corpus
+   */
+  public boolean contains(T entry) {
+    return indices.containsKey(entry);
+  }
+
+  /**
+   * Returns the number of seeds.
+   *
+   * @return the size of the corpus
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Checks whether the corpus has no seeds.
+   *
+   * @return true if the corpus is empty
+   */
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  /**
+   * Returns the seeds in the order they were added.
+   *
+   * @return an unmodifiable view of the seeds
+   */
+  public List<T> entries() {
+    return Collections.unmodifiableList(entries);
+  }
+
+  private static void checkWeight(double weight) {
+    if (!(weight >= 0) || Double.isInfinite(weight)) {
+      throw new IllegalArgumentException("The weight of a seed must be finite and not negative.");
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.ExecutionTrace;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Distills a corpus to the inputs that are worth keeping, as AFL's queue culling and afl-cmin do.
+ * For every line and edge, the distiller keeps the top-rated input that covers it, i.e., the one
+ * with the smallest product of size and execution time. A distillation pass then greedily picks
+ * top-rated inputs until every line and edge of the corpus is covered. The picked inputs are
+ * favored, the others are demoted, as everything they cover is covered by favored inputs.
+ *
+ * <p>Inputs are rated incrementally when they are submitted, which only touches the lines and edges
+ * of the input. Submitting is thread-safe and does not wait for a pass, so that passes can run on
+ * a background thread while workers keep submitting. Inputs submitted after a pass are neither
+ * favored nor demoted until the next pass.
+ *
+ * @param <T> the type of the inputs
+ */
+public final class CorpusDistiller<T> {
+
+  /**
+   * An input with its rating.
+   *
+   * @param entry the input
+   * @param features the lines and edges the input covers
+   * @param score the product of size and execution time, lower is better
+   */
+  private record Rated<T>(T entry, long[] features, double score) {}
+
+  private final Map<Long, Rated<T>> topRated = new ConcurrentHashMap<>();
+  private final Set<T> submitted = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean changed = new AtomicBoolean();
+  private volatile Set<T> favored = Set.of();
+  private volatile Set<T> demoted = Set.of();
+
+  /**
+   * Rates an input and makes it the top-rated input of every line and edge it covers better than
+   * the current one. Inputs that cover nothing are ignored, as there is nothing to rate them by.
+   *
+   * @param entry the input
+   * @param trace the trace of the execution of the input
+   * @param size the size of the input, e.g., the length of a string
+   * @param executionNanos the time the execution of the input took
+   */
+  public void submit(T entry, ExecutionTrace trace, long size, long executionNanos) {
+    if (trace.isEmpty()) {
+      return;
+    }
+    long[] lines = trace.getLineKeys();
+    int[] edges = trace.getEdges();
+    long[] features = new long[lines.length + edges.length];
+    System.arraycopy(lines, 0, features, 0, lines.length);
+    for (int i = 0; i < edges.length; i++) {
+      // Line keys are never negative, so edges get keys of their own
+      features[lines.length + i] = -1L - edges[i];
+    }
+    Rated<T> rated =
+        new Rated<>(entry, features, (double) Math.max(size, 1) * Math.max(executionNanos, 1));
+    for (long feature : features) {
+      topRated.merge(
+          feature, rated, (old, candidate) -> candidate.score() < old.score() ? candidate : old);
+    }
+    // Only once it is rated, so that a concurrent pass does not demote it for lack of features
+    submitted.add(entry);
+    changed.set(true);
+  }
+
+  /**
+   * Runs a distillation pass if inputs were submitted since the last one, and publishes the
+   * favored and demoted inputs.
+   *
+   * @return true if a pass was run
+   */
+  public boolean distill() {
+    if (!changed.getAndSet(false)) {
+      return false;
+    }
+    Set<Long> covered = new HashSet<>();
+    Set<T> picked = new HashSet<>();
+    for (Map.Entry<Long, Rated<T>> top : topRated.entrySet()) {
+      if (covered.contains(top.getKey())) {
+        continue;
+      }
+      Rated<T> rated = top.getValue();
+      picked.add(rated.entry());
+      for (long feature : rated.features()) {
+        covered.add(feature);
+      }
+    }
+    Set<T> rest = new HashSet<>(submitted);
+    rest.removeAll(picked);
+    favored = Collections.unmodifiableSet(picked);
+    demoted = rest;
+    return true;
+  }
+
+  /**
+   * Provides the favored inputs of the last pass. A new set is published by every pass, so that
+   * callers can tell by identity whether a pass happened.
+   *
+   * @return the favored inputs
+   */
+  public Set<T> getFavored() {
+    return favored;
+  }
+
+  /**
+   * Tells whether the last pass demoted an input, because favored inputs cover everything it
+   * covers.
+   *
+   * @param entry the input
+   * @return true if the input was demoted
+   */
+  public boolean isDemoted(T entry) {
+    return demoted.contains(entry);
+  }
+}
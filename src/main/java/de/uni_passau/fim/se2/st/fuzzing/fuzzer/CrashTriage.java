@@ -0,0 +1,214 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Sorts the crashes of a fuzzing campaign into buckets, so that every distinct crash is kept while
+ * its duplicates are only counted. The bucket of a crash is a hash of the type of the exception and
+ * of the top frames of its stack trace, starting with the throw site. Frames of the fuzzer and of
+ * reflection, which only tell how the target was called, end the signature early, so that a crash
+ * falls into the same bucket however it was invoked.
+ *
+ * <p>The signature hashes the class name, the method name and the line number of each frame. It
+ * never renders the stack trace to a string, as that would dominate the cost of a crash that is
+ * found over and over again. Every bucket keeps the smallest reproducer seen so far, which is only
+ * created if it is needed. Recording crashes is thread-safe.
+ *
+ * @param <T> the type of the reproducers
+ */
+public final class CrashTriage<T> {
+
+  /** The number of frames of a stack trace that are part of the signature by default. */
+  public static final int DEFAULT_DEPTH = 5;
+
+  /** Classes, with their nested classes, whose frames call the target rather than belong to it. */
+  private static final String[] HARNESS_CLASSES = {
+    Fuzzer.class.getName(),
+    MethodInvokers.class.getName(),
+  };
+
+  /** Packages whose frames call the target rather than belong to it. */
+  private static final String[] HARNESS_PACKAGES = {
+    "java.lang.reflect.",
+    "java.lang.invoke.",
+    "jdk.internal.reflect.",
+  };
+
+  /**
+   * A bucket of crashes that share a signature.
+   *
+   * @param id the signature of the crashes
+   * @param exceptionType the name of the class of the exception
+   * @param throwSite the frame the exception was thrown in, {@code null} if it has no stack trace
+   * @param reproducer the smallest input that crashed this way
+   * @param hits the number of crashes that fell into the bucket
+   * @param <T> the type of the reproducer
+   */
+  public record Bucket<T>(
+      long id, String exceptionType, StackTraceElement throwSite, T reproducer, long hits) {}
+
+  /** The mutable state of a bucket. */
+  private static final class Entry<T> {
+    private final int order;
+    private final String exceptionType;
+    private final StackTraceElement throwSite;
+    private final LongAdder hits = new LongAdder();
+    private T reproducer;
+    private long size;
+
+    private Entry(int order, String exceptionType, StackTraceElement throwSite) {
+      this.order = order;
+      this.exceptionType = exceptionType;
+      this.throwSite = throwSite;
+    }
+
+    private synchronized void offer(long size, Supplier<T> reproducer) {
+      if (this.reproducer == null || size < this.size) {
+        this.reproducer = reproducer.get();
+        this.size = size;
+      }
+    }
+
+    private synchronized T reproducer() {
+      return reproducer;
+    }
+  }
+
+  private final int depth;
+  private final Map<Long, Entry<T>> buckets = new ConcurrentHashMap<>();
+  private final AtomicInteger created = new AtomicInteger();
+
+  /** Creates an empty triage whose signatures span {@value #DEFAULT_DEPTH} frames. */
+  public CrashTriage() {
+    this(DEFAULT_DEPTH);
+  }
+
+  /**
+   * Creates an empty triage.
+   *
+   * @param depth the number of frames of a stack trace that are part of the signature
+   * @throws IllegalArgumentException if the depth is not positive
+   */
+  public CrashTriage(int depth) {
+    if (depth < 1) {
+      throw new IllegalArgumentException("The depth must be positive: " + depth);
+    }
+    this.depth = depth;
+  }
+
+  /**
+   * Computes the signature of a crash, i.e., the id of its bucket.
+   *
+   * @param thrown the exception of the crash
+   * @return the signature
+   */
+  public long signature(Throwable thrown) {
+    return signature(thrown.getClass().getName(), thrown.getStackTrace());
+  }
+
+  /**
+   * Records a crash. If the crash opens a new bucket, or its reproducer is smaller than that of
+   * its bucket, the reproducer is created and kept.
+   *
+   * @param thrown the exception of the crash
+   * @param size the size of the input that crashed
+   * @param reproducer creates the reproducer of the input, only called if it is kept
+   * @return true if the crash opened a new bucket
+   */
+  public boolean record(Throwable thrown, long size, Supplier<T> reproducer) {
+    String type = thrown.getClass().getName();
+    StackTraceElement[] frames = thrown.getStackTrace();
+    long id = signature(type, frames);
+    Entry<T> entry = buckets.get(id);
+    boolean opened = false;
+    if (entry == null) {
+      Entry<T> fresh =
+          new Entry<>(created.getAndIncrement(), type, frames.length > 0 ? frames[0] : null);
+      entry = buckets.putIfAbsent(id, fresh);
+      if (entry == null) {
+        entry = fresh;
+        opened = true;
+      }
+    }
+    entry.hits.increment();
+    entry.offer(size, reproducer);
+    return opened;
+  }
+
+  /**
+   * Returns the buckets in the order they were opened.
+   *
+   * @return a snapshot of the buckets
+   */
+  public List<Bucket<T>> buckets() {
+    List<Map.Entry<Long, Entry<T>>> entries = new ArrayList<>(buckets.entrySet());
+    entries.sort(Comparator.comparingInt(bucket -> bucket.getValue().order));
+    List<Bucket<T>> snapshot = new ArrayList<>();
+    for (Map.Entry<Long, Entry<T>> bucket : entries) {
+      Entry<T> entry = bucket.getValue();
+      snapshot.add(
+          new Bucket<>(
+              bucket.getKey(),
+              entry.exceptionType,
+              entry.throwSite,
+              entry.reproducer(),
+              entry.hits.sum()));
+    }
+    return snapshot;
+  }
+
+  /**
+   * Returns the number of buckets.
+   *
+   * @return the number of distinct crashes
+   */
+  public int size() {
+    return buckets.size();
+  }
+
+  private long signature(String type, StackTraceElement[] frames) {
+    long hash = mix(0, type.hashCode());
+    for (int i = 0; i < Math.min(depth, frames.length); i++) {
+      StackTraceElement frame = frames[i];
+      if (isHarness(frame.getClassName())) {
+        break;
+      }
+      hash = mix(hash, frame.getClassName().hashCode());
+      hash = mix(hash, frame.getMethodName().hashCode());
+      hash = mix(hash, frame.getLineNumber());
+    }
+    // The finalizer of MurmurHash3, so that similar stack traces get unrelated ids
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+
+  private static long mix(long hash, int value) {
+    return (hash ^ (value & 0xffffffffL)) * 0x100000001b3L + 0x9e3779b97f4a7c15L;
+  }
+
+  private static boolean isHarness(String className) {
+    for (String harness : HARNESS_CLASSES) {
+      if (className.startsWith(harness)
+          && (className.length() == harness.length()
+              || className.charAt(harness.length()) == '$')) {
+        return true;
+      }
+    }
+    for (String prefix : HARNESS_PACKAGES) {
+      if (className.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,77 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.ExecutionTrace;
+import java.util.Objects;
+
+/**
+ * The behavior of an execution of an input, which minimizers and shrinkers keep while they make
+ * the input smaller.
+ *
+ * @param trace the lines and edges the execution covered
+ * @param exceptionType the name of the class of the exception the execution threw, {@code null} if
+ *     it threw none
+ * @param throwSite the frame the exception was thrown in, {@code null} if it threw none or the
+ *     exception has no stack trace
+ */
+public record ExecutionOutcome(
+    ExecutionTrace trace, String exceptionType, StackTraceElement throwSite) {
+
+  /**
+   * Creates the outcome of an execution.
+   *
+   * @param trace the trace of the execution
+   * @param thrown the exception the execution threw, {@code null} if it threw none
+   * @return the outcome
+   */
+  public static ExecutionOutcome of(ExecutionTrace trace, Throwable thrown) {
+    if (thrown == null) {
+      return new ExecutionOutcome(trace, null, null);
+    }
+    StackTraceElement[] frames = thrown.getStackTrace();
+    return new ExecutionOutcome(
+        trace, thrown.getClass().getName(), frames.length > 0 ? frames[0] : null);
+  }
+
+  /**
+   * Tells whether the execution threw an exception.
+   *
+   * @return true if the execution threw
+   */
+  public boolean threw() {
+    return exceptionType != null;
+  }
+
+  /**
+   * Tells whether another execution covered exactly the same lines and edges.
+   *
+   * @param other the outcome of the other execution
+   * @return true if the coverage signatures are equal
+   */
+  public boolean sameCoverage(ExecutionOutcome other) {
+    return trace.equals(other.trace);
+  }
+
+  /**
+   * Tells whether another execution threw an exception of the same type at the same site.
+   *
+   * @param other the outcome of the other execution
+   * @return true if both executions threw the same exception at the same site
+   */
+  public boolean sameException(ExecutionOutcome other) {
+    return threw()
+        && exceptionType.equals(other.exceptionType)
+        && Objects.equals(throwSite, other.throwSite);
+  }
+
+  /**
+   * Tells whether another execution behaves like this one: if this execution threw, the other one
+   * has to throw the same exception at the same site, otherwise it has to cover exactly the same
+   * lines and edges without throwing.
+   *
+   * @param other the outcome of the other execution
+   * @return true if the other execution behaves the same
+   */
+  public boolean isReproducedBy(ExecutionOutcome other) {
+    return threw() ? sameException(other) : !other.threw() && sameCoverage(other);
+  }
+}
@@ -0,0 +1,415 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.expression.CompositeExpression;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.expression.GenericExpression;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.expression.LeafExpression;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Shrinks the call of a method result, i.e., the expression trees of the object a method is called
+ * on and of its arguments, as property-based testing tools shrink their counterexamples. Every
+ * node of the trees is replaced by simpler candidates, simplest first: {@code null} for objects,
+ * constructors of the same class with fewer parameters, and smaller numbers, i.e., zero, the value
+ * divided by powers of two, and the value one step closer to zero. Strings are shortened with
+ * delta debugging. A candidate is kept if its execution is still interesting, and passes over the
+ * trees are repeated until no node can be simplified any further or the execution limit is
+ * reached.
+ *
+ * <p>Candidates are executed in batches, in parallel if an executor is given, and the first
+ * interesting candidate of a batch in the order above wins, so that the result does not depend on
+ * the number of threads.
+ */
+public final class ExpressionShrinker {
+
+  /** Maximum number of executions of shrinking a single call. */
+  static final int MAX_EXECUTIONS = 1_000;
+
+  /** Simplest values of the types of literals, which arguments of simpler constructors get. */
+  private static final Map<Class<?>, Object> SIMPLEST_VALUES =
+      Map.ofEntries(
+          Map.entry(int.class, 0),
+          Map.entry(Integer.class, 0),
+          Map.entry(long.class, 0L),
+          Map.entry(Long.class, 0L),
+          Map.entry(short.class, (short) 0),
+          Map.entry(Short.class, (short) 0),
+          Map.entry(byte.class, (byte) 0),
+          Map.entry(Byte.class, (byte) 0),
+          Map.entry(float.class, 0f),
+          Map.entry(Float.class, 0f),
+          Map.entry(double.class, 0d),
+          Map.entry(Double.class, 0d),
+          Map.entry(char.class, 'a'),
+          Map.entry(Character.class, 'a'),
+          Map.entry(boolean.class, false),
+          Map.entry(Boolean.class, false),
+          Map.entry(String.class, ""));
+
+  /**
+   * A call of a method. Calls are equal if they print the same, i.e., if their expressions create
+   * equal objects.
+   *
+   * @param receiver the expression of the object the method is called on, {@code null} for static
+   *     methods
+   * @param arguments the expressions of the arguments
+   */
+  public record Call(GenericExpression receiver, List<GenericExpression> arguments) {
+
+    public Call {
+      arguments = List.copyOf(arguments);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Call other && toString().equals(other.toString());
+    }
+
+    @Override
+    public int hashCode() {
+      return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return receiver
+          + arguments.stream().map(String::valueOf).collect(Collectors.joining(", ", "(", ")"));
+    }
+  }
+
+  /**
+   * A node of the trees of a call.
+   *
+   * @param expression the expression of the node
+   * @param type the type the node has to produce, {@code null} if it must not be {@code null}
+   */
+  private record Node(GenericExpression expression, Class<?> type) {}
+
+  private final Function<Call, ExecutionOutcome> target;
+  private final ExecutorService executor;
+  private final int batchSize;
+  private final long batchTimeoutMillis;
+  private final CandidateBatches<Call> batches;
+  private int stringExecutions;
+  private long deadline;
+  private boolean hasDeadline;
+
+  /**
+   * Creates a shrinker.
+   *
+   * @param target executes a call and returns its outcome, or {@code null} if the expressions of
+   *     the call cannot be resolved
+   * @param executor the executor the candidates run on, {@code null} to run them on the calling
+   *     thread
+   * @param batchSize the number of candidates executed at once, e.g., the number of threads
+   * @param batchTimeoutMillis the time after which candidates that still run count as not
+   *     interesting, 0 to wait for them; only used with an executor
+   * @throws IllegalArgumentException if the batch size is not positive
+   */
+  public ExpressionShrinker(
+      Function<Call, ExecutionOutcome> target,
+      ExecutorService executor,
+      int batchSize,
+      long batchTimeoutMillis) {
+    this.target = target;
+    this.executor = executor;
+    this.batchSize = batchSize;
+    this.batchTimeoutMillis = batchTimeoutMillis;
+    this.batches = new CandidateBatches<>(target, executor, batchSize, batchTimeoutMillis);
+  }
+
+  /**
+   * Sets a deadline after which the shrinker executes no more candidates and returns the simplest
+   * call it found so far. Candidates that still run at the deadline are cancelled if they run on
+   * an executor.
+   *
+   * @param deadline the value of {@link System#nanoTime()} at the deadline
+   */
+  public void setDeadline(long deadline) {
+    this.deadline = deadline;
+    this.hasDeadline = true;
+    batches.setDeadline(deadline);
+  }
+
+  /**
+   * Shrinks a call while it keeps its behavior. A call that throws keeps the type and the throw
+   * site of its exception, any other call keeps its exact coverage signature.
+   *
+   * @param call the call to shrink
+   * @param parameterTypes the parameter types of the method
+   * @return the shrunk call, or the call itself if no simpler one behaves the same
+   */
+  public Call shrink(Call call, Class<?>[] parameterTypes) {
+    batches.resetExecutions();
+    stringExecutions = 0;
+    ExecutionOutcome original = batches.execute(call);
+    if (original == null) {
+      return call;
+    }
+    return shrinkWhile(call, parameterTypes, original::isReproducedBy);
+  }
+
+  /**
+   * Shrinks a call while its executions are interesting.
+   *
+   * @param call the call to shrink, which is assumed to be interesting
+   * @param parameterTypes the parameter types of the method
+   * @param interesting tells whether the outcome of a candidate is interesting
+   * @return the shrunk call, or the call itself if no simpler one is interesting
+   */
+  public Call shrink(
+      Call call, Class<?>[] parameterTypes, Predicate<ExecutionOutcome> interesting) {
+    batches.resetExecutions();
+    stringExecutions = 0;
+    return shrinkWhile(call, parameterTypes, interesting);
+  }
+
+  private Call shrinkWhile(
+      Call call, Class<?>[] parameterTypes, Predicate<ExecutionOutcome> interesting) {
+    if (parameterTypes.length != call.arguments().size()) {
+      throw new IllegalArgumentException(
+          "Expected " + parameterTypes.length + " arguments: " + call);
+    }
+    Set<Call> tested = new HashSet<>();
+    tested.add(call);
+    Call current = call;
+    boolean simplified = true;
+    while (simplified && getNumberOfExecutions() < MAX_EXECUTIONS && !batches.isPastDeadline()) {
+      simplified = false;
+      List<Node> nodes = nodes(current, parameterTypes);
+      for (int i = 0; i < nodes.size(); i++) {
+        List<Call> candidates = new ArrayList<>();
+        for (GenericExpression simpler : simplerThan(nodes.get(i))) {
+          candidates.add(replace(current, i, simpler));
+        }
+        int found =
+            batches.firstInteresting(
+                candidates, tested, interesting, MAX_EXECUTIONS - stringExecutions);
+        if (found >= 0) {
+          current = candidates.get(found);
+          nodes = nodes(current, parameterTypes);
+          simplified = true;
+        }
+      }
+      for (int i = 0; i < nodes.size(); i++) {
+        Call shortened = shortenString(current, i, nodes.get(i), interesting);
+        if (!shortened.equals(current)) {
+          current = shortened;
+          simplified = true;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Returns the number of executions of the last call to one of the {@code shrink} methods.
+   *
+   * @return the number of executions
+   */
+  public int getNumberOfExecutions() {
+    return batches.getExecutions() + stringExecutions;
+  }
+
+  /** Shortens the string of a node with delta debugging, if the node is a string literal. */
+  private Call shortenString(
+      Call call, int index, Node node, Predicate<ExecutionOutcome> interesting) {
+    if (!(node.expression() instanceof LeafExpression leaf)
+        || !(leaf.getValue() instanceof String value)
+        || value.length() < 2) {
+      return call;
+    }
+    CandidateBatches<String> strings =
+        new CandidateBatches<>(
+            string -> target.apply(replace(call, index, new LeafExpression(string))),
+            executor,
+            batchSize,
+            batchTimeoutMillis);
+    if (hasDeadline) {
+      strings.setDeadline(deadline);
+    }
+    String shortened =
+        new StringMinimizer(strings)
+            .shrink(value, interesting, MAX_EXECUTIONS - getNumberOfExecutions());
+    stringExecutions += strings.getExecutions();
+    return replace(call, index, new LeafExpression(shortened));
+  }
+
+  /** Lists the nodes of the trees of a call in pre-order, the receiver first. */
+  private static List<Node> nodes(Call call, Class<?>[] parameterTypes) {
+    List<Node> nodes = new ArrayList<>();
+    if (call.receiver() != null) {
+      collect(call.receiver(), null, nodes);
+    }
+    for (int i = 0; i < parameterTypes.length; i++) {
+      collect(call.arguments().get(i), parameterTypes[i], nodes);
+    }
+    return nodes;
+  }
+
+  private static void collect(GenericExpression expression, Class<?> type, List<Node> nodes) {
+    nodes.add(new Node(expression, type));
+    if (expression instanceof CompositeExpression composite) {
+      Class<?>[] types = composite.getConstructor().getParameterTypes();
+      GenericExpression[] arguments = composite.getArguments();
+      for (int i = 0; i < arguments.length; i++) {
+        collect(arguments[i], types[i], nodes);
+      }
+    }
+  }
+
+  /** Replaces the node of a call with the given index in pre-order. */
+  private static Call replace(Call call, int index, GenericExpression replacement) {
+    int offset = 0;
+    GenericExpression receiver = call.receiver();
+    if (receiver != null) {
+      int size = size(receiver);
+      if (index < size) {
+        return new Call(replace(receiver, index, replacement), call.arguments());
+      }
+      offset = size;
+    }
+    List<GenericExpression> arguments = new ArrayList<>(call.arguments());
+    for (int i = 0; i < arguments.size(); i++) {
+      int size = size(arguments.get(i));
+      if (index < offset + size) {
+        arguments.set(i, replace(arguments.get(i), index - offset, replacement));
+        return new Call(receiver, arguments);
+      }
+      offset += size;
+    }
+    throw new IllegalArgumentException("No node " + index + " in " + call);
+  }
+
+  private static GenericExpression replace(
+      GenericExpression expression, int index, GenericExpression replacement) {
+    if (index == 0) {
+      return replacement;
+    }
+    CompositeExpression composite = (CompositeExpression) expression;
+    GenericExpression[] arguments = composite.getArguments();
+    int offset = 1;
+    for (int i = 0; i < arguments.length; i++) {
+      int size = size(arguments[i]);
+      if (index < offset + size) {
+        arguments[i] = replace(arguments[i], index - offset, replacement);
+        return new CompositeExpression(composite.getConstructor(), arguments);
+      }
+      offset += size;
+    }
+    throw new IllegalArgumentException("No node " + index + " in " + expression);
+  }
+
+  private static int size(GenericExpression expression) {
+    int size = 1;
+    if (expression instanceof CompositeExpression composite) {
+      for (GenericExpression argument : composite.getArguments()) {
+        size += size(argument);
+      }
+    }
+    return size;
+  }
+
+  /** Lists the simpler replacements of a node, simplest first. */
+  private static List<GenericExpression> simplerThan(Node node) {
+    List<GenericExpression> simpler = new ArrayList<>();
+    boolean isNull =
+        node.expression() instanceof LeafExpression leaf && leaf.getValue() == null;
+    if (node.type() != null && !node.type().isPrimitive() && !isNull) {
+      simpler.add(new LeafExpression(null));
+    }
+    if (node.expression() instanceof CompositeExpression composite) {
+      Constructor<?> current = composite.getConstructor();
+      Arrays.stream(current.getDeclaringClass().getConstructors())
+          .filter(constructor -> constructor.getParameterCount() < current.getParameterCount())
+          .sorted(Comparator.comparingInt(Constructor::getParameterCount))
+          .forEach(constructor -> simpler.add(simplest(constructor)));
+    } else if (node.expression() instanceof LeafExpression leaf) {
+      for (Object value : smallerValues(leaf.getValue())) {
+        simpler.add(new LeafExpression(value));
+      }
+    }
+    return simpler;
+  }
+
+  /** Calls a constructor with the simplest value of each parameter type. */
+  private static GenericExpression simplest(Constructor<?> constructor) {
+    Class<?>[] types = constructor.getParameterTypes();
+    GenericExpression[] arguments = new GenericExpression[types.length];
+    for (int i = 0; i < types.length; i++) {
+      arguments[i] = new LeafExpression(SIMPLEST_VALUES.get(types[i]));
+    }
+    return new CompositeExpression(constructor, arguments);
+  }
+
+  /** Lists values of the same type that are smaller than a literal, smallest first. */
+  private static List<Object> smallerValues(Object value) {
+    Set<Object> smaller = new LinkedHashSet<>();
+    if (value instanceof Integer || value instanceof Long
+        || value instanceof Short || value instanceof Byte) {
+      long number = ((Number) value).longValue();
+      if (number != 0) {
+        smaller.add(0L);
+        for (int shift = 62; shift > 0; shift--) {
+          long divided = number / (1L << shift);
+          if (divided < 0) {
+            smaller.add(-divided);
+          }
+          if (divided != 0) {
+            smaller.add(divided);
+          }
+        }
+        if (number < 0 && number != Long.MIN_VALUE) {
+          smaller.add(-number);
+        }
+        // Steps towards zero find the boundary that the halving skipped
+        smaller.add(number - Long.signum(number));
+      }
+      return smaller.stream().map(small -> castLike(value, (long) small)).toList();
+    }
+    if (value instanceof Double || value instanceof Float) {
+      double number = ((Number) value).doubleValue();
+      if (number != 0) {
+        smaller.add(0d);
+        if (Double.isFinite(number) && Math.rint(number) != number) {
+          smaller.add(Math.rint(number));
+        }
+      }
+      return smaller.stream()
+          .map(small -> value instanceof Float ? (Object) (float) (double) small : small)
+          .toList();
+    }
+    if (value instanceof Character character && character != 'a') {
+      return List.of('a');
+    }
+    if (value instanceof Boolean bool && bool) {
+      return List.of(false);
+    }
+    if (value instanceof String string && !string.isEmpty()) {
+      return List.of("");
+    }
+    return List.of();
+  }
+
+  private static Object castLike(Object value, long number) {
+    if (value instanceof Integer) {
+      return (int) number;
+    } else if (value instanceof Short) {
+      return (short) number;
+    } else if (value instanceof Byte) {
+      return (byte) number;
+    }
+    return number;
+  }
+}
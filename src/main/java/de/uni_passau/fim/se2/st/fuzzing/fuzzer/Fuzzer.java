@@ -2,14 +2,29 @@ package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
 
 import com.google.common.collect.ImmutableSet;
 import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker;
+import de.uni_passau.fim.se2.st.fuzzing.coverage.ExecutionTrace;
+import de.uni_passau.fim.se2.st.fuzzing.coverage.SharedCoverageMap;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.expression.GenericExpression;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.expression.LeafExpression;
 import de.uni_passau.fim.se2.st.fuzzing.fuzztarget.CSVParser;
 import java.io.BufferedReader;
 import java.io.StringReader;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.lang.reflect.Parameter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,9 +37,137 @@ import java.util.logging.Logger;
 public class Fuzzer {
 
   private static final Logger logger = Logger.getLogger(Fuzzer.class.getName());
+
+  /** Interval in milliseconds in which the stopping condition is checked for parallel workers. */
+  private static final long STOP_POLL_INTERVAL = 10;
+
+  /**
+   * Lower bound of the probability that the legacy fuzzing loop generates a new random string
+   * instead of mutating a covering one, which would otherwise vanish once a few strings are found.
+   */
+  private static final double MIN_GENERATION_PROBABILITY = 0.05;
+
+  /** Interval in milliseconds in which the covering inputs are distilled in the background. */
+  private static final long DISTILL_INTERVAL = 1000;
+
+  /** Maximum number of executions of the minimizations of the strings found at once. */
+  private static final int MINIMIZATION_BUDGET = 10_000;
+
+  /**
+   * Number of timeouts after which a method is no longer fuzzed. A thread that hangs in the target
+   * cannot be killed, so this bounds the threads that keep running in the background to this many
+   * per method.
+   */
+  static final int MAX_TIMEOUTS_PER_METHOD = 3;
+
+  /** Time in milliseconds that shrinking the results of a class may take by default. */
+  public static final long DEFAULT_SHRINKING_BUDGET = 5_000;
+
+  /**
+   * A method of the class to fuzz, resolved once before the fuzzing starts.
+   *
+   * @param method the method
+   * @param parameterTypes the parameter types of the method
+   * @param invoker the invoker that calls the method without reflection
+   */
+  private record TargetMethod(Method method, Class<?>[] parameterTypes, MethodInvoker invoker) {
+
+    static TargetMethod of(Method method) {
+      return new TargetMethod(method, method.getParameterTypes(), MethodInvokers.create(method));
+    }
+  }
+
+  /**
+   * A method result that found new coverage, with the time its execution took and the call that
+   * produced it, so that it can be shrunk.
+   *
+   * @param result the method result
+   * @param executionNanos the time the execution of the method took
+   * @param method the method that was called
+   * @param call the expressions of the call, {@code null} if they were not recorded
+   */
+  private record Covering(
+      FuzzingMethodResult result,
+      long executionNanos,
+      TargetMethod method,
+      ExpressionShrinker.Call call) {}
+
+  /**
+   * The result of executing a shrunk call.
+   *
+   * @param returned the value the method returned
+   * @param thrown the exception the method threw, {@code null} if it threw none
+   * @param trace the trace of the execution
+   */
+  private record CallResult(Object returned, Throwable thrown, ExecutionTrace trace) {}
+
+  /**
+   * A string of the legacy fuzzing loop that covered something new.
+   *
+   * @param input the string
+   * @param parent the index of the covering string it was mutated from, -1 if it was generated
+   * @param trace the trace of its execution
+   * @param executionNanos the time its execution took
+   */
+  private record Discovery(String input, int parent, ExecutionTrace trace, long executionNanos) {}
+
+  /**
+   * An execution of a worker thread that the watchdog checks against the execution timeout.
+   *
+   * @param target the class to fuzz
+   * @param method the method that is executed
+   * @param callingObject the object the method is invoked on, {@code null} for static methods
+   * @param parameters the parameters of the invocation
+   * @param generator the generator that created the calling object and the parameters
+   * @param startTime the value of {@link System#nanoTime()} when the execution started
+   */
+  private record Execution(
+      Class<?> target,
+      Method method,
+      Object callingObject,
+      Object[] parameters,
+      CSVGenerator generator,
+      long startTime) {}
+
+  /**
+   * A worker thread, which the watchdog abandons and replaces if one of its executions hangs. The
+   * current execution is claimed either by the worker once the target returns, or by the watchdog
+   * once it timed out, so that only one of them goes on with it.
+   */
+  private static final class Worker {
+    private volatile Thread thread;
+    private final AtomicReference<Execution> execution = new AtomicReference<>();
+    private volatile boolean abandoned;
+    private Future<?> future;
+  }
+
   private final StoppingCondition stoppingCondition;
   private double currentCoverage;
-  private final Set<String> coveringStrings;
+  private int currentCoveredEdges;
+  private long coverageEpoch;
+  private SharedCoverageMap sharedCoverage;
+  private int workers = 1;
+  private volatile boolean stopped;
+  private final LongAdder executions = new LongAdder();
+  private Consumer<FuzzingMethodResult> resultListener = result -> {};
+  private long executionTimeout;
+  private final List<TimeoutFinding> timeouts = new ArrayList<>();
+  private Consumer<TimeoutFinding> timeoutListener = finding -> {};
+  private final Map<Method, Integer> methodTimeouts = new HashMap<>();
+  private final Set<Method> retiredMethods = ConcurrentHashMap.newKeySet();
+  private CrashTriage<Covering> crashes = new CrashTriage<>();
+  private List<CrashTriage.Bucket<FuzzingMethodResult>> crashBuckets = List.of();
+  private final Corpus<String> coveringStrings;
+  private SeedScheduler scheduler = new SeedScheduler(PowerSchedule.UNIFORM);
+  private int candidateParent = -1;
+  private final CorpusDistiller<String> stringDistiller = new CorpusDistiller<>();
+  private StringMinimizer minimizer = new StringMinimizer(this::executeForMinimization);
+  private final List<Discovery> discoveries = new ArrayList<>();
+  private CorpusDistiller<Integer> resultDistiller = new CorpusDistiller<>();
+  private boolean dropDemotedResults;
+  private long shrinkingBudget = DEFAULT_SHRINKING_BUDGET;
+  private long millisToCurrentCoverage;
+  private final Map<String, ExecutionTrace> coveringTraces = new LinkedHashMap<>();
   private final Random rng = new Random();
   private final CSVGenerator csvGenerator = new CSVGenerator();
   private final StringMutation mutation = new StringMutation(20);
@@ -40,7 +183,109 @@ public class Fuzzer {
   public Fuzzer(int timeout, StoppingCondition stoppingCondition) {
     this.stoppingCondition = stoppingCondition;
     currentCoverage = 0;
-    coveringStrings = new LinkedHashSet<>();
+    coveringStrings = new Corpus<>();
+  }
+
+  /**
+   * Shares the coverage with other fuzzers that run in parallel, possibly in other JVMs. An input
+   * then only counts as covering if none of the fuzzers covered its lines and edges before.
+   *
+   * @param sharedCoverage the coverage map shared by all fuzzers, {@code null} to fuzz alone
+   */
+  public void setSharedCoverage(SharedCoverageMap sharedCoverage) {
+    this.sharedCoverage = sharedCoverage;
+  }
+
+  /**
+   * Sets the number of worker threads that fuzz a class in parallel. Every worker has its own
+   * generator and random number generator and counts its hits in its own probes, while the
+   * coverage and the covering inputs are shared by all workers. The legacy fuzzing loop uses the
+   * workers to minimize its covering strings.
+   *
+   * @param workers the number of worker threads, 1 to fuzz on the calling thread
+   * @throws IllegalArgumentException if the number of workers is not positive
+   */
+  public void setWorkers(int workers) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("The number of workers must be positive.");
+    }
+    this.workers = workers;
+  }
+
+  /**
+   * Sets a listener that is notified of every covering method result as soon as it is found, e.g.,
+   * to send it to the coordinator of a campaign. Parallel workers notify it one at a time.
+   *
+   * @param resultListener the listener of the covering method results
+   */
+  public void setResultListener(Consumer<FuzzingMethodResult> resultListener) {
+    this.resultListener = Objects.requireNonNull(resultListener);
+  }
+
+  /**
+   * Sets the time a single execution of a target method may take. The target then runs on worker
+   * threads, even with a single worker, and the thread that started the fuzzing watches them. If an
+   * execution takes longer, its call is recorded as a {@link TimeoutFinding} and the worker is
+   * replaced by a fresh one, so that the fuzzing goes on. The hanging thread is interrupted, but as
+   * a thread cannot be killed, it keeps running in the background until the target returns. To
+   * bound such threads, a method that timed out {@value #MAX_TIMEOUTS_PER_METHOD} times is no
+   * longer fuzzed, and the fuzzing stops early once this holds for every method.
+   *
+   * @param executionTimeout the timeout of a single execution in milliseconds, 0 for no timeout
+   * @throws IllegalArgumentException if the timeout is negative
+   */
+  public void setExecutionTimeout(long executionTimeout) {
+    if (executionTimeout < 0) {
+      throw new IllegalArgumentException("The execution timeout must not be negative.");
+    }
+    this.executionTimeout = executionTimeout;
+  }
+
+  /**
+   * Sets a listener that is notified of every execution that timed out, as soon as it is given up.
+   *
+   * @param timeoutListener the listener of the timeouts
+   */
+  public void setTimeoutListener(Consumer<TimeoutFinding> timeoutListener) {
+    this.timeoutListener = Objects.requireNonNull(timeoutListener);
+  }
+
+  /**
+   * Sets whether the covering method results that the distillation demotes are dropped before they
+   * are reported, rather than only marked. The distillation rates results by their lines and edges
+   * only, so a result that was kept because it reached a new hit count bucket is always demoted,
+   * and is lost if demoted results are dropped.
+   *
+   * @param dropDemotedResults true to drop demoted results, false to report all results
+   */
+  public void setDropDemotedResults(boolean dropDemotedResults) {
+    this.dropDemotedResults = dropDemotedResults;
+  }
+
+  /**
+   * Sets the time that shrinking the results of {@link #fuzz(Class)} may take once the stopping
+   * condition is met, which covers the covering results and the crash reproducers together. The
+   * results that are not shrunk by then are reported as they are.
+   *
+   * @param shrinkingBudget the time in milliseconds, 0 to turn shrinking off
+   * @throws IllegalArgumentException if the budget is negative
+   */
+  public void setShrinkingBudget(long shrinkingBudget) {
+    if (shrinkingBudget < 0) {
+      throw new IllegalArgumentException("The shrinking budget must not be negative.");
+    }
+    this.shrinkingBudget = shrinkingBudget;
+  }
+
+  /**
+   * Sets the power schedule that decides how often the legacy fuzzing loop mutates each covering
+   * string. It has to be set before the fuzzing starts, as the statistics of the strings are kept
+   * by the schedule.
+   *
+   * @param schedule the power schedule, {@link PowerSchedule#UNIFORM} by default
+   */
+  public void setPowerSchedule(PowerSchedule schedule) {
+    this.scheduler = new SeedScheduler(Objects.requireNonNull(schedule));
   }
 
   /**
@@ -51,26 +296,177 @@ public class Fuzzer {
   public void fuzz() {
     logger.log(Level.FINE, "Started fuzzing loop");
     stoppingCondition.start();
+    long startTime = System.nanoTime();
+    executions.reset();
+    ScheduledExecutorService distillation = startDistillation(stringDistiller);
+    ExecutorService minimization = null;
+    if (workers > 1) {
+      minimization =
+          Executors.newFixedThreadPool(
+              workers,
+              runnable -> {
+                Thread thread = new Thread(runnable, "string-minimizer");
+                thread.setDaemon(true);
+                return thread;
+              });
+      minimizer = new StringMinimizer(this::executeForMinimization, minimization, workers);
+    }
+    try {
+      fuzzStrings(startTime);
+    } finally {
+      distillation.shutdownNow();
+      if (minimization != null) {
+        minimization.shutdownNow();
+      }
+    }
+    logger.log(Level.FINE, "Stopped, total coverage: {0}", currentCoverage);
+  }
 
+  /**
+   * Runs the legacy fuzzing loop until the stopping condition is met. Whenever a distillation pass
+   * published new favored strings, the weights of the demoted ones are lowered.
+   *
+   * @param startTime the value of {@link System#nanoTime()} when the fuzzing started
+   */
+  private void fuzzStrings(long startTime) {
+    Set<String> favored = stringDistiller.getFavored();
     while (!stoppingCondition.shouldStop()) {
+      if (stringDistiller.getFavored() != favored) {
+        favored = stringDistiller.getFavored();
+        scheduler.setDemoted(
+            coveringStrings, index -> stringDistiller.isDemoted(coveringStrings.get(index)));
+      }
       String candidate = chooseCandidate();
+      int parent = candidateParent;
 
+      long executionStart = System.nanoTime();
       try {
         CSVParser parser = new CSVParser();
         parser.parseDishes(new BufferedReader(new StringReader(candidate)));
       } catch (Exception e) {
         // Ignore
       }
+      long executionNanos = System.nanoTime() - executionStart;
+      ExecutionTrace trace = CoverageTracker.endExecution();
+      executions.increment();
+      scheduler.recordExecution(coveringStrings, parent, trace);
 
-      double newCoverage = CoverageTracker.getInstance().getCoverage();
-      if (newCoverage > currentCoverage) {
-        currentCoverage = newCoverage;
-        coveringStrings.add(candidate);
-        stoppingCondition.notify(newCoverage);
-        logger.log(Level.FINE, "Found covering input, new coverage: {0}", newCoverage);
+      double previousCoverage = currentCoverage;
+      if (hasFoundNewCoverage(trace)) {
+        addCoveringStrings(new Discovery(candidate, parent, trace, executionNanos));
+        stoppingCondition.notify(currentCoverage);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        if (currentCoverage > previousCoverage) {
+          millisToCurrentCoverage = elapsedMillis;
+        }
+        logger.fine(
+            String.format(
+                "Found covering input after %d ms, new coverage: %.4f",
+                elapsedMillis, currentCoverage));
       }
     }
-    logger.log(Level.FINE, "Stopped, total coverage: {0}", currentCoverage);
+  }
+
+  /**
+   * Minimizes a string that covered something new and adds it to the covering strings. Candidates
+   * of the minimization that cover something new themselves are minimized and added as well, and
+   * the coverage is updated afterwards, as the minimization executes the parser on its own. Once
+   * the minimizations of a call took {@value #MINIMIZATION_BUDGET} executions or the fuzzing
+   * stops, the remaining strings are added as they are.
+   *
+   * @param discovery the string that covered something new
+   */
+  private void addCoveringStrings(Discovery discovery) {
+    Deque<Discovery> pending = new ArrayDeque<>();
+    pending.add(discovery);
+    int budget = MINIMIZATION_BUDGET;
+    while (!pending.isEmpty()) {
+      Discovery next = pending.poll();
+      Discovery covering = next;
+      if (budget > 0 && !stoppingCondition.shouldStop()) {
+        // Executed again, as the first execution may also cover static initializers
+        Discovery reference = executeReference(next.input(), next.parent());
+        String input =
+            minimizer.minimize(
+                next.input(), outcome -> outcome.trace().equals(reference.trace()), budget);
+        budget -= minimizer.getNumberOfExecutions();
+        // The minimized string is usually faster, which the scheduler and the distiller weigh
+        covering = input.equals(next.input()) ? reference : executeReference(input, next.parent());
+      }
+      String input = covering.input();
+      if (coveringStrings.add(input)) {
+        scheduler.recordSeed(
+            coveringStrings,
+            coveringStrings.size() - 1,
+            covering.parent(),
+            covering.trace(),
+            covering.executionNanos());
+        stringDistiller.submit(input, covering.trace(), input.length(), covering.executionNanos());
+      }
+      coveringTraces.put(input, covering.trace());
+      synchronized (discoveries) {
+        pending.addAll(discoveries);
+        discoveries.clear();
+      }
+    }
+    CoverageTracker tracker = CoverageTracker.getInstance();
+    coverageEpoch = tracker.getCoverageEpoch();
+    currentCoverage = Math.max(currentCoverage, tracker.getCoverage());
+    currentCoveredEdges = Math.max(currentCoveredEdges, tracker.getNumberOfCoveredEdges());
+  }
+
+  /**
+   * Executes a string for the minimizer on the calling thread, and keeps the trace and the time of
+   * the execution.
+   *
+   * @param input the string
+   * @param parent the index of the covering string it was mutated from, -1 if it was generated
+   * @return the execution
+   */
+  private Discovery executeReference(String input, int parent) {
+    long executionStart = System.nanoTime();
+    ExecutionOutcome outcome = executeForMinimization(input);
+    return new Discovery(input, parent, outcome.trace(), System.nanoTime() - executionStart);
+  }
+
+  /**
+   * Executes a string for the minimizer, possibly on one of its threads. Strings that cover
+   * something new are kept as discoveries.
+   *
+   * @param input the string
+   * @return the outcome of the execution
+   */
+  private ExecutionOutcome executeForMinimization(String input) {
+    long executionStart = System.nanoTime();
+    ExecutionOutcome outcome = StringMinimizer.parseDishes(input);
+    long executionNanos = System.nanoTime() - executionStart;
+    executions.increment();
+    if (outcome.trace().hasNewCoverage()) {
+      synchronized (discoveries) {
+        discoveries.add(new Discovery(input, -1, outcome.trace(), executionNanos));
+      }
+    }
+    return outcome;
+  }
+
+  /**
+   * Starts a daemon thread that runs a pass of a distiller every {@value #DISTILL_INTERVAL}
+   * milliseconds, if inputs were submitted since the last pass.
+   *
+   * @param distiller the distiller to run
+   * @return the executor of the thread, which has to be shut down once the fuzzing stops
+   */
+  private static ScheduledExecutorService startDistillation(CorpusDistiller<?> distiller) {
+    ScheduledExecutorService executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "corpus-distiller");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.scheduleWithFixedDelay(
+        distiller::distill, DISTILL_INTERVAL, DISTILL_INTERVAL, TimeUnit.MILLISECONDS);
+    return executor;
   }
 
   /**
@@ -84,89 +480,694 @@ public class Fuzzer {
   public void fuzz(Class<?> target) {
     logger.fine("Started fuzzing loop");
     stoppingCondition.start();
-    CSVGenerator generator = new CSVGenerator();
-    List<FuzzingMethodResult> coveringMethods = new ArrayList<>();
-    Method[] declaredMethods = target.getDeclaredMethods();
-    declaredMethods =
-        Arrays.stream(declaredMethods)
+    long startTime = System.nanoTime();
+    executions.reset();
+    synchronized (this) {
+      timeouts.clear();
+      methodTimeouts.clear();
+    }
+    retiredMethods.clear();
+    crashes = new CrashTriage<>();
+    List<Covering> coveringMethods = new ArrayList<>();
+    TargetMethod[] declaredMethods =
+        Arrays.stream(target.getDeclaredMethods())
             .filter(m -> !m.isSynthetic() && !m.isBridge())
-            .toArray(Method[]::new);
+            .map(TargetMethod::of)
+            .toArray(TargetMethod[]::new);
 
-    while (!stoppingCondition.shouldStop()) {
-      Method targetMethod = pickRandomMethod(declaredMethods);
-      if (Modifier.isPrivate(targetMethod.getModifiers())) {
-        targetMethod.setAccessible(true);
-      }
-      FuzzingMethodResult methodResult = executeAndAnalyzeMethod(target, targetMethod, generator);
-      if (methodResult != null) {
-        coveringMethods.add(methodResult);
-        double newCoverage = CoverageTracker.getInstance().getCoverage();
-        stoppingCondition.notify(newCoverage);
-        String coverageLog = String.format("Found covering input, new coverage: %.4f", newCoverage);
-        logger.fine(coverageLog);
+    resultDistiller = new CorpusDistiller<>();
+    ScheduledExecutorService distillation = startDistillation(resultDistiller);
+    try {
+      if (isThreaded()) {
+        fuzzInParallel(target, declaredMethods, coveringMethods);
+      } else {
+        fuzzMethods(target, declaredMethods, new CSVGenerator(), rng, coveringMethods, null);
       }
+    } finally {
+      distillation.shutdownNow();
     }
+    long shrinkingDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shrinkingBudget);
+    List<FuzzingMethodResult> results =
+        shrink(distill(coveringMethods), "covering results", shrinkingDeadline);
+    results.addAll(reproduceCrashes(results, shrinkingDeadline));
     fuzzingClassResults =
-        new FuzzingClassResult(target.getPackageName(), target.getSimpleName(), coveringMethods);
-    String totalCoverage = String.format("Stopped, total coverage: %.4f", currentCoverage);
+        new FuzzingClassResult(target.getPackageName(), target.getSimpleName(), results);
+    double seconds = Math.max(System.nanoTime() - startTime, 1) / 1e9;
+    String totalCoverage =
+        String.format(
+            "Stopped, total coverage: %.4f, %d executions (%.0f/s)",
+            currentCoverage, executions.sum(), executions.sum() / seconds);
     logger.fine(totalCoverage);
   }
 
+  /**
+   * Runs the fuzzing loop of a single worker until the fuzzing stops.
+   *
+   * @param target the class to fuzz
+   * @param methods the methods of the class to pick from
+   * @param generator the CSV generator of the worker
+   * @param random the random number generator of the worker
+   * @param coveringMethods the results of all workers, guarded by this fuzzer
+   * @param worker the state of the worker that the watchdog checks, {@code null} if there is none
+   */
+  private void fuzzMethods(
+      Class<?> target,
+      TargetMethod[] methods,
+      CSVGenerator generator,
+      Random random,
+      List<Covering> coveringMethods,
+      Worker worker) {
+    if (worker != null) {
+      worker.thread = Thread.currentThread();
+    }
+    while (!shouldStop() && (worker == null || !worker.abandoned)) {
+      TargetMethod targetMethod = pickRandomMethod(methods, random);
+      if (targetMethod == null) {
+        // Every method timed out too often
+        break;
+      }
+      Covering covering = executeAndAnalyzeMethod(target, targetMethod, generator, worker);
+      executions.increment();
+      if (covering != null) {
+        FuzzingMethodResult methodResult = covering.result();
+        int index;
+        synchronized (this) {
+          index = coveringMethods.size();
+          coveringMethods.add(covering);
+          resultListener.accept(methodResult);
+          double newCoverage = CoverageTracker.getInstance().getCoverage();
+          stoppingCondition.notify(newCoverage);
+          String coverageLog =
+              String.format("Found covering input, new coverage: %.4f", newCoverage);
+          logger.fine(coverageLog);
+        }
+        resultDistiller.submit(
+            index, methodResult.trace(), sizeOf(methodResult), covering.executionNanos());
+      }
+    }
+  }
+
+  /**
+   * Measures the size of a method result as the length of its calling object and parameters.
+   *
+   * @param result the method result
+   * @return the size of the result
+   */
+  private static long sizeOf(FuzzingMethodResult result) {
+    return sizeOf(result.methodParameters(), result.constructor());
+  }
+
+  private static long sizeOf(List<String> parameters, String constructor) {
+    long size = 0;
+    for (String parameter : parameters) {
+      size += parameter == null ? 0 : parameter.length();
+    }
+    return size + (constructor == null ? 0 : constructor.length());
+  }
+
+  /**
+   * Runs a last distillation pass over the covering method results, which marks the results that
+   * are favored, as they cover everything the others cover. If demoted results are to be dropped,
+   * only the favored results are kept, and those that threw an exception, as they are findings in
+   * their own right, and those without a trace, which cannot be rated.
+   *
+   * @param coveringMethods the covering method results of all workers
+   * @return the distilled results in the order they were found
+   */
+  private List<Covering> distill(List<Covering> coveringMethods) {
+    resultDistiller.distill();
+    List<Covering> distilled = new ArrayList<>();
+    int demoted = 0;
+    for (int i = 0; i < coveringMethods.size(); i++) {
+      Covering covering = coveringMethods.get(i);
+      boolean isDemoted = !covering.result().throwException() && resultDistiller.isDemoted(i);
+      demoted += isDemoted ? 1 : 0;
+      if (!isDemoted || !dropDemotedResults) {
+        distilled.add(covering);
+      }
+    }
+    if (demoted > 0) {
+      logger.fine(
+          String.format(
+              "Demoted %d of %d covering results%s",
+              demoted, coveringMethods.size(), dropDemotedResults ? " and dropped them" : ""));
+    }
+    return distilled;
+  }
+
+  /**
+   * Shrinks the calls of covering method results, so that they are faster to replay and the
+   * generated tests are easier to read. A call keeps the coverage of its execution, or the type and
+   * the throw site of its exception if it threw. Candidate calls run in batches on the workers, if
+   * the target is executed by worker threads, and candidates that exceed the execution timeout are
+   * given up. Results whose call was not recorded are kept as they are, and so are results that
+   * only reached a new hit count bucket, as the coverage signature does not tell hit counts apart.
+   * Once the deadline passed, the remaining results are kept as they are as well.
+   *
+   * @param coverings the covering method results
+   * @param kind what the results are, for the log
+   * @param deadline the value of {@link System#nanoTime()} at which shrinking stops
+   * @return the shrunk results in the same order
+   */
+  private List<FuzzingMethodResult> shrink(List<Covering> coverings, String kind, long deadline) {
+    List<FuzzingMethodResult> results = new ArrayList<>();
+    if (coverings.isEmpty() || shrinkingBudget == 0) {
+      coverings.forEach(covering -> results.add(covering.result()));
+      return results;
+    }
+    // Hits of the calling thread are not part of the first candidate
+    CoverageTracker.endExecution();
+    ExecutorService executor = null;
+    if (isThreaded()) {
+      // Candidates that hang keep their thread, so later batches need new ones
+      executor =
+          Executors.newCachedThreadPool(
+              runnable -> {
+                Thread thread = new Thread(runnable, "result-shrinker");
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    int shrunk = 0;
+    long shrinkingExecutions = 0;
+    try {
+      for (Covering covering : coverings) {
+        FuzzingMethodResult result = covering.result();
+        ExecutionTrace trace = result.trace();
+        boolean onlyNewHitCounts =
+            trace != null && trace.hasNewHitCounts() && !trace.hasNewCoverage();
+        if (covering.call() != null && !onlyNewHitCounts && System.nanoTime() - deadline < 0) {
+          ExpressionShrinker shrinker =
+              new ExpressionShrinker(
+                  call -> executeCall(covering.method(), call),
+                  executor,
+                  workers,
+                  executionTimeout);
+          shrinker.setDeadline(deadline);
+          ExpressionShrinker.Call call =
+              shrinker.shrink(covering.call(), covering.method().parameterTypes());
+          shrinkingExecutions += shrinker.getNumberOfExecutions();
+          if (!call.equals(covering.call())) {
+            result = replay(covering, call);
+            shrunk += result != covering.result() ? 1 : 0;
+          }
+        }
+        results.add(result);
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+    executions.add(shrinkingExecutions);
+    logger.fine(
+        String.format(
+            "Shrank %d of %d %s in %d executions",
+            shrunk, coverings.size(), kind, shrinkingExecutions));
+    return results;
+  }
+
+  /**
+   * Creates a method result for every bucket of crashes that none of the covering results falls
+   * into, from the smallest input that crashed this way. The inputs are shrunk like the covering
+   * results, but a shrunk input that crashes in another bucket, i.e., with other frames below the
+   * throw site, is replaced by its original. The listener of the results is notified of the new
+   * results, as they are only known once the fuzzing stopped.
+   *
+   * @param results the shrunk covering results
+   * @param deadline the value of {@link System#nanoTime()} at which shrinking stops
+   * @return the results of the crashes, in the order their buckets were opened
+   */
+  private List<FuzzingMethodResult> reproduceCrashes(
+      List<FuzzingMethodResult> results, long deadline) {
+    Map<Long, FuzzingMethodResult> represented = new HashMap<>();
+    for (FuzzingMethodResult result : results) {
+      if (result.expectedException() != null) {
+        represented.putIfAbsent(crashes.signature(result.expectedException()), result);
+      }
+    }
+    List<CrashTriage.Bucket<Covering>> buckets = crashes.buckets();
+    List<Covering> reproducers = new ArrayList<>();
+    for (CrashTriage.Bucket<Covering> bucket : buckets) {
+      if (!represented.containsKey(bucket.id())) {
+        reproducers.add(bucket.reproducer());
+      }
+    }
+    List<FuzzingMethodResult> shrunk = shrink(reproducers, "crash reproducers", deadline);
+    List<FuzzingMethodResult> added = new ArrayList<>();
+    List<CrashTriage.Bucket<FuzzingMethodResult>> triaged = new ArrayList<>();
+    long hits = 0;
+    for (CrashTriage.Bucket<Covering> bucket : buckets) {
+      FuzzingMethodResult reproducer = represented.get(bucket.id());
+      if (reproducer == null) {
+        reproducer = shrunk.get(added.size());
+        if (reproducer.expectedException() == null
+            || crashes.signature(reproducer.expectedException()) != bucket.id()) {
+          reproducer = bucket.reproducer().result();
+        }
+        added.add(reproducer);
+      }
+      triaged.add(
+          new CrashTriage.Bucket<>(
+              bucket.id(), bucket.exceptionType(), bucket.throwSite(), reproducer, bucket.hits()));
+      hits += bucket.hits();
+    }
+    synchronized (this) {
+      crashBuckets = List.copyOf(triaged);
+      added.forEach(resultListener);
+    }
+    if (!buckets.isEmpty()) {
+      logger.fine(
+          String.format(
+              "Triaged %d crashes into %d buckets, %d of them without a covering result",
+              hits, buckets.size(), added.size()));
+    }
+    return added;
+  }
+
+  /**
+   * Executes a call of a method on the calling thread.
+   *
+   * @param method the method
+   * @param call the expressions of the object the method is called on and of its arguments
+   * @return the result of the execution, {@code null} if the expressions cannot be resolved or do
+   *     not fit the method
+   */
+  private static CallResult invokeCall(TargetMethod method, ExpressionShrinker.Call call) {
+    Object callingObject;
+    Object[] parameters = new Object[call.arguments().size()];
+    try {
+      callingObject = call.receiver() == null ? null : call.receiver().resolve();
+      for (int i = 0; i < parameters.length; i++) {
+        parameters[i] = call.arguments().get(i).resolve();
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      CoverageTracker.endExecution();
+      return null;
+    }
+    Object returned = null;
+    Throwable thrown = null;
+    try {
+      returned = method.invoker().invoke(callingObject, parameters);
+    } catch (InvalidInvocationException e) {
+      CoverageTracker.endExecution();
+      return null;
+    } catch (Throwable e) {
+      thrown = e;
+    }
+    return new CallResult(returned, thrown, CoverageTracker.endExecution());
+  }
+
+  private static ExecutionOutcome executeCall(TargetMethod method, ExpressionShrinker.Call call) {
+    CallResult result = invokeCall(method, call);
+    return result == null ? null : ExecutionOutcome.of(result.trace(), result.thrown());
+  }
+
+  /**
+   * Executes a shrunk call once more to build its method result, with the value it returns or the
+   * exception it throws.
+   *
+   * @param covering the covering method result the call was shrunk from
+   * @param call the shrunk call
+   * @return the result of the shrunk call, or the original result if the call cannot be replayed
+   */
+  private static FuzzingMethodResult replay(Covering covering, ExpressionShrinker.Call call) {
+    CallResult replayed = invokeCall(covering.method(), call);
+    FuzzingMethodResult original = covering.result();
+    if (replayed == null
+        || (replayed.thrown() != null && !(replayed.thrown() instanceof Exception))) {
+      return original;
+    }
+    return new FuzzingMethodResult(
+        original.methodName(),
+        call.arguments().stream().map(GenericExpression::toString).toList(),
+        original.parameterTypes(),
+        call.receiver() == null ? original.constructor() : call.receiver().toString(),
+        replayed.returned(),
+        original.isStatic(),
+        original.isPrivate(),
+        (Exception) replayed.thrown(),
+        replayed.thrown() != null,
+        original.returnType(),
+        replayed.trace());
+  }
+
+  /**
+   * Looks up the expressions that created the object a method was called on and its arguments.
+   *
+   * @param generator the generator that created the objects
+   * @param method the method that was called
+   * @param callingObject the object the method was called on, {@code null} for static methods
+   * @param parameters the arguments
+   * @return the call, {@code null} if an expression is unknown, e.g., because the call changed an
+   *     object, so that it cannot be looked up anymore
+   */
+  private static ExpressionShrinker.Call recordCall(
+      CSVGenerator generator, Method method, Object callingObject, Object[] parameters) {
+    GenericExpression receiver = null;
+    if (!Modifier.isStatic(method.getModifiers())) {
+      receiver = expressionOf(generator, callingObject);
+      if (receiver == null) {
+        return null;
+      }
+    }
+    List<GenericExpression> arguments = new ArrayList<>();
+    for (Object parameter : parameters) {
+      GenericExpression argument = expressionOf(generator, parameter);
+      if (argument == null) {
+        return null;
+      }
+      arguments.add(argument);
+    }
+    return new ExpressionShrinker.Call(receiver, arguments);
+  }
+
+  private static GenericExpression expressionOf(CSVGenerator generator, Object object) {
+    // Objects that could not be created are null, whichever expression failed
+    return object == null ? new LeafExpression(null) : generator.getExpression(object);
+  }
+
+  /**
+   * Checks whether the fuzzing loop should stop. Worker threads only read a flag, which the thread
+   * that started them sets once the stopping condition is met.
+   *
+   * @return true if the fuzzing loop should stop
+   */
+  private boolean shouldStop() {
+    return isThreaded() ? stopped : stoppingCondition.shouldStop();
+  }
+
+  /**
+   * Checks whether the target is executed by worker threads rather than the calling thread, which
+   * is the case for several workers and for a single worker whose executions are watched.
+   *
+   * @return true if the target is executed by worker threads
+   */
+  private boolean isThreaded() {
+    return workers > 1 || executionTimeout > 0;
+  }
+
+  /**
+   * Fuzzes a class with worker threads, and waits until the stopping condition is met. Workers
+   * that are still executing the target then finish their execution before they stop. If an
+   * execution timeout is set, workers whose execution hangs are replaced in the meantime.
+   *
+   * @param target the class to fuzz
+   * @param methods the methods of the class to pick from
+   * @param coveringMethods the list that collects the results of all workers
+   */
+  private void fuzzInParallel(
+      Class<?> target, TargetMethod[] methods, List<Covering> coveringMethods) {
+    stopped = false;
+    // Hits of the calling thread, e.g., of static initializers, are not folded by any worker
+    CoverageTracker.endExecution();
+    AtomicInteger workerIds = new AtomicInteger();
+    // Hanging workers keep their thread, so replacements need new ones
+    ExecutorService executor =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              Thread thread = new Thread(runnable, "fuzzer-worker-" + workerIds.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    List<Worker> active = new ArrayList<>();
+    for (int i = 0; i < workers; i++) {
+      active.add(startWorker(executor, target, methods, coveringMethods));
+    }
+    try {
+      while (!stopped) {
+        synchronized (this) {
+          stopped = stoppingCondition.shouldStop();
+        }
+        if (executionTimeout > 0) {
+          for (ListIterator<Worker> iterator = active.listIterator(); iterator.hasNext(); ) {
+            if (abandonIfHanging(iterator.next())) {
+              iterator.set(startWorker(executor, target, methods, coveringMethods));
+            }
+          }
+        }
+        stopped |= active.stream().anyMatch(worker -> worker.future.isDone());
+        if (!stopped) {
+          Thread.sleep(STOP_POLL_INTERVAL);
+        }
+      }
+      executor.shutdown();
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STOP_POLL_INTERVAL * 100);
+      for (Worker worker : active) {
+        worker.future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (TimeoutException e) {
+      logger.warning("Fuzzing workers did not stop in time");
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A fuzzing worker failed", e.getCause());
+    } finally {
+      stopped = true;
+      executor.shutdownNow();
+    }
+  }
+
+  private Worker startWorker(
+      ExecutorService executor,
+      Class<?> target,
+      TargetMethod[] methods,
+      List<Covering> coveringMethods) {
+    Worker worker = new Worker();
+    Random random = new Random(rng.nextLong());
+    CSVGenerator generator = new CSVGenerator();
+    worker.future =
+        executor.submit(
+            () -> fuzzMethods(target, methods, generator, random, coveringMethods, worker));
+    return worker;
+  }
+
+  /**
+   * Checks whether the current execution of a worker exceeds the execution timeout. If so, the
+   * call is recorded as a timeout, and the worker is abandoned and interrupted. Once the target
+   * returns, if ever, the worker drops the result of the execution and stops.
+   *
+   * @param worker the worker to check
+   * @return true if the worker was abandoned and needs to be replaced
+   */
+  private boolean abandonIfHanging(Worker worker) {
+    Execution execution = worker.execution.get();
+    if (execution == null) {
+      return false;
+    }
+    long elapsed = System.nanoTime() - execution.startTime();
+    if (elapsed < TimeUnit.MILLISECONDS.toNanos(executionTimeout)
+        || !worker.execution.compareAndSet(execution, null)) {
+      // Still within the timeout, or the target returned in the meantime
+      return false;
+    }
+    worker.abandoned = true;
+    Thread thread = worker.thread;
+    if (thread != null) {
+      thread.interrupt();
+    }
+    recordTimeout(execution, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    return true;
+  }
+
+  /**
+   * Records the call of an execution that timed out. The generator of the hanging worker is not
+   * used by any other thread, as the worker drops an execution the watchdog claimed and stops.
+   *
+   * @param execution the execution that timed out
+   * @param elapsedMillis the time the execution ran so far
+   */
+  private void recordTimeout(Execution execution, long elapsedMillis) {
+    CSVGenerator generator = execution.generator();
+    Method method = execution.method();
+    List<String> parameters = new ArrayList<>();
+    for (Object parameter : execution.parameters()) {
+      parameters.add(generator.getExpressionString(parameter));
+    }
+    String receiver =
+        Modifier.isStatic(method.getModifiers())
+            ? execution.target().getName()
+            : generator.getExpressionString(execution.callingObject());
+    String input = receiver + "." + method.getName() + "(" + String.join(", ", parameters) + ")";
+    TimeoutFinding finding = new TimeoutFinding(method.getName(), input, elapsedMillis);
+    boolean retired;
+    synchronized (this) {
+      timeouts.add(finding);
+      timeoutListener.accept(finding);
+      retired = methodTimeouts.merge(method, 1, Integer::sum) == MAX_TIMEOUTS_PER_METHOD;
+    }
+    logger.warning(
+        () -> String.format("Execution timed out after %d ms: %s", elapsedMillis, input));
+    if (retired) {
+      retiredMethods.add(method);
+      logger.warning(
+          () ->
+              String.format(
+                  "Stopped fuzzing %s after %d timeouts",
+                  method.getName(), MAX_TIMEOUTS_PER_METHOD));
+    }
+  }
+
   /**
    * Executes the specified method on the target class and analyzes the result to calculate code
-   * coverage. If an exception occurs during method execution, it is logged and handled.
+   * coverage. If an exception occurs during method execution, it is recorded as the expected
+   * exception of the result. Exceptions of executions that do not find new coverage are sorted
+   * into the crash buckets instead.
    *
    * @param target the target class
    * @param targetMethod the method to execute and analyze
    * @param generator the CSV generator used to generate inputs for the method
-   * @return a {@link FuzzingMethodResult} containing the results of the execution and analysis, or
-   *     null if the execution did not result in new coverage
+   * @param worker the state of the worker that the watchdog checks, {@code null} if there is none
+   * @return the {@link FuzzingMethodResult} containing the results of the execution and analysis,
+   *     with the time the execution took, or null if the execution did not result in new coverage
    * @author Michael Ertl, Jakob Edmaier
    */
-  private FuzzingMethodResult executeAndAnalyzeMethod(
-      Class<?> target, Method targetMethod, CSVGenerator generator) {
+  private Covering executeAndAnalyzeMethod(
+      Class<?> target, TargetMethod method, CSVGenerator generator, Worker worker) {
+    Method targetMethod = method.method();
     List<String> methodParams = new ArrayList<>();
     Object callingObject = null;
     if (!Modifier.isStatic(targetMethod.getModifiers())) {
       // Instantiate the class only if the method is not static
       callingObject = generator.instantiateClass(target);
     }
-    Object[] inputParams = initParams(targetMethod, generator);
+    Object[] inputParams = initParams(method.parameterTypes(), generator);
     Object result = null;
     Throwable exception = null;
-    boolean exceptionWasThrown = false;
 
+    long startTime = System.nanoTime();
+    Execution execution = null;
+    if (worker != null) {
+      execution =
+          new Execution(target, targetMethod, callingObject, inputParams, generator, startTime);
+      worker.execution.set(execution);
+    }
+    boolean claimed = true;
     try {
-      result = targetMethod.invoke(callingObject, inputParams);
-    } catch (IllegalAccessException e) {
-      logger.log(Level.WARNING, "Zugriff auf die Methode nicht möglich", e);
+      result = method.invoker().invoke(callingObject, inputParams);
+    } catch (Throwable e) {
+      exception = e;
+    } finally {
+      if (worker != null) {
+        claimed = worker.execution.compareAndSet(execution, null);
+      }
+    }
+    long executionNanos = System.nanoTime() - startTime;
+    ExecutionTrace trace = CoverageTracker.endExecution();
+    if (!claimed) {
+      // The watchdog claimed the execution as a timeout, and a replacement of the worker took over
+      worker.abandoned = true;
+      return null;
+    }
+    if (exception instanceof InvalidInvocationException) {
+      // The generated arguments do not fit the method, so the target was never called
+      logger.fine(exception.getMessage());
       return null;
-    } catch (InvocationTargetException e) {
-      exceptionWasThrown = true;
-      exception = e.getTargetException();
     }
 
     for (Object param : inputParams) {
       methodParams.add(generator.getExpressionString(param));
     }
+    String constructor = generator.getExpressionString(callingObject);
+    Object returned = result;
+    Throwable thrown = exception;
+    Object receiver = callingObject;
+    Supplier<Covering> covering =
+        () ->
+            new Covering(
+                new FuzzingMethodResult(
+                    targetMethod.getName(),
+                    methodParams,
+                    method.parameterTypes().clone(),
+                    constructor,
+                    returned,
+                    Modifier.isStatic(targetMethod.getModifiers()),
+                    Modifier.isPrivate(targetMethod.getModifiers()),
+                    (Exception) thrown,
+                    thrown != null,
+                    targetMethod.getReturnType(),
+                    trace),
+                executionNanos,
+                method,
+                recordCall(generator, targetMethod, receiver, inputParams));
 
-    double newCoverage = CoverageTracker.getInstance().getCoverage();
-    if (newCoverage > currentCoverage) {
+    boolean newCoverage = hasFoundNewCoverage(trace);
+    if (exception != null && !(exception instanceof Exception)) {
+      // Results and tests only expect exceptions, errors such as a StackOverflowError are logged
+      logger.fine(
+          String.format(
+              "%s(%s) threw %s",
+              targetMethod.getName(), String.join(", ", methodParams), exception));
+      return null;
+    }
+    if (newCoverage) {
+      return covering.get();
+    }
+    if (exception != null) {
+      // Covering results are triaged once they are shrunk, others only keep the smallest input
+      crashes.record(exception, sizeOf(methodParams, constructor), covering);
+    }
+    return null;
+  }
+
+  /**
+   * Checks whether the last execution covered new lines or, if the subject is instrumented in edge
+   * coverage mode, took new edges. The current coverage is updated accordingly. The coverage epoch
+   * also catches new lines in newly loaded classes, which do not necessarily raise the ratio. An
+   * execution that hits a line or an edge a number of times that falls into a new hit count bucket
+   * counts as well. If the coverage is shared, new lines and edges only count if they are new to
+   * all fuzzers, while new hit count buckets of this fuzzer count anyway.
+   *
+   * @param trace the trace of the last execution
+   * @return {@code true} if the last execution found new coverage
+   */
+  private boolean hasFoundNewCoverage(ExecutionTrace trace) {
+    if (isThreaded()) {
+      return hasFoundNewCoverageInParallel(trace);
+    }
+    CoverageTracker tracker = CoverageTracker.getInstance();
+    boolean newEpoch = tracker.hasNewCoverageSince(coverageEpoch);
+    coverageEpoch = tracker.getCoverageEpoch();
+    double newCoverage = tracker.getCoverage();
+    int newCoveredEdges = tracker.getNumberOfCoveredEdges();
+    boolean newLines = newCoverage > currentCoverage;
+    boolean newEdges = newCoveredEdges > currentCoveredEdges;
+    if (newLines) {
       currentCoverage = newCoverage;
-      return new FuzzingMethodResult(
-          targetMethod.getName(),
-          methodParams,
-          targetMethod.getParameterTypes(),
-          generator.getExpressionString(callingObject),
-          result,
-          Modifier.isStatic(targetMethod.getModifiers()),
-          Modifier.isPrivate(targetMethod.getModifiers()),
-          (Exception) exception,
-          exceptionWasThrown,
-          targetMethod.getReturnType());
     }
+    if (newEdges) {
+      currentCoveredEdges = newCoveredEdges;
+    }
+    if (sharedCoverage != null) {
+      // Publish first, so that the other fuzzers learn of the coverage in any case
+      return sharedCoverage.publish(trace) || trace.hasNewHitCounts();
+    }
+    return newEpoch || newLines || newEdges || trace.hasNewHitCounts();
+  }
 
-    return null;
+  /**
+   * Checks whether an execution of one of several workers found new coverage. The running totals
+   * cannot tell which worker raised them, but the trace of an execution only reports new coverage
+   * and new hit count buckets to the worker that folded them first. If the coverage is shared,
+   * new lines and edges only count if they are new to all fuzzers, like in {@link
+   * #hasFoundNewCoverage}.
+   *
+   * @param trace the trace of the last execution of the calling worker
+   * @return {@code true} if the last execution found new coverage
+   */
+  private boolean hasFoundNewCoverageInParallel(ExecutionTrace trace) {
+    boolean newCoverage =
+        sharedCoverage != null
+            ? sharedCoverage.publish(trace) || trace.hasNewHitCounts()
+            : trace.hasNewCoverage() || trace.hasNewHitCounts();
+    if (newCoverage) {
+      CoverageTracker tracker = CoverageTracker.getInstance();
+      synchronized (this) {
+        currentCoverage = Math.max(currentCoverage, tracker.getCoverage());
+        currentCoveredEdges = Math.max(currentCoveredEdges, tracker.getNumberOfCoveredEdges());
+      }
+    }
+    return newCoverage;
   }
 
   /**
@@ -178,6 +1179,47 @@ public class Fuzzer {
     return currentCoverage;
   }
 
+  /**
+   * Returns the time from the start of the last call to {@link #fuzz()} until the current line
+   * coverage was reached, i.e., until the last covering string that covered new lines was found.
+   *
+   * @return the time in milliseconds
+   */
+  public long getMillisToCurrentCoverage() {
+    return millisToCurrentCoverage;
+  }
+
+  /**
+   * Returns the number of executions of the last call to {@link #fuzz()} or {@link #fuzz(Class)},
+   * summed over all workers.
+   *
+   * @return the number of executions
+   */
+  public long getNumberOfExecutions() {
+    return executions.sum();
+  }
+
+  /**
+   * Returns the executions of the last call to {@link #fuzz(Class)} that timed out.
+   *
+   * @return the timeouts in the order they were detected
+   */
+  public synchronized List<TimeoutFinding> getTimeouts() {
+    return List.copyOf(timeouts);
+  }
+
+  /**
+   * Returns the distinct crashes of the last call to {@link #fuzz(Class)}, i.e., the buckets of the
+   * exceptions the target threw, each with the method result that reproduces it and the number of
+   * executions that crashed this way. The hits only count executions that did not find new
+   * coverage, as covering results are kept anyway.
+   *
+   * @return the buckets in the order they were opened
+   */
+  public synchronized List<CrashTriage.Bucket<FuzzingMethodResult>> getCrashBuckets() {
+    return crashBuckets;
+  }
+
   /**
    * Returns the results of the fuzzing process for each class that was fuzzed.
    *
@@ -194,61 +1236,77 @@ public class Fuzzer {
    * @return an immutable set of strings that contributed to increased coverage
    */
   public Set<String> getCoveringStrings() {
-    return ImmutableSet.copyOf(coveringStrings);
+    return ImmutableSet.copyOf(coveringStrings.entries());
+  }
+
+  /**
+   * Returns the traces of the strings that increased code coverage, i.e., which lines and edges
+   * each of them covered when it was found.
+   *
+   * @return an unmodifiable map from covering string to its trace
+   */
+  public Map<String, ExecutionTrace> getCoveringTraces() {
+    return Collections.unmodifiableMap(coveringTraces);
   }
 
   /**
    * Chooses a candidate string for fuzzing, either by mutating an existing string that increased
-   * coverage or by generating a new random string.
+   * coverage or by generating a new random string. Covering strings are picked according to the
+   * power schedule. The index of the string that was mutated is kept as the parent of the
+   * candidate.
    *
    * @return the chosen candidate string for fuzzing
    * @author Jakob Edmaier
    */
   private String chooseCandidate() {
+    candidateParent = -1;
     if (coveringStrings.isEmpty()) {
       return csvGenerator.provideRandomString();
     } else {
       // Either mutate existing input or create new one
-      double threshold = 1.0 / Math.pow(2, coveringStrings.size());
-      if (rng.nextDouble() < threshold) {
+      double threshold =
+          Math.max(1.0 / Math.pow(2, coveringStrings.size()), MIN_GENERATION_PROBABILITY);
+      if (rng.nextDouble() < threshold || !(coveringStrings.getTotalWeight() > 0)) {
         return csvGenerator.provideRandomString();
       } else {
-        int choice = rng.nextInt(coveringStrings.size());
-        Iterator<String> iterator = coveringStrings.iterator();
-        for (int i = 0; i < choice; i++) {
-          iterator.next();
-        }
-        return mutation.mutate(iterator.next());
+        candidateParent = coveringStrings.sampleIndex(rng);
+        return mutation.mutate(coveringStrings.get(candidateParent));
       }
     }
   }
 
   /**
-   * Selects a random method from the array of methods.
+   * Selects a random method from the array of methods. Methods that timed out too often are
+   * skipped.
    *
-   * @param methods an array of {@link Method} objects
-   * @return a randomly selected {@link Method} object
+   * @param methods an array of resolved methods
+   * @param random the random number generator of the calling worker
+   * @return a randomly selected method, {@code null} if every method timed out too often
    * @author Michael Ertl
    */
-  private Method pickRandomMethod(Method[] methods) {
-    return methods[rng.nextInt(methods.length)];
+  private TargetMethod pickRandomMethod(TargetMethod[] methods, Random random) {
+    if (retiredMethods.isEmpty()) {
+      return methods[random.nextInt(methods.length)];
+    }
+    List<TargetMethod> active =
+        Arrays.stream(methods).filter(m -> !retiredMethods.contains(m.method())).toList();
+    return active.isEmpty() ? null : active.get(random.nextInt(active.size()));
   }
 
   /**
    * Initializes the parameters for the target method by instantiating objects of the required
    * types.
    *
-   * @param target the target method
+   * @param parameterTypes the parameter types of the target method
    * @param generator the CSV generator used to generate parameter instances
    * @return an array of initialized parameters for the method
    * @author Michael Ertl
    */
-  private Object[] initParams(Method target, CSVGenerator generator) {
-    Parameter[] p = target.getParameters();
-    List<Object> actual = new ArrayList<>();
-    for (Parameter parameter : p) {
-      actual.add(generator.instantiateClass(parameter.getType()));
+  private Object[] initParams(Class<?>[] parameterTypes, CSVGenerator generator) {
+    Object[] actual = new Object[parameterTypes.length];
+    for (int i = 0; i < parameterTypes.length; i++) {
+      actual[i] = generator.instantiateClass(parameterTypes[i]);
     }
-    return actual.toArray();
+    return actual;
   }
 }
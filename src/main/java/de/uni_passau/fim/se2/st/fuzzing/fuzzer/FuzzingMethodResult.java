@@ -1,5 +1,6 @@
 package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
 
+import de.uni_passau.fim.se2.st.fuzzing.coverage.ExecutionTrace;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
@@ -7,7 +8,8 @@ import java.util.Objects;
 /**
  * The FuzzingMethodResult record holds the results of the fuzzing process for a single method. It
  * stores information about the method that is to be used for testing, including the method itself,
- * its parameters, the expected result, and other relevant details.
+ * its parameters, the expected result, and other relevant details. The trace of the execution that
+ * found the result is kept along, but is not part of equality.
  *
  * @author Leon Föckersperger
  */
@@ -21,7 +23,35 @@ public record FuzzingMethodResult(
     boolean isPrivate,
     Exception expectedException,
     boolean throwException,
-    Class<?> returnType) {
+    Class<?> returnType,
+    ExecutionTrace trace) {
+
+  /** Creates a result without a trace, e.g., for an execution that was not traced. */
+  public FuzzingMethodResult(
+      String methodName,
+      List<String> methodParameters,
+      Class<?>[] parameterTypes,
+      String constructor,
+      Object expectedResult,
+      boolean isStatic,
+      boolean isPrivate,
+      Exception expectedException,
+      boolean throwException,
+      Class<?> returnType) {
+    this(
+        methodName,
+        methodParameters,
+        parameterTypes,
+        constructor,
+        expectedResult,
+        isStatic,
+        isPrivate,
+        expectedException,
+        throwException,
+        returnType,
+        ExecutionTrace.EMPTY);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
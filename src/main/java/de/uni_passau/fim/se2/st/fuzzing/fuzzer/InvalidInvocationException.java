@@ -0,0 +1,23 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import java.io.Serial;
+
+/**
+ * Thrown by a {@link MethodInvoker} if the receiver or the arguments do not fit the method, so that
+ * the method was not called. Unlike the exceptions of the method, it is an error of the fuzzer
+ * rather than a finding.
+ */
+public class InvalidInvocationException extends IllegalArgumentException {
+
+  @Serial private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates the exception.
+   *
+   * @param message the method and what does not fit
+   * @param cause the exception {@link java.lang.reflect.Method#invoke} rejected the call with
+   */
+  public InvalidInvocationException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,23 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+/**
+ * Invokes a target method of the fuzzer. Unlike {@link java.lang.reflect.Method#invoke}, an invoker
+ * throws the exceptions of the target method as they are, without wrapping them. Invokers are
+ * created once per method by {@link MethodInvokers#create}.
+ */
+@FunctionalInterface
+public interface MethodInvoker {
+
+  /**
+   * Invokes the method.
+   *
+   * @param receiver The object the method is invoked on, ignored for static methods
+   * @param arguments The arguments of the method, with primitives boxed in a wrapper that widens
+   *     to the parameter type
+   * @return The result of the method, boxed for primitives and {@code null} for {@code void}
+   * @throws InvalidInvocationException If the receiver or the arguments do not fit the method, in
+   *     which case the method is not called
+   * @throws Throwable Anything the method throws
+   */
+  Object invoke(Object receiver, Object[] arguments) throws Throwable;
+}
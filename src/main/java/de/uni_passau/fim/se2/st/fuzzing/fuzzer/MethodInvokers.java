@@ -0,0 +1,302 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ARRAYLENGTH;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.IF_ICMPNE;
+import static org.objectweb.asm.Opcodes.INSTANCEOF;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V17;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.logging.Logger;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/**
+ * Creates the {@link MethodInvoker}s of target methods.
+ *
+ * <p>{@link Method#invoke} checks the access and the arguments, and wraps exceptions on every call.
+ * This costs as much as a cheap target method itself. A cached {@link
+ * java.lang.invoke.MethodHandle} does not help, as the fuzzer calls many methods from the same call
+ * site, so the handle is no constant the JIT compiler could inline. Instead, an invoker class with
+ * a single direct call of the method is generated for every method, which casts and unboxes the
+ * arguments to the exact parameter types. It is defined as a hidden nestmate of the declaring
+ * class, so that it may call private methods, and does not show up in stack traces.
+ *
+ * <p>The generated invoker checks the receiver and the arguments with {@code instanceof} before
+ * the call, so that a cast or an unboxing never fails within the call and is mistaken for an
+ * exception of the target. Calls that do not fit exactly are passed on to a reflective invoker that
+ * is created once along with the generated one, and widens primitives as {@link Method#invoke}
+ * does. Calls that do not fit at all throw an
+ * {@link InvalidInvocationException}, both by reflection and by a generated invoker.
+ *
+ * <p>If no invoker can be generated, e.g., because the declaring class is in a module that is not
+ * open to the fuzzer or a parameter type is not accessible, the invoker falls back to reflection.
+ */
+public final class MethodInvokers {
+
+  private static final Logger logger = Logger.getLogger(MethodInvokers.class.getName());
+
+  private static final String INVOKER = Type.getInternalName(MethodInvoker.class);
+  private static final String INVOKE_DESCRIPTOR =
+      Type.getMethodDescriptor(
+          Type.getType(Object.class), Type.getType(Object.class), Type.getType(Object[].class));
+  private static final String INIT_DESCRIPTOR =
+      Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(MethodInvoker.class));
+  private static final String FALLBACK = "fallback";
+
+  private MethodInvokers() {}
+
+  /**
+   * Creates the invoker of a method.
+   *
+   * @param method The method to invoke
+   * @return The invoker
+   * @throws java.lang.reflect.InaccessibleObjectException If the method is not accessible, not even
+   *     by reflection
+   */
+  public static MethodInvoker create(Method method) {
+    try {
+      return generate(method);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      logger.fine(() -> String.format("Invoking %s by reflection: %s", method, e));
+      return reflective(method);
+    }
+  }
+
+  /**
+   * Creates an invoker that invokes a method by reflection and unwraps the exceptions it throws.
+   *
+   * @param method The method to invoke
+   * @return The invoker
+   */
+  static MethodInvoker reflective(Method method) {
+    if (!Modifier.isPublic(method.getModifiers())
+        || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+      method.setAccessible(true);
+    }
+    return (receiver, arguments) -> {
+      try {
+        return method.invoke(receiver, arguments);
+      } catch (InvocationTargetException e) {
+        throw e.getTargetException();
+      } catch (IllegalArgumentException | NullPointerException e) {
+        // The exceptions of the method itself are wrapped, so these reject the call
+        throw new InvalidInvocationException("Cannot invoke " + method + ": " + e.getMessage(), e);
+      }
+    };
+  }
+
+  /**
+   * Generates and instantiates the invoker class of a method.
+   *
+   * @param method The method to invoke
+   * @return The generated invoker
+   * @throws ReflectiveOperationException If the declaring class or a parameter type is not
+   *     accessible
+   */
+  static MethodInvoker generate(Method method) throws ReflectiveOperationException {
+    Class<?> owner = method.getDeclaringClass();
+    Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+    for (Class<?> parameterType : method.getParameterTypes()) {
+      while (parameterType.isArray()) {
+        parameterType = parameterType.getComponentType();
+      }
+      lookup.accessClass(parameterType);
+    }
+    Class<?> invokerClass =
+        lookup
+            .defineHiddenClass(generateClass(method), true, Lookup.ClassOption.NESTMATE)
+            .lookupClass();
+    return (MethodInvoker)
+        invokerClass.getDeclaredConstructor(MethodInvoker.class).newInstance(reflective(method));
+  }
+
+  private static byte[] generateClass(Method method) {
+    Class<?> owner = method.getDeclaringClass();
+    String ownerName = Type.getInternalName(owner);
+    String packagePrefix = ownerName.substring(0, ownerName.lastIndexOf('/') + 1);
+    String invokerName = packagePrefix + "FuzzerInvoker";
+    // The branches of the checks only join with an empty stack, so no common super class is needed
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    cw.visit(
+        V17,
+        ACC_PUBLIC | ACC_FINAL | ACC_SYNTHETIC,
+        invokerName,
+        null,
+        "java/lang/Object",
+        new String[] {INVOKER});
+
+    String fallbackDescriptor = Type.getDescriptor(MethodInvoker.class);
+    cw.visitField(ACC_PRIVATE | ACC_FINAL, FALLBACK, fallbackDescriptor, null, null).visitEnd();
+
+    MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", INIT_DESCRIPTOR, null, null);
+    init.visitCode();
+    init.visitVarInsn(ALOAD, 0);
+    init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    init.visitVarInsn(ALOAD, 0);
+    init.visitVarInsn(ALOAD, 1);
+    init.visitFieldInsn(PUTFIELD, invokerName, FALLBACK, fallbackDescriptor);
+    init.visitInsn(RETURN);
+    init.visitMaxs(0, 0);
+    init.visitEnd();
+
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "invoke", INVOKE_DESCRIPTOR, null, null);
+    mv.visitCode();
+    boolean isStatic = Modifier.isStatic(method.getModifiers());
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    Label mismatch = new Label();
+    check(mv, ownerName, isStatic, parameterTypes, mismatch);
+    if (!isStatic) {
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitTypeInsn(CHECKCAST, ownerName);
+    }
+    for (int i = 0; i < parameterTypes.length; i++) {
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitLdcInsn(i);
+      mv.visitInsn(AALOAD);
+      unbox(mv, Type.getType(parameterTypes[i]));
+    }
+    int opcode = isStatic ? INVOKESTATIC : owner.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL;
+    mv.visitMethodInsn(
+        opcode,
+        ownerName,
+        method.getName(),
+        Type.getMethodDescriptor(method),
+        owner.isInterface());
+    box(mv, Type.getType(method.getReturnType()));
+    mv.visitInsn(ARETURN);
+
+    mv.visitLabel(mismatch);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, invokerName, FALLBACK, fallbackDescriptor);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitMethodInsn(INVOKEINTERFACE, INVOKER, "invoke", INVOKE_DESCRIPTOR, true);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /**
+   * Jumps to the mismatch label unless the receiver is an instance of the declaring class, there is
+   * one argument per parameter, and every argument is an instance of the exact wrapper of its
+   * primitive parameter or, if not {@code null}, of its reference parameter.
+   */
+  private static void check(
+      MethodVisitor mv,
+      String ownerName,
+      boolean isStatic,
+      Class<?>[] parameterTypes,
+      Label mismatch) {
+    if (!isStatic) {
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitTypeInsn(INSTANCEOF, ownerName);
+      mv.visitJumpInsn(IFEQ, mismatch);
+    }
+    if (parameterTypes.length == 0) {
+      return;
+    }
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitJumpInsn(IFNULL, mismatch);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitInsn(ARRAYLENGTH);
+    mv.visitLdcInsn(parameterTypes.length);
+    mv.visitJumpInsn(IF_ICMPNE, mismatch);
+    for (int i = 0; i < parameterTypes.length; i++) {
+      Type type = Type.getType(parameterTypes[i]);
+      if (type.getDescriptor().equals("Ljava/lang/Object;")) {
+        continue;
+      }
+      Label next = new Label();
+      if (!parameterTypes[i].isPrimitive()) {
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitLdcInsn(i);
+        mv.visitInsn(AALOAD);
+        mv.visitJumpInsn(IFNULL, next);
+      }
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitLdcInsn(i);
+      mv.visitInsn(AALOAD);
+      mv.visitTypeInsn(
+          INSTANCEOF, parameterTypes[i].isPrimitive() ? wrapperOf(type) : type.getInternalName());
+      mv.visitJumpInsn(IFEQ, mismatch);
+      mv.visitLabel(next);
+    }
+  }
+
+  /** Casts an argument to the parameter type, and unboxes it for primitive parameters. */
+  private static void unbox(MethodVisitor mv, Type type) {
+    switch (type.getSort()) {
+      case Type.OBJECT, Type.ARRAY -> {
+        if (!type.getDescriptor().equals("Ljava/lang/Object;")) {
+          mv.visitTypeInsn(CHECKCAST, type.getInternalName());
+        }
+      }
+      default -> {
+        String wrapper = wrapperOf(type);
+        mv.visitTypeInsn(CHECKCAST, wrapper);
+        String unboxing = type.getClassName() + "Value";
+        mv.visitMethodInsn(INVOKEVIRTUAL, wrapper, unboxing, "()" + type.getDescriptor(), false);
+      }
+    }
+  }
+
+  /** Boxes a primitive result, and turns no result into {@code null}. */
+  private static void box(MethodVisitor mv, Type type) {
+    switch (type.getSort()) {
+      case Type.VOID -> mv.visitInsn(ACONST_NULL);
+      case Type.OBJECT, Type.ARRAY -> {
+        // References are returned as they are
+      }
+      default -> {
+        String wrapper = wrapperOf(type);
+        mv.visitMethodInsn(
+            INVOKESTATIC,
+            wrapper,
+            "valueOf",
+            "(" + type.getDescriptor() + ")L" + wrapper + ";",
+            false);
+      }
+    }
+  }
+
+  private static String wrapperOf(Type type) {
+    return switch (type.getSort()) {
+      case Type.BOOLEAN -> "java/lang/Boolean";
+      case Type.CHAR -> "java/lang/Character";
+      case Type.BYTE -> "java/lang/Byte";
+      case Type.SHORT -> "java/lang/Short";
+      case Type.INT -> "java/lang/Integer";
+      case Type.FLOAT -> "java/lang/Float";
+      case Type.LONG -> "java/lang/Long";
+      case Type.DOUBLE -> "java/lang/Double";
+      default -> throw new IllegalArgumentException("Not a primitive type: " + type);
+    };
+  }
+}
@@ -0,0 +1,195 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+/**
+ * Assigns energy to the seeds of a {@link Corpus}, i.e., how often a seed is picked for mutation
+ * relative to the other seeds. The schedules follow AFLFast (Böhme et al., "Coverage-based Greybox
+ * Fuzzing as Markov Chain") and Entropic (Böhme et al., "Boosting Fuzzer Efficiency: An
+ * Information Theoretic Perspective"). They are computed from the statistics the {@link
+ * SeedScheduler} keeps for every seed.
+ */
+public enum PowerSchedule {
+
+  /** Picks every seed equally often. */
+  UNIFORM {
+    @Override
+    public double energy(SeedStatistics seed, CorpusStatistics corpus) {
+      return 1;
+    }
+  },
+
+  /** Assigns AFL's performance score, which favours fast seeds with a large coverage. */
+  EXPLOIT {
+    @Override
+    public double energy(SeedStatistics seed, CorpusStatistics corpus) {
+      return performanceScore(seed, corpus);
+    }
+  },
+
+  /**
+   * Raises the energy of a seed exponentially with the times it was chosen, and divides it by the
+   * frequency of its path, so that seeds on rarely exercised paths are fuzzed most.
+   */
+  FAST {
+    @Override
+    public double energy(SeedStatistics seed, CorpusStatistics corpus) {
+      long frequency = Math.max(seed.pathFrequency(), 1);
+      double factor =
+          seed.timesChosen() < MAX_EXPONENT
+              ? (double) (1L << seed.timesChosen()) / frequency
+              : MAX_FACTOR / (double) Long.highestOneBit(frequency * 2 - 1);
+      return capped(performanceScore(seed, corpus) * factor);
+    }
+  },
+
+  /**
+   * Like {@link #FAST}, but gives no energy at all to seeds whose path is exercised more often
+   * than the paths of the seeds on average.
+   */
+  COE {
+    @Override
+    public double energy(SeedStatistics seed, CorpusStatistics corpus) {
+      if (seed.pathFrequency() > corpus.meanPathFrequency()) {
+        return 0;
+      }
+      double factor =
+          seed.timesChosen() < MAX_EXPONENT ? Math.min(1L << seed.timesChosen(), MAX_FACTOR) : 1;
+      return capped(performanceScore(seed, corpus) * factor);
+    }
+  },
+
+  /**
+   * Assigns the entropy of the rare lines and edges the mutants of a seed covered, so that seeds
+   * whose mutants keep discovering different rare behaviour are fuzzed most.
+   */
+  ENTROPIC {
+    @Override
+    public double energy(SeedStatistics seed, CorpusStatistics corpus) {
+      return seed.entropy();
+    }
+
+    @Override
+    public boolean needsRareFeatures() {
+      return true;
+    }
+  };
+
+  /** The highest factor of {@link #FAST} and {@link #COE} once a seed was chosen often. */
+  private static final double MAX_FACTOR = 32;
+
+  /** The times chosen from which on the factor of a seed no longer doubles. */
+  private static final int MAX_EXPONENT = 16;
+
+  /** The highest energy a seed gets relative to a seed with the default score of 100. */
+  private static final double MAX_ENERGY = 1600;
+
+  /**
+   * Computes the energy of a seed.
+   *
+   * @param seed the statistics of the seed
+   * @param corpus the statistics of all seeds
+   * @return the energy, which is finite and not negative
+   */
+  public abstract double energy(SeedStatistics seed, CorpusStatistics corpus);
+
+  /**
+   * Tells whether the schedule needs the {@link SeedStatistics#entropy() entropy} of the seeds,
+   * which is only tracked if it does, as it has to look at every line and edge of an execution.
+   *
+   * @return true if the schedule uses the entropy of the seeds
+   */
+  public boolean needsRareFeatures() {
+    return false;
+  }
+
+  /**
+   * Computes AFL's performance score of a seed, which is 100 for an average seed. It is lower for
+   * seeds that are slower or cover less than the average, and higher for faster and larger ones,
+   * and for seeds that are many mutations away from a generated input.
+   *
+   * @param seed the statistics of the seed
+   * @param corpus the statistics of all seeds
+   * @return the performance score
+   */
+  static double performanceScore(SeedStatistics seed, CorpusStatistics corpus) {
+    double time = seed.executionNanos();
+    double meanTime = corpus.meanExecutionNanos();
+    double score;
+    if (time * 0.1 > meanTime) {
+      score = 10;
+    } else if (time * 0.25 > meanTime) {
+      score = 25;
+    } else if (time * 0.5 > meanTime) {
+      score = 50;
+    } else if (time * 0.75 > meanTime) {
+      score = 75;
+    } else if (time * 4 < meanTime) {
+      score = 300;
+    } else if (time * 3 < meanTime) {
+      score = 200;
+    } else if (time * 2 < meanTime) {
+      score = 150;
+    } else {
+      score = 100;
+    }
+
+    double size = seed.coverageSize();
+    double meanSize = corpus.meanCoverageSize();
+    if (size * 0.3 > meanSize) {
+      score *= 3;
+    } else if (size * 0.5 > meanSize) {
+      score *= 2;
+    } else if (size * 0.75 > meanSize) {
+      score *= 1.5;
+    } else if (size * 3 < meanSize) {
+      score *= 0.25;
+    } else if (size * 2 < meanSize) {
+      score *= 0.5;
+    } else if (size * 1.5 < meanSize) {
+      score *= 0.75;
+    }
+
+    int depth = seed.depth();
+    if (depth >= 26) {
+      score *= 5;
+    } else if (depth >= 14) {
+      score *= 4;
+    } else if (depth >= 8) {
+      score *= 3;
+    } else if (depth >= 4) {
+      score *= 2;
+    }
+    return capped(score);
+  }
+
+  private static double capped(double energy) {
+    return Math.min(energy, MAX_ENERGY);
+  }
+
+  /**
+   * What the {@link SeedScheduler} knows about a seed.
+   *
+   * @param executionNanos the time the seed took to execute when it was added
+   * @param coverageSize the number of lines and edges the seed covers
+   * @param depth the number of mutations from a generated input to the seed, 1 for a generated one
+   * @param timesChosen the number of times the seed was picked for mutation
+   * @param pathFrequency the number of executions that covered exactly the path of the seed
+   * @param entropy the entropy of the rare lines and edges its mutants covered, 0 if not tracked
+   */
+  public record SeedStatistics(
+      long executionNanos,
+      int coverageSize,
+      int depth,
+      int timesChosen,
+      long pathFrequency,
+      double entropy) {}
+
+  /**
+   * What the {@link SeedScheduler} knows about all seeds.
+   *
+   * @param meanExecutionNanos the mean execution time of the seeds
+   * @param meanCoverageSize the mean number of lines and edges the seeds cover
+   * @param meanPathFrequency the mean path frequency of the seeds
+   */
+  public record CorpusStatistics(
+      double meanExecutionNanos, double meanCoverageSize, double meanPathFrequency) {}
+}
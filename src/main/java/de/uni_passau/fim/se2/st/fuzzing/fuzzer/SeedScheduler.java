@@ -0,0 +1,252 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.ExecutionTrace;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.PowerSchedule.CorpusStatistics;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.PowerSchedule.SeedStatistics;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Keeps the statistics of the seeds of a {@link Corpus} and sets their weights to the energy a
+ * {@link PowerSchedule} assigns, lowered for seeds that a {@link CorpusDistiller} demoted. After
+ * every execution, only the weight of the seed it was mutated from is updated, which takes O(log
+ * n). The weights of all seeds are refreshed from time to time, as the averages and frequencies
+ * they depend on drift slowly, at most once per execution of every seed, so that the refreshes
+ * cost O(log n) per execution as well.
+ *
+ * <p>Path frequencies are counted in a fixed table indexed by the hash of the trace, as AFLFast
+ * does, so that the paths of all executions need not be stored.
+ */
+public final class SeedScheduler {
+
+  /** The least number of executions between two refreshes of all weights. */
+  private static final int REFRESH_INTERVAL = 1024;
+
+  /** Number of slots of the path frequency table, a power of two. */
+  private static final int PATH_SLOTS = 1 << 16;
+
+  /** Lines and edges covered by fewer executions than this are rare, as in libFuzzer. */
+  private static final int RARE_FREQUENCY = 256;
+
+  /**
+   * Share of its energy a seed keeps when the {@link CorpusDistiller} demoted it. AFL skips such
+   * seeds 95 to 99 percent of the time.
+   */
+  private static final double DEMOTED_SHARE = 0.05;
+
+  private final PowerSchedule schedule;
+  private final List<Seed> seeds = new ArrayList<>();
+  private final long[] pathFrequencies = new long[PATH_SLOTS];
+  private final int[] seedsPerPath = new int[PATH_SLOTS];
+  private long totalPathFrequency;
+  private final Map<Long, Integer> featureFrequencies = new HashMap<>();
+  private int rareFeatures;
+  private long totalExecutionNanos;
+  private long totalCoverageSize;
+  private int recordedSeeds;
+  private int executionsSinceRefresh;
+
+  /** What is known about a single seed. */
+  private static final class Seed {
+    private long executionNanos;
+    private int coverageSize;
+    private int depth = 1;
+    private int timesChosen;
+    private int pathSlot = -1;
+    private boolean demoted;
+    /** How often the mutants of the seed covered each rare line or edge. */
+    private final Map<Long, Integer> rareFeatureHits = new HashMap<>();
+  }
+
+  /**
+   * Creates a scheduler.
+   *
+   * @param schedule the schedule that assigns the energy of the seeds
+   */
+  public SeedScheduler(PowerSchedule schedule) {
+    this.schedule = schedule;
+  }
+
+  public PowerSchedule getSchedule() {
+    return schedule;
+  }
+
+  /**
+   * Records an execution of a candidate, and updates the weight of the seed it was mutated from.
+   *
+   * @param corpus the corpus the candidate was picked from
+   * @param parent the index of the seed the candidate was mutated from, -1 for a generated one
+   * @param trace the trace of the execution
+   */
+  public void recordExecution(Corpus<?> corpus, int parent, ExecutionTrace trace) {
+    int slot = pathSlot(trace);
+    pathFrequencies[slot]++;
+    totalPathFrequency += seedsPerPath[slot];
+    if (schedule.needsRareFeatures()) {
+      countFeatures(parent < 0 ? null : seed(parent), trace);
+    }
+    if (parent >= 0) {
+      seed(parent).timesChosen++;
+      updateWeight(corpus, parent, corpusStatistics());
+    }
+    if (++executionsSinceRefresh >= Math.max(REFRESH_INTERVAL, corpus.size())) {
+      refresh(corpus);
+    }
+  }
+
+  /**
+   * Records a candidate that was added to the corpus, after its execution was recorded, and sets
+   * its weight.
+   *
+   * @param corpus the corpus the candidate was added to
+   * @param index the index of the new seed
+   * @param parent the index of the seed the candidate was mutated from, -1 for a generated one
+   * @param trace the trace of the execution of the candidate
+   * @param executionNanos the time the execution took
+   */
+  public void recordSeed(
+      Corpus<?> corpus, int index, int parent, ExecutionTrace trace, long executionNanos) {
+    Seed seed = seed(index);
+    seed.executionNanos = executionNanos;
+    seed.coverageSize = trace.getNumberOfLines() + trace.getNumberOfEdges();
+    seed.depth = parent < 0 ? 1 : seed(parent).depth + 1;
+    seed.pathSlot = pathSlot(trace);
+    seedsPerPath[seed.pathSlot]++;
+    totalPathFrequency += pathFrequencies[seed.pathSlot];
+    totalExecutionNanos += executionNanos;
+    totalCoverageSize += seed.coverageSize;
+    recordedSeeds++;
+    updateWeight(corpus, index, corpusStatistics());
+  }
+
+  /**
+   * Recomputes the weights of all seeds of the corpus.
+   *
+   * @param corpus the corpus whose weights are set
+   */
+  public void refresh(Corpus<?> corpus) {
+    executionsSinceRefresh = 0;
+    CorpusStatistics statistics = corpusStatistics();
+    for (int i = 0; i < corpus.size(); i++) {
+      updateWeight(corpus, i, statistics);
+    }
+  }
+
+  /**
+   * Marks the seeds that a distillation pass demoted, and recomputes the weights of all seeds.
+   *
+   * @param corpus the corpus whose weights are set
+   * @param demoted tells by the index of a seed whether it was demoted
+   */
+  public void setDemoted(Corpus<?> corpus, IntPredicate demoted) {
+    for (int i = 0; i < corpus.size(); i++) {
+      seed(i).demoted = demoted.test(i);
+    }
+    refresh(corpus);
+  }
+
+  /**
+   * Provides the statistics of a seed.
+   *
+   * @param index the index of the seed in the corpus
+   * @return the statistics the schedule sees
+   */
+  public SeedStatistics getStatistics(int index) {
+    Seed seed = seed(index);
+    long pathFrequency = seed.pathSlot < 0 ? 1 : pathFrequencies[seed.pathSlot];
+    double entropy = schedule.needsRareFeatures() ? entropy(seed) : 0;
+    return new SeedStatistics(
+        seed.executionNanos,
+        seed.coverageSize,
+        seed.depth,
+        seed.timesChosen,
+        pathFrequency,
+        entropy);
+  }
+
+  private void updateWeight(Corpus<?> corpus, int index, CorpusStatistics statistics) {
+    double energy = schedule.energy(getStatistics(index), statistics);
+    corpus.setWeight(index, seed(index).demoted ? energy * DEMOTED_SHARE : energy);
+  }
+
+  private CorpusStatistics corpusStatistics() {
+    double size = Math.max(recordedSeeds, 1);
+    return new CorpusStatistics(
+        totalExecutionNanos / size,
+        totalCoverageSize / size,
+        recordedSeeds == 0 ? 1 : totalPathFrequency / size);
+  }
+
+  /** Seeds the scheduler was not told about, e.g., added before it was set, are generated ones. */
+  private Seed seed(int index) {
+    while (seeds.size() <= index) {
+      seeds.add(new Seed());
+    }
+    return seeds.get(index);
+  }
+
+  private static int pathSlot(ExecutionTrace trace) {
+    int hash = trace.hashCode();
+    return (hash ^ (hash >>> 16)) & (PATH_SLOTS - 1);
+  }
+
+  /**
+   * Counts the lines and edges an execution covered, and which of the rare ones the mutants of the
+   * parent covered. Features that are no longer rare are dropped from all seeds at the next
+   * refresh.
+   */
+  private void countFeatures(Seed parent, ExecutionTrace trace) {
+    for (long line : trace.getLineKeys()) {
+      countFeature(parent, line);
+    }
+    for (int edge : trace.getEdges()) {
+      // Line keys are never negative, so edges get keys of their own
+      countFeature(parent, -1L - edge);
+    }
+  }
+
+  private void countFeature(Seed parent, long feature) {
+    int frequency = featureFrequencies.merge(feature, 1, Integer::sum);
+    if (frequency == 1) {
+      rareFeatures++;
+    } else if (frequency == RARE_FREQUENCY) {
+      rareFeatures--;
+    }
+    if (parent != null && frequency < RARE_FREQUENCY) {
+      parent.rareFeatureHits.merge(feature, 1, Integer::sum);
+    }
+  }
+
+  /**
+   * Estimates the entropy of the rare features the mutants of a seed cover, as libFuzzer's
+   * Entropic does. Rare features no mutant covered yet count once, so that a seed that was never
+   * chosen gets the highest entropy, and all hits of other features count as one abundant
+   * feature, so that the entropy of a seed whose mutants cover nothing rare drops.
+   */
+  private double entropy(Seed seed) {
+    double energy = 0;
+    double sum = 0;
+    int counted = 0;
+    for (Iterator<Map.Entry<Long, Integer>> iterator = seed.rareFeatureHits.entrySet().iterator();
+        iterator.hasNext(); ) {
+      Map.Entry<Long, Integer> hits = iterator.next();
+      if (featureFrequencies.get(hits.getKey()) >= RARE_FREQUENCY) {
+        iterator.remove();
+        continue;
+      }
+      double incidence = hits.getValue() + 1;
+      energy -= incidence * Math.log(incidence);
+      sum += incidence;
+      counted++;
+    }
+    sum += Math.max(rareFeatures - counted, 0);
+    double abundant = seed.timesChosen + 1;
+    energy -= abundant * Math.log(abundant);
+    sum += abundant;
+    return Math.max(energy / sum + Math.log(sum), 0);
+  }
+}
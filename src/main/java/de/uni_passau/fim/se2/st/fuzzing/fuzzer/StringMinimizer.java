@@ -0,0 +1,167 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker;
+import de.uni_passau.fim.se2.st.fuzzing.fuzztarget.CSVParser;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Shrinks string inputs with delta debugging, as afl-tmin does. The input is cut into chunks, and
+ * every chunk and every complement of a chunk is executed as a candidate. The first candidate that
+ * still shows the behavior of interest replaces the input, otherwise the chunks are halved, until
+ * single characters are tried. The result is 1-minimal: removing any single character of it loses
+ * the behavior, as long as the execution limit was not reached.
+ *
+ * <p>Candidates are executed in batches. If an executor is given, the candidates of a batch run in
+ * parallel, and the first candidate of the batch in the order above wins, so that the result does
+ * not depend on the number of threads.
+ */
+public final class StringMinimizer {
+
+  /** Maximum number of executions of a single minimization. */
+  static final int MAX_EXECUTIONS = 10_000;
+
+  private final CandidateBatches<String> batches;
+
+  /**
+   * Creates a minimizer that executes candidates one by one on the calling thread.
+   *
+   * @param target executes an input and returns its outcome
+   */
+  public StringMinimizer(Function<String, ExecutionOutcome> target) {
+    this(target, null, 1);
+  }
+
+  /**
+   * Creates a minimizer that executes batches of candidates in parallel.
+   *
+   * @param target executes an input and returns its outcome, on any thread of the executor
+   * @param executor the executor the candidates run on, {@code null} to run them on the calling
+   *     thread
+   * @param batchSize the number of candidates executed at once, e.g., the number of threads
+   * @throws IllegalArgumentException if the batch size is not positive
+   */
+  public StringMinimizer(
+      Function<String, ExecutionOutcome> target, ExecutorService executor, int batchSize) {
+    this(new CandidateBatches<>(target, executor, batchSize, 0));
+  }
+
+  /**
+   * Creates a minimizer that executes its candidates in given batches, e.g., to shrink a string
+   * that is part of a larger input.
+   *
+   * @param batches the batches that execute the candidates
+   */
+  StringMinimizer(CandidateBatches<String> batches) {
+    this.batches = batches;
+  }
+
+  /**
+   * Executes a CSV string with {@link CSVParser#parseDishes} on the calling thread.
+   *
+   * @param input the CSV string
+   * @return the outcome of the execution
+   */
+  public static ExecutionOutcome parseDishes(String input) {
+    Throwable thrown = null;
+    try {
+      new CSVParser().parseDishes(new BufferedReader(new StringReader(input)));
+    } catch (Exception e) {
+      thrown = e;
+    }
+    return ExecutionOutcome.of(CoverageTracker.endExecution(), thrown);
+  }
+
+  /**
+   * Shrinks an input while it keeps its behavior. An input that throws keeps the type and the
+   * throw site of its exception, any other input keeps its exact coverage signature.
+   *
+   * @param input the input to shrink
+   * @return the shrunk input, or the input itself if no smaller one behaves the same
+   */
+  public String minimize(String input) {
+    batches.resetExecutions();
+    ExecutionOutcome original = batches.execute(input);
+    return shrink(input, original::isReproducedBy, MAX_EXECUTIONS);
+  }
+
+  /**
+   * Shrinks an input while its executions are interesting.
+   *
+   * @param input the input to shrink, which is assumed to be interesting
+   * @param interesting tells whether the outcome of a candidate is interesting
+   * @return the shrunk input, or the input itself if no smaller one is interesting
+   */
+  public String minimize(String input, Predicate<ExecutionOutcome> interesting) {
+    return minimize(input, interesting, MAX_EXECUTIONS);
+  }
+
+  /**
+   * Shrinks an input while its executions are interesting, with a limit of the executions.
+   *
+   * @param input the input to shrink, which is assumed to be interesting
+   * @param interesting tells whether the outcome of a candidate is interesting
+   * @param maxExecutions the maximum number of executions of the minimization
+   * @return the shrunk input, or the input itself if no smaller one is interesting
+   */
+  public String minimize(
+      String input, Predicate<ExecutionOutcome> interesting, int maxExecutions) {
+    batches.resetExecutions();
+    return shrink(input, interesting, maxExecutions);
+  }
+
+  /**
+   * Returns the number of executions of the last minimization.
+   *
+   * @return the number of executions
+   */
+  public int getNumberOfExecutions() {
+    return batches.getExecutions();
+  }
+
+  /**
+   * Shrinks an input while its executions are interesting, until the executions of the batches
+   * reach a limit or their deadline passed.
+   */
+  String shrink(String input, Predicate<ExecutionOutcome> interesting, int maxExecutions) {
+    Set<String> tested = new HashSet<>();
+    tested.add(input);
+    String current = input;
+    int chunks = 2;
+    while (current.length() > 1
+        && batches.getExecutions() < maxExecutions
+        && !batches.isPastDeadline()) {
+      int length = current.length();
+      chunks = Math.min(chunks, length);
+      List<String> candidates = new ArrayList<>();
+      for (int i = 0; i < chunks; i++) {
+        candidates.add(current.substring(i * length / chunks, (i + 1) * length / chunks));
+      }
+      // With two chunks, the complement of each chunk is the other chunk
+      if (chunks > 2) {
+        for (int i = 0; i < chunks; i++) {
+          candidates.add(
+              current.substring(0, i * length / chunks)
+                  + current.substring((i + 1) * length / chunks));
+        }
+      }
+      int found = batches.firstInteresting(candidates, tested, interesting, maxExecutions);
+      if (found >= 0) {
+        current = candidates.get(found);
+        chunks = found < chunks ? 2 : Math.max(chunks - 1, 2);
+      } else if (chunks < length) {
+        chunks = Math.min(chunks * 2, length);
+      } else {
+        break;
+      }
+    }
+    return current;
+  }
+}
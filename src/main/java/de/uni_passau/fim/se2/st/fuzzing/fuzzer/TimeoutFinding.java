@@ -0,0 +1,12 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+/**
+ * An execution of a target method that did not finish within the execution timeout of the {@link
+ * Fuzzer}. It is not turned into a unit test, as the test would hang as well, but saved so that
+ * the hang can be reproduced.
+ *
+ * @param methodName The name of the method that hung
+ * @param input The call that hung, e.g., {@code new Foo(1).bar("x")}
+ * @param elapsedMillis The time in milliseconds the execution ran before it was given up
+ */
+public record TimeoutFinding(String methodName, String input, long elapsedMillis) {}
@@ -0,0 +1,315 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coordinates a campaign of several forked worker JVMs. Targets that leak static state or crash the
+ * JVM, e.g., with a {@link StackOverflowError} or by running out of memory, then only take down a
+ * single worker process instead of the whole campaign.
+ *
+ * <p>The pool listens on a Unix domain socket, which every worker connects to with a {@link
+ * CoordinatorConnection}. Workers send their covering method results and their timeouts as soon
+ * as they find them, and snapshots of their coverage now and then. A worker that exits abnormally
+ * is restarted with the remaining time of the campaign. Everything it sent before it crashed is
+ * kept, so the campaign does not lose its progress. Workers should share their coverage with a
+ * {@link de.uni_passau.fim.se2.st.fuzzing.coverage.SharedCoverageMap}, so that a restarted worker
+ * does not report the coverage of its predecessor again.
+ */
+public final class WorkerPool {
+
+  /** Creates the command line of a worker process. */
+  @FunctionalInterface
+  public interface WorkerCommand {
+
+    /**
+     * Creates the command line of a worker process.
+     *
+     * @param workerId The id of the worker, from 0 to the number of processes
+     * @param socket The socket the worker connects to
+     * @param remainingMillis The remaining time of the campaign in milliseconds
+     * @return The command line
+     */
+    List<String> create(int workerId, Path socket, long remainingMillis);
+  }
+
+  /**
+   * The outcome of a campaign.
+   *
+   * @param methodResults The covering method results of all workers, in the order they arrived
+   * @param timeouts The executions of all workers that timed out, in the order they arrived
+   * @param coverage The merged coverage of all worker processes, including crashed ones
+   * @param restarts The number of times a crashed worker was restarted
+   */
+  public record Result(
+      List<FuzzingMethodResult> methodResults,
+      List<TimeoutFinding> timeouts,
+      CoverageDump coverage,
+      int restarts) {}
+
+  private static final Logger logger = Logger.getLogger(WorkerPool.class.getName());
+
+  /** Minimum time in milliseconds between two starts of the same worker. */
+  static final long RESTART_DELAY = 1000;
+
+  /** Interval in milliseconds in which the worker processes are checked. */
+  private static final long POLL_INTERVAL = 50;
+
+  /** Time in milliseconds workers may take beyond the deadline before they are killed. */
+  private static final long SHUTDOWN_GRACE = 5000;
+
+  private final WorkerCommand command;
+  private final int processes;
+  private final Path logDirectory;
+  private final ClassLoader classLoader = WorkerPool.class.getClassLoader();
+
+  private final List<FuzzingMethodResult> methodResults = new ArrayList<>();
+  private final List<TimeoutFinding> timeouts = new ArrayList<>();
+  private final List<CoverageDump> coverage = new ArrayList<>();
+  private final List<SocketChannel> connections = new ArrayList<>();
+  private final List<Thread> readers = new ArrayList<>();
+
+  /**
+   * Creates a pool of worker processes.
+   *
+   * @param command The command line of the workers
+   * @param processes The number of worker processes running at the same time
+   * @param logDirectory The directory the output of every worker is appended to
+   * @throws IllegalArgumentException If the number of processes is not positive
+   */
+  public WorkerPool(WorkerCommand command, int processes, Path logDirectory) {
+    if (processes < 1) {
+      throw new IllegalArgumentException("The number of processes must be positive.");
+    }
+    this.command = command;
+    this.processes = processes;
+    this.logDirectory = logDirectory;
+  }
+
+  /**
+   * Runs the workers until all of them exited normally, or the timeout and a grace period elapsed.
+   *
+   * @param timeoutMillis The duration of the campaign in milliseconds
+   * @return The results and the coverage of all workers
+   * @throws IOException When the socket cannot be created or a worker cannot be started
+   */
+  public Result run(long timeoutMillis) throws IOException {
+    Files.createDirectories(logDirectory);
+    Path directory = Files.createTempDirectory("fuzzer-workers");
+    Path socket = directory.resolve("coordinator.sock");
+    int restarts;
+    try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(UnixDomainSocketAddress.of(socket));
+      Thread acceptor = new Thread(() -> accept(server), "worker-pool-acceptor");
+      acceptor.setDaemon(true);
+      acceptor.start();
+      restarts = supervise(socket, System.nanoTime() + timeoutMillis * 1_000_000);
+    } finally {
+      Files.deleteIfExists(socket);
+      Files.deleteIfExists(directory);
+    }
+    awaitReaders();
+    synchronized (this) {
+      return new Result(
+          List.copyOf(methodResults),
+          List.copyOf(timeouts),
+          CoverageDump.merge(coverage),
+          restarts);
+    }
+  }
+
+  /**
+   * Starts the workers and restarts those that crash, until all of them exited normally. Workers
+   * that crash after the deadline are not restarted, and workers that are still running after the
+   * grace period are killed.
+   *
+   * @return The number of restarts
+   */
+  private int supervise(Path socket, long deadline) throws IOException {
+    Process[] workers = new Process[processes];
+    long[] started = new long[processes];
+    boolean[] finished = new boolean[processes];
+    int restarts = 0;
+    for (int i = 0; i < processes; i++) {
+      workers[i] = start(i, socket, deadline);
+      started[i] = System.nanoTime();
+    }
+    try {
+      int running = processes;
+      while (running > 0) {
+        long now = System.nanoTime();
+        for (int i = 0; i < processes; i++) {
+          if (finished[i] || workers[i] != null && workers[i].isAlive()) {
+            continue;
+          }
+          if (workers[i] != null) {
+            int exitCode = workers[i].exitValue();
+            workers[i] = null;
+            if (exitCode == 0) {
+              finished[i] = true;
+              running--;
+              continue;
+            }
+            int worker = i;
+            logger.warning(() -> String.format("Worker %d exited with %d", worker, exitCode));
+          }
+          if (now >= deadline) {
+            finished[i] = true;
+            running--;
+          } else if (now - started[i] >= TimeUnit.MILLISECONDS.toNanos(RESTART_DELAY)) {
+            workers[i] = start(i, socket, deadline);
+            started[i] = now;
+            restarts++;
+          }
+        }
+        if (now - deadline > TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_GRACE)) {
+          logger.warning("Workers did not stop in time");
+          break;
+        }
+        Thread.sleep(POLL_INTERVAL);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      for (Process worker : workers) {
+        if (worker != null && worker.isAlive()) {
+          worker.destroyForcibly();
+        }
+      }
+    }
+    return restarts;
+  }
+
+  private Process start(int workerId, Path socket, long deadline) throws IOException {
+    long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    List<String> commandLine = command.create(workerId, socket, Math.max(remainingMillis, 0));
+    logger.fine(() -> String.format("Starting worker %d: %s", workerId, commandLine));
+    Path log = logDirectory.resolve("worker-" + workerId + ".log");
+    return new ProcessBuilder(commandLine)
+        .redirectErrorStream(true)
+        .redirectOutput(Redirect.appendTo(log.toFile()))
+        .start();
+  }
+
+  /** Accepts the connections of the workers until the server socket is closed. */
+  private void accept(ServerSocketChannel server) {
+    try {
+      while (true) {
+        SocketChannel connection = server.accept();
+        Thread reader = new Thread(() -> read(connection), "worker-pool-reader");
+        reader.setDaemon(true);
+        synchronized (this) {
+          connections.add(connection);
+          readers.add(reader);
+        }
+        reader.start();
+      }
+    } catch (ClosedChannelException e) {
+      // The campaign is over
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot accept workers", e);
+    }
+  }
+
+  /**
+   * Reads the messages of a worker until it disconnects. Only the last coverage of a worker process
+   * is kept, as it includes all coverage the process sent before.
+   */
+  private void read(SocketChannel connection) {
+    CoverageDump latest = null;
+    int workerId = -1;
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Channels.newInputStream(connection)))) {
+      while (true) {
+        byte type = in.readByte();
+        switch (type) {
+          case WorkerProtocol.HELLO -> workerId = in.readInt();
+          case WorkerProtocol.RESULT -> {
+            FuzzingMethodResult result = WorkerProtocol.readResult(in, classLoader);
+            if (result == null) {
+              int worker = workerId;
+              logger.warning(
+                  () ->
+                      "Dropped a result of worker "
+                          + worker
+                          + " whose types or exception cannot be recreated");
+            } else {
+              synchronized (this) {
+                methodResults.add(result);
+              }
+            }
+          }
+          case WorkerProtocol.TIMEOUT -> {
+            TimeoutFinding timeout = WorkerProtocol.readTimeout(in);
+            synchronized (this) {
+              timeouts.add(timeout);
+            }
+          }
+          case WorkerProtocol.COVERAGE -> latest = WorkerProtocol.readCoverage(in);
+          default -> throw new IOException("Unknown message type: " + type);
+        }
+      }
+    } catch (EOFException | ClosedChannelException e) {
+      // The worker exited or crashed
+    } catch (IOException e) {
+      int worker = workerId;
+      logger.log(Level.WARNING, e, () -> "Lost connection to worker " + worker);
+    } finally {
+      if (latest != null) {
+        synchronized (this) {
+          coverage.add(latest);
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits until the readers got everything the exited workers sent. Connections that stay open
+   * after the grace period are closed.
+   */
+  private void awaitReaders() throws IOException {
+    List<Thread> threads;
+    synchronized (this) {
+      threads = List.copyOf(readers);
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_GRACE);
+    try {
+      for (Thread reader : threads) {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        reader.join(Math.max(remaining, 1));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      for (SocketChannel connection : connections) {
+        connection.close();
+      }
+    }
+    for (Thread reader : threads) {
+      try {
+        reader.join(POLL_INTERVAL);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+  }
+}
@@ -0,0 +1,335 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The messages forked worker processes send to their coordinator over a Unix domain socket. Every
+ * message starts with a type byte. A worker first says hello with its id, then sends every covering
+ * method result and every timeout as soon as it is found, and snapshots of its coverage now and
+ * then.
+ *
+ * <p>Results cannot be sent as they are, as the expected result of a method may be any object.
+ * Only values the generated tests compare against, i.e., primitives, their wrappers and strings,
+ * are sent. Other objects are replaced by their string representation, which keeps them non-null.
+ * Exceptions are recreated from their class and message. The trace of a result refers to the class
+ * ids of the worker process and is dropped.
+ */
+final class WorkerProtocol {
+
+  /** Followed by the worker id as an {@code int}. */
+  static final byte HELLO = 1;
+
+  /** Followed by a covering method result, see {@link #writeResult}. */
+  static final byte RESULT = 2;
+
+  /** Followed by the length and the bytes of the coverage dump of the worker process. */
+  static final byte COVERAGE = 3;
+
+  /** Followed by an execution that timed out, see {@link #writeTimeout}. */
+  static final byte TIMEOUT = 4;
+
+  private static final byte NULL = 0;
+  private static final byte BOOLEAN = 1;
+  private static final byte BYTE = 2;
+  private static final byte SHORT = 3;
+  private static final byte CHAR = 4;
+  private static final byte INT = 5;
+  private static final byte LONG = 6;
+  private static final byte FLOAT = 7;
+  private static final byte DOUBLE = 8;
+  private static final byte STRING = 9;
+  private static final byte OTHER = 10;
+
+  private static final Map<String, Class<?>> PRIMITIVES =
+      Map.of(
+          "boolean", boolean.class,
+          "byte", byte.class,
+          "short", short.class,
+          "char", char.class,
+          "int", int.class,
+          "long", long.class,
+          "float", float.class,
+          "double", double.class,
+          "void", void.class);
+
+  private WorkerProtocol() {}
+
+  static void writeHello(DataOutputStream out, int workerId) throws IOException {
+    out.writeByte(HELLO);
+    out.writeInt(workerId);
+  }
+
+  static void writeCoverage(DataOutputStream out, CoverageDump dump) throws IOException {
+    byte[] bytes = dump.toByteArray();
+    out.writeByte(COVERAGE);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static CoverageDump readCoverage(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Invalid coverage length: " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    try {
+      return CoverageDump.fromByteArray(bytes);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid coverage of worker", e);
+    }
+  }
+
+  static void writeTimeout(DataOutputStream out, TimeoutFinding timeout) throws IOException {
+    out.writeByte(TIMEOUT);
+    writeString(out, timeout.methodName());
+    writeString(out, timeout.input());
+    out.writeLong(timeout.elapsedMillis());
+  }
+
+  static TimeoutFinding readTimeout(DataInputStream in) throws IOException {
+    return new TimeoutFinding(readString(in), readString(in), in.readLong());
+  }
+
+  static void writeResult(DataOutputStream out, FuzzingMethodResult result) throws IOException {
+    out.writeByte(RESULT);
+    writeString(out, result.methodName());
+    out.writeInt(result.methodParameters().size());
+    for (String parameter : result.methodParameters()) {
+      writeString(out, parameter);
+    }
+    out.writeInt(result.parameterTypes().length);
+    for (Class<?> type : result.parameterTypes()) {
+      writeString(out, type.getName());
+    }
+    writeString(out, result.constructor());
+    writeValue(out, result.expectedResult());
+    out.writeBoolean(result.isStatic());
+    out.writeBoolean(result.isPrivate());
+    Exception exception = result.expectedException();
+    writeString(out, exception == null ? null : exception.getClass().getName());
+    writeString(out, exception == null ? null : exception.getMessage());
+    out.writeBoolean(result.throwException());
+    writeString(out, result.returnType().getName());
+  }
+
+  /**
+   * Reads a result written by {@link #writeResult}, without the type byte.
+   *
+   * @param in The stream to read from
+   * @param loader The class loader that resolves the parameter, return and exception types
+   * @return The result, or {@code null} if one of its types cannot be resolved or its exception
+   *     cannot be recreated, as no public constructor of its type accepts default arguments; the
+   *     message is consumed either way
+   * @throws IOException When the stream ends early or the message is malformed
+   */
+  static FuzzingMethodResult readResult(DataInputStream in, ClassLoader loader)
+      throws IOException {
+    String methodName = readString(in);
+    int numberOfParameters = readLength(in);
+    List<String> parameters = new ArrayList<>(numberOfParameters);
+    for (int i = 0; i < numberOfParameters; i++) {
+      parameters.add(readString(in));
+    }
+    Class<?>[] parameterTypes = new Class<?>[readLength(in)];
+    for (int i = 0; i < parameterTypes.length; i++) {
+      parameterTypes[i] = resolve(readString(in), loader);
+    }
+    String constructor = readString(in);
+    Object expectedResult = readValue(in);
+    boolean isStatic = in.readBoolean();
+    boolean isPrivate = in.readBoolean();
+    String exceptionType = readString(in);
+    String exceptionMessage = readString(in);
+    boolean throwException = in.readBoolean();
+    Class<?> returnType = resolve(readString(in), loader);
+    if (returnType == null || Arrays.asList(parameterTypes).contains(null)) {
+      return null;
+    }
+    Exception exception = null;
+    if (exceptionType != null) {
+      exception = newException(exceptionType, exceptionMessage, loader);
+      if (exception == null) {
+        return null;
+      }
+    }
+    return new FuzzingMethodResult(
+        methodName,
+        parameters,
+        parameterTypes,
+        constructor,
+        expectedResult,
+        isStatic,
+        isPrivate,
+        exception,
+        throwException,
+        returnType);
+  }
+
+  private static void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Boolean bool) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean(bool);
+    } else if (value instanceof Byte number) {
+      out.writeByte(BYTE);
+      out.writeByte(number);
+    } else if (value instanceof Short number) {
+      out.writeByte(SHORT);
+      out.writeShort(number);
+    } else if (value instanceof Character character) {
+      out.writeByte(CHAR);
+      out.writeChar(character);
+    } else if (value instanceof Integer number) {
+      out.writeByte(INT);
+      out.writeInt(number);
+    } else if (value instanceof Long number) {
+      out.writeByte(LONG);
+      out.writeLong(number);
+    } else if (value instanceof Float number) {
+      out.writeByte(FLOAT);
+      out.writeFloat(number);
+    } else if (value instanceof Double number) {
+      out.writeByte(DOUBLE);
+      out.writeDouble(number);
+    } else if (value instanceof String string) {
+      out.writeByte(STRING);
+      writeString(out, string);
+    } else {
+      out.writeByte(OTHER);
+      writeString(out, String.valueOf(value));
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte tag = in.readByte();
+    return switch (tag) {
+      case NULL -> null;
+      case BOOLEAN -> in.readBoolean();
+      case BYTE -> in.readByte();
+      case SHORT -> in.readShort();
+      case CHAR -> in.readChar();
+      case INT -> in.readInt();
+      case LONG -> in.readLong();
+      case FLOAT -> in.readFloat();
+      case DOUBLE -> in.readDouble();
+      case STRING, OTHER -> readString(in);
+      default -> throw new IOException("Unknown value tag: " + tag);
+    };
+  }
+
+  /** Writes a string that may be {@code null} and longer than {@code writeUTF} allows. */
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    if (string == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length == -1) {
+      return null;
+    }
+    if (length < 0) {
+      throw new IOException("Invalid string length: " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int readLength(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Invalid length: " + length);
+    }
+    return length;
+  }
+
+  /** Resolves a type of a worker result, or returns {@code null} if the loader does not know it. */
+  private static Class<?> resolve(String name, ClassLoader loader) throws IOException {
+    if (name == null) {
+      throw new IOException("Missing type of worker result");
+    }
+    Class<?> primitive = PRIMITIVES.get(name);
+    if (primitive != null) {
+      return primitive;
+    }
+    try {
+      return Class.forName(name, false, loader);
+    } catch (ClassNotFoundException | LinkageError e) {
+      return null;
+    }
+  }
+
+  /**
+   * Recreates an exception of a worker. Only its type matters to the generated tests, so any public
+   * constructor will do: the first {@code String} parameter gets the message, other strings get
+   * the empty string, and the remaining parameters get {@code null}, zero or {@code false}. A
+   * constructor that only takes the message is tried first, then those with fewer parameters.
+   *
+   * @param name The name of the type of the exception
+   * @param message The message of the exception
+   * @param loader The class loader that resolves the type
+   * @return The exception, or {@code null} if its type is unknown or no constructor accepts these
+   *     arguments
+   */
+  private static Exception newException(String name, String message, ClassLoader loader)
+      throws IOException {
+    Class<?> type = resolve(name, loader);
+    if (type == null) {
+      return null;
+    }
+    if (!Exception.class.isAssignableFrom(type)) {
+      throw new IOException("Not an exception: " + name);
+    }
+    Constructor<?>[] constructors = type.getConstructors();
+    Arrays.sort(
+        constructors,
+        Comparator.comparing((Constructor<?> constructor) -> !isMessageConstructor(constructor))
+            .thenComparingInt(Constructor::getParameterCount));
+    for (Constructor<?> constructor : constructors) {
+      Class<?>[] parameterTypes = constructor.getParameterTypes();
+      Object[] arguments = new Object[parameterTypes.length];
+      boolean messageGiven = false;
+      for (int i = 0; i < arguments.length; i++) {
+        if (parameterTypes[i] == String.class && !messageGiven) {
+          arguments[i] = message;
+          messageGiven = true;
+        } else if (parameterTypes[i].isAssignableFrom(String.class)
+            && parameterTypes[i] != Object.class) {
+          arguments[i] = "";
+        } else if (parameterTypes[i].isPrimitive()) {
+          arguments[i] = Array.get(Array.newInstance(parameterTypes[i], 1), 0);
+        }
+      }
+      try {
+        return (Exception) constructor.newInstance(arguments);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        // The constructor rejects the default arguments, try the next one
+      }
+    }
+    return null;
+  }
+
+  private static boolean isMessageConstructor(Constructor<?> constructor) {
+    return constructor.getParameterCount() == 1
+        && constructor.getParameterTypes()[0] == String.class;
+  }
+}
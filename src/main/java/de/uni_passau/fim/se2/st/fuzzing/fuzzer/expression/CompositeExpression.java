@@ -12,6 +12,24 @@ public class CompositeExpression implements GenericExpression {
     this.arguments = arguments;
   }
 
+  /**
+   * Returns the constructor that is called.
+   *
+   * @return the constructor
+   */
+  public Constructor<?> getConstructor() {
+    return constructor;
+  }
+
+  /**
+   * Returns the expressions of the arguments of the constructor call.
+   *
+   * @return a copy of the arguments
+   */
+  public GenericExpression[] getArguments() {
+    return arguments.clone();
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -13,6 +13,15 @@ public class LeafExpression implements GenericExpression {
     this.value = value;
   }
 
+  /**
+   * Returns the value of the literal.
+   *
+   * @return the value, possibly {@code null}
+   */
+  public Object getValue() {
+    return value;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -1,25 +1,193 @@
 package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
 
+import static org.objectweb.asm.Opcodes.ALOAD;
 import static org.objectweb.asm.Opcodes.ASM9;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.DUP2;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.IASTORE;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ILOAD;
 import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.IXOR;
+import static org.objectweb.asm.Opcodes.JSR;
 
 import com.google.common.base.Preconditions;
 import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.objectweb.asm.*;
+import org.objectweb.asm.commons.LocalVariablesSorter;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
 
 public class Agent {
 
+  private static final Logger logger = Logger.getLogger(Agent.class.getName());
+
+  /** The options of the agent running in this JVM, {@code null} if no agent was started. */
+  private static volatile AgentOptions activeOptions;
+
   private Agent() {}
 
   public static void premain(String agentArgs, Instrumentation inst) {
-    inst.addTransformer(new InstrumentationTransformer());
+    AgentOptions options = AgentOptions.parse(agentArgs);
+    activeOptions = options;
+    if (options.isFirstHit()) {
+      FirstHitMonitor firstHitMonitor = startFirstHitMonitor(inst);
+      inst.addTransformer(new InstrumentationTransformer(options, firstHitMonitor), true);
+    } else {
+      inst.addTransformer(new InstrumentationTransformer(options));
+    }
+  }
+
+  /**
+   * Entry point when the agent is attached to a running JVM. Classes loaded from now on are
+   * instrumented like with {@link #premain}, target classes that are already loaded are
+   * retransformed.
+   *
+   * @param agentArgs The agent options, see {@link AgentOptions}
+   * @param inst The instrumentation of the JVM the agent is attached to
+   */
+  public static void agentmain(String agentArgs, Instrumentation inst) {
+    AgentOptions options = AgentOptions.parse(agentArgs);
+    activeOptions = options;
+    FirstHitMonitor firstHitMonitor = options.isFirstHit() ? startFirstHitMonitor(inst) : null;
+    inst.addTransformer(new InstrumentationTransformer(options, firstHitMonitor), true);
+    retransformLoadedClasses(inst, options.getClassFilter());
+  }
+
+  /**
+   * Checks whether the agent running in this JVM instruments a class once it is loaded.
+   *
+   * @param className The internal name of the class
+   * @return {@code true} if an agent was started and its filter matches the class
+   */
+  public static boolean isInstrumented(String className) {
+    AgentOptions options = activeOptions;
+    return options != null && options.getClassFilter().matches(className);
+  }
+
+  /**
+   * Checks whether the agent running in this JVM removes the probes of methods once all their
+   * lines are covered. Later executions of such methods leave no trace and no hit counts.
+   *
+   * @return {@code true} if an agent was started with the option {@code firsthit=true}
+   */
+  public static boolean isFirstHit() {
+    AgentOptions options = activeOptions;
+    return options != null && options.isFirstHit();
+  }
+
+  private static FirstHitMonitor startFirstHitMonitor(Instrumentation inst) {
+    if (!inst.isRetransformClassesSupported()) {
+      throw new IllegalArgumentException("First-hit mode needs class retransformation.");
+    }
+    FirstHitMonitor firstHitMonitor = new FirstHitMonitor(inst);
+    firstHitMonitor.start();
+    return firstHitMonitor;
+  }
+
+  /**
+   * Retransforms all loaded classes that match the filter, so they are instrumented by the
+   * transformers registered for retransformation.
+   *
+   * @param inst The instrumentation of the JVM
+   * @param filter The filter selecting the target classes
+   * @return The number of retransformed classes
+   */
+  static int retransformLoadedClasses(Instrumentation inst, ClassFilter filter) {
+    if (!inst.isRetransformClassesSupported()) {
+      logger.warning("Retransformation is not supported, loaded classes stay uninstrumented");
+      return 0;
+    }
+    List<Class<?>> classes = new ArrayList<>();
+    for (Class<?> loadedClass : inst.getAllLoadedClasses()) {
+      if (inst.isModifiableClass(loadedClass)
+          && filter.matches(Type.getInternalName(loadedClass))) {
+        classes.add(loadedClass);
+      }
+    }
+    int retransformed = retransform(inst, classes);
+    logger.log(Level.INFO, "Retransformed {0} loaded classes", retransformed);
+    return retransformed;
+  }
+
+  /**
+   * Retransforms the given classes, one by one if retransforming all at once fails.
+   *
+   * @param inst The instrumentation of the JVM
+   * @param classes The classes to retransform
+   * @return The number of retransformed classes
+   */
+  static int retransform(Instrumentation inst, List<Class<?>> classes) {
+    if (classes.isEmpty()) {
+      return 0;
+    }
+    try {
+      inst.retransformClasses(classes.toArray(new Class<?>[0]));
+      return classes.size();
+    } catch (UnmodifiableClassException | RuntimeException | LinkageError e) {
+      // A single failing class aborts the whole batch, so retry one by one
+      logger.log(Level.FINE, "Retransforming all classes failed, retrying one by one", e);
+    }
+    int retransformed = 0;
+    for (Class<?> loadedClass : classes) {
+      try {
+        inst.retransformClasses(loadedClass);
+        retransformed++;
+      } catch (UnmodifiableClassException | RuntimeException | LinkageError e) {
+        logger.log(Level.WARNING, e, () -> "Could not retransform " + loadedClass.getName());
+      }
+    }
+    return retransformed;
   }
 
   static class InstrumentationTransformer implements ClassFileTransformer {
 
+    private final AgentOptions options;
+    private final FirstHitMonitor firstHitMonitor;
+    private final AtomicLong transformedClasses = new AtomicLong();
+    private final AtomicLong totalTransformNanos = new AtomicLong();
+
+    InstrumentationTransformer() {
+      this(AgentOptions.defaults());
+    }
+
+    InstrumentationTransformer(AgentOptions options) {
+      this(options, null);
+    }
+
+    /**
+     * Creates a transformer that leaves out the probes of the methods the monitor disabled, and
+     * reports the probes of all other methods to it.
+     */
+    InstrumentationTransformer(AgentOptions options, FirstHitMonitor firstHitMonitor) {
+      this.options = options;
+      this.firstHitMonitor = firstHitMonitor;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -39,48 +207,445 @@ public class Agent {
         return classFileBuffer;
       }
 
+      long start = System.nanoTime();
       ClassReader cr = new ClassReader(classFileBuffer);
-      ClassWriter cw = new ClassWriter(cr, ClassWriter.COMPUTE_FRAMES);
-      InstrumentationAdapter ia = new InstrumentationAdapter(cw, className);
-      cr.accept(ia, 0);
-      return cw.toByteArray();
+      ClassWriter cw = newClassWriter(cr, options);
+      InstrumentationAdapter ia =
+          new InstrumentationAdapter(cw, className, LineTable.read(cr), options);
+      if (firstHitMonitor != null) {
+        ia.disableProbes(firstHitMonitor.getDisabledMethods(className));
+      }
+      cr.accept(ia, ClassReader.EXPAND_FRAMES);
+      byte[] instrumented = cw.toByteArray();
+      if (firstHitMonitor != null) {
+        firstHitMonitor.register(className, ia.getClassId(), ia.getMethodProbes());
+      }
+      if (options.isTiming()) {
+        reportTransformTime(className, System.nanoTime() - start);
+      }
+      return instrumented;
+    }
+
+    private void reportTransformTime(String className, long nanos) {
+      long classes = transformedClasses.incrementAndGet();
+      long totalNanos = totalTransformNanos.addAndGet(nanos);
+      logger.log(
+          Level.INFO,
+          "Instrumented {0} in {1} µs ({2} classes in {3} ms so far)",
+          new Object[] {
+            className,
+            TimeUnit.NANOSECONDS.toMicros(nanos),
+            classes,
+            TimeUnit.NANOSECONDS.toMillis(totalNanos)
+          });
+    }
+
+    /**
+     * Provides the number of classes whose transform time was recorded.
+     *
+     * @return The number of timed classes
+     */
+    long getTransformedClasses() {
+      return transformedClasses.get();
+    }
+
+    /**
+     * Provides the total time spent instrumenting the timed classes.
+     *
+     * @return The accumulated transform time in nanoseconds
+     */
+    long getTotalTransformNanos() {
+      return totalTransformNanos.get();
     }
 
     private boolean isIgnoredClass(String className) {
-      return !className.startsWith("de/uni_passau/fim/se2/st/fuzzing/fuzztarget")
-          || className.endsWith("Test");
+      return !options.getClassFilter().matches(className);
     }
   }
 
+  /**
+   * Creates the writer for an instrumented class, which either keeps the original stack map frames
+   * or recomputes them.
+   */
+  static ClassWriter newClassWriter(ClassReader classReader, AgentOptions options) {
+    return new ClassWriter(
+        classReader,
+        options.isKeepFrames() ? ClassWriter.COMPUTE_MAXS : ClassWriter.COMPUTE_FRAMES);
+  }
+
+  /**
+   * Inserts a line probe in front of the first instruction of every source line. Each distinct
+   * line of the class gets a dense probe id, every method fetches the probe array of its class
+   * once on entry, and a probe hit is a plain increment of {@code probes[probeId]}.
+   *
+   * <p>Classes instrumented ahead of time are not known to the tracker of the JVM that runs them.
+   * Their methods pass the class name and the encoded probe layout along when fetching the probe
+   * array, so that the class registers itself on first use.
+   *
+   * <p>In edge coverage mode, every basic block additionally gets a pseudo-random block id. On
+   * entry of a block, the edge from the previous block is counted AFL-style in the edge map of
+   * {@link CoverageTracker} at {@code previous ^ current}.
+   */
   static class InstrumentationAdapter extends ClassVisitor {
 
     private final String className;
+    private final int classId;
+    private final String offlineProbeLines;
+    private final boolean edgeCoverage;
+    private final Map<Integer, Integer> probeOfLine = new HashMap<>();
+    private final Map<String, int[]> methodProbes = new HashMap<>();
+    private Set<String> disabledMethods = Set.of();
+
+    /**
+     * Instruments a class that is loaded into this JVM and registers it with the tracker.
+     *
+     * @param classVisitor The visitor receiving the instrumented class
+     * @param className The internal name of the class
+     * @param probeLines The probe layout as read by {@link LineTable#read(ClassReader)}
+     * @param options The instrumentation options
+     */
+    InstrumentationAdapter(
+        ClassVisitor classVisitor, String className, int[] probeLines, AgentOptions options) {
+      this(
+          classVisitor,
+          className,
+          probeLines,
+          options,
+          CoverageTracker.registerClass(className),
+          null);
+      CoverageTracker.registerProbes(classId, probeLines);
+    }
 
-    InstrumentationAdapter(ClassWriter classWriter, String className) {
-      super(ASM9, classWriter);
+    private InstrumentationAdapter(
+        ClassVisitor classVisitor,
+        String className,
+        int[] probeLines,
+        AgentOptions options,
+        int classId,
+        String offlineProbeLines) {
+      super(ASM9, classVisitor);
       this.className = className;
+      this.classId = classId;
+      this.offlineProbeLines = offlineProbeLines;
+      this.edgeCoverage = options.isEdgeCoverage();
+      for (int i = 0; i < probeLines.length; i++) {
+        probeOfLine.put(probeLines[i], i);
+      }
+    }
+
+    /**
+     * Instruments a class ahead of time. The class registers itself under the given offline class
+     * id once it is run.
+     *
+     * @param classVisitor The visitor receiving the instrumented class
+     * @param className The internal name of the class
+     * @param probeLines The probe layout as read by {@link LineTable#read(ClassReader)}
+     * @param options The instrumentation options
+     * @param offlineClassId The id of the class among all classes instrumented ahead of time
+     * @return The adapter
+     */
+    static InstrumentationAdapter offline(
+        ClassVisitor classVisitor,
+        String className,
+        int[] probeLines,
+        AgentOptions options,
+        int offlineClassId) {
+      return new InstrumentationAdapter(
+          classVisitor,
+          className,
+          probeLines,
+          options,
+          offlineClassId,
+          LineTable.encode(probeLines));
+    }
+
+    /**
+     * Leaves out the probes of the given methods, which are copied unchanged.
+     *
+     * @param methods The names and descriptors of the methods, e.g., {@code gcd(II)I}
+     */
+    void disableProbes(Set<String> methods) {
+      this.disabledMethods = methods;
+    }
+
+    /**
+     * Provides the id of the instrumented class at the tracker.
+     *
+     * @return The class id
+     */
+    int getClassId() {
+      return classId;
+    }
+
+    /**
+     * Provides the probe ids of every method that got probes, once the class was visited.
+     *
+     * @return The probe ids by method name and descriptor
+     */
+    Map<String, int[]> getMethodProbes() {
+      return methodProbes;
     }
 
     @Override
     public MethodVisitor visitMethod(
         int access, String name, String descriptor, String signature, String[] exceptions) {
-      MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
+      MethodVisitor methodVisitor =
+          super.visitMethod(access, name, descriptor, signature, exceptions);
+      String method = name + descriptor;
+      if (disabledMethods.contains(method)) {
+        return methodVisitor;
+      }
+      if (!edgeCoverage) {
+        return new ProbeMethodAdapter(access, method, descriptor, methodVisitor, null, null);
+      }
 
-      return new MethodVisitor(ASM9, mv) {
+      // Backward jumps target labels that were already visited, so the whole method is read
+      // first to know where basic blocks start.
+      String methodKey = className + '.' + name + descriptor;
+      return new MethodNode(ASM9, access, name, descriptor, signature, exceptions) {
         @Override
-        public void visitLineNumber(int line, Label start) {
-          super.visitLineNumber(line, start);
-          CoverageTracker.trackLine(line, className);
-          visitLdcInsn(line);
-          visitLdcInsn(className);
-          visitMethodInsn(
+        public void visitEnd() {
+          accept(
+              new ProbeMethodAdapter(
+                  access, method, descriptor, methodVisitor, methodKey, findBlockStarts(this)));
+        }
+      };
+    }
+
+    /**
+     * Collects the labels that start a basic block, i.e., jump and switch targets and exception
+     * handlers.
+     */
+    private Set<Label> findBlockStarts(MethodNode method) {
+      Set<Label> blockStarts = new HashSet<>();
+      for (AbstractInsnNode insn : method.instructions) {
+        if (insn instanceof JumpInsnNode jump) {
+          blockStarts.add(jump.label.getLabel());
+        } else if (insn instanceof TableSwitchInsnNode tableSwitch) {
+          blockStarts.add(tableSwitch.dflt.getLabel());
+          tableSwitch.labels.forEach(label -> blockStarts.add(label.getLabel()));
+        } else if (insn instanceof LookupSwitchInsnNode lookupSwitch) {
+          blockStarts.add(lookupSwitch.dflt.getLabel());
+          lookupSwitch.labels.forEach(label -> blockStarts.add(label.getLabel()));
+        }
+      }
+      for (TryCatchBlockNode tryCatchBlock : method.tryCatchBlocks) {
+        blockStarts.add(tryCatchBlock.handler.getLabel());
+      }
+      return blockStarts;
+    }
+
+    private int probeFor(int line) {
+      return probeOfLine.get(line);
+    }
+
+    /**
+     * Emits the probes of a single method. A probe is inserted right before the next instruction
+     * after a line number or block start, so that it ends up behind any stack map frame of the
+     * label.
+     */
+    private final class ProbeMethodAdapter extends LocalVariablesSorter {
+
+      private final String method;
+      private final String methodKey;
+      private final Set<Label> blockStarts;
+      private final Set<Integer> probeIds = new HashSet<>();
+      private int probesLocal;
+      private int edgesLocal;
+      private int previousBlockLocal;
+      private int pendingProbe = -1;
+      private boolean pendingBlock = false;
+      private int blockIndex = 0;
+
+      ProbeMethodAdapter(
+          int access,
+          String method,
+          String descriptor,
+          MethodVisitor methodVisitor,
+          String methodKey,
+          Set<Label> blockStarts) {
+        super(ASM9, access, descriptor, methodVisitor);
+        this.method = method;
+        this.methodKey = methodKey;
+        this.blockStarts = blockStarts;
+      }
+
+      @Override
+      public void visitCode() {
+        super.visitCode();
+        String tracker = Type.getInternalName(CoverageTracker.class);
+        probesLocal = newLocal(Type.getType(int[].class));
+        mv.visitLdcInsn(classId);
+        if (offlineProbeLines == null) {
+          mv.visitMethodInsn(INVOKESTATIC, tracker, "getProbes", "(I)[I", false);
+        } else {
+          mv.visitLdcInsn(className);
+          mv.visitLdcInsn(offlineProbeLines);
+          mv.visitMethodInsn(
               INVOKESTATIC,
-              Type.getInternalName(CoverageTracker.class),
-              "trackLineVisit",
-              "(ILjava/lang/String;)V",
+              tracker,
+              "getProbes",
+              "(ILjava/lang/String;Ljava/lang/String;)[I",
               false);
         }
-      };
+        mv.visitVarInsn(ASTORE, probesLocal);
+        if (blockStarts != null) {
+          edgesLocal = newLocal(Type.getType(int[].class));
+          mv.visitMethodInsn(INVOKESTATIC, tracker, "getEdgeMap", "()[I", false);
+          mv.visitVarInsn(ASTORE, edgesLocal);
+          previousBlockLocal = newLocal(Type.INT_TYPE);
+          mv.visitInsn(ICONST_0);
+          mv.visitVarInsn(ISTORE, previousBlockLocal);
+          pendingBlock = true;
+        }
+      }
+
+      @Override
+      public void visitLabel(Label label) {
+        super.visitLabel(label);
+        if (blockStarts != null && blockStarts.contains(label)) {
+          pendingBlock = true;
+        }
+      }
+
+      @Override
+      public void visitLineNumber(int line, Label start) {
+        super.visitLineNumber(line, start);
+        pendingProbe = probeFor(line);
+        probeIds.add(pendingProbe);
+      }
+
+      @Override
+      public void visitEnd() {
+        super.visitEnd();
+        if (!probeIds.isEmpty()) {
+          methodProbes.put(method, probeIds.stream().mapToInt(Integer::intValue).toArray());
+        }
+      }
+
+      private void insertPendingProbe() {
+        if (pendingBlock) {
+          int blockId = blockId(blockIndex++);
+          mv.visitVarInsn(ALOAD, edgesLocal);
+          mv.visitVarInsn(ILOAD, previousBlockLocal);
+          mv.visitLdcInsn(blockId);
+          mv.visitInsn(IXOR);
+          incrementArrayElement();
+          mv.visitLdcInsn(blockId >>> 1);
+          mv.visitVarInsn(ISTORE, previousBlockLocal);
+          pendingBlock = false;
+        }
+        if (pendingProbe >= 0) {
+          mv.visitVarInsn(ALOAD, probesLocal);
+          mv.visitLdcInsn(pendingProbe);
+          incrementArrayElement();
+          pendingProbe = -1;
+        }
+      }
+
+      /** Increments {@code array[index]}, with the array and the index on top of the stack. */
+      private void incrementArrayElement() {
+        mv.visitInsn(DUP2);
+        mv.visitInsn(IALOAD);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IADD);
+        mv.visitInsn(IASTORE);
+      }
+
+      /** Hashes the block index into a well-spread position of the edge map. */
+      private int blockId(int index) {
+        int hash = methodKey.hashCode() * 31 + index;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash & (CoverageTracker.EDGE_MAP_SIZE - 1);
+      }
+
+      @Override
+      public void visitInsn(int opcode) {
+        insertPendingProbe();
+        super.visitInsn(opcode);
+      }
+
+      @Override
+      public void visitIntInsn(int opcode, int operand) {
+        insertPendingProbe();
+        super.visitIntInsn(opcode, operand);
+      }
+
+      @Override
+      public void visitVarInsn(int opcode, int varIndex) {
+        insertPendingProbe();
+        super.visitVarInsn(opcode, varIndex);
+      }
+
+      @Override
+      public void visitTypeInsn(int opcode, String type) {
+        insertPendingProbe();
+        super.visitTypeInsn(opcode, type);
+      }
+
+      @Override
+      public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+        insertPendingProbe();
+        super.visitFieldInsn(opcode, owner, name, descriptor);
+      }
+
+      @Override
+      public void visitMethodInsn(
+          int opcode, String owner, String name, String descriptor, boolean isInterface) {
+        insertPendingProbe();
+        super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+      }
+
+      @Override
+      public void visitInvokeDynamicInsn(
+          String name, String descriptor, Handle bootstrapMethodHandle, Object... arguments) {
+        insertPendingProbe();
+        super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, arguments);
+      }
+
+      @Override
+      public void visitJumpInsn(int opcode, Label label) {
+        insertPendingProbe();
+        super.visitJumpInsn(opcode, label);
+        if (blockStarts != null && opcode != GOTO && opcode != JSR) {
+          // The fall-through successor of a conditional jump starts a new block
+          pendingBlock = true;
+        }
+      }
+
+      @Override
+      public void visitLdcInsn(Object value) {
+        insertPendingProbe();
+        super.visitLdcInsn(value);
+      }
+
+      @Override
+      public void visitIincInsn(int varIndex, int increment) {
+        insertPendingProbe();
+        super.visitIincInsn(varIndex, increment);
+      }
+
+      @Override
+      public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+        insertPendingProbe();
+        super.visitTableSwitchInsn(min, max, dflt, labels);
+      }
+
+      @Override
+      public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+        insertPendingProbe();
+        super.visitLookupSwitchInsn(dflt, keys, labels);
+      }
+
+      @Override
+      public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+        insertPendingProbe();
+        super.visitMultiANewArrayInsn(descriptor, numDimensions);
+      }
     }
   }
 }
@@ -0,0 +1,187 @@
+package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options of the instrumentation agent, parsed from the agent arguments, e.g., {@code
+ * -javaagent:fuzzer.jar=edges=true,frames=keep,includes=com.example.**}. Options are separated by
+ * commas and given as {@code key=value} pairs. The class patterns of {@code includes} and {@code
+ * excludes} are separated by colons.
+ */
+final class AgentOptions {
+
+  static final String EDGES = "edges";
+  static final String FRAMES = "frames";
+  static final String TIMING = "timing";
+  static final String FIRST_HIT = "firsthit";
+  static final String INCLUDES = "includes";
+  static final String EXCLUDES = "excludes";
+
+  static final List<String> DEFAULT_INCLUDES =
+      List.of("de.uni_passau.fim.se2.st.fuzzing.fuzztarget.**");
+  static final List<String> DEFAULT_EXCLUDES = List.of("**Test");
+
+  /** The tracker and the agent itself must never be instrumented, whatever the user includes. */
+  private static final List<String> AGENT_CLASSES =
+      List.of(
+          "de.uni_passau.fim.se2.st.fuzzing.coverage.**",
+          "de.uni_passau.fim.se2.st.fuzzing.instrumentation.**");
+
+  private boolean edgeCoverage = false;
+  private boolean keepFrames = false;
+  private boolean timing = false;
+  private boolean firstHit = false;
+  private List<String> includes = DEFAULT_INCLUDES;
+  private List<String> excludes = DEFAULT_EXCLUDES;
+  private ClassFilter classFilter;
+
+  private AgentOptions() {}
+
+  /**
+   * Provides the default options, i.e., line coverage only.
+   *
+   * @return The default options
+   */
+  static AgentOptions defaults() {
+    return parse(null);
+  }
+
+  /**
+   * Provides options for instrumenting classes ahead of time, where no agent arguments exist.
+   *
+   * @param edgeCoverage Whether branch edges are instrumented
+   * @param keepFrames Whether the original stack map frames are kept
+   * @param includes The patterns of instrumented classes, {@code null} for the default ones
+   * @param excludes The patterns of skipped classes, {@code null} for the default ones
+   * @return The options
+   * @throws IllegalArgumentException If a pattern is empty or the patterns are too complex
+   */
+  static AgentOptions of(
+      boolean edgeCoverage, boolean keepFrames, List<String> includes, List<String> excludes) {
+    AgentOptions options = new AgentOptions();
+    options.edgeCoverage = edgeCoverage;
+    options.keepFrames = keepFrames;
+    if (includes != null) {
+      options.includes = List.copyOf(includes);
+    }
+    if (excludes != null) {
+      options.excludes = List.copyOf(excludes);
+    }
+    options.compileClassFilter();
+    return options;
+  }
+
+  /**
+   * Parses the agent arguments.
+   *
+   * @param agentArgs The arguments passed to the agent, may be {@code null} or empty
+   * @return The parsed options
+   * @throws IllegalArgumentException If an option is unknown or has an invalid value
+   */
+  static AgentOptions parse(String agentArgs) {
+    AgentOptions options = new AgentOptions();
+    if (agentArgs == null || agentArgs.isBlank()) {
+      options.compileClassFilter();
+      return options;
+    }
+    for (String option : agentArgs.split(",")) {
+      int separator = option.indexOf('=');
+      if (separator < 0) {
+        throw new IllegalArgumentException("Agent option must be of the form key=value: " + option);
+      }
+      String key = option.substring(0, separator).strip();
+      String value = option.substring(separator + 1).strip();
+      switch (key) {
+        case EDGES -> options.edgeCoverage = parseBoolean(key, value);
+        case FRAMES -> options.keepFrames = parseFrames(value);
+        case TIMING -> options.timing = parseBoolean(key, value);
+        case FIRST_HIT -> options.firstHit = parseBoolean(key, value);
+        case INCLUDES -> options.includes = ClassFilter.split(value);
+        case EXCLUDES -> options.excludes = ClassFilter.split(value);
+        default -> throw new IllegalArgumentException("Unknown agent option: " + key);
+      }
+    }
+    if (options.firstHit && options.edgeCoverage) {
+      throw new IllegalArgumentException("Agent option firsthit cannot be combined with edges.");
+    }
+    options.compileClassFilter();
+    return options;
+  }
+
+  private void compileClassFilter() {
+    List<String> allExcludes = new ArrayList<>(excludes);
+    allExcludes.addAll(AGENT_CLASSES);
+    classFilter = new ClassFilter(includes, allExcludes);
+  }
+
+  private static boolean parseBoolean(String key, String value) {
+    if (value.equals("true")) {
+      return true;
+    } else if (value.equals("false")) {
+      return false;
+    }
+    throw new IllegalArgumentException("Agent option " + key + " must be true or false: " + value);
+  }
+
+  private static boolean parseFrames(String value) {
+    if (value.equals("keep")) {
+      return true;
+    } else if (value.equals("compute")) {
+      return false;
+    }
+    throw new IllegalArgumentException("Agent option frames must be keep or compute: " + value);
+  }
+
+  /**
+   * Whether branch edges are instrumented in addition to lines.
+   *
+   * @return {@code true} if edge coverage is enabled
+   */
+  boolean isEdgeCoverage() {
+    return edgeCoverage;
+  }
+
+  /**
+   * Whether the stack map frames of the original class are kept instead of being recomputed. The
+   * probes never change the operand stack at a frame, so only the maximum stack size has to be
+   * computed, and no classes are loaded to find common super classes.
+   *
+   * @return {@code true} if the original frames are kept
+   */
+  boolean isKeepFrames() {
+    return keepFrames;
+  }
+
+  /**
+   * Whether the time needed to instrument each class is reported.
+   *
+   * @return {@code true} if transform times are logged
+   */
+  boolean isTiming() {
+    return timing;
+  }
+
+  /**
+   * Whether the probes of a method are removed once all its lines are covered. Hit counts then
+   * stop growing and executions of the method leave empty traces, so this only suits runs that
+   * look at coverage alone, e.g., of a test suite. The fuzzer and the minimizer refuse to run with
+   * it, and it cannot be combined with edge coverage.
+   *
+   * @return {@code true} if saturated methods are retransformed without probes
+   */
+  boolean isFirstHit() {
+    return firstHit;
+  }
+
+  /**
+   * Provides the filter that decides which classes are instrumented. It is compiled from the
+   * {@code includes} and {@code excludes} patterns, which default to the fuzz targets without
+   * their tests.
+   *
+   * @return The class filter
+   */
+  ClassFilter getClassFilter() {
+    return classFilter;
+  }
+}
@@ -0,0 +1,279 @@
+package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which classes are instrumented, based on include and exclude glob patterns over class
+ * names such as {@code com.example.**} or {@code **Test}. A class is instrumented if it matches at
+ * least one include pattern and no exclude pattern.
+ *
+ * <p>Patterns use dots or slashes as package separators. {@code ?} matches a single character and
+ * {@code *} any number of characters within a package, {@code **} also matches across packages.
+ *
+ * <p>All patterns are compiled into a single deterministic automaton when the filter is created, so
+ * matching a class name takes time linear in the length of the name, independent of the number of
+ * patterns. The automaton is immutable, thus the filter can be shared between threads.
+ */
+final class ClassFilter {
+
+  private static final char SEPARATOR = '/';
+  private static final int MAX_STATES = 1 << 16;
+  private static final int DEAD = -1;
+
+  // A pattern position is either a literal character or one of the following wildcards
+  private static final int ANY_CHAR = -1;
+  private static final int ANY_IN_PACKAGE = -2;
+  private static final int ANY = -3;
+
+  /** Character class of every ASCII character, all other characters use {@link #otherClass}. */
+  private final int[] asciiClasses = new int[128];
+
+  private final Map<Character, Integer> nonAsciiClasses = new HashMap<>();
+  private final int otherClass;
+  private final int numberOfClasses;
+
+  /** Next state of each state and character class, {@link #DEAD} if no pattern can match. */
+  private final int[] transitions;
+
+  private final boolean[] included;
+  private final boolean[] excluded;
+
+  /**
+   * Compiles the patterns into a new {@code ClassFilter}.
+   *
+   * @param includes The patterns of classes to instrument
+   * @param excludes The patterns of classes that are not instrumented, even if they are included
+   * @throws IllegalArgumentException If a pattern is empty or the patterns are too complex
+   */
+  ClassFilter(List<String> includes, List<String> excludes) {
+    List<int[]> patterns = new ArrayList<>();
+    for (String pattern : includes) {
+      patterns.add(tokenize(pattern));
+    }
+    for (String pattern : excludes) {
+      patterns.add(tokenize(pattern));
+    }
+
+    // Every literal character gets its own class, the separator is needed by the wildcards
+    Arrays.fill(asciiClasses, -1);
+    int classes = 0;
+    asciiClasses[SEPARATOR] = classes++;
+    for (int[] pattern : patterns) {
+      for (int token : pattern) {
+        if (token >= 0 && token < asciiClasses.length && asciiClasses[token] < 0) {
+          asciiClasses[token] = classes++;
+        } else if (token >= asciiClasses.length && !nonAsciiClasses.containsKey((char) token)) {
+          nonAsciiClasses.put((char) token, classes++);
+        }
+      }
+    }
+    otherClass = classes++;
+    numberOfClasses = classes;
+    for (int i = 0; i < asciiClasses.length; i++) {
+      if (asciiClasses[i] < 0) {
+        asciiClasses[i] = otherClass;
+      }
+    }
+    char[] representatives = new char[numberOfClasses];
+    for (int c = 0; c < asciiClasses.length; c++) {
+      representatives[asciiClasses[c]] = (char) c;
+    }
+    nonAsciiClasses.forEach((c, characterClass) -> representatives[characterClass] = c);
+    representatives[otherClass] = 0;
+
+    Automaton automaton =
+        new Automaton(patterns, includes.size(), representatives, otherClass, numberOfClasses);
+    transitions = automaton.transitions();
+    included = automaton.included();
+    excluded = automaton.excluded();
+  }
+
+  /**
+   * Parses a colon separated list of patterns, as given in the agent arguments.
+   *
+   * @param patterns The patterns, e.g., {@code com.example.*:org.example.**}
+   * @return The individual patterns, empty if none are given
+   */
+  static List<String> split(String patterns) {
+    return Arrays.stream(patterns.split(":"))
+        .map(String::strip)
+        .filter(pattern -> !pattern.isEmpty())
+        .toList();
+  }
+
+  /**
+   * Checks whether a class is instrumented.
+   *
+   * @param className The internal name of the class, e.g., {@code com/example/Foo}
+   * @return {@code true} if the class matches an include pattern and no exclude pattern
+   */
+  boolean matches(String className) {
+    if (className == null) {
+      return false;
+    }
+    int state = 0;
+    for (int i = 0; i < className.length(); i++) {
+      state = transitions[state * numberOfClasses + classOf(className.charAt(i))];
+      if (state == DEAD) {
+        return false;
+      }
+    }
+    return included[state] && !excluded[state];
+  }
+
+  private int classOf(char c) {
+    if (c < asciiClasses.length) {
+      return asciiClasses[c];
+    }
+    return nonAsciiClasses.getOrDefault(c, otherClass);
+  }
+
+  private static int[] tokenize(String pattern) {
+    if (pattern.isEmpty()) {
+      throw new IllegalArgumentException("Class filter patterns must not be empty.");
+    }
+    int[] tokens = new int[pattern.length()];
+    int length = 0;
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      if (c == '*' && i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+        tokens[length++] = ANY;
+        i++;
+      } else if (c == '*') {
+        tokens[length++] = ANY_IN_PACKAGE;
+      } else if (c == '?') {
+        tokens[length++] = ANY_CHAR;
+      } else {
+        tokens[length++] = c == '.' ? SEPARATOR : c;
+      }
+    }
+    return Arrays.copyOf(tokens, length);
+  }
+
+  /**
+   * Subset construction of the automaton. A state of the nondeterministic automaton is a position
+   * in one of the patterns, a state of the deterministic automaton the set of positions that can be
+   * reached by the same input.
+   */
+  private static final class Automaton {
+
+    private final List<int[]> patterns;
+    private final int[] offsets;
+    private final int[] patternAt;
+    private final int numberOfIncludes;
+    private final Map<BitSet, Integer> stateIds = new HashMap<>();
+    private final List<BitSet> states = new ArrayList<>();
+
+    private int[] transitions;
+
+    Automaton(
+        List<int[]> patterns,
+        int numberOfIncludes,
+        char[] representatives,
+        int otherClass,
+        int numberOfClasses) {
+      this.patterns = patterns;
+      this.numberOfIncludes = numberOfIncludes;
+      offsets = new int[patterns.size() + 1];
+      for (int i = 0; i < patterns.size(); i++) {
+        // One position after the last token marks a complete match
+        offsets[i + 1] = offsets[i] + patterns.get(i).length + 1;
+      }
+      patternAt = new int[offsets[patterns.size()]];
+      for (int i = 0; i < patterns.size(); i++) {
+        Arrays.fill(patternAt, offsets[i], offsets[i + 1], i);
+      }
+
+      BitSet start = new BitSet();
+      for (int i = 0; i < patterns.size(); i++) {
+        addWithClosure(start, i, 0);
+      }
+      stateOf(start);
+      transitions = new int[16 * numberOfClasses];
+      for (int id = 0; id < states.size(); id++) {
+        if ((id + 1) * numberOfClasses > transitions.length) {
+          transitions = Arrays.copyOf(transitions, transitions.length * 2);
+        }
+        BitSet state = states.get(id);
+        for (int characterClass = 0; characterClass < numberOfClasses; characterClass++) {
+          char c = representatives[characterClass];
+          BitSet next = step(state, c, characterClass == otherClass);
+          transitions[id * numberOfClasses + characterClass] =
+              next.isEmpty() ? DEAD : stateOf(next);
+        }
+      }
+      transitions = Arrays.copyOf(transitions, states.size() * numberOfClasses);
+    }
+
+    int[] transitions() {
+      return transitions;
+    }
+
+    boolean[] included() {
+      return accepting(0, numberOfIncludes);
+    }
+
+    boolean[] excluded() {
+      return accepting(numberOfIncludes, patterns.size());
+    }
+
+    private boolean[] accepting(int fromPattern, int toPattern) {
+      boolean[] accepting = new boolean[states.size()];
+      for (int id = 0; id < states.size(); id++) {
+        for (int i = fromPattern; i < toPattern && !accepting[id]; i++) {
+          accepting[id] = states.get(id).get(offsets[i] + patterns.get(i).length);
+        }
+      }
+      return accepting;
+    }
+
+    private int stateOf(BitSet state) {
+      Integer id = stateIds.get(state);
+      if (id != null) {
+        return id;
+      }
+      if (states.size() == MAX_STATES) {
+        throw new IllegalArgumentException("Class filter patterns are too complex.");
+      }
+      stateIds.put(state, states.size());
+      states.add(state);
+      return states.size() - 1;
+    }
+
+    private BitSet step(BitSet state, char c, boolean other) {
+      BitSet next = new BitSet();
+      for (int position = state.nextSetBit(0);
+          position >= 0;
+          position = state.nextSetBit(position + 1)) {
+        int pattern = patternAt[position];
+        int index = position - offsets[pattern];
+        int[] tokens = patterns.get(pattern);
+        if (index == tokens.length) {
+          continue;
+        }
+        int token = tokens[index];
+        if (token == ANY || (token == ANY_IN_PACKAGE && c != SEPARATOR)) {
+          addWithClosure(next, pattern, index);
+        } else if ((token == ANY_CHAR && c != SEPARATOR) || (!other && token == c)) {
+          addWithClosure(next, pattern, index + 1);
+        }
+      }
+      return next;
+    }
+
+    /** Adds a position and all positions reachable by skipping wildcards that match nothing. */
+    private void addWithClosure(BitSet state, int pattern, int index) {
+      int[] tokens = patterns.get(pattern);
+      state.set(offsets[pattern] + index);
+      while (index < tokens.length && (tokens[index] == ANY || tokens[index] == ANY_IN_PACKAGE)) {
+        index++;
+        state.set(offsets[pattern] + index);
+      }
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker;
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.objectweb.asm.Type;
+
+/**
+ * Removes the probes of methods whose lines are all covered, for campaigns that only care about
+ * whether a line was hit and not how often. The monitor periodically checks the probe arrays of
+ * all instrumented classes. Once every probe of a method was hit, the method is marked as disabled
+ * and its class is retransformed, which emits the method without probes.
+ *
+ * <p>The hit counts of disabled methods stay as they are, so the tracker keeps reporting the
+ * cumulative coverage.
+ */
+final class FirstHitMonitor {
+
+  /** Time between two checks for saturated methods. */
+  static final long SCAN_PERIOD_MILLIS = 500;
+
+  private static final Logger logger = Logger.getLogger(FirstHitMonitor.class.getName());
+
+  private final Instrumentation inst;
+
+  /** Class id and probe ids of every instrumented method, by internal class name. */
+  private final Map<String, InstrumentedClass> instrumentedClasses = new ConcurrentHashMap<>();
+
+  /** Methods, given as name and descriptor, that are emitted without probes, by class name. */
+  private final Map<String, Set<String>> disabledMethods = new ConcurrentHashMap<>();
+
+  private record InstrumentedClass(int classId, Map<String, int[]> methodProbes) {}
+
+  /**
+   * Creates a new {@code FirstHitMonitor}.
+   *
+   * @param inst The instrumentation used to retransform classes
+   */
+  FirstHitMonitor(Instrumentation inst) {
+    this.inst = inst;
+  }
+
+  /** Starts checking for saturated methods in a background thread. */
+  void start() {
+    ScheduledExecutorService scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "first-hit-monitor");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleWithFixedDelay(
+        this::disableSaturatedMethodsSafely,
+        SCAN_PERIOD_MILLIS,
+        SCAN_PERIOD_MILLIS,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Records the probes a class was instrumented with. Called whenever the class is transformed.
+   *
+   * @param className The internal name of the class
+   * @param classId The id of the class at the tracker
+   * @param methodProbes The probe ids of every instrumented method, by name and descriptor
+   */
+  void register(String className, int classId, Map<String, int[]> methodProbes) {
+    instrumentedClasses.put(className, new InstrumentedClass(classId, Map.copyOf(methodProbes)));
+  }
+
+  /**
+   * Provides the methods of a class that are to be emitted without probes.
+   *
+   * @param className The internal name of the class
+   * @return The names and descriptors of the disabled methods
+   */
+  Set<String> getDisabledMethods(String className) {
+    return disabledMethods.getOrDefault(className, Set.of());
+  }
+
+  /**
+   * Disables all methods whose probes were hit, and retransforms their classes.
+   *
+   * @return The number of newly disabled methods
+   */
+  int disableSaturatedMethods() {
+    Set<String> saturatedClasses = new HashSet<>();
+    int disabled = 0;
+    for (Map.Entry<String, InstrumentedClass> entry : instrumentedClasses.entrySet()) {
+      String className = entry.getKey();
+      InstrumentedClass instrumentedClass = entry.getValue();
+      int[] probes = CoverageTracker.getProbeCounts(instrumentedClass.classId());
+      Set<String> methods =
+          disabledMethods.computeIfAbsent(className, name -> ConcurrentHashMap.newKeySet());
+      for (Map.Entry<String, int[]> method : instrumentedClass.methodProbes().entrySet()) {
+        if (!methods.contains(method.getKey()) && allHit(probes, method.getValue())) {
+          methods.add(method.getKey());
+          saturatedClasses.add(className);
+          disabled++;
+        }
+      }
+    }
+    if (!saturatedClasses.isEmpty()) {
+      List<Class<?>> classes = new ArrayList<>();
+      for (Class<?> loadedClass : inst.getAllLoadedClasses()) {
+        if (saturatedClasses.contains(Type.getInternalName(loadedClass))
+            && inst.isModifiableClass(loadedClass)) {
+          classes.add(loadedClass);
+        }
+      }
+      Agent.retransform(inst, classes);
+    }
+    return disabled;
+  }
+
+  private void disableSaturatedMethodsSafely() {
+    try {
+      int disabled = disableSaturatedMethods();
+      if (disabled > 0) {
+        logger.log(Level.FINE, "Disabled the probes of {0} saturated methods", disabled);
+      }
+    } catch (RuntimeException e) {
+      // An exception would cancel all further checks
+      logger.log(Level.WARNING, "Checking for saturated methods failed", e);
+    }
+  }
+
+  private static boolean allHit(int[] probes, int[] probeIds) {
+    for (int probeId : probeIds) {
+      if (probes[probeId] == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
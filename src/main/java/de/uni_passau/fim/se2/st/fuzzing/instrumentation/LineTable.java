@@ -0,0 +1,75 @@
+package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
+
+import static org.objectweb.asm.Opcodes.ASM9;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.StringJoiner;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Lays out the probes of a class: every distinct line of the line number tables gets one probe,
+ * numbered in the order in which the lines first appear in the class file.
+ */
+final class LineTable {
+
+  private LineTable() {}
+
+  /**
+   * Reads the line number tables of all methods of a class.
+   *
+   * @param classReader The class to read
+   * @return The line number of every probe, indexed by probe id
+   */
+  static int[] read(ClassReader classReader) {
+    Set<Integer> lines = new LinkedHashSet<>();
+    classReader.accept(
+        new ClassVisitor(ASM9) {
+          @Override
+          public MethodVisitor visitMethod(
+              int access, String name, String descriptor, String signature, String[] exceptions) {
+            return new MethodVisitor(ASM9) {
+              @Override
+              public void visitLineNumber(int line, Label start) {
+                lines.add(line);
+              }
+            };
+          }
+        },
+        ClassReader.SKIP_FRAMES);
+    return lines.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * Encodes a probe layout as a comma-separated list of line numbers, the format in which offline
+   * instrumented classes hand their layout to {@code CoverageTracker}.
+   *
+   * @param probeLines The line number of every probe
+   * @return The encoded layout
+   */
+  static String encode(int[] probeLines) {
+    StringJoiner joiner = new StringJoiner(",");
+    for (int line : probeLines) {
+      joiner.add(Integer.toString(line));
+    }
+    return joiner.toString();
+  }
+
+  /**
+   * Decodes a probe layout encoded by {@link #encode(int[])}.
+   *
+   * @param encoded The comma-separated line numbers
+   * @return The line number of every probe
+   * @throws IllegalArgumentException If the layout is malformed
+   */
+  static int[] decode(String encoded) {
+    if (encoded.isEmpty()) {
+      return new int[0];
+    }
+    return Arrays.stream(encoded.split(",")).mapToInt(Integer::parseInt).toArray();
+  }
+}
@@ -0,0 +1,260 @@
+package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
+
+import com.google.common.hash.Hashing;
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Registers the line tables of all classes of a package with the {@link CoverageTracker} before
+ * any of them is loaded. Without it, the tracker only knows the lines of classes that were already
+ * instrumented, so the total number of lines grows and the coverage drops whenever a new class is
+ * loaded.
+ *
+ * <p>Class files are read and scanned in parallel. The line tables are cached in a file, keyed by
+ * a hash of the class file, so later runs only hash unchanged classes instead of parsing them.
+ */
+public final class LineTableScanner {
+
+  private static final Logger logger = Logger.getLogger(LineTableScanner.class.getName());
+  private static final String CACHE_HEADER = "# line tables v1";
+  private static final String CLASS_SUFFIX = ".class";
+
+  private final Path cacheFile;
+  private final int threads;
+
+  /**
+   * Creates a new {@code LineTableScanner}.
+   *
+   * @param cacheFile The file caching the line tables between runs
+   * @param threads The number of threads scanning classes in parallel
+   */
+  public LineTableScanner(Path cacheFile, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("At least one thread is needed.");
+    }
+    this.cacheFile = cacheFile;
+    this.threads = threads;
+  }
+
+  /**
+   * The outcome of a scan.
+   *
+   * @param classes The number of registered classes
+   * @param cached The number of classes whose line table was taken from the cache
+   */
+  public record Result(int classes, int cached) {}
+
+  private record ClassFile(String className, Callable<byte[]> content) {}
+
+  private record ScannedClass(String className, String hash, int[] lines, boolean cached) {}
+
+  /**
+   * Registers the line tables of all classes in a package and its sub-packages.
+   *
+   * @param packageName The name of the package, e.g., {@code com.example}
+   * @param loader The class loader whose class path is scanned
+   * @param filter Selects the classes by internal name, usually those the agent instruments
+   * @return The number of registered and cached classes
+   * @throws IOException When the class path or the cache cannot be read, or the cache cannot be
+   *     written
+   */
+  public Result scan(String packageName, ClassLoader loader, Predicate<String> filter)
+      throws IOException {
+    String packagePath = packageName.replace('.', '/');
+    List<JarFile> jars = new ArrayList<>();
+    try {
+      Map<String, ClassFile> classFiles = new LinkedHashMap<>();
+      for (URL root : Collections.list(loader.getResources(packagePath))) {
+        for (ClassFile classFile : listClassFiles(root, packagePath, jars)) {
+          // Classes found first on the class path shadow the others
+          if (filter.test(classFile.className())) {
+            classFiles.putIfAbsent(classFile.className(), classFile);
+          }
+        }
+      }
+
+      Map<String, int[]> cache = readCache();
+      List<ScannedClass> scannedClasses = scanInParallel(classFiles.values(), cache);
+      int cached = 0;
+      Map<String, int[]> newCache = new HashMap<>();
+      for (ScannedClass scannedClass : scannedClasses) {
+        int classId = CoverageTracker.registerClass(scannedClass.className());
+        CoverageTracker.registerProbes(classId, scannedClass.lines());
+        newCache.put(scannedClass.hash(), scannedClass.lines());
+        cached += scannedClass.cached() ? 1 : 0;
+      }
+      writeCache(newCache);
+      Result result = new Result(scannedClasses.size(), cached);
+      logger.log(
+          Level.FINE, "Registered line tables of {0}: {1}", new Object[] {packageName, result});
+      return result;
+    } finally {
+      for (JarFile jar : jars) {
+        jar.close();
+      }
+    }
+  }
+
+  private List<ScannedClass> scanInParallel(
+      Iterable<ClassFile> classFiles, Map<String, int[]> cache) throws IOException {
+    List<Callable<ScannedClass>> tasks = new ArrayList<>();
+    for (ClassFile classFile : classFiles) {
+      tasks.add(
+          () -> {
+            byte[] content = classFile.content().call();
+            String hash = Hashing.murmur3_128().hashBytes(content).toString();
+            int[] lines = cache.get(hash);
+            if (lines != null) {
+              return new ScannedClass(classFile.className(), hash, lines, true);
+            }
+            lines = LineTable.read(new ClassReader(content));
+            return new ScannedClass(classFile.className(), hash, lines, false);
+          });
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<ScannedClass> scannedClasses = new ArrayList<>();
+      for (Future<ScannedClass> future : executor.invokeAll(tasks)) {
+        scannedClasses.add(future.get());
+      }
+      return scannedClasses;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while scanning line tables", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      throw new IllegalStateException("Failed to scan line tables", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static List<ClassFile> listClassFiles(URL root, String packagePath, List<JarFile> jars)
+      throws IOException {
+    List<ClassFile> classFiles = new ArrayList<>();
+    switch (root.getProtocol()) {
+      case "file" -> {
+        Path directory = toPath(root);
+        try (Stream<Path> files = Files.walk(directory)) {
+          for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+            String separator = file.getFileSystem().getSeparator();
+            String path =
+                packagePath + "/" + directory.relativize(file).toString().replace(separator, "/");
+            if (isClassFile(path)) {
+              classFiles.add(new ClassFile(toClassName(path), () -> Files.readAllBytes(file)));
+            }
+          }
+        }
+      }
+      case "jar" -> {
+        JarURLConnection connection = (JarURLConnection) root.openConnection();
+        connection.setUseCaches(false);
+        JarFile jar = connection.getJarFile();
+        jars.add(jar);
+        for (JarEntry entry : Collections.list(jar.entries())) {
+          String path = entry.getName();
+          if (path.startsWith(packagePath + "/") && isClassFile(path)) {
+            classFiles.add(new ClassFile(toClassName(path), () -> readEntry(jar, entry)));
+          }
+        }
+      }
+      default -> logger.fine(() -> "Skipping class path root " + root);
+    }
+    return classFiles;
+  }
+
+  private static Path toPath(URL url) {
+    try {
+      return Path.of(url.toURI());
+    } catch (URISyntaxException e) {
+      throw new IllegalArgumentException("Invalid class path root: " + url, e);
+    }
+  }
+
+  private static byte[] readEntry(JarFile jar, JarEntry entry) throws IOException {
+    try (InputStream in = jar.getInputStream(entry)) {
+      return in.readAllBytes();
+    }
+  }
+
+  private static boolean isClassFile(String path) {
+    return path.endsWith(CLASS_SUFFIX)
+        && !path.endsWith("module-info.class")
+        && !path.endsWith("package-info.class");
+  }
+
+  private static String toClassName(String path) {
+    return path.substring(0, path.length() - CLASS_SUFFIX.length());
+  }
+
+  private Map<String, int[]> readCache() throws IOException {
+    Map<String, int[]> cache = new HashMap<>();
+    if (!Files.exists(cacheFile)) {
+      return cache;
+    }
+    List<String> lines = Files.readAllLines(cacheFile);
+    if (lines.isEmpty() || !lines.get(0).equals(CACHE_HEADER)) {
+      logger.warning(() -> "Ignoring line table cache of unknown format: " + cacheFile);
+      return cache;
+    }
+    for (String line : lines.subList(1, lines.size())) {
+      String[] parts = line.split(" ", 2);
+      try {
+        cache.put(parts[0], LineTable.decode(parts.length < 2 ? "" : parts[1]));
+      } catch (NumberFormatException e) {
+        logger.fine(() -> "Skipping malformed line of the line table cache: " + line);
+      }
+    }
+    return cache;
+  }
+
+  private void writeCache(Map<String, int[]> cache) throws IOException {
+    List<String> lines = new ArrayList<>();
+    lines.add(CACHE_HEADER);
+    cache.entrySet().stream()
+        .sorted(Map.Entry.comparingByKey())
+        .forEach(entry -> lines.add(entry.getKey() + " " + LineTable.encode(entry.getValue())));
+    // Other processes may read the cache meanwhile, so it is replaced by a complete file at once
+    Path directory = cacheFile.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temporary = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temporary, lines);
+      try {
+        Files.move(temporary, cacheFile, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+}
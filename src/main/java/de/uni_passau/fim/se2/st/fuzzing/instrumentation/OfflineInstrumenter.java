@@ -0,0 +1,285 @@
+package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
+
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * Instruments a class directory or a jar ahead of time, so that the instrumented classes can be
+ * run without the agent. The output directory mirrors the input: class files that the include and
+ * exclude patterns of the agent select are instrumented, all other files are copied.
+ *
+ * <p>An index file in the output directory records a hash of every instrumented class file together
+ * with its offline class id. Running the instrumenter again on the same output directory with the
+ * same options skips every class whose hash did not change, and deletes the instrumented classes
+ * of the previous run that no longer exist in the input.
+ */
+public final class OfflineInstrumenter {
+
+  /** Name of the index file written to the output directory. */
+  public static final String INDEX_FILE = "instrumentation.index";
+
+  private static final Logger logger = Logger.getLogger(OfflineInstrumenter.class.getName());
+  private static final String CLASS_SUFFIX = ".class";
+
+  private final AgentOptions options;
+  private final int threads;
+
+  /**
+   * Creates a new {@code OfflineInstrumenter}.
+   *
+   * @param edgeCoverage Whether branch edges are instrumented in addition to lines
+   * @param keepFrames Whether the original stack map frames are kept. Recomputing them needs the
+   *     super classes of the instrumented classes on the class path of this JVM.
+   * @param threads The number of threads instrumenting classes in parallel
+   */
+  public OfflineInstrumenter(boolean edgeCoverage, boolean keepFrames, int threads) {
+    this(edgeCoverage, keepFrames, null, null, threads);
+  }
+
+  /**
+   * Creates a new {@code OfflineInstrumenter} that selects the instrumented classes like the agent
+   * options {@code includes} and {@code excludes}.
+   *
+   * @param edgeCoverage Whether branch edges are instrumented in addition to lines
+   * @param keepFrames Whether the original stack map frames are kept. Recomputing them needs the
+   *     super classes of the instrumented classes on the class path of this JVM.
+   * @param includes The patterns of classes that are instrumented, {@code null} for the defaults
+   *     of the agent
+   * @param excludes The patterns of classes that are copied although they are included, {@code
+   *     null} for the defaults of the agent
+   * @param threads The number of threads instrumenting classes in parallel
+   * @throws IllegalArgumentException If a pattern is empty or fewer than one thread is given
+   */
+  public OfflineInstrumenter(
+      boolean edgeCoverage,
+      boolean keepFrames,
+      List<String> includes,
+      List<String> excludes,
+      int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("At least one thread is needed.");
+    }
+    this.options = AgentOptions.of(edgeCoverage, keepFrames, includes, excludes);
+    this.threads = threads;
+  }
+
+  /**
+   * The outcome of an instrumentation run.
+   *
+   * @param instrumented The number of classes that were instrumented
+   * @param unchanged The number of classes that were skipped because they did not change
+   * @param copied The number of other files, including classes that are not selected, that were
+   *     copied
+   */
+  public record Result(int instrumented, int unchanged, int copied) {}
+
+  private record Entry(String path, byte[] content) {}
+
+  private record IndexEntry(String hash, int classId) {}
+
+  /**
+   * Instruments all classes of a directory or jar.
+   *
+   * @param input The class directory or jar
+   * @param output The directory the instrumented copy is written to
+   * @return The number of instrumented, unchanged and copied files
+   * @throws IOException When the input cannot be read or the output cannot be written
+   */
+  public Result instrument(Path input, Path output) throws IOException {
+    List<Entry> entries = readEntries(input);
+    Files.createDirectories(output);
+    Path indexFile = output.resolve(INDEX_FILE);
+    Map<String, IndexEntry> indexed = readIndex(indexFile);
+    // Classes instrumented with other options cannot be reused
+    Map<String, IndexEntry> previous = hasCurrentOptions(indexFile) ? indexed : Map.of();
+
+    // Classes keep their offline class id, new classes are numbered after the known ones
+    int nextClassId =
+        previous.values().stream().mapToInt(IndexEntry::classId).max().orElse(-1) + 1;
+    Map<String, IndexEntry> index = Collections.synchronizedMap(new HashMap<>());
+    List<Callable<Boolean>> tasks = new ArrayList<>();
+    int copied = 0;
+    for (Entry entry : entries) {
+      if (!isInstrumentable(entry.path()) || !isSelected(entry.path())) {
+        write(output, entry.path(), entry.content());
+        copied++;
+        continue;
+      }
+      IndexEntry known = previous.get(entry.path());
+      int classId = known != null ? known.classId() : nextClassId++;
+      tasks.add(() -> instrumentEntry(entry, classId, known, output, index));
+    }
+
+    int instrumented = runInParallel(tasks);
+    writeIndex(indexFile, index);
+    deleteStaleClasses(output, indexed.keySet(), entries);
+    Result result = new Result(instrumented, tasks.size() - instrumented, copied);
+    logger.log(Level.FINE, "Instrumented {0} into {1}: {2}", new Object[] {input, output, result});
+    return result;
+  }
+
+  private boolean instrumentEntry(
+      Entry entry, int classId, IndexEntry known, Path output, Map<String, IndexEntry> index)
+      throws IOException {
+    String hash = Hashing.sha256().hashBytes(entry.content()).toString();
+    index.put(entry.path(), new IndexEntry(hash, classId));
+    if (known != null && known.hash().equals(hash) && Files.exists(output.resolve(entry.path()))) {
+      return false;
+    }
+    write(output, entry.path(), instrumentClass(entry, classId));
+    return true;
+  }
+
+  private byte[] instrumentClass(Entry entry, int classId) {
+    try {
+      ClassReader cr = new ClassReader(entry.content());
+      ClassWriter cw = Agent.newClassWriter(cr, options);
+      cr.accept(
+          Agent.InstrumentationAdapter.offline(
+              cw, cr.getClassName(), LineTable.read(cr), options, classId),
+          ClassReader.EXPAND_FRAMES);
+      return cw.toByteArray();
+    } catch (RuntimeException e) {
+      // ASM reports malformed or unsupported classes with runtime exceptions
+      logger.log(Level.WARNING, e, () -> "Copying uninstrumented class " + entry.path());
+      return entry.content();
+    }
+  }
+
+  private int runInParallel(List<Callable<Boolean>> tasks) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      int instrumented = 0;
+      for (Future<Boolean> future : executor.invokeAll(tasks)) {
+        if (future.get()) {
+          instrumented++;
+        }
+      }
+      return instrumented;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while instrumenting classes", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      throw new IllegalStateException("Failed to instrument classes", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void deleteStaleClasses(Path output, Set<String> indexedPaths, List<Entry> entries)
+      throws IOException {
+    Set<String> written = new HashSet<>();
+    for (Entry entry : entries) {
+      written.add(entry.path());
+    }
+    for (String path : indexedPaths) {
+      if (!written.contains(path) && Files.deleteIfExists(output.resolve(path))) {
+        logger.log(Level.FINE, "Deleted stale class {0}", path);
+      }
+    }
+  }
+
+  private boolean isSelected(String path) {
+    return options
+        .getClassFilter()
+        .matches(path.substring(0, path.length() - CLASS_SUFFIX.length()));
+  }
+
+  private static boolean isInstrumentable(String path) {
+    return path.endsWith(CLASS_SUFFIX)
+        && !path.endsWith("module-info.class")
+        && !path.endsWith("package-info.class");
+  }
+
+  private static List<Entry> readEntries(Path input) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    if (Files.isDirectory(input)) {
+      try (Stream<Path> files = Files.walk(input)) {
+        for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+          String path =
+              input.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+          entries.add(new Entry(path, Files.readAllBytes(file)));
+        }
+      }
+    } else {
+      try (JarFile jar = new JarFile(input.toFile())) {
+        for (JarEntry jarEntry : Collections.list(jar.entries())) {
+          if (!jarEntry.isDirectory()) {
+            try (InputStream in = jar.getInputStream(jarEntry)) {
+              entries.add(new Entry(jarEntry.getName(), in.readAllBytes()));
+            }
+          }
+        }
+      }
+    }
+    return entries;
+  }
+
+  private static void write(Path output, String path, byte[] content) throws IOException {
+    Path target = output.resolve(path);
+    Files.createDirectories(target.getParent());
+    Files.write(target, content);
+  }
+
+  private String optionsLine() {
+    String frames = options.isKeepFrames() ? "keep" : "compute";
+    return "# edges=" + options.isEdgeCoverage() + ",frames=" + frames;
+  }
+
+  private boolean hasCurrentOptions(Path indexFile) throws IOException {
+    if (!Files.exists(indexFile)) {
+      return false;
+    }
+    try (Stream<String> lines = Files.lines(indexFile)) {
+      return lines.findFirst().filter(optionsLine()::equals).isPresent();
+    }
+  }
+
+  private static Map<String, IndexEntry> readIndex(Path indexFile) throws IOException {
+    Map<String, IndexEntry> index = new HashMap<>();
+    if (!Files.exists(indexFile)) {
+      return index;
+    }
+    List<String> lines = Files.readAllLines(indexFile);
+    for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+      String[] parts = line.split(" ", 3);
+      index.put(parts[2], new IndexEntry(parts[0], Integer.parseInt(parts[1])));
+    }
+    return index;
+  }
+
+  private void writeIndex(Path indexFile, Map<String, IndexEntry> index) throws IOException {
+    List<String> lines = new ArrayList<>();
+    lines.add(optionsLine());
+    index.entrySet().stream()
+        .sorted(Map.Entry.comparingByKey())
+        .forEach(
+            e -> lines.add(e.getValue().hash() + " " + e.getValue().classId() + " " + e.getKey()));
+    Files.write(indexFile, lines);
+  }
+}
@@ -25,6 +25,35 @@ class CoverageGuidedFuzzerTest {
     assertThrows(NullPointerException.class, () -> fuzz.setTimeout(-1));
   }
 
+  @Test
+  void testSetWorkers() {
+    CoverageGuidedFuzzer fuzzer = new CoverageGuidedFuzzer();
+    CommandLine commandLine = new CommandLine(fuzzer);
+    assertDoesNotThrow(() -> commandLine.parseArgs("-w", "4"));
+    assertThrows(
+        CommandLine.ParameterException.class, () -> commandLine.parseArgs("--workers", "0"));
+  }
+
+  @Test
+  void testSetExecutionTimeout() {
+    CoverageGuidedFuzzer fuzzer = new CoverageGuidedFuzzer();
+    CommandLine commandLine = new CommandLine(fuzzer);
+    assertDoesNotThrow(() -> commandLine.parseArgs("--execution-timeout", "0"));
+    assertThrows(
+        CommandLine.ParameterException.class,
+        () -> commandLine.parseArgs("--execution-timeout", "-1"));
+  }
+
+  @Test
+  void testSetProcesses() {
+    CoverageGuidedFuzzer fuzzer = new CoverageGuidedFuzzer();
+    CommandLine commandLine = new CommandLine(fuzzer);
+    assertDoesNotThrow(() -> commandLine.parseArgs("--processes", "0"));
+    assertDoesNotThrow(() -> commandLine.parseArgs("--processes", "4"));
+    assertThrows(
+        CommandLine.ParameterException.class, () -> commandLine.parseArgs("--processes", "-1"));
+  }
+
   /**
    * @author Leon Föckersperger
    */
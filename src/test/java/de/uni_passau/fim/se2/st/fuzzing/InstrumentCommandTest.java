@@ -0,0 +1,80 @@
+package de.uni_passau.fim.se2.st.fuzzing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.uni_passau.fim.se2.st.fuzzing.instrumentation.OfflineInstrumenter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+class InstrumentCommandTest {
+
+  private static final String CLASS_PATH =
+      "de/uni_passau/fim/se2/st/fuzzing/fuzztarget/Rational.class";
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testInstrumentSubcommand() throws IOException {
+    Path input = tempDir.resolve("classes");
+    Path output = tempDir.resolve("instrumented");
+    Path classFile = input.resolve(CLASS_PATH);
+    Files.createDirectories(classFile.getParent());
+    try (InputStream in = InstrumentCommandTest.class.getResourceAsStream("/" + CLASS_PATH)) {
+      Files.write(classFile, Objects.requireNonNull(in).readAllBytes());
+    }
+
+    int exitCode =
+        new CommandLine(new CoverageGuidedFuzzer())
+            .execute("instrument", "-i", input.toString(), "-o", output.toString(), "-e");
+
+    assertEquals(0, exitCode);
+    assertTrue(Files.exists(output.resolve(CLASS_PATH)));
+    assertEquals(
+        "# edges=true,frames=keep",
+        Files.readAllLines(output.resolve(OfflineInstrumenter.INDEX_FILE)).get(0));
+  }
+
+  @Test
+  void testInstrumentSubcommandAppliesExcludes() throws IOException {
+    Path input = tempDir.resolve("classes");
+    Path output = tempDir.resolve("instrumented");
+    Path classFile = input.resolve(CLASS_PATH);
+    Files.createDirectories(classFile.getParent());
+    byte[] original;
+    try (InputStream in = InstrumentCommandTest.class.getResourceAsStream("/" + CLASS_PATH)) {
+      original = Objects.requireNonNull(in).readAllBytes();
+    }
+    Files.write(classFile, original);
+
+    int exitCode =
+        new CommandLine(new CoverageGuidedFuzzer())
+            .execute(
+                "instrument",
+                "-i",
+                input.toString(),
+                "-o",
+                output.toString(),
+                "--excludes",
+                "**Test:**.Rational");
+
+    assertEquals(0, exitCode);
+    assertArrayEquals(original, Files.readAllBytes(output.resolve(CLASS_PATH)));
+  }
+
+  @Test
+  void testInstrumentSubcommandRequiresInput() {
+    int exitCode =
+        new CommandLine(new CoverageGuidedFuzzer()).execute("instrument", "-o", tempDir.toString());
+
+    assertNotEquals(0, exitCode);
+  }
+}
@@ -0,0 +1,64 @@
+package de.uni_passau.fim.se2.st.fuzzing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump;
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump.ClassCoverage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+class MergeCommandTest {
+
+  @TempDir Path tempDir;
+
+  private Path writeDump(String name, int[] counts) throws IOException {
+    Path file = tempDir.resolve("dumps").resolve(name);
+    CoverageDump.of(List.of(new ClassCoverage(0, "com/example/Foo", new int[] {3, 5}, counts)))
+        .write(file);
+    return file;
+  }
+
+  @Test
+  void testMergeSubcommand() throws IOException {
+    writeDump("first.cov", new int[] {1, 0});
+    writeDump("second.cov", new int[] {0, 2});
+    Path merged = tempDir.resolve("merged.cov");
+    Path lcov = tempDir.resolve("lcov.info");
+    Path jacoco = tempDir.resolve("jacoco.xml");
+
+    int exitCode =
+        new CommandLine(new CoverageGuidedFuzzer())
+            .execute(
+                "merge",
+                tempDir.resolve("dumps").toString(),
+                "-o",
+                merged.toString(),
+                "--lcov",
+                lcov.toString(),
+                "--jacoco",
+                jacoco.toString());
+
+    assertEquals(0, exitCode);
+    assertEquals(
+        new ClassCoverage(0, "com/example/Foo", new int[] {3, 5}, new int[] {1, 2}),
+        CoverageDump.read(merged).getClasses().get("com/example/Foo"));
+    assertTrue(Files.readAllLines(lcov).contains("LH:2"));
+    assertTrue(Files.exists(jacoco));
+  }
+
+  @Test
+  void testMergeSubcommandRequiresOutput() throws IOException {
+    Path dump = writeDump("first.cov", new int[] {1, 0});
+
+    int exitCode = new CommandLine(new CoverageGuidedFuzzer()).execute("merge", dump.toString());
+
+    assertNotEquals(0, exitCode);
+  }
+}
@@ -0,0 +1,74 @@
+package de.uni_passau.fim.se2.st.fuzzing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import de.uni_passau.fim.se2.st.fuzzing.instrumentation.Agent;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+class MinimizeCommandTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testMinimizeSubcommand() throws IOException {
+    Path corpus = tempDir.resolve("corpus");
+    Files.createDirectories(corpus);
+    String input = "01.01.2024;x;Pizza;Salami (1,A);V;2,50;3,50;4,50\nnoise";
+    Files.writeString(corpus.resolve("input-0001.csv"), input);
+    Path output = tempDir.resolve("minimized");
+
+    int exitCode =
+        new CommandLine(new CoverageGuidedFuzzer())
+            .execute(
+                "minimize",
+                "-q",
+                "--threads",
+                "2",
+                "-o",
+                output.toString(),
+                "--line-table-cache",
+                tempDir.resolve("line-tables").toString(),
+                corpus.toString());
+
+    assertEquals(0, exitCode);
+    String minimized = Files.readString(output.resolve("input-0001.csv"));
+    assertTrue(minimized.length() < input.length());
+  }
+
+  @Test
+  void testNoThreads() {
+    int exitCode =
+        new CommandLine(new CoverageGuidedFuzzer())
+            .execute("minimize", "--threads", "0", tempDir.toString());
+
+    assertNotEquals(0, exitCode);
+  }
+
+  @Test
+  void testFirstHitModeIsRejected() throws IOException {
+    Files.writeString(tempDir.resolve("input.csv"), "x");
+    Instrumentation instrumentation = mock(Instrumentation.class);
+    when(instrumentation.isRetransformClassesSupported()).thenReturn(true);
+    Agent.premain("firsthit=true", instrumentation);
+    try {
+      String output = tempDir.resolve("minimized").toString();
+      int exitCode =
+          new CommandLine(new CoverageGuidedFuzzer())
+              .execute("minimize", "-o", output, tempDir.toString());
+
+      assertEquals(CommandLine.ExitCode.USAGE, exitCode);
+    } finally {
+      Agent.premain("", instrumentation);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package de.uni_passau.fim.se2.st.fuzzing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+class StringsCommandTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testStringsSubcommand() throws IOException {
+    Path corpus = tempDir.resolve("corpus");
+    Files.createDirectories(corpus);
+    Files.writeString(corpus.resolve("input-9999.csv"), "stale");
+
+    int exitCode =
+        new CommandLine(new CoverageGuidedFuzzer())
+            .setCaseInsensitiveEnumValuesAllowed(true)
+            .execute(
+                "strings",
+                "-t",
+                "1",
+                "-q",
+                "--schedule",
+                "fast",
+                "-o",
+                corpus.toString(),
+                "--line-table-cache",
+                tempDir.resolve("line-tables").toString());
+
+    assertEquals(0, exitCode);
+    // Without the agent nothing is covered, but strings of earlier runs are removed
+    assertFalse(Files.exists(corpus.resolve("input-9999.csv")));
+  }
+
+  @Test
+  void testUnknownSchedule() {
+    int exitCode =
+        new CommandLine(new CoverageGuidedFuzzer()).execute("strings", "--schedule", "fastest");
+
+    assertNotEquals(0, exitCode);
+  }
+}
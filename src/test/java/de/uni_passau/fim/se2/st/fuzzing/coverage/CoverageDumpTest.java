@@ -0,0 +1,125 @@
+package de.uni_passau.fim.se2.st.fuzzing.coverage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump.ClassCoverage;
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker.ClassTracker;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CoverageDumpTest {
+
+  @TempDir Path tempDir;
+
+  @BeforeEach
+  void resetCoverageTracker() {
+    CoverageTracker.resetInstance();
+  }
+
+  @Test
+  void testCaptureTracker() {
+    int classId = CoverageTracker.registerClass("com/example/Foo");
+    CoverageTracker.registerProbes(classId, new int[] {7, 3, 5});
+    CoverageTracker.getProbes(classId)[0] += 2;
+
+    ClassCoverage coverage =
+        CoverageDump.capture(CoverageTracker.getInstance()).getClasses().get("com/example/Foo");
+    assertEquals(
+        new ClassCoverage(classId, "com/example/Foo", new int[] {3, 5, 7}, new int[] {0, 0, 2}),
+        coverage);
+    assertEquals(1, coverage.getNumberOfCoveredLines());
+  }
+
+  @Test
+  void testWriteAndRead() throws IOException {
+    CoverageDump dump =
+        CoverageDump.of(
+            List.of(
+                new ClassCoverage(0, "com/example/Foo", new int[] {3, 5}, new int[] {1, 0}),
+                new ClassCoverage(1, "com/example/Bär", new int[] {}, new int[] {})));
+    Path file = tempDir.resolve("run.cov");
+    dump.write(file);
+    assertEquals(dump, CoverageDump.read(file));
+  }
+
+  @Test
+  void testByteArrayRoundTrip() {
+    CoverageDump dump =
+        CoverageDump.of(
+            List.of(new ClassCoverage(0, "com/example/Foo", new int[] {3, 5}, new int[] {1, 0})));
+    assertEquals(dump, CoverageDump.fromByteArray(dump.toByteArray()));
+    assertThrows(IllegalArgumentException.class, () -> CoverageDump.fromByteArray(new byte[3]));
+  }
+
+  @Test
+  void testMergeIntoTracker() {
+    CoverageTracker tracker = CoverageTracker.getInstance();
+    int classId = CoverageTracker.registerClass("com/example/Foo");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5});
+    CoverageTracker.getProbes(classId)[0]++;
+
+    tracker.merge(
+        CoverageDump.of(
+            List.of(
+                new ClassCoverage(7, "com/example/Foo", new int[] {3, 5}, new int[] {2, 1}),
+                new ClassCoverage(8, "com/example/Bar", new int[] {4}, new int[] {3}))));
+    Map<String, ClassTracker> trackers = tracker.getClassTrackers();
+    assertEquals(Map.of(3, 3, 5, 1), trackers.get("com/example/Foo").getVisitedLines());
+    assertEquals(Map.of(4, 3), trackers.get("com/example/Bar").getVisitedLines());
+    assertEquals(3, tracker.getNumberOfCoveredLines());
+  }
+
+  @Test
+  void testMergeUnitesLinesAndAddsCounts() {
+    CoverageDump first =
+        CoverageDump.of(
+            List.of(new ClassCoverage(4, "com/example/Foo", new int[] {3, 5}, new int[] {1, 0})));
+    CoverageDump second =
+        CoverageDump.of(
+            List.of(
+                new ClassCoverage(
+                    9, "com/example/Foo", new int[] {5, 8}, new int[] {Integer.MAX_VALUE, 2}),
+                new ClassCoverage(2, "com/example/Bar", new int[] {1}, new int[] {1})));
+
+    CoverageDump merged = CoverageDump.merge(List.of(first, second));
+    assertEquals(
+        new ClassCoverage(0, "com/example/Bar", new int[] {1}, new int[] {1}),
+        merged.getClasses().get("com/example/Bar"));
+    assertEquals(
+        new ClassCoverage(
+            1, "com/example/Foo", new int[] {3, 5, 8}, new int[] {1, Integer.MAX_VALUE, 2}),
+        merged.getClasses().get("com/example/Foo"));
+  }
+
+  @Test
+  void testReadRejectsOtherFiles() throws IOException {
+    Path file = tempDir.resolve("other.cov");
+    Files.writeString(file, "no dump");
+    assertThrows(IllegalArgumentException.class, () -> CoverageDump.read(file));
+  }
+
+  @Test
+  void testReadRejectsTruncatedDumps() throws IOException {
+    Path file = tempDir.resolve("run.cov");
+    CoverageDump.of(
+            List.of(new ClassCoverage(0, "com/example/Foo", new int[] {3}, new int[] {1})))
+        .write(file);
+    byte[] content = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(content, content.length - 2));
+    assertThrows(IllegalArgumentException.class, () -> CoverageDump.read(file));
+  }
+
+  @Test
+  void testLinesAndCountsMustMatch() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> CoverageDump.of(List.of(new ClassCoverage(0, "A", new int[] {1}, new int[0]))));
+  }
+}
@@ -2,7 +2,13 @@ package de.uni_passau.fim.se2.st.fuzzing.coverage;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -132,4 +138,325 @@ class CoverageTrackerTest {
     CoverageTracker.trackLineVisit(1, "SomeClass");
     assertEquals(1, coverageTracker.getNumberOfCoveredLines());
   }
+
+  @Test
+  void testRegisterClassIsStable() {
+    int first = CoverageTracker.registerClass("SomeClass");
+    int second = CoverageTracker.registerClass("SomeClass2");
+    assertNotEquals(first, second);
+    assertEquals(first, CoverageTracker.registerClass("SomeClass"));
+  }
+
+  @Test
+  void testProbeHitsAreReported() {
+    CoverageTracker coverageTracker = CoverageTracker.getInstance();
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5, 7});
+    int[] probes = CoverageTracker.getProbes(classId);
+    probes[1]++;
+    probes[1]++;
+    assertEquals(3, coverageTracker.getTotalNumberOfLines());
+    assertEquals(1, coverageTracker.getNumberOfCoveredLines());
+    assertEquals(
+        Map.of(5, 2), coverageTracker.getClassTrackers().get("SomeClass").getVisitedLines());
+  }
+
+  @Test
+  void testRegisterProbesKeepsVisits() {
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5});
+    CoverageTracker.getProbes(classId)[0]++;
+    CoverageTracker.registerProbes(classId, new int[] {5, 3});
+    assertArrayEquals(new int[] {0, 1}, CoverageTracker.getProbeCounts(classId));
+  }
+
+  @Test
+  void testRegisterProbesInvalidClass() {
+    assertThrows(
+        IllegalArgumentException.class, () -> CoverageTracker.registerProbes(42, new int[0]));
+  }
+
+  @Test
+  void testOfflineClassRegistersOnFirstCall() {
+    CoverageTracker coverageTracker = CoverageTracker.getInstance();
+    String className = "SomeClass";
+    int[] probes = CoverageTracker.getProbes(3, className, "4,8");
+    probes[1]++;
+    assertSame(probes, CoverageTracker.getProbes(3, className, "4,8"));
+    assertEquals(2, coverageTracker.getTotalNumberOfLines());
+    assertEquals(Map.of(8, 1), coverageTracker.getClassTrackers().get(className).getVisitedLines());
+  }
+
+  @Test
+  void testOfflineClassInvalidInput() {
+    assertThrows(IllegalArgumentException.class, () -> CoverageTracker.getProbes(-1, "A", ""));
+  }
+
+  @Test
+  void testConcurrentProbeHitsAreExact() throws Exception {
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5});
+    int threads = 4;
+    int hits = 100_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < hits; i++) {
+                    CoverageTracker.getProbes(classId)[1]++;
+                    CoverageTracker.getEdgeMap()[7]++;
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    CoverageTracker coverageTracker = CoverageTracker.getInstance();
+    assertEquals(
+        Map.of(5, threads * hits),
+        coverageTracker.getClassTrackers().get("SomeClass").getVisitedLines());
+    assertEquals(threads * hits, coverageTracker.getEdgeCounts()[7]);
+    assertEquals(1, coverageTracker.getNumberOfCoveredEdges());
+  }
+
+  @Test
+  void testThreadsHaveOwnProbes() throws Exception {
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3});
+    int[] own = CoverageTracker.getProbes(classId);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertNotSame(own, executor.submit(() -> CoverageTracker.getProbes(classId)).get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testProbesOfEndedThreadsAreDropped() throws Exception {
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5});
+    int threads = 500;
+    for (int t = 0; t < threads; t++) {
+      Thread thread =
+          new Thread(
+              () -> {
+                CoverageTracker.getProbes(classId)[1]++;
+                CoverageTracker.getEdgeMap()[7]++;
+              });
+      thread.start();
+      thread.join();
+    }
+
+    CoverageTracker.ClassTracker tracker =
+        CoverageTracker.getInstance().getClassTrackers().get("SomeClass");
+    assertTrue(tracker.getNumberOfProbeArrays() <= 32);
+    assertTrue(CoverageTracker.getNumberOfEdgeMaps() <= 32);
+    // No hit of an ended thread is lost
+    assertEquals(Map.of(5, threads), tracker.getVisitedLines());
+    assertEquals(threads, CoverageTracker.getInstance().getEdgeCounts()[7]);
+    assertEquals(0, tracker.getNumberOfProbeArrays());
+    assertEquals(0, CoverageTracker.getNumberOfEdgeMaps());
+  }
+
+  @Test
+  void testEndExecutionReportsNewCoverageOnce() {
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5});
+    CoverageTracker.getProbes(classId)[0]++;
+    assertTrue(CoverageTracker.endExecution().hasNewCoverage());
+    CoverageTracker.getProbes(classId)[0]++;
+    assertFalse(CoverageTracker.endExecution().hasNewCoverage());
+    assertArrayEquals(new int[] {2, 0}, CoverageTracker.getProbeCounts(classId));
+  }
+
+  @Test
+  void testCoverageEpochAdvancesOnNewLines() {
+    CoverageTracker coverageTracker = CoverageTracker.getInstance();
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5});
+    long epoch = coverageTracker.getCoverageEpoch();
+    assertFalse(coverageTracker.hasNewCoverageSince(epoch));
+
+    CoverageTracker.getProbes(classId)[1]++;
+    assertTrue(coverageTracker.hasNewCoverageSince(epoch));
+    epoch = coverageTracker.getCoverageEpoch();
+    CoverageTracker.getProbes(classId)[1]++;
+    assertFalse(coverageTracker.hasNewCoverageSince(epoch));
+  }
+
+  @Test
+  void testCoverageEpochAdvancesOnNewEdges() {
+    CoverageTracker coverageTracker = CoverageTracker.getInstance();
+    long epoch = coverageTracker.getCoverageEpoch();
+    CoverageTracker.getEdgeMap()[42]++;
+    assertTrue(coverageTracker.hasNewCoverageSince(epoch));
+    assertEquals(1, coverageTracker.getNumberOfCoveredEdges());
+  }
+
+  @Test
+  void testRunningTotalsFollowLayoutChanges() {
+    CoverageTracker coverageTracker = CoverageTracker.getInstance();
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5, 7});
+    CoverageTracker.getProbes(classId)[0]++;
+    CoverageTracker.getProbes(classId)[2]++;
+    assertEquals(2, coverageTracker.getNumberOfCoveredLines());
+
+    CoverageTracker.registerProbes(classId, new int[] {7, 9});
+    assertEquals(2, coverageTracker.getTotalNumberOfLines());
+    assertEquals(1, coverageTracker.getNumberOfCoveredLines());
+  }
+
+  @Test
+  void testHitsOfOtherThreadsAreFoldedBySnapshots() throws Exception {
+    CoverageTracker coverageTracker = CoverageTracker.getInstance();
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5});
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(() -> CoverageTracker.getProbes(classId)[1]++).get();
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(0, coverageTracker.getNumberOfCoveredLines());
+    assertEquals(
+        Map.of(5, 1), coverageTracker.getClassTrackers().get("SomeClass").getVisitedLines());
+    assertEquals(1, coverageTracker.getNumberOfCoveredLines());
+  }
+
+  @Test
+  void testEndExecutionTracesOnlyTheExecution() {
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5, 7});
+    CoverageTracker.getProbes(classId)[0]++;
+    CoverageTracker.endExecution();
+
+    int[] probes = CoverageTracker.getProbes(classId);
+    probes[1]++;
+    probes[2] += 2;
+    CoverageTracker.getEdgeMap()[11]++;
+    ExecutionTrace trace = CoverageTracker.endExecution();
+    assertEquals(Map.of("SomeClass", Set.of(5, 7)), trace.getVisitedLines());
+    assertArrayEquals(new int[] {11}, trace.getEdges());
+    assertTrue(trace.hasNewCoverage());
+
+    assertTrue(CoverageTracker.endExecution().isEmpty());
+  }
+
+  @Test
+  void testTraceKeepsLinesAcrossLayoutChanges() {
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5});
+    CoverageTracker.registerProbes(classId, new int[] {5, 3});
+    CoverageTracker.getProbes(classId)[0]++;
+    ExecutionTrace trace = CoverageTracker.endExecution();
+    assertTrue(trace.coversLine(classId, 5));
+    assertFalse(trace.coversLine(classId, 3));
+  }
+
+  @Test
+  void testBucketOf() {
+    assertEquals(1, CoverageTracker.bucketOf(1));
+    assertEquals(2, CoverageTracker.bucketOf(2));
+    assertEquals(4, CoverageTracker.bucketOf(3));
+    assertEquals(8, CoverageTracker.bucketOf(4));
+    assertEquals(8, CoverageTracker.bucketOf(7));
+    assertEquals(16, CoverageTracker.bucketOf(8));
+    assertEquals(32, CoverageTracker.bucketOf(31));
+    assertEquals(64, CoverageTracker.bucketOf(32));
+    assertEquals(64, CoverageTracker.bucketOf(127));
+    assertEquals(128, CoverageTracker.bucketOf(128));
+    assertEquals(128, CoverageTracker.bucketOf(Integer.MAX_VALUE));
+  }
+
+  @Test
+  void testNewHitCountBucketIsReported() {
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5});
+    CoverageTracker.getProbes(classId)[0]++;
+    ExecutionTrace trace = CoverageTracker.endExecution();
+    assertTrue(trace.hasNewCoverage());
+    assertTrue(trace.hasNewHitCounts());
+
+    CoverageTracker.getProbes(classId)[0]++;
+    assertFalse(CoverageTracker.endExecution().hasNewHitCounts());
+
+    // A loop running 100 times reaches a new bucket without new coverage
+    CoverageTracker.getProbes(classId)[0] += 100;
+    trace = CoverageTracker.endExecution();
+    assertFalse(trace.hasNewCoverage());
+    assertTrue(trace.hasNewHitCounts());
+
+    CoverageTracker.getProbes(classId)[0] += 50;
+    assertFalse(CoverageTracker.endExecution().hasNewHitCounts());
+  }
+
+  @Test
+  void testNewEdgeHitCountBucketIsReported() {
+    CoverageTracker.getEdgeMap()[42] += 2;
+    assertTrue(CoverageTracker.endExecution().hasNewHitCounts());
+    CoverageTracker.getEdgeMap()[42] += 2;
+    assertFalse(CoverageTracker.endExecution().hasNewHitCounts());
+    CoverageTracker.getEdgeMap()[42] += 3;
+    assertTrue(CoverageTracker.endExecution().hasNewHitCounts());
+  }
+
+  @Test
+  void testHitCountBucketsSurviveLayoutChanges() {
+    int classId = CoverageTracker.registerClass("SomeClass");
+    CoverageTracker.registerProbes(classId, new int[] {3, 5});
+    CoverageTracker.getProbes(classId)[1] += 5;
+    assertTrue(CoverageTracker.endExecution().hasNewHitCounts());
+
+    CoverageTracker.registerProbes(classId, new int[] {5, 3, 7});
+    CoverageTracker.getProbes(classId)[0] += 6;
+    assertFalse(CoverageTracker.endExecution().hasNewHitCounts());
+    CoverageTracker.getProbes(classId)[2]++;
+    assertTrue(CoverageTracker.endExecution().hasNewHitCounts());
+  }
+
+  @Test
+  void testResetForgetsHitCountBuckets() {
+    CoverageTracker.getEdgeMap()[42]++;
+    assertTrue(CoverageTracker.endExecution().hasNewHitCounts());
+    CoverageTracker.resetInstance();
+    CoverageTracker.getEdgeMap()[42]++;
+    assertTrue(CoverageTracker.endExecution().hasNewHitCounts());
+  }
+
+  @Test
+  void testNextHit() {
+    int[] map = new int[1000];
+    map[3] = 1;
+    map[700] = -1;
+    assertEquals(3, CoverageTracker.nextHit(map, 0));
+    assertEquals(3, CoverageTracker.nextHit(map, 3));
+    assertEquals(700, CoverageTracker.nextHit(map, 4));
+    assertEquals(1000, CoverageTracker.nextHit(map, 701));
+    assertEquals(0, CoverageTracker.nextHit(new int[0], 0));
+  }
+
+  @Test
+  void testEndExecutionFoldsSparseEdgeMap() {
+    CoverageTracker coverageTracker = CoverageTracker.getInstance();
+    int[] edgeMap = CoverageTracker.getEdgeMap();
+    int[] edges = {0, 63, 64, 300, 40000, CoverageTracker.EDGE_MAP_SIZE - 1};
+    for (int edge : edges) {
+      edgeMap[edge] += 2;
+    }
+    assertArrayEquals(edges, CoverageTracker.endExecution().getEdges());
+    assertEquals(edges.length, coverageTracker.getNumberOfCoveredEdges());
+    for (int edge : edges) {
+      assertEquals(0, edgeMap[edge]);
+      assertEquals(2, coverageTracker.getEdgeCounts()[edge]);
+    }
+  }
 }
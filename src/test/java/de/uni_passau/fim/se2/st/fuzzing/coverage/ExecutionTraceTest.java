@@ -0,0 +1,83 @@
+package de.uni_passau.fim.se2.st.fuzzing.coverage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ExecutionTraceTest {
+
+  @BeforeEach
+  void resetCoverageTracker() {
+    CoverageTracker.resetInstance();
+  }
+
+  private static ExecutionTrace trace(long[] lines, int[] edges) {
+    return new ExecutionTrace(lines, edges, false, false);
+  }
+
+  @Test
+  void testEmptyTrace() {
+    assertTrue(ExecutionTrace.EMPTY.isEmpty());
+    assertFalse(ExecutionTrace.EMPTY.hasNewCoverage());
+    assertEquals(0, ExecutionTrace.EMPTY.getNumberOfLines());
+  }
+
+  @Test
+  void testCoversLinesAndEdges() {
+    ExecutionTrace trace =
+        trace(new long[] {ExecutionTrace.key(0, 3), ExecutionTrace.key(1, 2)}, new int[] {9});
+    assertTrue(trace.coversLine(0, 3));
+    assertTrue(trace.coversLine(1, 2));
+    assertFalse(trace.coversLine(1, 3));
+    assertTrue(trace.coversEdge(9));
+    assertFalse(trace.coversEdge(8));
+  }
+
+  @Test
+  void testCoversOtherTrace() {
+    ExecutionTrace large =
+        trace(new long[] {ExecutionTrace.key(0, 3), ExecutionTrace.key(0, 5)}, new int[] {1, 4});
+    ExecutionTrace small = trace(new long[] {ExecutionTrace.key(0, 5)}, new int[] {4});
+    assertTrue(large.covers(small));
+    assertFalse(small.covers(large));
+    assertTrue(small.covers(ExecutionTrace.EMPTY));
+  }
+
+  @Test
+  void testEqualityIgnoresNovelty() {
+    long[] lines = {ExecutionTrace.key(0, 3)};
+    ExecutionTrace trace = trace(lines, new int[0]);
+    ExecutionTrace novel = new ExecutionTrace(lines.clone(), new int[0], true, true);
+    assertEquals(trace, novel);
+    assertEquals(trace.hashCode(), novel.hashCode());
+    assertNotEquals(trace, ExecutionTrace.EMPTY);
+  }
+
+  @Test
+  void testEmptyTraceHasNoNovelty() {
+    assertFalse(ExecutionTrace.EMPTY.hasNewCoverage());
+    assertFalse(ExecutionTrace.EMPTY.hasNewHitCounts());
+  }
+
+  @Test
+  void testGetVisitedLinesResolvesClassNames() {
+    int classId = CoverageTracker.registerClass("SomeClass");
+    ExecutionTrace trace =
+        trace(
+            new long[] {ExecutionTrace.key(classId, 3), ExecutionTrace.key(classId, 7)},
+            new int[0]);
+    assertEquals(Map.of("SomeClass", Set.of(3, 7)), trace.getVisitedLines());
+  }
+
+  @Test
+  void testAccessorsReturnCopies() {
+    ExecutionTrace trace = trace(new long[] {ExecutionTrace.key(0, 3)}, new int[] {1});
+    trace.getLineKeys()[0] = 0;
+    trace.getEdges()[0] = 0;
+    assertTrue(trace.coversLine(0, 3));
+    assertTrue(trace.coversEdge(1));
+  }
+}
@@ -11,6 +11,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -131,4 +132,43 @@ class OutputWriterTest {
     when(mockedTracker.getClassTrackers()).thenReturn(classTrackers);
     assertDoesNotThrow(() -> OutputWriter.writeShellOutput(classTrackers));
   }
+
+  private static CoverageDump sampleDump() {
+    return CoverageDump.of(
+        List.of(
+            new CoverageDump.ClassCoverage(
+                0, "com/example/Foo", new int[] {3, 5}, new int[] {2, 0}),
+            new CoverageDump.ClassCoverage(
+                1, "com/example/Foo$Inner", new int[] {5, 9}, new int[] {1, 1})));
+  }
+
+  @Test
+  void testLcovOutput(@TempDir Path tempDir) throws IOException {
+    Path lcov = tempDir.resolve("lcov.info");
+    OutputWriter.writeLcovOutput(sampleDump(), lcov);
+    assertEquals(
+        List.of(
+            "TN:",
+            "SF:com/example/Foo.java",
+            "DA:3,2",
+            "DA:5,1",
+            "DA:9,1",
+            "LF:3",
+            "LH:3",
+            "end_of_record"),
+        Files.readAllLines(lcov));
+  }
+
+  @Test
+  void testJacocoXmlOutput(@TempDir Path tempDir) throws IOException {
+    Path xml = tempDir.resolve("jacoco.xml");
+    OutputWriter.writeJacocoXmlOutput(sampleDump(), xml);
+    String report = Files.readString(xml);
+    assertTrue(report.contains("<package name=\"com/example\">"));
+    assertTrue(report.contains("<class name=\"com/example/Foo\" sourcefilename=\"Foo.java\">"));
+    assertTrue(report.contains("<counter type=\"LINE\" missed=\"1\" covered=\"1\"/>"));
+    assertTrue(report.contains("<sourcefile name=\"Foo.java\">"));
+    assertTrue(report.contains("<line nr=\"5\" mi=\"0\" ci=\"1\" mb=\"0\" cb=\"0\"/>"));
+    assertTrue(report.endsWith("<counter type=\"LINE\" missed=\"0\" covered=\"3\"/>\n</report>\n"));
+  }
 }
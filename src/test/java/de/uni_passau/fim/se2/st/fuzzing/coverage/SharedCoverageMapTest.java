@@ -0,0 +1,73 @@
+package de.uni_passau.fim.se2.st.fuzzing.coverage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SharedCoverageMapTest {
+
+  @TempDir Path tempDir;
+
+  private int classId;
+
+  @BeforeEach
+  void registerClass() {
+    CoverageTracker.resetInstance();
+    classId = CoverageTracker.registerClass("SomeClass");
+  }
+
+  private ExecutionTrace trace(int line, int edge) {
+    return new ExecutionTrace(
+        new long[] {ExecutionTrace.key(classId, line)}, new int[] {edge}, false, false);
+  }
+
+  @Test
+  void testPublishReportsNewCoverageOnce() throws IOException {
+    SharedCoverageMap map = SharedCoverageMap.open(tempDir.resolve("coverage"));
+    assertTrue(map.publish(trace(3, 7)));
+    assertFalse(map.publish(trace(3, 7)));
+    assertTrue(map.publish(trace(4, 7)));
+    assertEquals(2, map.getNumberOfCoveredLines());
+    assertEquals(1, map.getNumberOfCoveredEdges());
+    assertEquals(2, map.getEpoch());
+  }
+
+  @Test
+  void testWorkersSeeEachOthersCoverage() throws IOException {
+    Path file = tempDir.resolve("coverage");
+    SharedCoverageMap first = SharedCoverageMap.open(file);
+    SharedCoverageMap second = SharedCoverageMap.open(file);
+    assertTrue(first.publish(trace(3, 7)));
+    assertTrue(second.isLineCovered("SomeClass", 3));
+    assertTrue(second.isEdgeCovered(7));
+    assertFalse(second.isLineCovered("SomeClass", 4));
+    assertFalse(second.publish(trace(3, 7)));
+    assertEquals(1, second.getEpoch());
+  }
+
+  @Test
+  void testCoverageSurvivesReopening() throws IOException {
+    Path file = tempDir.resolve("coverage");
+    SharedCoverageMap.open(file).publish(trace(3, 7));
+    assertTrue(SharedCoverageMap.open(file).isLineCovered("SomeClass", 3));
+  }
+
+  @Test
+  void testRejectsOtherFiles() throws IOException {
+    Path file = tempDir.resolve("other");
+    Files.writeString(file, "no coverage map");
+    assertThrows(IllegalArgumentException.class, () -> SharedCoverageMap.open(file));
+  }
+
+  @Test
+  void testEmptyTraceIsNotNew() throws IOException {
+    SharedCoverageMap map = SharedCoverageMap.open(tempDir.resolve("coverage"));
+    assertFalse(map.publish(ExecutionTrace.EMPTY));
+    assertEquals(0, map.getEpoch());
+  }
+}
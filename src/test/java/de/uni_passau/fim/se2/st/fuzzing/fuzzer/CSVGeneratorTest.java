@@ -169,6 +169,13 @@ class CSVGeneratorTest {
     assertNull(result);
   }
 
+  @Test
+  void testExpressionIsRecorded() throws ReflectiveOperationException {
+    Rational result = (Rational) generator.provideRandomInput(Rational.class);
+    assertEquals(result, generator.getExpression(result).resolve());
+    assertEquals(generator.getExpression(result).toString(), generator.getExpressionString(result));
+  }
+
   @Test
   void testClearMemory() {
     Rational result = (Rational) generator.provideRandomInput(Rational.class);
@@ -0,0 +1,115 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.ExecutionTrace;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class CorpusDistillerTest {
+
+  private static ExecutionTrace trace(long[] lines, int... edges) {
+    ExecutionTrace trace = mock(ExecutionTrace.class);
+    when(trace.getLineKeys()).thenReturn(lines);
+    when(trace.getEdges()).thenReturn(edges);
+    when(trace.isEmpty()).thenReturn(lines.length == 0 && edges.length == 0);
+    return trace;
+  }
+
+  @Test
+  void testSubsumedInputsAreDemoted() {
+    CorpusDistiller<String> distiller = new CorpusDistiller<>();
+    distiller.submit("small", trace(new long[] {1, 2}), 5, 100);
+    distiller.submit("large", trace(new long[] {1, 2, 3}, 7), 50, 100);
+    distiller.submit("redundant", trace(new long[] {2, 3}), 60, 100);
+
+    assertThat(distiller.distill()).isTrue();
+    assertThat(distiller.getFavored()).containsExactly("small", "large");
+    assertThat(distiller.isDemoted("redundant")).isTrue();
+    assertThat(distiller.isDemoted("small")).isFalse();
+  }
+
+  @Test
+  void testFastestOfEqualSizeIsTopRated() {
+    CorpusDistiller<String> distiller = new CorpusDistiller<>();
+    distiller.submit("slow", trace(new long[] {1}), 10, 1000);
+    distiller.submit("fast", trace(new long[] {1}), 10, 10);
+
+    distiller.distill();
+    assertThat(distiller.getFavored()).containsExactly("fast");
+    assertThat(distiller.isDemoted("slow")).isTrue();
+  }
+
+  @Test
+  void testInputsWithoutCoverageAreIgnored() {
+    CorpusDistiller<String> distiller = new CorpusDistiller<>();
+    distiller.submit("empty", trace(new long[0]), 1, 1);
+
+    assertThat(distiller.distill()).isFalse();
+    assertThat(distiller.isDemoted("empty")).isFalse();
+  }
+
+  @Test
+  void testPassesOnlyRunAfterSubmissions() {
+    CorpusDistiller<String> distiller = new CorpusDistiller<>();
+    distiller.submit("a", trace(new long[] {1}), 1, 1);
+    assertThat(distiller.distill()).isTrue();
+    Set<String> favored = distiller.getFavored();
+    assertThat(distiller.distill()).isFalse();
+    assertThat(distiller.getFavored()).isSameInstanceAs(favored);
+
+    distiller.submit("b", trace(new long[] {2}), 1, 1);
+    assertThat(distiller.distill()).isTrue();
+    assertThat(distiller.getFavored()).isNotSameInstanceAs(favored);
+    assertThat(distiller.getFavored()).containsExactly("a", "b");
+  }
+
+  @Test
+  void testSubmittingWhileDistilling() throws Exception {
+    CorpusDistiller<Integer> distiller = new CorpusDistiller<>();
+    // Mocks are created up front, as stubbing them is not meant to happen concurrently
+    List<ExecutionTrace> traces = new ArrayList<>();
+    for (int input = 0; input < 4000; input++) {
+      traces.add(trace(new long[] {input % 50, 100 + input % 400}));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int worker = 0; worker < 4; worker++) {
+        int offset = worker * 1000;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int input = offset; input < offset + 1000; input++) {
+                    distiller.submit(input, traces.get(input), 1 + input % 7, 1);
+                  }
+                }));
+      }
+      while (!futures.stream().allMatch(Future::isDone)) {
+        distiller.distill();
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    distiller.distill();
+
+    Set<Long> covered = new HashSet<>();
+    for (int input : distiller.getFavored()) {
+      for (long line : traces.get(input).getLineKeys()) {
+        covered.add(line);
+      }
+    }
+    assertThat(covered).hasSize(450);
+  }
+}
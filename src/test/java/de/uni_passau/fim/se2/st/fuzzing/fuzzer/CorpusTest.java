@@ -0,0 +1,104 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Range;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class CorpusTest {
+
+  @Test
+  void testAddIgnoresDuplicates() {
+    Corpus<String> corpus = new Corpus<>();
+    assertThat(corpus.isEmpty()).isTrue();
+    assertThat(corpus.add("a")).isTrue();
+    assertThat(corpus.add("b", 2)).isTrue();
+    assertThat(corpus.add("a", 5)).isFalse();
+    assertThat(corpus.entries()).containsExactly("a", "b").inOrder();
+    assertThat(corpus.indexOf("b")).isEqualTo(1);
+    assertThat(corpus.indexOf("c")).isEqualTo(-1);
+    assertThat(corpus.getTotalWeight()).isEqualTo(3.0);
+  }
+
+  @Test
+  void testInvalidWeights() {
+    Corpus<String> corpus = new Corpus<>();
+    assertThrows(IllegalArgumentException.class, () -> corpus.add("a", -1));
+    assertThrows(IllegalArgumentException.class, () -> corpus.add("a", Double.NaN));
+    corpus.add("a");
+    assertThrows(IllegalArgumentException.class, () -> corpus.setWeight(0, 1.0 / 0));
+    assertThrows(IndexOutOfBoundsException.class, () -> corpus.setWeight(1, 1));
+  }
+
+  @Test
+  void testSampleEmptyCorpus() {
+    Corpus<String> corpus = new Corpus<>();
+    assertThrows(IllegalStateException.class, () -> corpus.sample(new Random()));
+    corpus.add("a", 0);
+    assertThrows(IllegalStateException.class, () -> corpus.sample(new Random()));
+  }
+
+  @Test
+  void testSampleFollowsPrefixSums() {
+    Corpus<Integer> corpus = new Corpus<>();
+    for (int i = 0; i < 100; i++) {
+      corpus.add(i, i % 3);
+    }
+    double total = corpus.getTotalWeight();
+    Random random = mock(Random.class);
+    double prefix = 0;
+    for (int i = 0; i < 100; i++) {
+      double weight = corpus.getWeight(i);
+      if (weight > 0) {
+        when(random.nextDouble()).thenReturn((prefix + weight / 2) / total);
+        assertThat(corpus.sampleIndex(random)).isEqualTo(i);
+      }
+      prefix += weight;
+    }
+  }
+
+  @Test
+  void testSampleSkipsSeedsWithoutWeight() {
+    Corpus<String> corpus = new Corpus<>();
+    corpus.add("a", 1);
+    corpus.add("b", 0);
+    Random random = mock(Random.class);
+    when(random.nextDouble()).thenReturn(Math.nextDown(1.0));
+    assertThat(corpus.sample(random)).isEqualTo("a");
+  }
+
+  @Test
+  void testSetWeightChangesDistribution() {
+    Corpus<String> corpus = new Corpus<>();
+    for (int i = 0; i < 40; i++) {
+      corpus.add("s" + i);
+    }
+    for (int i = 0; i < 40; i++) {
+      corpus.setWeight(i, i == 17 ? 3 : 0);
+    }
+    assertThat(corpus.getTotalWeight()).isEqualTo(3.0);
+    Random random = new Random(1);
+    for (int i = 0; i < 100; i++) {
+      assertThat(corpus.sample(random)).isEqualTo("s17");
+    }
+  }
+
+  @Test
+  void testSampleIsProportionalToWeight() {
+    Corpus<String> corpus = new Corpus<>();
+    corpus.add("rare", 1);
+    corpus.add("common", 9);
+    Random random = new Random(42);
+    int common = 0;
+    for (int i = 0; i < 10_000; i++) {
+      if (corpus.sample(random).equals("common")) {
+        common++;
+      }
+    }
+    assertThat(common).isIn(Range.closed(8_700, 9_300));
+  }
+}
@@ -0,0 +1,113 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class CrashTriageTest {
+
+  private static StackTraceElement frame(String className, String method, int line) {
+    return new StackTraceElement(className, method, className + ".java", line);
+  }
+
+  private static Exception crash(StackTraceElement... frames) {
+    Exception exception = new IllegalStateException("crash");
+    exception.setStackTrace(frames);
+    return exception;
+  }
+
+  private static final StackTraceElement THROW_SITE = frame("com.example.Parser", "parse", 12);
+  private static final StackTraceElement CALLER = frame("com.example.Parser", "parseAll", 40);
+
+  @Test
+  void testDuplicatesAreCounted() {
+    CrashTriage<String> triage = new CrashTriage<>();
+    assertThat(triage.record(crash(THROW_SITE, CALLER), 5, () -> "first")).isTrue();
+    assertThat(triage.record(crash(THROW_SITE, CALLER), 5, () -> "second")).isFalse();
+    List<CrashTriage.Bucket<String>> buckets = triage.buckets();
+    assertThat(buckets).hasSize(1);
+    CrashTriage.Bucket<String> bucket = buckets.get(0);
+    assertThat(bucket.hits()).isEqualTo(2);
+    assertThat(bucket.reproducer()).isEqualTo("first");
+    assertThat(bucket.exceptionType()).isEqualTo(IllegalStateException.class.getName());
+    assertThat(bucket.throwSite()).isEqualTo(THROW_SITE);
+    assertThat(bucket.id()).isEqualTo(triage.signature(crash(THROW_SITE, CALLER)));
+  }
+
+  @Test
+  void testSmallestReproducerIsKept() {
+    CrashTriage<String> triage = new CrashTriage<>();
+    AtomicInteger created = new AtomicInteger();
+    triage.record(crash(THROW_SITE), 10, () -> "large" + created.incrementAndGet());
+    triage.record(crash(THROW_SITE), 3, () -> "small" + created.incrementAndGet());
+    triage.record(crash(THROW_SITE), 7, () -> "medium" + created.incrementAndGet());
+    assertThat(triage.buckets().get(0).reproducer()).isEqualTo("small2");
+    assertThat(created.get()).isEqualTo(2);
+  }
+
+  @Test
+  void testOtherSitesAndTypesOpenBuckets() {
+    CrashTriage<String> triage = new CrashTriage<>();
+    triage.record(crash(THROW_SITE, CALLER), 1, () -> "site");
+    triage.record(crash(frame("com.example.Parser", "parse", 13), CALLER), 1, () -> "line");
+    triage.record(crash(THROW_SITE, frame("com.example.Main", "main", 3)), 1, () -> "caller");
+    Exception other = new IllegalArgumentException();
+    other.setStackTrace(new StackTraceElement[] {THROW_SITE, CALLER});
+    triage.record(other, 1, () -> "type");
+    assertThat(triage.size()).isEqualTo(4);
+    assertThat(triage.buckets().stream().map(CrashTriage.Bucket::reproducer).toList())
+        .containsExactly("site", "line", "caller", "type")
+        .inOrder();
+  }
+
+  @Test
+  void testFramesBelowTheDepthAreIgnored() {
+    CrashTriage<String> triage = new CrashTriage<>(1);
+    triage.record(crash(THROW_SITE, CALLER), 1, () -> "first");
+    triage.record(crash(THROW_SITE, frame("com.example.Main", "main", 3)), 1, () -> "second");
+    assertThat(triage.size()).isEqualTo(1);
+  }
+
+  @Test
+  void testHarnessFramesEndTheSignature() {
+    CrashTriage<String> triage = new CrashTriage<>();
+    triage.record(
+        crash(THROW_SITE, frame(Fuzzer.class.getName(), "executeAndAnalyzeMethod", 900)),
+        1,
+        () -> "invoker");
+    triage.record(
+        crash(
+            THROW_SITE,
+            frame("jdk.internal.reflect.DirectMethodHandleAccessor", "invoke", 103),
+            frame("java.lang.reflect.Method", "invoke", 580),
+            frame(Fuzzer.class.getName() + "$TargetMethod", "invoke", 60)),
+        1,
+        () -> "reflection");
+    triage.record(crash(THROW_SITE), 1, () -> "bare");
+    assertThat(triage.size()).isEqualTo(1);
+    assertThat(triage.buckets().get(0).hits()).isEqualTo(3);
+  }
+
+  @Test
+  void testClassesNamedLikeTheFuzzerAreNoHarness() {
+    CrashTriage<String> triage = new CrashTriage<>();
+    triage.record(crash(THROW_SITE), 1, () -> "bare");
+    triage.record(crash(THROW_SITE, frame(Fuzzer.class.getName() + "Test", "run", 5)), 1, () -> "");
+    assertThat(triage.size()).isEqualTo(2);
+  }
+
+  @Test
+  void testCrashWithoutStackTrace() {
+    CrashTriage<String> triage = new CrashTriage<>();
+    triage.record(crash(), 1, () -> "empty");
+    assertThat(triage.buckets().get(0).throwSite()).isNull();
+  }
+
+  @Test
+  void testDepthMustBePositive() {
+    assertThrows(IllegalArgumentException.class, () -> new CrashTriage<String>(0));
+  }
+}
@@ -0,0 +1,49 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.ExecutionTrace;
+import org.junit.jupiter.api.Test;
+
+class ExecutionOutcomeTest {
+
+  private static final ExecutionTrace TRACE = mock(ExecutionTrace.class);
+  private static final ExecutionTrace OTHER = mock(ExecutionTrace.class);
+
+  @Test
+  void testOfKeepsTypeAndThrowSite() {
+    IllegalStateException thrown = new IllegalStateException();
+    ExecutionOutcome outcome = ExecutionOutcome.of(TRACE, thrown);
+    assertThat(outcome.threw()).isTrue();
+    assertThat(outcome.exceptionType()).isEqualTo("java.lang.IllegalStateException");
+    assertThat(outcome.throwSite()).isEqualTo(thrown.getStackTrace()[0]);
+    assertThat(ExecutionOutcome.of(TRACE, null).threw()).isFalse();
+  }
+
+  @Test
+  void testExceptionWithoutStackTrace() {
+    IllegalStateException thrown = new IllegalStateException();
+    thrown.setStackTrace(new StackTraceElement[0]);
+    assertThat(ExecutionOutcome.of(TRACE, thrown).throwSite()).isNull();
+  }
+
+  @Test
+  void testCoveringOutcomeIsReproducedBySameCoverageWithoutException() {
+    ExecutionOutcome covering = new ExecutionOutcome(TRACE, null, null);
+    assertThat(covering.isReproducedBy(new ExecutionOutcome(TRACE, null, null))).isTrue();
+    assertThat(covering.isReproducedBy(new ExecutionOutcome(OTHER, null, null))).isFalse();
+    assertThat(covering.isReproducedBy(new ExecutionOutcome(TRACE, "E", null))).isFalse();
+  }
+
+  @Test
+  void testThrowingOutcomeIsReproducedBySameException() {
+    StackTraceElement site = new StackTraceElement("Parser", "parse", null, 7);
+    StackTraceElement elsewhere = new StackTraceElement("Parser", "parse", null, 8);
+    ExecutionOutcome throwing = new ExecutionOutcome(TRACE, "E", site);
+    assertThat(throwing.isReproducedBy(new ExecutionOutcome(OTHER, "E", site))).isTrue();
+    assertThat(throwing.isReproducedBy(new ExecutionOutcome(TRACE, "E", elsewhere))).isFalse();
+    assertThat(throwing.isReproducedBy(new ExecutionOutcome(TRACE, "F", site))).isFalse();
+    assertThat(throwing.isReproducedBy(new ExecutionOutcome(TRACE, null, null))).isFalse();
+  }
+}
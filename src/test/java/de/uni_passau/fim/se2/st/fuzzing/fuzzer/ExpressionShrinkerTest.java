@@ -0,0 +1,148 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.ExecutionTrace;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.ExpressionShrinker.Call;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.expression.CompositeExpression;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.expression.GenericExpression;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.expression.LeafExpression;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+class ExpressionShrinkerTest {
+
+  private static final ExecutionTrace NULL = mock(ExecutionTrace.class);
+  private static final ExecutionTrace NEGATIVE = mock(ExecutionTrace.class);
+  private static final ExecutionTrace LARGE = mock(ExecutionTrace.class);
+  private static final ExecutionTrace OTHER = mock(ExecutionTrace.class);
+
+  /** A class with a simpler constructor. */
+  public static class Pair {
+    public Pair() {}
+
+    public Pair(int first, int second) {}
+  }
+
+  /** Covers the sign of a big number, whether a number is larger than 100, or null. */
+  private static final Function<Call, ExecutionOutcome> TARGET =
+      call -> {
+        Object argument;
+        try {
+          if (call.receiver() != null) {
+            call.receiver().resolve();
+          }
+          argument = call.arguments().get(0).resolve();
+        } catch (ReflectiveOperationException e) {
+          return null;
+        }
+        ExecutionTrace trace = OTHER;
+        if (argument == null) {
+          trace = NULL;
+        } else if (argument instanceof BigInteger number && number.signum() < 0) {
+          trace = NEGATIVE;
+        } else if (argument instanceof Integer number && number > 100) {
+          trace = LARGE;
+        }
+        return new ExecutionOutcome(trace, null, null);
+      };
+
+  private static Call call(GenericExpression argument) {
+    return new Call(null, List.of(argument));
+  }
+
+  private static CompositeExpression bigInteger(String digits) throws NoSuchMethodException {
+    return new CompositeExpression(
+        BigInteger.class.getConstructor(String.class),
+        new GenericExpression[] {new LeafExpression(digits)});
+  }
+
+  @Test
+  void testNumbersShrinkToTheBoundary() {
+    ExpressionShrinker shrinker = new ExpressionShrinker(TARGET, null, 1, 0);
+    Call shrunk =
+        shrinker.shrink(call(new LeafExpression(1_873_465_112)), new Class<?>[] {int.class});
+    assertThat(shrunk.arguments().get(0).toString()).isEqualTo("101");
+    assertThat(shrinker.getNumberOfExecutions()).isAtMost(ExpressionShrinker.MAX_EXECUTIONS);
+  }
+
+  @Test
+  void testStringsOfConstructorsAreShortened() throws NoSuchMethodException {
+    ExpressionShrinker shrinker = new ExpressionShrinker(TARGET, null, 1, 0);
+    Call shrunk =
+        shrinker.shrink(
+            call(bigInteger("-8837465120934")), new Class<?>[] {BigInteger.class});
+    String argument = shrunk.arguments().get(0).toString();
+    assertThat(argument).matches("new java\\.math\\.BigInteger\\(\"-[1-9]\"\\)");
+  }
+
+  @Test
+  void testNullIsTriedFirst() {
+    ExpressionShrinker shrinker = new ExpressionShrinker(TARGET, null, 1, 0);
+    Call shrunk =
+        shrinker.shrink(
+            call(new LeafExpression("irrelevant")),
+            new Class<?>[] {String.class},
+            outcome -> true);
+    assertThat(shrunk.arguments().get(0).toString()).isEqualTo("null");
+  }
+
+  @Test
+  void testSimplerConstructorsAreTried() throws NoSuchMethodException {
+    GenericExpression pair =
+        new CompositeExpression(
+            Pair.class.getConstructor(int.class, int.class),
+            new GenericExpression[] {new LeafExpression(5), new LeafExpression(7)});
+    ExpressionShrinker shrinker = new ExpressionShrinker(TARGET, null, 1, 0);
+    Call shrunk = shrinker.shrink(call(pair), new Class<?>[] {Pair.class});
+    assertThat(shrunk.arguments().get(0).toString())
+        .isEqualTo("new " + Pair.class.getName() + "()");
+  }
+
+  @Test
+  void testReceiverIsNotReplacedByNull() throws NoSuchMethodException {
+    Call call = new Call(bigInteger("12"), List.of(new LeafExpression(7)));
+    ExpressionShrinker shrinker = new ExpressionShrinker(TARGET, null, 1, 0);
+    Call shrunk = shrinker.shrink(call, new Class<?>[] {int.class}, outcome -> true);
+    assertThat(shrunk.receiver().toString()).isEqualTo("new java.math.BigInteger(\"1\")");
+    assertThat(shrunk.arguments().get(0).toString()).isEqualTo("0");
+  }
+
+  @Test
+  void testParallelBatchesGiveTheSameResult() throws NoSuchMethodException {
+    Call call = call(bigInteger("-12345678901234567"));
+    Class<?>[] types = {BigInteger.class};
+    Call sequential = new ExpressionShrinker(TARGET, null, 1, 0).shrink(call, types);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      assertThat(new ExpressionShrinker(TARGET, executor, 4, 0).shrink(call, types))
+          .isEqualTo(sequential);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testNothingIsExecutedAfterTheDeadline() {
+    ExpressionShrinker shrinker = new ExpressionShrinker(TARGET, null, 1, 0);
+    shrinker.setDeadline(System.nanoTime());
+    Call call = call(new LeafExpression(1_873_465_112));
+    assertThat(shrinker.shrink(call, new Class<?>[] {int.class})).isEqualTo(call);
+    // Only the original call, which tells the behavior to keep
+    assertThat(shrinker.getNumberOfExecutions()).isEqualTo(1);
+  }
+
+  @Test
+  void testWrongNumberOfArguments() {
+    ExpressionShrinker shrinker = new ExpressionShrinker(TARGET, null, 1, 0);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> shrinker.shrink(call(new LeafExpression(1)), new Class<?>[0], outcome -> true));
+  }
+}
@@ -4,19 +4,107 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker;
+import de.uni_passau.fim.se2.st.fuzzing.coverage.ExecutionTrace;
+import de.uni_passau.fim.se2.st.fuzzing.coverage.SharedCoverageMap;
 import de.uni_passau.fim.se2.st.fuzzing.fuzztarget.CSVParser;
 import de.uni_passau.fim.se2.st.fuzzing.fuzztarget.Example;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Random;
-import java.util.Set;
-import java.util.TreeSet;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.platform.commons.util.ReflectionUtils;
 import org.mockito.MockedStatic;
 
 class FuzzerTest {
 
+  /** Target that takes one of eight edges, as an instrumented method would. */
+  static class EdgeTarget {
+    static final int FIRST_EDGE = 50_000;
+
+    public static int branch(int value) {
+      CoverageTracker.getEdgeMap()[FIRST_EDGE + Math.floorMod(value, 8)]++;
+      return value;
+    }
+  }
+
+  /** Target that takes the same edge a different number of times, depending on its argument. */
+  static class BucketTarget {
+    static final int EDGE = 60_000;
+
+    public static int repeat(int value) {
+      int hits = 1 + Math.floorMod(value, 200);
+      for (int i = 0; i < hits; i++) {
+        CoverageTracker.getEdgeMap()[EDGE]++;
+      }
+      return hits;
+    }
+  }
+
+  /** Target that takes one of two edges, depending on whether its argument exceeds 100. */
+  static class ThresholdTarget {
+    static final int FIRST_EDGE = 61_000;
+
+    public static boolean exceeds(int value) {
+      CoverageTracker.getEdgeMap()[FIRST_EDGE + (value > 100 ? 1 : 0)]++;
+      return value > 100;
+    }
+  }
+
+  /** Target whose executions ignore interrupts and hang until the test releases them. */
+  static class StuckTarget {
+    static volatile boolean released;
+
+    public static int stick(int value) {
+      while (!released) {
+        Thread.onSpinWait();
+      }
+      return value;
+    }
+  }
+
+  /** Target that always takes the same edge, but throws at one of two sites for some values. */
+  static class CrashingTarget {
+    static final int EDGE = 62_000;
+
+    public static int crash(int value) {
+      CoverageTracker.getEdgeMap()[EDGE]++;
+      if (value % 4 == 1) {
+        throw new IllegalStateException("one");
+      }
+      if (value % 4 == 3) {
+        throw new IllegalStateException("three");
+      }
+      return value;
+    }
+  }
+
+  /** Target that takes a new edge and overflows its stack for odd values. */
+  static class ErrorTarget {
+    static final int EDGE = 63_000;
+
+    public static int overflow(int value) {
+      if (value % 2 != 0) {
+        CoverageTracker.getEdgeMap()[EDGE]++;
+        return overflow(value);
+      }
+      return value;
+    }
+  }
+
+  /** Target whose executions hang for every 64th value, until they are interrupted. */
+  static class HangingTarget {
+
+    public static int spin(int value) {
+      while (value % 64 == 0 && !Thread.currentThread().isInterrupted()) {
+        Thread.onSpinWait();
+      }
+      return value;
+    }
+  }
+
   @Test
   void testCreateFirstCandidate() {
     CoverageTracker instance = mock(CoverageTracker.class);
@@ -24,6 +112,7 @@ class FuzzerTest {
 
     try (MockedStatic<CoverageTracker> staticTracker = mockStatic(CoverageTracker.class)) {
       staticTracker.when(CoverageTracker::getInstance).thenReturn(instance);
+      staticTracker.when(CoverageTracker::endExecution).thenReturn(ExecutionTrace.EMPTY);
 
       StoppingCondition condition = new CoverageStoppingCondition(0.5);
       Fuzzer fuzzer = new Fuzzer(0, condition);
@@ -39,6 +128,7 @@ class FuzzerTest {
 
     try (MockedStatic<CoverageTracker> staticTracker = mockStatic(CoverageTracker.class)) {
       staticTracker.when(CoverageTracker::getInstance).thenReturn(instance);
+      staticTracker.when(CoverageTracker::endExecution).thenReturn(ExecutionTrace.EMPTY);
 
       StoppingCondition condition = new CoverageStoppingCondition(0.5);
       Fuzzer fuzzer = new Fuzzer(0, condition);
@@ -50,6 +140,38 @@ class FuzzerTest {
     }
   }
 
+  @Test
+  void testNewEdgesAreCovering() {
+    CoverageTracker instance = mock(CoverageTracker.class);
+    when(instance.getCoverage()).thenReturn(0.0);
+    when(instance.getNumberOfCoveredEdges()).thenReturn(5);
+
+    try (MockedStatic<CoverageTracker> staticTracker = mockStatic(CoverageTracker.class)) {
+      staticTracker.when(CoverageTracker::getInstance).thenReturn(instance);
+      staticTracker.when(CoverageTracker::endExecution).thenReturn(ExecutionTrace.EMPTY);
+
+      Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(100));
+      fuzzer.fuzz();
+      assertEquals(1, fuzzer.getCoveringStrings().size());
+    }
+  }
+
+  @Test
+  void testSharedCoverageIgnoresKnownCoverage(@TempDir Path tempDir) throws Exception {
+    CoverageTracker instance = mock(CoverageTracker.class);
+    when(instance.getCoverage()).thenReturn(1.0);
+
+    try (MockedStatic<CoverageTracker> staticTracker = mockStatic(CoverageTracker.class)) {
+      staticTracker.when(CoverageTracker::getInstance).thenReturn(instance);
+      staticTracker.when(CoverageTracker::endExecution).thenReturn(ExecutionTrace.EMPTY);
+
+      Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(100));
+      fuzzer.setSharedCoverage(SharedCoverageMap.open(tempDir.resolve("coverage")));
+      fuzzer.fuzz();
+      assertTrue(fuzzer.getCoveringStrings().isEmpty());
+    }
+  }
+
   @Test
   void testChooseCandidate() {
     StoppingCondition conditionMock = mock(StoppingCondition.class);
@@ -59,7 +181,7 @@ class FuzzerTest {
     when(rngMock.nextDouble()).thenReturn(0.5);
     when(rngMock.nextInt(anyInt())).thenReturn(1);
 
-    Set<String> coveringStrings = new TreeSet<>();
+    Corpus<String> coveringStrings = new Corpus<>();
     coveringStrings.add("abc");
     coveringStrings.add("def");
 
@@ -120,6 +242,7 @@ class FuzzerTest {
 
     try (MockedStatic<CoverageTracker> staticTracker = mockStatic(CoverageTracker.class)) {
       staticTracker.when(CoverageTracker::getInstance).thenReturn(instance);
+      staticTracker.when(CoverageTracker::endExecution).thenReturn(ExecutionTrace.EMPTY);
 
       StoppingCondition condition = new CoverageStoppingCondition(0.8);
       Fuzzer fuzzer = new Fuzzer(0, condition);
@@ -140,6 +263,7 @@ class FuzzerTest {
 
     try (MockedStatic<CoverageTracker> staticTracker = mockStatic(CoverageTracker.class)) {
       staticTracker.when(CoverageTracker::getInstance).thenReturn(instance);
+      staticTracker.when(CoverageTracker::endExecution).thenReturn(ExecutionTrace.EMPTY);
       StoppingCondition condition = new CoverageStoppingCondition(0.5);
       Fuzzer fuzzer = new Fuzzer(0, condition);
       fuzzer.fuzz(staticClass);
@@ -148,4 +272,156 @@ class FuzzerTest {
               .anyMatch(m -> m.methodName().equals("staticMethod")));
     }
   }
+
+  @Test
+  void testSetWorkersInvalid() {
+    Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(0));
+    assertThrows(IllegalArgumentException.class, () -> fuzzer.setWorkers(0));
+  }
+
+  @Test
+  void testParallelWorkersReportEveryEdgeOnce() {
+    // Other tests may have taken the edges already
+    ReflectionUtils.invokeMethod(
+        ReflectionUtils.findMethod(CoverageTracker.class, "resetInstance").orElseThrow(), null);
+    Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(500));
+    fuzzer.setWorkers(4);
+    fuzzer.fuzz(EdgeTarget.class);
+    assertEquals(8, fuzzer.getFuzzingClassResults().methodResults().size());
+    assertTrue(fuzzer.getNumberOfExecutions() > 8);
+    assertTrue(
+        fuzzer.getFuzzingClassResults().methodResults().stream()
+            .allMatch(m -> m.methodName().equals("branch")));
+  }
+
+  @Test
+  void testErrorsOfTheTargetDoNotStopTheWorkers() {
+    ReflectionUtils.invokeMethod(
+        ReflectionUtils.findMethod(CoverageTracker.class, "resetInstance").orElseThrow(), null);
+    Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(300));
+    fuzzer.setWorkers(2);
+    fuzzer.fuzz(ErrorTarget.class);
+    assertTrue(fuzzer.getNumberOfExecutions() > 1);
+    for (FuzzingMethodResult result : fuzzer.getFuzzingClassResults().methodResults()) {
+      assertFalse(result.throwException());
+    }
+  }
+
+  @Test
+  void testResultsCoveringTheSameEdgeAreDistilled() {
+    ReflectionUtils.invokeMethod(
+        ReflectionUtils.findMethod(CoverageTracker.class, "resetInstance").orElseThrow(), null);
+    Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(300));
+    fuzzer.setDropDemotedResults(true);
+    fuzzer.fuzz(BucketTarget.class);
+    // Every new hit count bucket was covering, but a single result covers the edge
+    assertEquals(1, fuzzer.getFuzzingClassResults().methodResults().size());
+  }
+
+  @Test
+  void testDemotedResultsAreKeptByDefault() {
+    ReflectionUtils.invokeMethod(
+        ReflectionUtils.findMethod(CoverageTracker.class, "resetInstance").orElseThrow(), null);
+    Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(300));
+    fuzzer.fuzz(BucketTarget.class);
+    // Results of new hit count buckets cover nothing new, but are reported all the same
+    assertTrue(fuzzer.getFuzzingClassResults().methodResults().size() > 1);
+  }
+
+  @Test
+  void testSharedCoverageKeepsNewHitCounts(@TempDir Path tempDir) throws Exception {
+    ReflectionUtils.invokeMethod(
+        ReflectionUtils.findMethod(CoverageTracker.class, "resetInstance").orElseThrow(), null);
+    Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(300));
+    fuzzer.setSharedCoverage(SharedCoverageMap.open(tempDir.resolve("coverage")));
+    fuzzer.fuzz(BucketTarget.class);
+    // The edge is only new to the shared map once, but every new hit count bucket is covering
+    assertTrue(fuzzer.getFuzzingClassResults().methodResults().size() > 1);
+  }
+
+  @Test
+  void testArgumentsOfResultsAreShrunk() {
+    ReflectionUtils.invokeMethod(
+        ReflectionUtils.findMethod(CoverageTracker.class, "resetInstance").orElseThrow(), null);
+    Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(300));
+    fuzzer.fuzz(ThresholdTarget.class);
+    List<FuzzingMethodResult> results = fuzzer.getFuzzingClassResults().methodResults();
+    assertEquals(2, results.size());
+    for (FuzzingMethodResult result : results) {
+      String argument = result.methodParameters().get(0);
+      assertTrue(argument.equals("0") || argument.equals("101"), argument);
+      assertEquals(argument.equals("101"), result.expectedResult());
+    }
+  }
+
+  @Test
+  void testCrashesWithoutNewCoverageAreKeptOncePerBucket() {
+    ReflectionUtils.invokeMethod(
+        ReflectionUtils.findMethod(CoverageTracker.class, "resetInstance").orElseThrow(), null);
+    Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(300));
+    fuzzer.fuzz(CrashingTarget.class);
+    List<FuzzingMethodResult> results = fuzzer.getFuzzingClassResults().methodResults();
+    List<CrashTriage.Bucket<FuzzingMethodResult>> crashes = fuzzer.getCrashBuckets();
+    assertEquals(2, crashes.size());
+    assertNotEquals(
+        crashes.get(0).reproducer().expectedException().getMessage(),
+        crashes.get(1).reproducer().expectedException().getMessage());
+    for (CrashTriage.Bucket<FuzzingMethodResult> crash : crashes) {
+      assertTrue(crash.hits() > 1);
+      assertTrue(results.contains(crash.reproducer()));
+    }
+    assertTrue(results.size() <= 3);
+  }
+
+  @Test
+  void testShrinkingCanBeTurnedOff() {
+    ReflectionUtils.invokeMethod(
+        ReflectionUtils.findMethod(CoverageTracker.class, "resetInstance").orElseThrow(), null);
+    Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(300));
+    fuzzer.setShrinkingBudget(0);
+    fuzzer.fuzz(ThresholdTarget.class);
+    List<FuzzingMethodResult> results = fuzzer.getFuzzingClassResults().methodResults();
+    assertFalse(results.isEmpty());
+    // The first covering arguments are random, and hardly ever at the boundary
+    assertTrue(
+        results.stream()
+            .map(result -> result.methodParameters().get(0))
+            .anyMatch(argument -> !argument.equals("0") && !argument.equals("101")));
+    assertThrows(IllegalArgumentException.class, () -> fuzzer.setShrinkingBudget(-1));
+  }
+
+  @Test
+  void testSetExecutionTimeoutInvalid() {
+    Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(0));
+    assertThrows(IllegalArgumentException.class, () -> fuzzer.setExecutionTimeout(-1));
+  }
+
+  @Test
+  void testHangingExecutionsAreRecordedAsTimeouts() {
+    Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(500));
+    fuzzer.setExecutionTimeout(50);
+    fuzzer.fuzz(HangingTarget.class);
+    assertFalse(fuzzer.getTimeouts().isEmpty());
+    assertTrue(fuzzer.getNumberOfExecutions() > fuzzer.getTimeouts().size());
+    for (TimeoutFinding timeout : fuzzer.getTimeouts()) {
+      assertEquals("spin", timeout.methodName());
+      assertTrue(timeout.input().startsWith(HangingTarget.class.getName() + ".spin("));
+      assertTrue(timeout.elapsedMillis() >= 50);
+    }
+  }
+
+  @Test
+  void testMethodsThatTimeOutTooOftenAreNoLongerFuzzed() {
+    StuckTarget.released = false;
+    try {
+      Fuzzer fuzzer = new Fuzzer(0, new TimeoutStoppingCondition(10_000));
+      fuzzer.setExecutionTimeout(50);
+      long start = System.nanoTime();
+      fuzzer.fuzz(StuckTarget.class);
+      assertTrue(System.nanoTime() - start < 5_000_000_000L);
+      assertEquals(Fuzzer.MAX_TIMEOUTS_PER_METHOD, fuzzer.getTimeouts().size());
+    } finally {
+      StuckTarget.released = true;
+    }
+  }
 }
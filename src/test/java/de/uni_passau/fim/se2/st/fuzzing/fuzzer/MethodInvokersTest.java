@@ -0,0 +1,155 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MethodInvokersTest {
+
+  static class Target {
+    private final int base;
+
+    Target(int base) {
+      this.base = base;
+    }
+
+    public long add(long value, short other) {
+      return base + value + other;
+    }
+
+    private String describe(String prefix, int[] values) {
+      return prefix + base + values.length;
+    }
+
+    public static boolean isPositive(double value) {
+      return value > 0;
+    }
+
+    public void fail(Object message) {
+      throw new IllegalStateException(String.valueOf(message));
+    }
+  }
+
+  interface Shape {
+    static char symbol() {
+      return '#';
+    }
+
+    double area();
+  }
+
+  private static MethodInvoker invoker(Class<?> type, String name) {
+    for (Method method : type.getDeclaredMethods()) {
+      if (method.getName().equals(name)) {
+        return MethodInvokers.create(method);
+      }
+    }
+    throw new AssertionError("No method " + name);
+  }
+
+  @Test
+  void testPrimitivesAreUnboxedAndBoxed() throws Throwable {
+    MethodInvoker invoker = invoker(Target.class, "add");
+    assertThat(invoker.invoke(new Target(1), new Object[] {2L, (short) 3})).isEqualTo(6L);
+    assertThat(invoker.getClass().getNestHost()).isEqualTo(MethodInvokersTest.class);
+  }
+
+  @Test
+  void testPrivateMethod() throws Throwable {
+    MethodInvoker invoker = invoker(Target.class, "describe");
+    assertThat(invoker.invoke(new Target(4), new Object[] {"x", new int[2]})).isEqualTo("x42");
+  }
+
+  @Test
+  void testStaticMethodIgnoresReceiver() throws Throwable {
+    MethodInvoker invoker = invoker(Target.class, "isPositive");
+    assertThat(invoker.invoke(null, new Object[] {1.5})).isEqualTo(true);
+  }
+
+  @Test
+  void testVoidMethodReturnsNull() throws Throwable {
+    Method method = List.class.getMethod("clear");
+    assertThat(MethodInvokers.create(method).invoke(new java.util.ArrayList<>(), new Object[0]))
+        .isNull();
+  }
+
+  @Test
+  void testExceptionsAreNotWrapped() {
+    MethodInvoker invoker = invoker(Target.class, "fail");
+    IllegalStateException exception =
+        assertThrows(
+            IllegalStateException.class,
+            () -> invoker.invoke(new Target(0), new Object[] {"broken"}));
+    assertThat(exception).hasMessageThat().isEqualTo("broken");
+  }
+
+  @Test
+  void testInterfaceMethods() throws Throwable {
+    Shape square = () -> 4.0;
+    assertThat(invoker(Shape.class, "area").invoke(square, new Object[0])).isEqualTo(4.0);
+    assertThat(invoker(Shape.class, "symbol").invoke(null, new Object[0])).isEqualTo('#');
+  }
+
+  @Test
+  void testFallsBackToReflection() throws Throwable {
+    // java.base is not open to the fuzzer, so no nestmate can be defined
+    Method method = String.class.getMethod("length");
+    MethodInvoker invoker = MethodInvokers.create(method);
+    assertThat(invoker.getClass().getNestHost()).isNotEqualTo(String.class);
+    assertThat(invoker.invoke("four", new Object[0])).isEqualTo(4);
+  }
+
+  @Test
+  void testArgumentOfWrongTypeIsRejected() {
+    MethodInvoker invoker = invoker(Target.class, "add");
+    assertThrows(
+        InvalidInvocationException.class,
+        () -> invoker.invoke(new Target(1), new Object[] {2, 3}));
+  }
+
+  @Test
+  void testPrimitiveArgumentsAreWidened() throws Throwable {
+    MethodInvoker invoker = invoker(Target.class, "add");
+    assertThat(invoker.invoke(new Target(1), new Object[] {2, (short) 3})).isEqualTo(6L);
+  }
+
+  @Test
+  void testNullForPrimitiveIsRejected() {
+    MethodInvoker invoker = invoker(Target.class, "add");
+    assertThrows(
+        InvalidInvocationException.class,
+        () -> invoker.invoke(new Target(1), new Object[] {null, (short) 3}));
+  }
+
+  @Test
+  void testNullForReferenceIsPassed() throws Throwable {
+    MethodInvoker invoker = invoker(Target.class, "describe");
+    assertThrows(
+        NullPointerException.class, () -> invoker.invoke(new Target(4), new Object[] {"x", null}));
+  }
+
+  @Test
+  void testWrongReceiverIsRejected() {
+    MethodInvoker invoker = invoker(Target.class, "add");
+    Object[] arguments = {2L, (short) 3};
+    assertThrows(InvalidInvocationException.class, () -> invoker.invoke(null, arguments));
+    assertThrows(InvalidInvocationException.class, () -> invoker.invoke("target", arguments));
+  }
+
+  @Test
+  void testWrongNumberOfArgumentsIsRejected() {
+    MethodInvoker invoker = invoker(Target.class, "add");
+    assertThrows(
+        InvalidInvocationException.class,
+        () -> invoker.invoke(new Target(1), new Object[] {2L}));
+  }
+
+  @Test
+  void testReflectiveInvokerRejectsWrongArguments() throws NoSuchMethodException {
+    MethodInvoker invoker = MethodInvokers.create(String.class.getMethod("charAt", int.class));
+    assertThrows(InvalidInvocationException.class, () -> invoker.invoke("four", new Object[] {""}));
+  }
+}
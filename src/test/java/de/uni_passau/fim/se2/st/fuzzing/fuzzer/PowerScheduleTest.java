@@ -0,0 +1,76 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.PowerSchedule.CorpusStatistics;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.PowerSchedule.SeedStatistics;
+import org.junit.jupiter.api.Test;
+
+class PowerScheduleTest {
+
+  private static final CorpusStatistics CORPUS = new CorpusStatistics(1000, 100, 10);
+
+  private static SeedStatistics seed(
+      long executionNanos, int coverageSize, int depth, int timesChosen, long pathFrequency) {
+    return new SeedStatistics(executionNanos, coverageSize, depth, timesChosen, pathFrequency, 0);
+  }
+
+  @Test
+  void testPerformanceScoreOfAverageSeed() {
+    assertThat(PowerSchedule.performanceScore(seed(1000, 100, 1, 0, 10), CORPUS)).isEqualTo(100);
+  }
+
+  @Test
+  void testPerformanceScoreFavoursFastLargeDeepSeeds() {
+    double slow = PowerSchedule.performanceScore(seed(20_000, 100, 1, 0, 10), CORPUS);
+    double fast = PowerSchedule.performanceScore(seed(200, 100, 1, 0, 10), CORPUS);
+    double large = PowerSchedule.performanceScore(seed(1000, 400, 1, 0, 10), CORPUS);
+    double deep = PowerSchedule.performanceScore(seed(1000, 100, 30, 0, 10), CORPUS);
+    assertThat(slow).isEqualTo(10);
+    assertThat(fast).isEqualTo(300);
+    assertThat(large).isEqualTo(300);
+    assertThat(deep).isEqualTo(500);
+  }
+
+  @Test
+  void testPerformanceScoreIsCapped() {
+    assertThat(PowerSchedule.performanceScore(seed(1, 1000, 30, 0, 10), CORPUS)).isEqualTo(1600);
+  }
+
+  @Test
+  void testUniform() {
+    assertThat(PowerSchedule.UNIFORM.energy(seed(20_000, 1, 1, 99, 1000), CORPUS)).isEqualTo(1);
+  }
+
+  @Test
+  void testExploitIsPerformanceScore() {
+    SeedStatistics seed = seed(200, 100, 5, 3, 10);
+    assertThat(PowerSchedule.EXPLOIT.energy(seed, CORPUS))
+        .isEqualTo(PowerSchedule.performanceScore(seed, CORPUS));
+  }
+
+  @Test
+  void testFastFavoursRarePaths() {
+    assertThat(PowerSchedule.FAST.energy(seed(1000, 100, 1, 3, 2), CORPUS)).isEqualTo(400);
+    assertThat(PowerSchedule.FAST.energy(seed(1000, 100, 1, 3, 800), CORPUS))
+        .isWithin(1e-9)
+        .of(1);
+    // Once chosen often, the factor is 32 divided by the next power of two of the frequency
+    assertThat(PowerSchedule.FAST.energy(seed(1000, 100, 1, 20, 5), CORPUS)).isEqualTo(400);
+  }
+
+  @Test
+  void testCoeIgnoresFrequentPaths() {
+    assertThat(PowerSchedule.COE.energy(seed(1000, 100, 1, 2, 11), CORPUS)).isEqualTo(0);
+    assertThat(PowerSchedule.COE.energy(seed(1000, 100, 1, 2, 10), CORPUS)).isEqualTo(400);
+    assertThat(PowerSchedule.COE.energy(seed(1000, 100, 1, 10, 1), CORPUS)).isEqualTo(1600);
+  }
+
+  @Test
+  void testEntropicIsEntropy() {
+    SeedStatistics seed = new SeedStatistics(1000, 100, 1, 0, 10, 2.5);
+    assertThat(PowerSchedule.ENTROPIC.energy(seed, CORPUS)).isEqualTo(2.5);
+    assertThat(PowerSchedule.ENTROPIC.needsRareFeatures()).isTrue();
+    assertThat(PowerSchedule.FAST.needsRareFeatures()).isFalse();
+  }
+}
@@ -0,0 +1,112 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.ExecutionTrace;
+import de.uni_passau.fim.se2.st.fuzzing.fuzzer.PowerSchedule.SeedStatistics;
+import org.junit.jupiter.api.Test;
+
+class SeedSchedulerTest {
+
+  private static ExecutionTrace trace(long... lines) {
+    ExecutionTrace trace = mock(ExecutionTrace.class);
+    when(trace.getLineKeys()).thenReturn(lines);
+    when(trace.getEdges()).thenReturn(new int[0]);
+    when(trace.getNumberOfLines()).thenReturn(lines.length);
+    return trace;
+  }
+
+  private static void addSeed(
+      SeedScheduler scheduler, Corpus<String> corpus, String input, int parent, ExecutionTrace t) {
+    scheduler.recordExecution(corpus, parent, t);
+    corpus.add(input);
+    scheduler.recordSeed(corpus, corpus.size() - 1, parent, t, 1000);
+  }
+
+  @Test
+  void testSeedStatistics() {
+    SeedScheduler scheduler = new SeedScheduler(PowerSchedule.EXPLOIT);
+    Corpus<String> corpus = new Corpus<>();
+    ExecutionTrace first = trace(1, 2);
+    addSeed(scheduler, corpus, "a", -1, first);
+    addSeed(scheduler, corpus, "ab", 0, trace(1, 2, 3));
+    scheduler.recordExecution(corpus, 1, first);
+
+    SeedStatistics generated = scheduler.getStatistics(0);
+    SeedStatistics mutated = scheduler.getStatistics(1);
+    assertThat(generated.depth()).isEqualTo(1);
+    assertThat(generated.coverageSize()).isEqualTo(2);
+    assertThat(generated.pathFrequency()).isEqualTo(2);
+    assertThat(generated.timesChosen()).isEqualTo(1);
+    assertThat(mutated.depth()).isEqualTo(2);
+    assertThat(mutated.timesChosen()).isEqualTo(1);
+    assertThat(mutated.pathFrequency()).isEqualTo(1);
+  }
+
+  @Test
+  void testWeightsFollowSchedule() {
+    SeedScheduler scheduler = new SeedScheduler(PowerSchedule.FAST);
+    Corpus<String> corpus = new Corpus<>();
+    addSeed(scheduler, corpus, "a", -1, trace(1));
+    addSeed(scheduler, corpus, "b", -1, trace(2));
+    double initial = corpus.getWeight(0);
+
+    ExecutionTrace other = trace(3);
+    for (int i = 0; i < 4; i++) {
+      scheduler.recordExecution(corpus, 0, other);
+    }
+
+    // Chosen four times, while its path was not exercised again
+    assertThat(corpus.getWeight(0)).isEqualTo(initial * 16);
+    assertThat(corpus.getWeight(1)).isEqualTo(initial);
+  }
+
+  @Test
+  void testDemotedSeedsKeepAShareOfTheirEnergy() {
+    SeedScheduler scheduler = new SeedScheduler(PowerSchedule.UNIFORM);
+    Corpus<String> corpus = new Corpus<>();
+    addSeed(scheduler, corpus, "a", -1, trace(1));
+    addSeed(scheduler, corpus, "b", -1, trace(1, 2));
+
+    scheduler.setDemoted(corpus, index -> index == 0);
+
+    assertThat(corpus.getWeight(0)).isEqualTo(0.05);
+    assertThat(corpus.getWeight(1)).isEqualTo(1);
+  }
+
+  @Test
+  void testRefreshCoversSeedsAddedBeforeTheScheduler() {
+    Corpus<String> corpus = new Corpus<>();
+    corpus.add("a", 5);
+    corpus.add("b", 7);
+    new SeedScheduler(PowerSchedule.UNIFORM).refresh(corpus);
+    assertThat(corpus.getWeight(0)).isEqualTo(1);
+    assertThat(corpus.getWeight(1)).isEqualTo(1);
+  }
+
+  @Test
+  void testEntropyDropsForSeedsWhoseMutantsFindNothingRare() {
+    SeedScheduler scheduler = new SeedScheduler(PowerSchedule.ENTROPIC);
+    Corpus<String> corpus = new Corpus<>();
+    addSeed(scheduler, corpus, "a", -1, trace(1, 2));
+    addSeed(scheduler, corpus, "b", -1, trace(3, 4));
+    addSeed(scheduler, corpus, "c", -1, trace(5, 6));
+    double fresh = scheduler.getStatistics(2).entropy();
+    assertThat(fresh).isGreaterThan(0.0);
+
+    ExecutionTrace same = trace(1, 2);
+    for (int i = 0; i < 100; i++) {
+      scheduler.recordExecution(corpus, 0, same);
+    }
+    for (int i = 0; i < 100; i++) {
+      scheduler.recordExecution(corpus, 1, trace(10 + i));
+    }
+
+    double stuck = scheduler.getStatistics(0).entropy();
+    double diverse = scheduler.getStatistics(1).entropy();
+    assertThat(stuck).isLessThan(diverse);
+    assertThat(corpus.getWeight(0)).isLessThan(corpus.getWeight(1));
+  }
+}
@@ -0,0 +1,102 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.ExecutionTrace;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+class StringMinimizerTest {
+
+  private static final ExecutionTrace WITH_PAIR = mock(ExecutionTrace.class);
+  private static final ExecutionTrace WITHOUT_PAIR = mock(ExecutionTrace.class);
+  private static final StackTraceElement SITE = new StackTraceElement("Parser", "parse", null, 7);
+
+  /** Covers a line only if the input contains an 'a' followed by a 'b' somewhere later. */
+  private static final Function<String, ExecutionOutcome> PAIR =
+      input -> {
+        int a = input.indexOf('a');
+        boolean pair = a >= 0 && input.indexOf('b', a) > 0;
+        return new ExecutionOutcome(pair ? WITH_PAIR : WITHOUT_PAIR, null, null);
+      };
+
+  /** Throws at the same site for every input that contains a '!'. */
+  private static final Function<String, ExecutionOutcome> BANG =
+      input ->
+          input.contains("!")
+              ? new ExecutionOutcome(ExecutionTrace.EMPTY, "java.lang.IllegalStateException", SITE)
+              : new ExecutionOutcome(ExecutionTrace.EMPTY, null, null);
+
+  @Test
+  void testKeepsCoverageSignature() {
+    StringMinimizer minimizer = new StringMinimizer(PAIR);
+    assertThat(minimizer.minimize("xxaxxxxxxbxxbxx")).isEqualTo("ab");
+    assertThat(minimizer.getNumberOfExecutions()).isAtMost(StringMinimizer.MAX_EXECUTIONS);
+  }
+
+  @Test
+  void testKeepsException() {
+    StringMinimizer minimizer = new StringMinimizer(BANG);
+    assertThat(minimizer.minimize("01.01.2024;Suppe;!;2,50")).isEqualTo("!");
+  }
+
+  @Test
+  void testKeepsInputWithoutSmallerEquivalent() {
+    StringMinimizer minimizer = new StringMinimizer(PAIR);
+    assertThat(minimizer.minimize("ab")).isEqualTo("ab");
+  }
+
+  @Test
+  void testResultIsOneMinimal() {
+    StringMinimizer minimizer = new StringMinimizer(PAIR);
+    String minimized =
+        minimizer.minimize("zzzbaqqqqqqqbzzzzzzzzzzzzzzza", o -> o.trace() == WITH_PAIR);
+    for (int i = 0; i < minimized.length(); i++) {
+      String smaller = minimized.substring(0, i) + minimized.substring(i + 1);
+      assertThat(PAIR.apply(smaller).trace()).isSameInstanceAs(WITHOUT_PAIR);
+    }
+  }
+
+  @Test
+  void testStopsAtTheExecutionLimit() {
+    StringMinimizer minimizer = new StringMinimizer(PAIR);
+    String input = "xxaxxxxxxbxxbxx";
+    assertThat(minimizer.minimize(input, o -> o.trace() == WITH_PAIR, 0)).isEqualTo(input);
+    assertThat(minimizer.getNumberOfExecutions()).isEqualTo(0);
+    minimizer.minimize(input, o -> o.trace() == WITH_PAIR, 5);
+    assertThat(minimizer.getNumberOfExecutions()).isAtMost(5);
+  }
+
+  @Test
+  void testParallelBatchesGiveTheSameResult() {
+    String input = "a" + "x".repeat(300) + "a" + "y".repeat(200) + "b" + "z".repeat(100);
+    String sequential = new StringMinimizer(PAIR).minimize(input);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      assertThat(new StringMinimizer(PAIR, executor, 4).minimize(input)).isEqualTo(sequential);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testMinimizesCsvParserException() {
+    String input = "01.01.2024;x;Pizza;Salami (1,A);V;2,50;3,50;4,50\nnoise\nnoise";
+    ExecutionOutcome original = StringMinimizer.parseDishes(input);
+    assertThat(original.threw()).isTrue();
+
+    String minimized = new StringMinimizer(StringMinimizer::parseDishes).minimize(input);
+
+    assertThat(minimized.length()).isLessThan(input.length());
+    assertThat(original.sameException(StringMinimizer.parseDishes(minimized))).isTrue();
+  }
+
+  @Test
+  void testInvalidBatchSize() {
+    assertThrows(IllegalArgumentException.class, () -> new StringMinimizer(PAIR, null, 0));
+  }
+}
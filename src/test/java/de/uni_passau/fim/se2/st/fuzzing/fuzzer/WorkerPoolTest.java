@@ -0,0 +1,98 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump;
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump.ClassCoverage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorkerPoolTest {
+
+  /**
+   * A worker that sends one result, one timeout and its coverage. It crashes after sending them
+   * the first time it runs, and exits normally when it is restarted.
+   */
+  static final class FakeWorker {
+
+    public static void main(String[] args) throws IOException {
+      int workerId = Integer.parseInt(args[1]);
+      Path marker = Path.of(args[2]).resolve("crashed-" + workerId);
+      try (CoordinatorConnection connection =
+          CoordinatorConnection.open(Path.of(args[0]), workerId)) {
+        connection.sendResult(
+            new FuzzingMethodResult(
+                "method" + workerId,
+                List.of(),
+                new Class<?>[0],
+                "",
+                workerId,
+                true,
+                false,
+                null,
+                false,
+                int.class));
+        connection.sendTimeout(new TimeoutFinding("spin", "Fake.spin(" + workerId + ")", 10));
+        connection.sendCoverage(
+            CoverageDump.of(
+                List.of(
+                    new ClassCoverage(
+                        7, "Fake", new int[] {workerId + 1}, new int[] {1}))));
+        if (!Files.exists(marker)) {
+          Files.createFile(marker);
+          Runtime.getRuntime().halt(3);
+        }
+      }
+    }
+  }
+
+  private static WorkerPool.WorkerCommand fakeWorker(Path markers) {
+    return (workerId, socket, remainingMillis) ->
+        List.of(
+            Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp",
+            System.getProperty("java.class.path"),
+            FakeWorker.class.getName(),
+            socket.toString(),
+            String.valueOf(workerId),
+            markers.toString());
+  }
+
+  @Test
+  void testCrashedWorkersAreRestartedWithoutLosingProgress(@TempDir Path tempDir)
+      throws IOException {
+    WorkerPool pool = new WorkerPool(fakeWorker(tempDir), 2, tempDir.resolve("logs"));
+
+    WorkerPool.Result result = pool.run(30_000);
+
+    assertThat(result.restarts()).isEqualTo(2);
+    assertThat(result.methodResults().stream().map(FuzzingMethodResult::methodName).toList())
+        .containsExactly("method0", "method0", "method1", "method1");
+    assertThat(result.timeouts()).hasSize(4);
+    ClassCoverage coverage = result.coverage().getClasses().get("Fake");
+    assertThat(coverage.lines()).asList().containsExactly(1, 2).inOrder();
+    assertThat(coverage.counts()).asList().containsExactly(2, 2).inOrder();
+    assertThat(Files.exists(tempDir.resolve("logs").resolve("worker-0.log"))).isTrue();
+  }
+
+  @Test
+  void testWorkersAreNotRestartedAfterTheDeadline(@TempDir Path tempDir) throws IOException {
+    WorkerPool pool = new WorkerPool(fakeWorker(tempDir), 1, tempDir.resolve("logs"));
+
+    WorkerPool.Result result = pool.run(0);
+
+    assertThat(result.restarts()).isEqualTo(0);
+    assertThat(result.methodResults()).hasSize(1);
+  }
+
+  @Test
+  void testInvalidNumberOfProcesses(@TempDir Path tempDir) {
+    assertThrows(
+        IllegalArgumentException.class, () -> new WorkerPool(fakeWorker(tempDir), 0, tempDir));
+  }
+}
@@ -0,0 +1,159 @@
+package de.uni_passau.fim.se2.st.fuzzing.fuzzer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump;
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageDump.ClassCoverage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serial;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.PatternSyntaxException;
+import org.junit.jupiter.api.Test;
+
+class WorkerProtocolTest {
+
+  /** An exception whose only constructor rejects the default arguments. */
+  public static class PickyException extends Exception {
+
+    @Serial private static final long serialVersionUID = 1L;
+
+    public PickyException(String message, Throwable cause) {
+      super(message, Objects.requireNonNull(cause));
+    }
+  }
+
+  private static FuzzingMethodResult result(Object expectedResult, Exception exception) {
+    return new FuzzingMethodResult(
+        "parse",
+        List.of("\"a,b\"", "1"),
+        new Class<?>[] {String.class, int.class},
+        "new Foo()",
+        expectedResult,
+        false,
+        true,
+        exception,
+        exception != null,
+        expectedResult == null ? void.class : expectedResult.getClass());
+  }
+
+  private static DataInputStream roundTrip(WriteAction action) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    action.write(new DataOutputStream(bytes));
+    return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+  }
+
+  private interface WriteAction {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private static FuzzingMethodResult sendResult(FuzzingMethodResult result) throws IOException {
+    DataInputStream in = roundTrip(out -> WorkerProtocol.writeResult(out, result));
+    assertThat(in.readByte()).isEqualTo(WorkerProtocol.RESULT);
+    return WorkerProtocol.readResult(in, WorkerProtocolTest.class.getClassLoader());
+  }
+
+  @Test
+  void testResultRoundTrip() throws IOException {
+    List<Object> values =
+        List.of(true, (byte) 1, (short) 2, 'c', 3, 4L, 5.5f, 6.5, "ü".repeat(70_000));
+    for (Object value : values) {
+      FuzzingMethodResult result = result(value, null);
+      assertThat(sendResult(result)).isEqualTo(result);
+    }
+    FuzzingMethodResult nothing = result(null, null);
+    assertThat(sendResult(nothing)).isEqualTo(nothing);
+  }
+
+  @Test
+  void testExceptionRoundTrip() throws IOException {
+    FuzzingMethodResult result = result(null, new IllegalArgumentException("Invalid"));
+    assertThat(sendResult(result)).isEqualTo(result);
+  }
+
+  @Test
+  void testExceptionsWithoutMessageConstructorKeepTheirType() throws IOException {
+    List<Exception> exceptions =
+        List.of(
+            new PatternSyntaxException("Unclosed group", "(", 1),
+            new DateTimeParseException("Text cannot be parsed", "x", 0));
+    for (Exception exception : exceptions) {
+      FuzzingMethodResult result = sendResult(result(null, exception));
+      assertThat(result.expectedException()).isInstanceOf(exception.getClass());
+    }
+  }
+
+  @Test
+  void testResultWithUnknownExceptionIsSkipped() throws IOException {
+    FuzzingMethodResult picky = result(null, new PickyException("picky", new Exception()));
+    FuzzingMethodResult next = result(1, null);
+    DataInputStream in =
+        roundTrip(
+            out -> {
+              WorkerProtocol.writeResult(out, picky);
+              WorkerProtocol.writeResult(out, next);
+            });
+    ClassLoader loader = getClass().getClassLoader();
+    in.readByte();
+    assertThat(WorkerProtocol.readResult(in, loader)).isNull();
+    in.readByte();
+    assertThat(WorkerProtocol.readResult(in, loader)).isEqualTo(next);
+  }
+
+  @Test
+  void testOtherValuesKeepTheirString() throws IOException {
+    FuzzingMethodResult result = sendResult(result(List.of(1, 2), null));
+    assertThat(result.expectedResult()).isEqualTo("[1, 2]");
+  }
+
+  @Test
+  void testCoverageRoundTrip() throws IOException {
+    CoverageDump dump =
+        CoverageDump.of(List.of(new ClassCoverage(0, "Foo", new int[] {3}, new int[] {2})));
+    DataInputStream in = roundTrip(out -> WorkerProtocol.writeCoverage(out, dump));
+    assertThat(in.readByte()).isEqualTo(WorkerProtocol.COVERAGE);
+    assertThat(WorkerProtocol.readCoverage(in)).isEqualTo(dump);
+  }
+
+  @Test
+  void testTimeoutRoundTrip() throws IOException {
+    TimeoutFinding timeout = new TimeoutFinding("spin", "Foo.spin(2)", 1200);
+    DataInputStream in = roundTrip(out -> WorkerProtocol.writeTimeout(out, timeout));
+    assertThat(in.readByte()).isEqualTo(WorkerProtocol.TIMEOUT);
+    assertThat(WorkerProtocol.readTimeout(in)).isEqualTo(timeout);
+  }
+
+  @Test
+  void testResultWithUnknownTypeIsSkipped() throws IOException {
+    FuzzingMethodResult unknown =
+        new FuzzingMethodResult(
+            "get", List.of(), new Class<?>[0], "", null, true, false, null, false, getClass());
+    FuzzingMethodResult next = result(1, null);
+    DataInputStream in =
+        roundTrip(
+            out -> {
+              WorkerProtocol.writeResult(out, unknown);
+              WorkerProtocol.writeResult(out, next);
+            });
+    ClassLoader loader =
+        new ClassLoader(getClass().getClassLoader()) {
+          @Override
+          protected Class<?> loadClass(String name, boolean resolve)
+              throws ClassNotFoundException {
+            if (name.equals(WorkerProtocolTest.class.getName())) {
+              throw new ClassNotFoundException(name);
+            }
+            return super.loadClass(name, resolve);
+          }
+        };
+    in.readByte();
+    assertThat(WorkerProtocol.readResult(in, loader)).isNull();
+    in.readByte();
+    assertThat(WorkerProtocol.readResult(in, loader)).isEqualTo(next);
+  }
+}
@@ -0,0 +1,77 @@
+package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class AgentOptionsTest {
+
+  @Test
+  void testDefaults() {
+    assertFalse(AgentOptions.parse(null).isEdgeCoverage());
+    assertFalse(AgentOptions.parse("").isEdgeCoverage());
+    assertFalse(AgentOptions.defaults().isKeepFrames());
+    assertFalse(AgentOptions.defaults().isTiming());
+  }
+
+  @Test
+  void testEdgeCoverage() {
+    assertTrue(AgentOptions.parse("edges=true").isEdgeCoverage());
+    assertFalse(AgentOptions.parse("edges=false").isEdgeCoverage());
+  }
+
+  @Test
+  void testFramesAndTiming() {
+    AgentOptions options = AgentOptions.parse("frames=keep, timing=true");
+    assertTrue(options.isKeepFrames());
+    assertTrue(options.isTiming());
+    assertFalse(AgentOptions.parse("frames=compute").isKeepFrames());
+    assertThrows(IllegalArgumentException.class, () -> AgentOptions.parse("frames=drop"));
+  }
+
+  @Test
+  void testFirstHit() {
+    assertFalse(AgentOptions.defaults().isFirstHit());
+    assertTrue(AgentOptions.parse("firsthit=true").isFirstHit());
+    assertThrows(
+        IllegalArgumentException.class, () -> AgentOptions.parse("firsthit=true,edges=true"));
+  }
+
+  @Test
+  void testUnknownOption() {
+    assertThrows(IllegalArgumentException.class, () -> AgentOptions.parse("foo=bar"));
+  }
+
+  @Test
+  void testMalformedOption() {
+    assertThrows(IllegalArgumentException.class, () -> AgentOptions.parse("edges"));
+    assertThrows(IllegalArgumentException.class, () -> AgentOptions.parse("edges=yes"));
+  }
+
+  @Test
+  void testDefaultClassFilter() {
+    ClassFilter filter = AgentOptions.defaults().getClassFilter();
+    assertTrue(filter.matches("de/uni_passau/fim/se2/st/fuzzing/fuzztarget/Example"));
+    assertFalse(filter.matches("de/uni_passau/fim/se2/st/fuzzing/fuzztarget/ExampleTest"));
+    assertFalse(filter.matches("com/example/Foo"));
+  }
+
+  @Test
+  void testIncludesAndExcludes() {
+    ClassFilter filter =
+        AgentOptions.parse("includes=com.example.**:org.example.*,excludes=**.internal.**")
+            .getClassFilter();
+    assertTrue(filter.matches("com/example/Foo"));
+    assertTrue(filter.matches("org/example/Foo"));
+    assertFalse(filter.matches("com/example/internal/Foo"));
+    assertFalse(filter.matches("de/uni_passau/fim/se2/st/fuzzing/fuzztarget/Example"));
+  }
+
+  @Test
+  void testAgentClassesAreNeverIncluded() {
+    ClassFilter filter = AgentOptions.parse("includes=**,excludes=").getClassFilter();
+    assertTrue(filter.matches("de/uni_passau/fim/se2/st/fuzzing/fuzztarget/ExampleTest"));
+    assertFalse(filter.matches("de/uni_passau/fim/se2/st/fuzzing/coverage/CoverageTracker"));
+    assertFalse(filter.matches("de/uni_passau/fim/se2/st/fuzzing/instrumentation/Agent"));
+  }
+}
@@ -1,15 +1,28 @@
 package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker;
+import de.uni_passau.fim.se2.st.fuzzing.fuzztarget.Example;
+import de.uni_passau.fim.se2.st.fuzzing.fuzztarget.Rational;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.lang.reflect.Method;
 import java.util.Objects;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.platform.commons.util.ReflectionUtils;
 
 /**
  * @author Leon Föckersperger
@@ -18,8 +31,12 @@ class AgentTest {
 
   private static final String SAMPLE_TEST_CLASS_PATH =
       "/de/uni_passau/fim/se2/st/fuzzing/fuzztarget/SampleTestClass.class";
+  private static final String STATIC_METHOD_CLASS_PATH =
+      "/de/uni_passau/fim/se2/st/fuzzing/fuzztarget/TestClassWithStaticMethod.class";
+  private static final String STATIC_METHOD_CLASS_NAME =
+      "de.uni_passau.fim.se2.st.fuzzing.fuzztarget.TestClassWithStaticMethod";
   private static final byte[] EXPECTED_TRANSFORMED_BYTES = {
-    -54, -2, -70, -66, 0, 0, 0, 65, 0, 42, 10, 0, 2, 0, 3, 7, 0, 4, 12, 0, 5, 0, 6, 1, 0, 16, 106,
+    -54, -2, -70, -66, 0, 0, 0, 65, 0, 40, 10, 0, 2, 0, 3, 7, 0, 4, 12, 0, 5, 0, 6, 1, 0, 16, 106,
     97, 118, 97, 47, 108, 97, 110, 103, 47, 79, 98, 106, 101, 99, 116, 1, 0, 6, 60, 105, 110, 105,
     116, 62, 1, 0, 3, 40, 41, 86, 9, 0, 8, 0, 9, 7, 0, 10, 12, 0, 11, 0, 12, 1, 0, 16, 106, 97, 118,
     97, 47, 108, 97, 110, 103, 47, 83, 121, 115, 116, 101, 109, 1, 0, 3, 111, 117, 116, 1, 0, 21,
@@ -35,24 +52,30 @@ class AgentTest {
     97, 98, 108, 101, 1, 0, 3, 97, 100, 100, 1, 0, 5, 40, 73, 73, 41, 73, 1, 0, 10, 112, 114, 105,
     110, 116, 72, 101, 108, 108, 111, 1, 0, 10, 83, 111, 117, 114, 99, 101, 70, 105, 108, 101, 1, 0,
     20, 83, 97, 109, 112, 108, 101, 84, 101, 115, 116, 67, 108, 97, 115, 115, 46, 106, 97, 118, 97,
-    3, 0, 0, 0, 3, 1, 0, 65, 100, 101, 47, 117, 110, 105, 95, 112, 97, 115, 115, 97, 117, 47, 102,
-    105, 109, 47, 115, 101, 50, 47, 115, 116, 47, 102, 117, 122, 122, 105, 110, 103, 47, 102, 117,
-    122, 122, 116, 97, 114, 103, 101, 116, 47, 83, 97, 109, 112, 108, 101, 84, 101, 115, 116, 67,
-    108, 97, 115, 115, 46, 99, 108, 97, 115, 115, 8, 0, 31, 1, 0, 57, 100, 101, 47, 117, 110, 105,
-    95, 112, 97, 115, 115, 97, 117, 47, 102, 105, 109, 47, 115, 101, 50, 47, 115, 116, 47, 102, 117,
-    122, 122, 105, 110, 103, 47, 99, 111, 118, 101, 114, 97, 103, 101, 47, 67, 111, 118, 101, 114,
-    97, 103, 101, 84, 114, 97, 99, 107, 101, 114, 7, 0, 33, 1, 0, 14, 116, 114, 97, 99, 107, 76,
-    105, 110, 101, 86, 105, 115, 105, 116, 1, 0, 22, 40, 73, 76, 106, 97, 118, 97, 47, 108, 97, 110,
-    103, 47, 83, 116, 114, 105, 110, 103, 59, 41, 86, 12, 0, 35, 0, 36, 10, 0, 34, 0, 37, 3, 0, 0,
-    0, 5, 3, 0, 0, 0, 9, 3, 0, 0, 0, 10, 0, 33, 0, 21, 0, 2, 0, 0, 0, 0, 0, 3, 0, 1, 0, 5, 0, 6, 0,
-    1, 0, 23, 0, 0, 0, 36, 0, 2, 0, 1, 0, 0, 0, 12, 18, 30, 18, 32, -72, 0, 38, 42, -73, 0, 1, -79,
-    0, 0, 0, 1, 0, 24, 0, 0, 0, 6, 0, 1, 0, 0, 0, 3, 0, 1, 0, 25, 0, 26, 0, 1, 0, 23, 0, 0, 0, 35,
-    0, 2, 0, 3, 0, 0, 0, 11, 18, 39, 18, 32, -72, 0, 38, 27, 28, 96, -84, 0, 0, 0, 1, 0, 24, 0, 0,
-    0, 6, 0, 1, 0, 0, 0, 5, 0, 1, 0, 27, 0, 6, 0, 1, 0, 23, 0, 0, 0, 51, 0, 2, 0, 1, 0, 0, 0, 23,
-    18, 40, 18, 32, -72, 0, 38, -78, 0, 7, 18, 13, -74, 0, 15, 18, 41, 18, 32, -72, 0, 38, -79, 0,
-    0, 0, 1, 0, 24, 0, 0, 0, 10, 0, 2, 0, 0, 0, 9, 0, 15, 0, 10, 0, 1, 0, 28, 0, 0, 0, 2, 0, 29
+    3, 0, 0, 0, 0, 1, 0, 57, 100, 101, 47, 117, 110, 105, 95, 112, 97, 115, 115, 97, 117, 47, 102,
+    105, 109, 47, 115, 101, 50, 47, 115, 116, 47, 102, 117, 122, 122, 105, 110, 103, 47, 99, 111,
+    118, 101, 114, 97, 103, 101, 47, 67, 111, 118, 101, 114, 97, 103, 101, 84, 114, 97, 99, 107,
+    101, 114, 7, 0, 31, 1, 0, 9, 103, 101, 116, 80, 114, 111, 98, 101, 115, 1, 0, 5, 40, 73, 41, 91,
+    73, 12, 0, 33, 0, 34, 10, 0, 32, 0, 35, 3, 0, 0, 0, 1, 3, 0, 0, 0, 2, 3, 0, 0, 0, 3, 0, 33, 0,
+    21, 0, 2, 0, 0, 0, 0, 0, 3, 0, 1, 0, 5, 0, 6, 0, 1, 0, 23, 0, 0, 0, 43, 0, 4, 0, 2, 0, 0, 0, 19,
+    18, 30, -72, 0, 36, 76, 43, 18, 30, 92, 46, 4, 96, 79, 42, -73, 0, 1, -79, 0, 0, 0, 1, 0, 24, 0,
+    0, 0, 6, 0, 1, 0, 6, 0, 3, 0, 1, 0, 25, 0, 26, 0, 1, 0, 23, 0, 0, 0, 42, 0, 4, 0, 4, 0, 0, 0,
+    18, 18, 30, -72, 0, 36, 78, 45, 18, 37, 92, 46, 4, 96, 79, 27, 28, 96, -84, 0, 0, 0, 1, 0, 24,
+    0, 0, 0, 6, 0, 1, 0, 6, 0, 5, 0, 1, 0, 27, 0, 6, 0, 1, 0, 23, 0, 0, 0, 59, 0, 4, 0, 2, 0, 0, 0,
+    31, 18, 30, -72, 0, 36, 76, 43, 18, 38, 92, 46, 4, 96, 79, -78, 0, 7, 18, 13, -74, 0, 15, 43,
+    18, 39, 92, 46, 4, 96, 79, -79, 0, 0, 0, 1, 0, 24, 0, 0, 0, 10, 0, 2, 0, 6, 0, 9, 0, 22, 0, 10,
+    0, 1, 0, 28, 0, 0, 0, 2, 0, 29
   };
 
+  @BeforeEach
+  void resetCoverageTracker() throws ReflectiveOperationException {
+    // Class ids are part of the instrumented code, so every test starts with a fresh tracker
+    Method reset =
+        ReflectionUtils.findMethod(CoverageTracker.class, "resetInstance").orElseThrow();
+    reset.setAccessible(true);
+    reset.invoke(null);
+  }
+
   @Test
   void testPremainAddsInstrumentationTransformer() {
     Instrumentation instrumentation = mock(Instrumentation.class);
@@ -62,6 +85,74 @@ class AgentTest {
     verify(instrumentation, times(1)).addTransformer(any(Agent.InstrumentationTransformer.class));
   }
 
+  @Test
+  void testStartedAgentReportsInstrumentedClasses() {
+    Agent.premain("includes=com.example.**", mock(Instrumentation.class));
+
+    assertTrue(Agent.isInstrumented("com/example/Foo"));
+    assertFalse(Agent.isInstrumented("de/uni_passau/fim/se2/st/fuzzing/fuzztarget/Example"));
+  }
+
+  @Test
+  void testStartedAgentReportsFirstHitMode() {
+    Instrumentation instrumentation = mock(Instrumentation.class);
+    when(instrumentation.isRetransformClassesSupported()).thenReturn(true);
+    Agent.premain("firsthit=true", instrumentation);
+    assertTrue(Agent.isFirstHit());
+
+    Agent.premain("", instrumentation);
+    assertFalse(Agent.isFirstHit());
+  }
+
+  @Test
+  void testAgentmainRetransformsLoadedTargetClasses() throws Exception {
+    Instrumentation instrumentation = mock(Instrumentation.class);
+    when(instrumentation.isRetransformClassesSupported()).thenReturn(true);
+    when(instrumentation.isModifiableClass(any())).thenReturn(true);
+    Class<?> testClass = Class.forName("de.uni_passau.fim.se2.st.fuzzing.fuzztarget.DishTest");
+    when(instrumentation.getAllLoadedClasses())
+        .thenReturn(new Class<?>[] {String.class, Example.class, testClass});
+
+    Agent.agentmain("", instrumentation);
+
+    verify(instrumentation)
+        .addTransformer(any(Agent.InstrumentationTransformer.class), eq(true));
+    verify(instrumentation).retransformClasses(Example.class);
+  }
+
+  @Test
+  void testRetransformFallsBackToSingleClasses() throws Exception {
+    Instrumentation instrumentation = mock(Instrumentation.class);
+    when(instrumentation.isRetransformClassesSupported()).thenReturn(true);
+    when(instrumentation.isModifiableClass(any())).thenReturn(true);
+    when(instrumentation.getAllLoadedClasses())
+        .thenReturn(new Class<?>[] {Example.class, Rational.class});
+    doThrow(new UnmodifiableClassException())
+        .when(instrumentation)
+        .retransformClasses(Example.class, Rational.class);
+    doThrow(new UnmodifiableClassException())
+        .when(instrumentation)
+        .retransformClasses(Rational.class);
+
+    int retransformed =
+        Agent.retransformLoadedClasses(
+            instrumentation, AgentOptions.defaults().getClassFilter());
+
+    assertEquals(1, retransformed);
+    verify(instrumentation).retransformClasses(Example.class);
+  }
+
+  @Test
+  void testRetransformUnsupported() {
+    Instrumentation instrumentation = mock(Instrumentation.class);
+
+    assertEquals(
+        0,
+        Agent.retransformLoadedClasses(
+            instrumentation, AgentOptions.defaults().getClassFilter()));
+    verify(instrumentation, never()).getAllLoadedClasses();
+  }
+
   @Test
   void testTransformIgnored() throws IOException {
     byte[] classBytes = readBytesFromClasspath();
@@ -107,10 +198,100 @@ class AgentTest {
         "Transformed bytes did not match expected bytes");
   }
 
+  @Test
+  void testTransformedClassUpdatesProbes() throws Exception {
+    byte[] classBytes = readBytesFromClasspath(STATIC_METHOD_CLASS_PATH);
+    String internalName = STATIC_METHOD_CLASS_NAME.replace('.', '/');
+    byte[] transformedBytes =
+        new Agent.InstrumentationTransformer()
+            .transform(null, internalName, null, null, classBytes);
+
+    Class<?> instrumented =
+        new DefiningClassLoader().define(STATIC_METHOD_CLASS_NAME, transformedBytes);
+    instrumented.getMethod("staticMethod").invoke(null);
+
+    CoverageTracker.ClassTracker tracker =
+        CoverageTracker.getInstance().getClassTrackers().get(internalName);
+    assertNotNull(tracker, "Instrumented class should be registered");
+    assertTrue(tracker.getLines().contains(5), "Line of staticMethod should be tracked");
+    assertTrue(tracker.getVisitedLines().containsKey(5), "Line of staticMethod should be visited");
+  }
+
+  @Test
+  void testEdgeCoverageDistinguishesConditions() throws Exception {
+    String className = "de.uni_passau.fim.se2.st.fuzzing.fuzztarget.Example";
+    String internalName = className.replace('.', '/');
+    byte[] classBytes = readBytesFromClasspath("/" + internalName + ".class");
+    byte[] transformedBytes =
+        new Agent.InstrumentationTransformer(AgentOptions.parse("edges=true"))
+            .transform(null, internalName, null, null, classBytes);
+
+    Class<?> instrumented = new DefiningClassLoader().define(className, transformedBytes);
+    Method evaluateConditions =
+        instrumented.getMethod("evaluateConditions", boolean.class, boolean.class, boolean.class);
+    CoverageTracker tracker = CoverageTracker.getInstance();
+
+    evaluateConditions.invoke(null, true, true, false);
+    int coveredLines = tracker.getNumberOfCoveredLines();
+    int coveredEdges = tracker.getNumberOfCoveredEdges();
+    evaluateConditions.invoke(null, true, false, true);
+
+    assertEquals(coveredLines, tracker.getNumberOfCoveredLines());
+    assertTrue(tracker.getNumberOfCoveredEdges() > coveredEdges);
+  }
+
+  @Test
+  void testLineCoverageModeTracksNoEdges() throws Exception {
+    byte[] classBytes = readBytesFromClasspath(STATIC_METHOD_CLASS_PATH);
+    byte[] transformedBytes =
+        new Agent.InstrumentationTransformer()
+            .transform(null, STATIC_METHOD_CLASS_NAME.replace('.', '/'), null, null, classBytes);
+
+    new DefiningClassLoader()
+        .define(STATIC_METHOD_CLASS_NAME, transformedBytes)
+        .getMethod("staticMethod")
+        .invoke(null);
+
+    assertEquals(0, CoverageTracker.getInstance().getNumberOfCoveredEdges());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"Example", "Rational", "CSVParser", "CSVReader", "Dish$Builder"})
+  void testKeptFramesPassVerification(String simpleName) throws Exception {
+    String className = "de.uni_passau.fim.se2.st.fuzzing.fuzztarget." + simpleName;
+    String internalName = className.replace('.', '/');
+    byte[] classBytes = readBytesFromClasspath("/" + internalName + ".class");
+    Agent.InstrumentationTransformer transformer =
+        new Agent.InstrumentationTransformer(
+            AgentOptions.parse("edges=true,frames=keep,timing=true"));
+    byte[] transformedBytes = transformer.transform(null, internalName, null, null, classBytes);
+
+    DefiningClassLoader loader = new DefiningClassLoader();
+    loader.define(className, transformedBytes);
+    // Initializing the class links it, which runs the verifier on the kept frames
+    assertNotNull(Class.forName(className, true, loader));
+    assertEquals(1, transformer.getTransformedClasses());
+    assertTrue(transformer.getTotalTransformNanos() > 0);
+  }
+
   private byte[] readBytesFromClasspath() throws IOException {
-    try (InputStream resourceStream =
-        getClass().getResourceAsStream(AgentTest.SAMPLE_TEST_CLASS_PATH)) {
+    return readBytesFromClasspath(AgentTest.SAMPLE_TEST_CLASS_PATH);
+  }
+
+  private byte[] readBytesFromClasspath(String path) throws IOException {
+    try (InputStream resourceStream = getClass().getResourceAsStream(path)) {
       return Objects.requireNonNull(resourceStream).readAllBytes();
     }
   }
+
+  private static final class DefiningClassLoader extends ClassLoader {
+
+    DefiningClassLoader() {
+      super(AgentTest.class.getClassLoader());
+    }
+
+    Class<?> define(String name, byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
 }
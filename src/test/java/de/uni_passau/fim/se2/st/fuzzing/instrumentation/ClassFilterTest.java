@@ -0,0 +1,70 @@
+package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class ClassFilterTest {
+
+  @ParameterizedTest
+  @CsvSource({
+    "com.example.**, com/example/Foo, true",
+    "com.example.**, com/example/sub/Foo, true",
+    "com.example.**, com/examples/Foo, false",
+    "com.example.*, com/example/Foo, true",
+    "com.example.*, com/example/sub/Foo, false",
+    "com.example.Fo?, com/example/Foo, true",
+    "com.example.Fo?, com/example/Fooo, false",
+    "com/example/*Test, com/example/FooTest, true",
+    "com/example/*Test, com/example/FooTest$1, false",
+    "**, Foo, true",
+    "**.*$*, com/example/Foo$Bar, true",
+    "**.*$*, com/example/Foo, false",
+    "com.ex??ple.**, com/exa/ple/Foo, false",
+    "com.exämple.**, com/exämple/Foo, true",
+    "com.exämple.**, com/exömple/Foo, false",
+  })
+  void testPatterns(String pattern, String className, boolean expected) {
+    ClassFilter filter = new ClassFilter(List.of(pattern), List.of());
+    assertEquals(expected, filter.matches(className));
+  }
+
+  @Test
+  void testExcludesWin() {
+    ClassFilter filter = new ClassFilter(List.of("com.example.**"), List.of("**Test"));
+    assertTrue(filter.matches("com/example/Foo"));
+    assertFalse(filter.matches("com/example/FooTest"));
+    assertFalse(filter.matches("org/example/Foo"));
+  }
+
+  @Test
+  void testManyPatterns() {
+    List<String> includes =
+        IntStream.range(0, 1000).mapToObj(i -> "com.example.p" + i + ".**").toList();
+    ClassFilter filter = new ClassFilter(includes, List.of("**.internal.*"));
+    assertTrue(filter.matches("com/example/p0/Foo"));
+    assertTrue(filter.matches("com/example/p999/sub/Foo"));
+    assertFalse(filter.matches("com/example/p1000/Foo"));
+    assertFalse(filter.matches("com/example/p42/internal/Foo"));
+  }
+
+  @Test
+  void testNullClassName() {
+    assertFalse(new ClassFilter(List.of("**"), List.of()).matches(null));
+  }
+
+  @Test
+  void testEmptyPattern() {
+    assertThrows(IllegalArgumentException.class, () -> new ClassFilter(List.of(""), List.of()));
+  }
+
+  @Test
+  void testSplit() {
+    assertEquals(List.of("a.*", "b.**"), ClassFilter.split("a.* : b.**"));
+    assertEquals(List.of(), ClassFilter.split(""));
+  }
+}
@@ -0,0 +1,119 @@
+package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker;
+import de.uni_passau.fim.se2.st.fuzzing.fuzztarget.Example;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.util.ReflectionUtils;
+
+class FirstHitMonitorTest {
+
+  private static final String CLASS_NAME = "de/uni_passau/fim/se2/st/fuzzing/fuzztarget/Example";
+  private static final String GCD = "gcd(II)I";
+
+  private Instrumentation instrumentation;
+  private FirstHitMonitor monitor;
+  private Agent.InstrumentationTransformer transformer;
+
+  @BeforeEach
+  void setUp() throws ReflectiveOperationException {
+    Method reset =
+        ReflectionUtils.findMethod(CoverageTracker.class, "resetInstance").orElseThrow();
+    reset.setAccessible(true);
+    reset.invoke(null);
+
+    instrumentation = mock(Instrumentation.class);
+    when(instrumentation.isModifiableClass(any())).thenReturn(true);
+    when(instrumentation.getAllLoadedClasses()).thenReturn(new Class<?>[] {Example.class});
+    monitor = new FirstHitMonitor(instrumentation);
+    transformer =
+        new Agent.InstrumentationTransformer(AgentOptions.parse("firsthit=true"), monitor);
+  }
+
+  @Test
+  void testSaturatedMethodIsDisabled() throws Exception {
+    Class<?> instrumented = defineClass(transform());
+    Object example = instrumented.getConstructor().newInstance();
+    instrumented.getMethod("gcd", int.class, int.class).invoke(example, 12, 8);
+
+    assertEquals(2, monitor.disableSaturatedMethods());
+
+    // The constructor and gcd are saturated, and their class is retransformed once
+    assertEquals(Set.of("<init>()V", GCD), monitor.getDisabledMethods(CLASS_NAME));
+    verify(instrumentation).retransformClasses(Example.class);
+    assertEquals(0, monitor.disableSaturatedMethods());
+  }
+
+  @Test
+  void testPartiallyCoveredMethodKeepsProbes() throws Exception {
+    Class<?> instrumented = defineClass(transform());
+    Object example = instrumented.getConstructor().newInstance();
+    // The loop body is never entered
+    instrumented.getMethod("gcd", int.class, int.class).invoke(example, 12, 0);
+
+    monitor.disableSaturatedMethods();
+
+    assertFalse(monitor.getDisabledMethods(CLASS_NAME).contains(GCD));
+  }
+
+  @Test
+  void testNothingToRetransform() throws Exception {
+    transform();
+
+    assertEquals(0, monitor.disableSaturatedMethods());
+    verify(instrumentation, never()).retransformClasses(any());
+  }
+
+  @Test
+  void testRetransformedClassKeepsCoverage() throws Exception {
+    doAnswer(invocation -> transform()).when(instrumentation).retransformClasses(Example.class);
+    Class<?> instrumented = defineClass(transform());
+    Object example = instrumented.getConstructor().newInstance();
+    Method gcd = instrumented.getMethod("gcd", int.class, int.class);
+    gcd.invoke(example, 12, 8);
+    CoverageTracker.ClassTracker tracker =
+        CoverageTracker.getInstance().getClassTrackers().get(CLASS_NAME);
+    assertNotNull(tracker);
+    Map<Integer, Integer> visitedLines = tracker.getVisitedLines();
+
+    monitor.disableSaturatedMethods();
+    Class<?> retransformed = defineClass(transform());
+    Object retransformedExample = retransformed.getConstructor().newInstance();
+    retransformed.getMethod("gcd", int.class, int.class).invoke(retransformedExample, 12, 8);
+
+    // The disabled methods no longer count hits, but their lines stay covered
+    assertEquals(visitedLines, tracker.getVisitedLines());
+  }
+
+  private byte[] transform() throws IOException {
+    try (InputStream in = Example.class.getResourceAsStream("Example.class")) {
+      byte[] classBytes = Objects.requireNonNull(in).readAllBytes();
+      return transformer.transform(null, CLASS_NAME, null, null, classBytes);
+    }
+  }
+
+  private static Class<?> defineClass(byte[] bytes) {
+    return new ClassLoader(FirstHitMonitorTest.class.getClassLoader()) {
+      Class<?> define() {
+        return defineClass(CLASS_NAME.replace('/', '.'), bytes, 0, bytes.length);
+      }
+    }.define();
+  }
+}
@@ -0,0 +1,152 @@
+package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.commons.util.ReflectionUtils;
+
+class LineTableScannerTest {
+
+  private static final String PACKAGE = "de.uni_passau.fim.se2.st.fuzzing.fuzztarget";
+  private static final String PACKAGE_PATH = PACKAGE.replace('.', '/');
+  private static final List<String> CLASSES = List.of("Example", "Rational");
+
+  @TempDir Path tempDir;
+
+  private Path classes;
+  private Path cacheFile;
+
+  @BeforeEach
+  void setUp() throws IOException, ReflectiveOperationException {
+    Method reset =
+        ReflectionUtils.findMethod(CoverageTracker.class, "resetInstance").orElseThrow();
+    reset.setAccessible(true);
+    reset.invoke(null);
+
+    classes = tempDir.resolve("classes");
+    cacheFile = tempDir.resolve("cache").resolve("line-tables");
+    Files.createDirectories(classes.resolve(PACKAGE_PATH));
+    for (String className : CLASSES) {
+      Files.write(classes.resolve(PACKAGE_PATH).resolve(className + ".class"), read(className));
+    }
+  }
+
+  @Test
+  void testScanRegistersAllLines() throws IOException {
+    LineTableScanner.Result result = scan(classes, name -> true);
+
+    assertEquals(new LineTableScanner.Result(2, 0), result);
+    CoverageTracker tracker = CoverageTracker.getInstance();
+    CoverageTracker.ClassTracker example =
+        tracker.getClassTrackers().get(PACKAGE_PATH + "/Example");
+    assertNotNull(example);
+    assertFalse(example.getLines().isEmpty());
+    assertTrue(example.getVisitedLines().isEmpty());
+    assertEquals(0.0, tracker.getCoverage());
+  }
+
+  @Test
+  void testSecondScanUsesCache() throws IOException {
+    scan(classes, name -> true);
+    int totalLines = CoverageTracker.getInstance().getTotalNumberOfLines();
+
+    assertEquals(new LineTableScanner.Result(2, 2), scan(classes, name -> true));
+    assertEquals(totalLines, CoverageTracker.getInstance().getTotalNumberOfLines());
+    assertEquals(3, Files.readAllLines(cacheFile).size());
+  }
+
+  @Test
+  void testFilterSelectsClasses() throws IOException {
+    LineTableScanner.Result result = scan(classes, name -> name.endsWith("/Rational"));
+
+    assertEquals(1, result.classes());
+    assertEquals(
+        List.of(PACKAGE_PATH + "/Rational"),
+        List.copyOf(CoverageTracker.getInstance().getClassTrackers().keySet()));
+  }
+
+  @Test
+  void testScanJar() throws IOException {
+    Path jar = tempDir.resolve("classes.jar");
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+      out.putNextEntry(new JarEntry(PACKAGE_PATH + "/"));
+      out.closeEntry();
+      out.putNextEntry(new JarEntry(PACKAGE_PATH + "/Example.class"));
+      out.write(read("Example"));
+      out.closeEntry();
+    }
+
+    assertEquals(new LineTableScanner.Result(1, 0), scan(jar, name -> true));
+  }
+
+  @Test
+  void testCorruptCacheIsIgnored() throws IOException {
+    Files.createDirectories(cacheFile.getParent());
+    try (OutputStream out = Files.newOutputStream(cacheFile)) {
+      out.write("garbage".getBytes());
+    }
+
+    assertEquals(new LineTableScanner.Result(2, 0), scan(classes, name -> true));
+  }
+
+  @Test
+  void testMalformedCacheLineIsSkipped() throws IOException {
+    scan(classes, name -> true);
+    List<String> lines = Files.readAllLines(cacheFile);
+    String last = lines.get(2);
+    String malformed = last.substring(0, last.indexOf(' ')) + " 3,x";
+    Files.write(cacheFile, List.of(lines.get(0), lines.get(1), malformed));
+
+    assertEquals(new LineTableScanner.Result(2, 1), scan(classes, name -> true));
+  }
+
+  @Test
+  void testCacheIsReplacedWithoutLeftovers() throws IOException {
+    scan(classes, name -> true);
+    scan(classes, name -> true);
+
+    try (Stream<Path> files = Files.list(cacheFile.getParent())) {
+      assertEquals(List.of(cacheFile), files.toList());
+    }
+  }
+
+  @Test
+  void testInvalidThreadCount() {
+    assertThrows(IllegalArgumentException.class, () -> new LineTableScanner(cacheFile, 0));
+  }
+
+  private LineTableScanner.Result scan(Path root, Predicate<String> filter)
+      throws IOException {
+    try (URLClassLoader loader = new URLClassLoader(new URL[] {root.toUri().toURL()}, null)) {
+      return new LineTableScanner(cacheFile, 2).scan(PACKAGE, loader, filter);
+    }
+  }
+
+  private static byte[] read(String className) throws IOException {
+    String path = "/" + PACKAGE_PATH + "/" + className + ".class";
+    try (InputStream in = LineTableScannerTest.class.getResourceAsStream(path)) {
+      return Objects.requireNonNull(in).readAllBytes();
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.uni_passau.fim.se2.st.fuzzing.coverage.CoverageTracker;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.commons.util.ReflectionUtils;
+
+class OfflineInstrumenterTest {
+
+  private static final String CLASS_NAME = "de.uni_passau.fim.se2.st.fuzzing.fuzztarget.Example";
+  private static final String CLASS_PATH =
+      "de/uni_passau/fim/se2/st/fuzzing/fuzztarget/Example.class";
+
+  @TempDir Path tempDir;
+
+  private Path input;
+  private Path output;
+
+  @BeforeEach
+  void setUp() throws IOException, ReflectiveOperationException {
+    Method reset =
+        ReflectionUtils.findMethod(CoverageTracker.class, "resetInstance").orElseThrow();
+    reset.setAccessible(true);
+    reset.invoke(null);
+
+    input = tempDir.resolve("classes");
+    output = tempDir.resolve("instrumented");
+    Path classFile = input.resolve(CLASS_PATH);
+    Files.createDirectories(classFile.getParent());
+    Files.write(classFile, readOriginalClass());
+    Files.writeString(input.resolve("resource.txt"), "resource");
+  }
+
+  @Test
+  void testInstrumentDirectory() throws Exception {
+    OfflineInstrumenter.Result result =
+        new OfflineInstrumenter(false, true, 2).instrument(input, output);
+
+    assertEquals(new OfflineInstrumenter.Result(1, 0, 1), result);
+    assertEquals("resource", Files.readString(output.resolve("resource.txt")));
+    List<String> index = Files.readAllLines(output.resolve(OfflineInstrumenter.INDEX_FILE));
+    assertEquals(List.of("# edges=false,frames=keep", index.get(1)), index);
+    assertTrue(index.get(1).endsWith(" 0 " + CLASS_PATH));
+  }
+
+  @Test
+  void testInstrumentedClassRegistersWithoutAgent() throws Exception {
+    new OfflineInstrumenter(false, true, 1).instrument(input, output);
+    Class<?> instrumented = defineInstrumentedClass();
+
+    instrumented
+        .getMethod("evaluateConditions", boolean.class, boolean.class, boolean.class)
+        .invoke(null, true, true, false);
+
+    CoverageTracker.ClassTracker tracker =
+        CoverageTracker.getInstance()
+            .getClassTrackers()
+            .get("de/uni_passau/fim/se2/st/fuzzing/fuzztarget/Example");
+    assertNotNull(tracker, "Instrumented class should register itself");
+    assertFalse(tracker.getLines().isEmpty());
+    assertFalse(tracker.getVisitedLines().isEmpty());
+  }
+
+  @Test
+  void testEdgeInstrumentedClassTracksEdges() throws Exception {
+    new OfflineInstrumenter(true, true, 1).instrument(input, output);
+    Class<?> instrumented = defineInstrumentedClass();
+
+    instrumented
+        .getMethod("evaluateConditions", boolean.class, boolean.class, boolean.class)
+        .invoke(null, true, true, false);
+
+    assertTrue(CoverageTracker.getInstance().getNumberOfCoveredEdges() > 0);
+  }
+
+  @Test
+  void testUnchangedClassesAreSkipped() throws IOException {
+    OfflineInstrumenter instrumenter = new OfflineInstrumenter(false, true, 1);
+    instrumenter.instrument(input, output);
+
+    assertEquals(new OfflineInstrumenter.Result(0, 1, 1), instrumenter.instrument(input, output));
+  }
+
+  @Test
+  void testChangedOptionsInstrumentAgain() throws IOException {
+    new OfflineInstrumenter(false, true, 1).instrument(input, output);
+
+    OfflineInstrumenter.Result result =
+        new OfflineInstrumenter(true, true, 1).instrument(input, output);
+
+    assertEquals(1, result.instrumented());
+    assertEquals(
+        "# edges=true,frames=keep",
+        Files.readAllLines(output.resolve(OfflineInstrumenter.INDEX_FILE)).get(0));
+  }
+
+  @Test
+  void testExcludedClassesAreCopied() throws IOException {
+    OfflineInstrumenter.Result result =
+        new OfflineInstrumenter(false, true, null, List.of("**.Example"), 1)
+            .instrument(input, output);
+
+    assertEquals(new OfflineInstrumenter.Result(0, 0, 2), result);
+    assertArrayEquals(readOriginalClass(), Files.readAllBytes(output.resolve(CLASS_PATH)));
+    assertEquals(
+        List.of("# edges=false,frames=keep"),
+        Files.readAllLines(output.resolve(OfflineInstrumenter.INDEX_FILE)));
+  }
+
+  @Test
+  void testClassesOutsideTheIncludesAreCopied() throws IOException {
+    OfflineInstrumenter.Result result =
+        new OfflineInstrumenter(false, true, List.of("com.example.**"), null, 1)
+            .instrument(input, output);
+
+    assertEquals(new OfflineInstrumenter.Result(0, 0, 2), result);
+    assertArrayEquals(readOriginalClass(), Files.readAllBytes(output.resolve(CLASS_PATH)));
+  }
+
+  @Test
+  void testRemovedClassesAreDeleted() throws IOException {
+    new OfflineInstrumenter(false, true, 1).instrument(input, output);
+    Files.delete(input.resolve(CLASS_PATH));
+
+    OfflineInstrumenter.Result result =
+        new OfflineInstrumenter(true, true, 1).instrument(input, output);
+
+    assertEquals(new OfflineInstrumenter.Result(0, 0, 1), result);
+    assertFalse(Files.exists(output.resolve(CLASS_PATH)));
+    assertTrue(Files.exists(output.resolve("resource.txt")));
+    assertEquals(
+        List.of("# edges=true,frames=keep"),
+        Files.readAllLines(output.resolve(OfflineInstrumenter.INDEX_FILE)));
+  }
+
+  @Test
+  void testInstrumentJar() throws IOException {
+    Path jar = tempDir.resolve("classes.jar");
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+      out.putNextEntry(new JarEntry(CLASS_PATH));
+      out.write(readOriginalClass());
+      out.closeEntry();
+    }
+
+    OfflineInstrumenter.Result result =
+        new OfflineInstrumenter(false, true, 1).instrument(jar, output);
+
+    assertEquals(new OfflineInstrumenter.Result(1, 0, 0), result);
+    assertTrue(Files.exists(output.resolve(CLASS_PATH)));
+  }
+
+  @Test
+  void testInvalidThreadCount() {
+    assertThrows(IllegalArgumentException.class, () -> new OfflineInstrumenter(false, true, 0));
+  }
+
+  private Class<?> defineInstrumentedClass() throws IOException {
+    byte[] bytes = Files.readAllBytes(output.resolve(CLASS_PATH));
+    return new ClassLoader(OfflineInstrumenterTest.class.getClassLoader()) {
+      Class<?> define() {
+        return defineClass(CLASS_NAME, bytes, 0, bytes.length);
+      }
+    }.define();
+  }
+
+  private static byte[] readOriginalClass() throws IOException {
+    try (InputStream in = OfflineInstrumenterTest.class.getResourceAsStream("/" + CLASS_PATH)) {
+      return Objects.requireNonNull(in).readAllBytes();
+    }
+  }
+}
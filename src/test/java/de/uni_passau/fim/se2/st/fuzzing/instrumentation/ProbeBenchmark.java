@@ -0,0 +1,96 @@
+package de.uni_passau.fim.se2.st.fuzzing.instrumentation;
+
+import de.uni_passau.fim.se2.st.fuzzing.fuzztarget.CSVParser;
+import de.uni_passau.fim.se2.st.fuzzing.fuzztarget.Example;
+import de.uni_passau.fim.se2.st.fuzzing.fuzztarget.Rational;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures how many calls of a few fuzz targets run per second, to compare the overhead of the
+ * line probes with and without the agent. It is not a test and is run by {@code bench.sh}, once
+ * with {@code -javaagent} and once without.
+ *
+ * <p>Every workload is warmed up first and then called in batches until the measurement time is
+ * up. The results of the calls are summed up and printed, so that the JIT cannot drop the calls.
+ */
+final class ProbeBenchmark {
+
+  private static final int BATCH = 1_000;
+  private static final String CSV =
+      "01.01.2024;Mo;HG1;Nudeln mit Tomatensauce (A,HG);V;2,50;3,50;4,50\n"
+          + "01.01.2024;Mo;Suppe;Linsensuppe (C);VG;1,00;1,50;2,00\n";
+
+  private record Workload(String name, IntSupplier call) {}
+
+  private ProbeBenchmark() {}
+
+  /**
+   * Runs all workloads and prints their throughput.
+   *
+   * @param args The seconds each workload is measured, {@code 3} if none are given
+   */
+  public static void main(String[] args) {
+    long seconds = args.length > 0 ? Long.parseLong(args[0]) : 3;
+    Example example = new Example();
+    CSVParser parser = new CSVParser();
+    int[] counter = {0};
+    List<Workload> workloads =
+        List.of(
+            new Workload("Example.gcd", () -> example.gcd(++counter[0] | 1, 1_071)),
+            new Workload(
+                "Example.evalConditions",
+                () -> {
+                  int i = ++counter[0];
+                  return Example.evaluateConditions((i & 1) == 0, (i & 2) == 0, (i & 4) == 0);
+                }),
+            new Workload(
+                "Rational.negate/plus",
+                () -> {
+                  Rational r = new Rational(++counter[0] % 97 + 1, 7);
+                  return r.plus(r.negate().plus(new Rational(1, 3))).hashCode();
+                }),
+            new Workload(
+                "CSVParser.parseDishes",
+                () -> parser.parseDishes(new BufferedReader(new StringReader(CSV))).size()));
+
+    System.out.printf(
+        "%-24s %14s   (agent %s)%n", "workload", "calls/s", isAgentLoaded() ? "on" : "off");
+    long sink = 0;
+    for (Workload workload : workloads) {
+      sink += warmUp(workload.call(), 1_000_000_000L);
+      long start = System.nanoTime();
+      long calls = 0;
+      long deadline = start + seconds * 1_000_000_000L;
+      long now;
+      do {
+        for (int i = 0; i < BATCH; i++) {
+          sink += workload.call().getAsInt();
+        }
+        calls += BATCH;
+        now = System.nanoTime();
+      } while (now < deadline);
+      double perSecond = calls * 1e9 / (now - start);
+      System.out.printf(Locale.ROOT, "%-24s %14.0f%n", workload.name(), perSecond);
+    }
+    System.out.println("(checksum " + sink + ")");
+  }
+
+  private static long warmUp(IntSupplier call, long nanos) {
+    long sink = 0;
+    long deadline = System.nanoTime() + nanos;
+    while (System.nanoTime() < deadline) {
+      for (int i = 0; i < BATCH; i++) {
+        sink += call.getAsInt();
+      }
+    }
+    return sink;
+  }
+
+  private static boolean isAgentLoaded() {
+    return Agent.isInstrumented(Example.class.getName().replace('.', '/'));
+  }
+}